@@ -17,23 +17,22 @@ package com.google.devtools.cyclefinder;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
 import com.google.devtools.j2objc.ast.CompilationUnit;
-import com.google.devtools.j2objc.file.RegularInputFile;
+import com.google.devtools.j2objc.file.InputFile;
 import com.google.devtools.j2objc.translate.LambdaTypeElementAdder;
 import com.google.devtools.j2objc.translate.OuterReferenceResolver;
 import com.google.devtools.j2objc.util.ErrorUtil;
-import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
+import com.google.devtools.j2objc.util.TranslationEnvironment;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.lang.model.element.TypeElement;
 
 /**
  * A tool for finding possible reference cycles in a Java program.
@@ -90,7 +89,7 @@ public class CycleFinder {
   }
 
   private void testFileExistence() {
-    for (String filePath : options.getSourceFiles()) {
+    for (String filePath : Iterables.concat(options.getSourceFiles(), options.getClassFiles())) {
       File f = new File(filePath);
       if (!f.exists()) {
         ErrorUtil.error("File not found: " + filePath);
@@ -106,32 +105,6 @@ public class CycleFinder {
     return NameList.createFromFiles(blackListFiles, options.fileEncoding());
   }
 
-  private File stripIncompatible(
-      List<String> sourceFileNames, Parser parser) throws IOException {
-    File strippedDir = null;
-    for (int i = 0; i < sourceFileNames.size(); i++) {
-      String fileName = sourceFileNames.get(i);
-      RegularInputFile file = new RegularInputFile(fileName);
-      String source = j2objcOptions.fileUtil().readFile(file);
-      if (!source.contains("J2ObjCIncompatible")) {
-        continue;
-      }
-      if (strippedDir == null) {
-        strippedDir = Files.createTempDir();
-        parser.prependSourcepathEntry(strippedDir.getPath());
-      }
-      Parser.ParseResult parseResult = parser.parseWithoutBindings(file, source);
-      String qualifiedName = parseResult.mainTypeName();
-      parseResult.stripIncompatibleSource();
-      String relativePath = qualifiedName.replace('.', File.separatorChar) + ".java";
-      File strippedFile = new File(strippedDir, relativePath);
-      Files.createParentDirs(strippedFile);
-      Files.write(parseResult.getSource(), strippedFile, Charset.forName(options.fileEncoding()));
-      sourceFileNames.set(i, strippedFile.getPath());
-    }
-    return strippedDir;
-  }
-
   public void constructGraph() throws IOException {
     Parser parser = createParser();
     NameList whitelist =
@@ -139,7 +112,7 @@ public class CycleFinder {
     final GraphBuilder graphBuilder = new GraphBuilder(whitelist);
 
     List<String> sourceFiles = options.getSourceFiles();
-    File strippedDir = stripIncompatible(sourceFiles, parser);
+    parser.stripIncompatibleSources(sourceFiles);
 
     Parser.Handler handler = new Parser.Handler() {
       @Override
@@ -149,9 +122,19 @@ public class CycleFinder {
         graphBuilder.visitAST(unit);
       }
     };
-    parser.parseFiles(sourceFiles, handler, options.sourceVersion());
+    Parser.ClassFileHandler classFileHandler = new Parser.ClassFileHandler() {
+      @Override
+      public void handleClassFile(InputFile file, TypeElement type, TranslationEnvironment env) {
+        // Local and anonymous classes can't be looked up, and are only reachable through
+        // the classes that declare them.
+        if (type != null) {
+          graphBuilder.visitClassFile(type, env);
+        }
+      }
+    };
+    parser.parseFiles(sourceFiles, handler, options.getClassFiles(), classFileHandler,
+        options.sourceVersion());
 
-    FileUtil.deleteTempDir(strippedDir);
 
     if (ErrorUtil.errorCount() > 0) {
       return;
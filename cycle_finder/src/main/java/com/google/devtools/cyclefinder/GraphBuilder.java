@@ -32,6 +32,7 @@ import com.google.devtools.j2objc.ast.TypeMethodReference;
 import com.google.devtools.j2objc.ast.UnitTreeVisitor;
 import com.google.devtools.j2objc.util.CaptureInfo;
 import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TranslationEnvironment;
 import com.google.devtools.j2objc.util.TypeUtil;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -182,6 +183,14 @@ public class GraphBuilder {
     new Visitor(unit).run();
   }
 
+  /**
+   * Adds a type read from a class file. Without its source there is no capture
+   * information, so an inner class is assumed to retain its outer instance.
+   */
+  public void visitClassFile(TypeElement type, TranslationEnvironment env) {
+    new Visitor(new CompilationUnit(env, ElementUtil.getName(type))).handleClassFileType(type);
+  }
+
   private class Visitor extends UnitTreeVisitor {
 
     private final CaptureInfo captureInfo;
@@ -335,6 +344,15 @@ public class GraphBuilder {
       }
     }
 
+    private void handleClassFileType(TypeElement typeElem) {
+      TypeMirror type = typeElem.asType();
+      TypeNode typeNode = createNode(
+          type, nameUtil.getSignature(type), NameUtil.getName(type));
+      if (ElementUtil.hasOuterContext(typeElem)) {
+        hasOuterRef.add(typeNode);
+      }
+    }
+
     @Override
     public boolean visit(TypeDeclaration node) {
       handleTypeDeclaration(node, node.getTypeElement());
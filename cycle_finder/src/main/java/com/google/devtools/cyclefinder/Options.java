@@ -59,6 +59,7 @@ class Options {
   private List<String> whitelistFiles = Lists.newArrayList();
   private List<String> blacklistFiles = Lists.newArrayList();
   private List<String> sourceFiles = Lists.newArrayList();
+  private List<String> classFiles = Lists.newArrayList();
   private String fileEncoding = System.getProperty("file.encoding", "UTF-8");
   private boolean printReferenceGraph = false;
   private SourceVersion sourceVersion = SourceVersion.defaultVersion();
@@ -71,6 +72,18 @@ class Options {
     this.sourceFiles = files;
   }
 
+  /**
+   * Returns the class files and jars of class files to analyze, which are read
+   * without compiling any source.
+   */
+  public List<String> getClassFiles() {
+    return classFiles;
+  }
+
+  public void setClassFiles(List<String> files) {
+    this.classFiles = files;
+  }
+
   public String getSourcepath() {
     return sourcepath;
   }
@@ -227,9 +240,14 @@ class Options {
     }
 
     while (nArg < args.length) {
-      options.sourceFiles.add(args[nArg++]);
+      String file = args[nArg++];
+      if (file.endsWith(".jar") || file.endsWith(".class")) {
+        options.classFiles.add(file);
+      } else {
+        options.sourceFiles.add(file);
+      }
     }
-    if (options.sourceFiles.isEmpty()) {
+    if (options.sourceFiles.isEmpty() && options.classFiles.isEmpty()) {
       usage("no source files");
     }
 
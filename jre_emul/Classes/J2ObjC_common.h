@@ -130,6 +130,9 @@ __attribute__((always_inline)) inline id JreRetainedLocalValue(id value) {
  */
 #define J2OBJC_ARG(...) __VA_ARGS__
 
+// The Acquire and Relaxed variants are only used for fields that the translator
+// finds are assigned before their object or class is published. See the
+// --volatile-ordering flag.
 #define J2OBJC_VOLATILE_ACCESS_DEFN(NAME, TYPE) \
   __attribute__((always_inline)) inline TYPE JreLoadVolatile##NAME(volatile_##TYPE *pVar) { \
     return __c11_atomic_load(pVar, __ATOMIC_SEQ_CST); \
@@ -138,6 +141,15 @@ __attribute__((always_inline)) inline id JreRetainedLocalValue(id value) {
       volatile_##TYPE *pVar, TYPE value) { \
     __c11_atomic_store(pVar, value, __ATOMIC_SEQ_CST); \
     return value; \
+  } \
+  __attribute__((always_inline)) inline TYPE JreLoadVolatileAcquire##NAME( \
+      volatile_##TYPE *pVar) { \
+    return __c11_atomic_load(pVar, __ATOMIC_ACQUIRE); \
+  } \
+  __attribute__((always_inline)) inline TYPE JreAssignVolatileRelaxed##NAME( \
+      volatile_##TYPE *pVar, TYPE value) { \
+    __c11_atomic_store(pVar, value, __ATOMIC_RELAXED); \
+    return value; \
   }
 
 J2OBJC_VOLATILE_ACCESS_DEFN(Boolean, jboolean)
@@ -23,6 +23,7 @@ import com.google.devtools.j2objc.pipeline.GenerationBatch;
 import com.google.devtools.j2objc.pipeline.InputFilePreprocessor;
 import com.google.devtools.j2objc.pipeline.ProcessingContext;
 import com.google.devtools.j2objc.pipeline.TranslationProcessor;
+import com.google.devtools.j2objc.translate.DeadCodeAnalyzer;
 import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
@@ -59,14 +60,12 @@ public class J2ObjC {
         : "";
   }
 
-  private static void checkErrors(boolean treatWarningsAsErrors) {
+  private static int countErrors(boolean treatWarningsAsErrors) {
     int errors = ErrorUtil.errorCount();
     if (treatWarningsAsErrors) {
       errors += ErrorUtil.warningCount();
     }
-    if (errors > 0) {
-      System.exit(errors);
-    }
+    return errors;
   }
 
   @VisibleForTesting
@@ -84,13 +83,26 @@ public class J2ObjC {
     return ProGuardUsageParser.parseDeadCodeFile(Options.getProGuardUsageFile());
   }
 
+  private static TranslationProcessor createTranslationProcessor(Parser parser, Options options) {
+    File deadCodeRootsFile = options.getDeadCodeRootsFile();
+    if (deadCodeRootsFile != null) {
+      return new TranslationProcessor(parser,
+          new DeadCodeAnalyzer(ProGuardUsageParser.parseDeadCodeFile(deadCodeRootsFile)));
+    }
+    return new TranslationProcessor(parser, loadDeadCodeMap());
+  }
+
   /**
    * Runs the entire J2ObjC pipeline.
    * @param fileArgs the files to process, same format as command-line args to {@link #main}.
+   * @return the number of errors, including warnings if they are treated as errors
    */
-  public static void run(List<String> fileArgs, Options options) {
-    File preProcessorTempDir = null;
-    File strippedSourcesDir = null;
+  public static int run(List<String> fileArgs, Options options) {
+    translate(fileArgs, options);
+    return countErrors(options.treatWarningsAsErrors());
+  }
+
+  private static void translate(List<String> fileArgs, Options options) {
     Parser parser = null;
     try {
       List<ProcessingContext> inputs = Lists.newArrayList();
@@ -102,35 +114,24 @@ public class J2ObjC {
       }
 
       parser = createParser(options);
-      Parser.ProcessingResult processingResult = parser.processAnnotations(fileArgs, inputs);
-      List<ProcessingContext> generatedInputs = processingResult.getGeneratedSources();
-      inputs.addAll(generatedInputs); // Ensure all generatedInputs are at end of input list.
-      preProcessorTempDir = processingResult.getSourceOutputDirectory();
-      if (ErrorUtil.errorCount() > 0) {
-        return;
-      }
-      if (preProcessorTempDir != null) {
-        parser.addSourcepathEntry(preProcessorTempDir.getAbsolutePath());
-      }
+      // Processors run while the inputs are attributed for translation, and
+      // the sources they generate are translated with them.
+      parser.enableAnnotationProcessing();
 
       InputFilePreprocessor inputFilePreprocessor = new InputFilePreprocessor(parser);
       inputFilePreprocessor.processInputs(inputs);
       if (ErrorUtil.errorCount() > 0) {
         return;
       }
-      strippedSourcesDir = inputFilePreprocessor.getStrippedSourcesDir();
-      if (strippedSourcesDir != null) {
-        parser.prependSourcepathEntry(strippedSourcesDir.getPath());
-      }
 
       options.getHeaderMap().loadMappings();
-      TranslationProcessor translationProcessor =
-          new TranslationProcessor(parser, loadDeadCodeMap());
+      TranslationProcessor translationProcessor = createTranslationProcessor(parser, options);
       translationProcessor.processInputs(inputs);
       translationProcessor.processBuildClosureDependencies();
       if (ErrorUtil.errorCount() > 0) {
         return;
       }
+      translationProcessor.processDeferredUnits();
       translationProcessor.postProcess();
 
       options.getHeaderMap().printMappings();
@@ -146,8 +147,6 @@ public class J2ObjC {
       for (String dir : tempDirs) {
         FileUtil.deleteTempDir(new File(dir));
       }
-      FileUtil.deleteTempDir(preProcessorTempDir);
-      FileUtil.deleteTempDir(strippedSourcesDir);
     }
   }
 
@@ -176,14 +175,15 @@ public class J2ObjC {
       System.exit(1);
     }
 
-    run(files, options);
+    int errors = run(files, options);
 
     TimingLevel timingLevel = options.timingLevel();
     if (timingLevel == TimingLevel.TOTAL || timingLevel == TimingLevel.ALL) {
       System.out.printf("j2objc execution time: %d ms\n", System.currentTimeMillis() - startTime);
     }
 
-    // Run last, since it calls System.exit() with the number of errors.
-    checkErrors(options.treatWarningsAsErrors());
+    if (errors > 0) {
+      System.exit(errors);
+    }
   }
 }
@@ -31,6 +31,7 @@ import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.PackageInfoLookup;
 import com.google.devtools.j2objc.util.PackagePrefixes;
 import com.google.devtools.j2objc.util.SourceVersion;
+import com.google.devtools.j2objc.util.StringPool;
 import com.google.devtools.j2objc.util.Version;
 import java.io.File;
 import java.io.IOException;
@@ -38,6 +39,7 @@ import java.net.URL;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
@@ -64,6 +66,7 @@ public class Options {
   private boolean warningsAsErrors = false;
   private boolean deprecatedDeclarations = false;
   private HeaderMap headerMap = new HeaderMap();
+  private StringPool stringPool = new StringPool();
   private boolean stripGwtIncompatible = false;
   private boolean segmentedHeaders = true;
   private boolean jsniWarnings = true;
@@ -89,6 +92,7 @@ public class Options {
   private String globalCombinedOutput = null;
   private String bootclasspath = null;
   private boolean emitKytheMappings = false;
+  private boolean emitHeaderFingerprints = false;
   private boolean emitSourceHeaders = true;
 
   private Mappings mappings = new Mappings();
@@ -101,6 +105,20 @@ public class Options {
   private SourceVersion sourceVersion = SourceVersion.defaultVersion();
 
   private static File proGuardUsageFile = null;
+  private File deadCodeRootsFile = null;
+  private int autoreleasePoolThreshold = 0;
+  private int autoreleasePoolInterval = 1;
+  private boolean inlineAccessors = false;
+  private boolean amalgamatePackages = false;
+  private int amalgamationSizeLimit = 1024;
+  private File includeGraphReport = null;
+  private String moduleName = null;
+  private int prefixHeaderSize = 0;
+  private boolean volatileOrdering = false;
+  private File staticInitReport = null;
+  private boolean stripUnusedReflection = false;
+  private File reflectionReport = null;
+  private Set<String> unreflectedClasses = Collections.emptySet();
 
   private static String fileHeader;
   private static final String FILE_HEADER_KEY = "file-header";
@@ -288,6 +306,20 @@ public class Options {
       return args.next();
     }
 
+    private int getPositiveIntArgValue(Iterator<String> args, String arg) {
+      String value = getArgValue(args, arg);
+      try {
+        int n = Integer.parseInt(value);
+        if (n > 0) {
+          return n;
+        }
+      } catch (NumberFormatException e) {
+        // Fall-through.
+      }
+      usage(arg + " requires a positive number: " + value);
+      return 0;
+    }
+
     private void processArg(Iterator<String> args) throws IOException {
       String arg = args.next();
       if (arg.isEmpty()) {
@@ -310,6 +342,30 @@ public class Options {
         headerMap.setOutputMappingFile(new File(getArgValue(args, arg)));
       } else if (arg.equals("--dead-code-report")) {
         proGuardUsageFile = new File(getArgValue(args, arg));
+      } else if (arg.equals("--dead-code-roots")) {
+        deadCodeRootsFile = new File(getArgValue(args, arg));
+      } else if (arg.equals("--autorelease-pool-threshold")) {
+        autoreleasePoolThreshold = getPositiveIntArgValue(args, arg);
+      } else if (arg.equals("--autorelease-pool-interval")) {
+        autoreleasePoolInterval = getPositiveIntArgValue(args, arg);
+      } else if (arg.equals("--inline-accessors")) {
+        inlineAccessors = true;
+      } else if (arg.equals("--volatile-ordering")) {
+        volatileOrdering = true;
+      } else if (arg.equals("--amalgamate-packages")) {
+        amalgamatePackages = true;
+      } else if (arg.equals("--amalgamation-size-limit")) {
+        amalgamationSizeLimit = getPositiveIntArgValue(args, arg);
+      } else if (arg.equals("--include-graph-report")) {
+        includeGraphReport = new File(getArgValue(args, arg));
+      } else if (arg.equals("--package-info-index")) {
+        packageInfoLookup.setIndexDirectory(new File(getArgValue(args, arg)));
+      } else if (arg.equals("--static-init-report")) {
+        staticInitReport = new File(getArgValue(args, arg));
+      } else if (arg.equals("--module-name")) {
+        moduleName = getArgValue(args, arg);
+      } else if (arg.equals("--prefix-header-size")) {
+        prefixHeaderSize = getPositiveIntArgValue(args, arg);
       } else if (arg.equals("--prefix")) {
         addPrefixOption(getArgValue(args, arg));
       } else if (arg.equals("--prefixes")) {
@@ -376,6 +432,18 @@ public class Options {
         stripGwtIncompatible = true;
       } else if (arg.equals("--strip-reflection")) {
         includedMetadata = EnumSet.of(MetadataSupport.ENUM_CONSTANTS);
+      } else if (arg.equals("--strip-unused-reflection")) {
+        stripUnusedReflection = true;
+      } else if (arg.equals("--reflection-report")) {
+        reflectionReport = new File(getArgValue(args, arg));
+      } else if (arg.equals("--string-pool")) {
+        String name = getArgValue(args, arg);
+        if (!name.matches("[A-Za-z_]\\w*")) {
+          usage("invalid string pool name: " + name);
+        }
+        stringPool.setName(name);
+      } else if (arg.equals("--string-literal-report")) {
+        stringPool.setReportFile(new File(getArgValue(args, arg)));
       } else if (arg.equals("-Xstrip-enum-constants")) {
         includedMetadata.remove(MetadataSupport.ENUM_CONSTANTS);
       } else if (arg.startsWith("--reflection:")) {
@@ -424,6 +492,8 @@ public class Options {
         extractUnsequencedModifications = false;
       } else if (arg.equals("--doc-comments")) {
         docCommentsEnabled = true;
+      } else if (arg.equals("--header-fingerprints")) {
+        emitHeaderFingerprints = true;
       } else if (arg.equals("--doc-comment-warnings")) {
         reportJavadocWarnings = true;
       } else if (arg.equals("--static-accessor-methods")) {
@@ -523,6 +593,29 @@ public class Options {
       ErrorUtil.error("entry class names can only be specified with --build-closure flag");
     }
 
+    // Dead code is either read from a report or computed, not both.
+    if (deadCodeRootsFile != null && proGuardUsageFile != null) {
+      ErrorUtil.error("--dead-code-roots can't be used with --dead-code-report");
+    }
+    // Reachability needs the whole program before anything is translated.
+    if (deadCodeRootsFile != null && buildClosure) {
+      ErrorUtil.error("--dead-code-roots is not supported with --build-closure");
+    }
+    // Accessors are indexed over the whole program before anything is translated.
+    if (inlineAccessors && buildClosure) {
+      ErrorUtil.error("--inline-accessors is not supported with --build-closure");
+    }
+    if (amalgamatePackages && (headerMap.combineSourceJars() || globalCombinedOutput != null)) {
+      ErrorUtil.error(
+          "--amalgamate-packages is not supported with -XcombineJars or -XglobalCombinedOutput");
+    }
+    if (moduleName != null && !moduleName.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+      ErrorUtil.error("invalid module name: " + moduleName);
+    }
+    if (prefixHeaderSize > 0 && moduleName == null) {
+      ErrorUtil.error("--prefix-header-size requires --module-name");
+    }
+
     if (memoryManagementOption == null) {
       memoryManagementOption = MemoryManagementOption.REFERENCE_COUNTING;
     }
@@ -680,6 +773,14 @@ public class Options {
     return headerMap;
   }
 
+  /**
+   * Returns the pool that the translated files' metadata strings are
+   * written to, and that reports their duplicated strings.
+   */
+  public StringPool getStringPool() {
+    return stringPool;
+  }
+
   public static String getUsageMessage() {
     return usageMessage;
   }
@@ -700,6 +801,149 @@ public class Options {
     return proGuardUsageFile;
   }
 
+  public File getDeadCodeRootsFile() {
+    return deadCodeRootsFile;
+  }
+
+  @VisibleForTesting
+  public void setDeadCodeRootsFile(File file) {
+    deadCodeRootsFile = file;
+  }
+
+  /**
+   * Returns the estimated number of autoreleased objects per loop iteration
+   * above which loops are given an autorelease pool, or zero if pools are
+   * only added to loops annotated with AutoreleasePool.
+   */
+  public int autoreleasePoolThreshold() {
+    return autoreleasePoolThreshold;
+  }
+
+  @VisibleForTesting
+  public void setAutoreleasePoolThreshold(int threshold) {
+    autoreleasePoolThreshold = threshold;
+  }
+
+  /**
+   * Returns the number of iterations between drains of an added autorelease
+   * pool.
+   */
+  public int autoreleasePoolInterval() {
+    return autoreleasePoolInterval;
+  }
+
+  @VisibleForTesting
+  public void setAutoreleasePoolInterval(int interval) {
+    autoreleasePoolInterval = interval;
+  }
+
+  /**
+   * Returns whether calls to trivial final accessors are replaced with static
+   * inline functions declared in the accessor's header.
+   */
+  public boolean inlineAccessors() {
+    return inlineAccessors;
+  }
+
+  @VisibleForTesting
+  public void setInlineAccessors(boolean b) {
+    inlineAccessors = b;
+  }
+
+  /**
+   * Returns whether volatile fields that are only written before their object
+   * or class is published use weaker memory ordering than sequential
+   * consistency.
+   */
+  public boolean volatileOrdering() {
+    return volatileOrdering;
+  }
+
+  @VisibleForTesting
+  public void setVolatileOrdering(boolean b) {
+    volatileOrdering = b;
+  }
+
+  /**
+   * Returns whether the implementation files of each package are combined
+   * into larger files, to reduce the number of times clang parses the
+   * package's headers.
+   */
+  public boolean amalgamatePackages() {
+    return amalgamatePackages;
+  }
+
+  @VisibleForTesting
+  public void setAmalgamatePackages(boolean b) {
+    amalgamatePackages = b;
+  }
+
+  /**
+   * Returns the size in kilobytes above which a package's combined
+   * implementation is split into another file.
+   */
+  public int amalgamationSizeLimit() {
+    return amalgamationSizeLimit;
+  }
+
+  @VisibleForTesting
+  public void setAmalgamationSizeLimit(int limit) {
+    amalgamationSizeLimit = limit;
+  }
+
+  /**
+   * Returns the file to write the include graph of the translated files to,
+   * or null if it isn't reported.
+   */
+  public File includeGraphReport() {
+    return includeGraphReport;
+  }
+
+  @VisibleForTesting
+  public void setIncludeGraphReport(File file) {
+    includeGraphReport = file;
+  }
+
+  /**
+   * Returns the file to write the static initializers of the translated
+   * classes and their initialization chains to, or null if they aren't
+   * reported.
+   */
+  public File staticInitReport() {
+    return staticInitReport;
+  }
+
+  @VisibleForTesting
+  public void setStaticInitReport(File file) {
+    staticInitReport = file;
+  }
+
+  /**
+   * Returns the name of the clang module generated for the translated
+   * headers, or null if no module is generated.
+   */
+  public String moduleName() {
+    return moduleName;
+  }
+
+  @VisibleForTesting
+  public void setModuleName(String name) {
+    moduleName = name;
+  }
+
+  /**
+   * Returns the number of most included headers in the module's prefix
+   * header, or zero if no prefix header is generated.
+   */
+  public int prefixHeaderSize() {
+    return prefixHeaderSize;
+  }
+
+  @VisibleForTesting
+  public void setPrefixHeaderSize(int size) {
+    prefixHeaderSize = size;
+  }
+
   public List<String> getBootClasspath() {
     return getPathArgument(bootclasspath, false);
   }
@@ -765,6 +1009,44 @@ public class Options {
     }
   }
 
+  /**
+   * Returns whether metadata is only generated for the classes that the
+   * translated code can reflect on.
+   */
+  public boolean stripUnusedReflection() {
+    return stripUnusedReflection;
+  }
+
+  @VisibleForTesting
+  public void setStripUnusedReflection(boolean b) {
+    stripUnusedReflection = b;
+  }
+
+  /**
+   * Returns the file to write which classes keep their reflection metadata
+   * to, or null if it isn't reported.
+   */
+  public File reflectionReport() {
+    return reflectionReport;
+  }
+
+  @VisibleForTesting
+  public void setReflectionReport(File file) {
+    reflectionReport = file;
+  }
+
+  /**
+   * Returns the binary names of the classes no translated code reflects on,
+   * which are translated without metadata if unused reflection is stripped.
+   */
+  public Set<String> unreflectedClasses() {
+    return unreflectedClasses;
+  }
+
+  public void setUnreflectedClasses(Set<String> classNames) {
+    unreflectedClasses = classNames;
+  }
+
   public boolean stripEnumConstants() {
     return !includedMetadata.contains(MetadataSupport.ENUM_CONSTANTS);
   }
@@ -905,6 +1187,19 @@ public class Options {
     emitKytheMappings = b;
   }
 
+  /**
+   * Returns whether an API fingerprint is written next to each generated
+   * header.
+   */
+  public boolean emitHeaderFingerprints() {
+    return emitHeaderFingerprints;
+  }
+
+  @VisibleForTesting
+  public void setEmitHeaderFingerprints(boolean b) {
+    emitHeaderFingerprints = b;
+  }
+
   public boolean emitSourceHeaders() {
     return emitSourceHeaders;
   }
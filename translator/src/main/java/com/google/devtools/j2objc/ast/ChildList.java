@@ -72,6 +72,7 @@ class ChildList<T extends TreeNode> extends AbstractList<T> {
 
   @SuppressWarnings("unchecked")
   public void copyFrom(List<T> other) {
+    modifiableDelegate().ensureCapacity(delegate.size() + other.size());
     for (T elem : other) {
       add((T) elem.copy());
     }
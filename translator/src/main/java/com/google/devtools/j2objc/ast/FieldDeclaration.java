@@ -27,12 +27,14 @@ public class FieldDeclaration extends BodyDeclaration {
   // FieldDeclaration only has one VariableDeclarationFragment.
   private ChildList<VariableDeclarationFragment> fragments =
       ChildList.create(VariableDeclarationFragment.class, this);
+  private boolean hasHeaderInstanceVariable = false;
 
   public FieldDeclaration() {}
 
   public FieldDeclaration(FieldDeclaration other) {
     super(other);
     fragments.copyFrom(other.getFragments());
+    hasHeaderInstanceVariable = other.hasHeaderInstanceVariable();
   }
 
   public FieldDeclaration(VariableDeclarationFragment fragment) {
@@ -67,6 +69,19 @@ public class FieldDeclaration extends BodyDeclaration {
     return this;
   }
 
+  /**
+   * Returns whether a private field's instance variable is declared in the
+   * header, with package visibility, for inline functions declared there.
+   */
+  public boolean hasHeaderInstanceVariable() {
+    return hasHeaderInstanceVariable;
+  }
+
+  public FieldDeclaration setHasHeaderInstanceVariable(boolean value) {
+    hasHeaderInstanceVariable = value;
+    return this;
+  }
+
   @Override
   protected void acceptInner(TreeVisitor visitor) {
     if (visitor.visit(this)) {
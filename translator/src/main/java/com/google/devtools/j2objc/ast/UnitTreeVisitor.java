@@ -17,6 +17,7 @@ package com.google.devtools.j2objc.ast;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.gen.SignatureGenerator;
 import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.TranslationEnvironment;
 import com.google.devtools.j2objc.util.TranslationUtil;
@@ -47,6 +48,11 @@ public class UnitTreeVisitor extends TreeVisitor {
   }
 
   public void run() {
-    unit.accept(this);
+    String previousPass = ErrorUtil.setPassContext(getClass().getSimpleName());
+    try {
+      unit.accept(this);
+    } finally {
+      ErrorUtil.setPassContext(previousPass);
+    }
   }
 }
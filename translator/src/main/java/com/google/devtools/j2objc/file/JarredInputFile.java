@@ -30,6 +30,8 @@ import java.util.zip.ZipEntry;
 public class JarredInputFile implements InputFile {
   private final String jarPath;
   private final String internalPath;
+  // Null if the jar is opened for each read.
+  private final MappedJarFile mappedJar;
 
   /**
    * Create a new JarredSourceFile. The file's unit name will be the same as
@@ -41,10 +43,25 @@ public class JarredInputFile implements InputFile {
     assert !jarPath.endsWith(".java");
     this.jarPath = jarPath;
     this.internalPath = internalPath;
+    this.mappedJar = null;
+  }
+
+  /**
+   * Create a new JarredSourceFile that is read in place from a mapped jar.
+   * @param mappedJar the containing .jar, already indexed
+   * @param internalPath the file's path within the jar
+   */
+  public JarredInputFile(MappedJarFile mappedJar, String internalPath) {
+    this.jarPath = mappedJar.getPath();
+    this.internalPath = internalPath;
+    this.mappedJar = mappedJar;
   }
 
   @Override
   public boolean exists() throws IOException {
+    if (mappedJar != null) {
+      return mappedJar.contains(internalPath);
+    }
     try (JarFile jarFile = new JarFile(jarPath)) {
       ZipEntry entry = jarFile.getEntry(internalPath);
       return entry != null;
@@ -53,6 +70,9 @@ public class JarredInputFile implements InputFile {
 
   @Override
   public InputStream getInputStream() throws IOException {
+    if (mappedJar != null) {
+      return mappedJar.getInputStream(internalPath);
+    }
     final JarFile jarFile = new JarFile(jarPath);
     ZipEntry entry = jarFile.getEntry(internalPath);
     final InputStream entryStream = jarFile.getInputStream(entry);
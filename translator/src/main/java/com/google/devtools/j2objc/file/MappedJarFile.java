@@ -0,0 +1,276 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A jar or zip file that is memory-mapped and indexed by its central
+ * directory, so entries can be read in place without extracting them.
+ * Reads don't share state, so entries can be read from any thread.
+ */
+public class MappedJarFile {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final int END_HEADER_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final long UNKNOWN_SIZE = 0xFFFFFFFFL;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  /**
+   * The location of an entry's data, as read from the central directory.
+   */
+  private static class Entry {
+    private final int method;
+    private final long compressedSize;
+    private final long size;
+    private final long localHeaderOffset;
+
+    private Entry(int method, long compressedSize, long size, long localHeaderOffset) {
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+  }
+
+  private final String path;
+  private final MappedByteBuffer buffer;
+  private final Map<String, Entry> entries;
+
+  private MappedJarFile(String path, MappedByteBuffer buffer, Map<String, Entry> entries) {
+    this.path = path;
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  /**
+   * Maps a jar file and reads its central directory. The file isn't held
+   * open; the mapping stays valid until this instance is collected.
+   */
+  public static MappedJarFile open(File file) throws IOException {
+    MappedByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new ZipException("Jar file too large to map: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return new MappedJarFile(file.getPath(), buffer, readCentralDirectory(buffer, file));
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the names of all entries, in central directory order.
+   */
+  public Set<String> getEntryNames() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  public boolean contains(String name) {
+    return entries.containsKey(name);
+  }
+
+  public InputStream getInputStream(String name) throws IOException {
+    return new ByteArrayInputStream(read(name));
+  }
+
+  /**
+   * Returns the uncompressed contents of an entry.
+   */
+  public byte[] read(String name) throws IOException {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      throw new ZipException("No entry " + name + " in " + path);
+    }
+    int localHeader = checkedOffset(entry.localHeaderOffset);
+    if (buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header for " + name + " in " + path);
+    }
+    int dataOffset = localHeader + 30 + getUnsignedShort(buffer, localHeader + 26)
+        + getUnsignedShort(buffer, localHeader + 28);
+    int compressedSize = checkedOffset(entry.compressedSize);
+    int size = checkedOffset(entry.size);
+    if ((long) dataOffset + compressedSize > buffer.limit()) {
+      throw new ZipException("Truncated entry " + name + " in " + path);
+    }
+    // Duplicates share the mapping but not the position, so reads are independent.
+    ByteBuffer data = buffer.duplicate();
+    data.position(dataOffset);
+    if (entry.method == STORED) {
+      byte[] bytes = new byte[size];
+      data.get(bytes);
+      return bytes;
+    } else if (entry.method == DEFLATED) {
+      // Raw inflation needs an extra dummy byte after the input.
+      byte[] input = new byte[compressedSize + 1];
+      data.get(input, 0, compressedSize);
+      return inflate(input, size, name);
+    }
+    throw new ZipException(
+        "Unsupported compression method " + entry.method + " for " + name + " in " + path);
+  }
+
+  private byte[] inflate(byte[] input, int size, String name) throws IOException {
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(input);
+      byte[] bytes = new byte[size];
+      int n = 0;
+      while (n < size) {
+        int count = inflater.inflate(bytes, n, size - n);
+        if (count == 0 && (inflater.finished() || inflater.needsInput()
+            || inflater.needsDictionary())) {
+          throw new ZipException("Truncated entry " + name + " in " + path);
+        }
+        n += count;
+      }
+      return bytes;
+    } catch (DataFormatException e) {
+      throw new ZipException("Invalid entry " + name + " in " + path + ": " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static Map<String, Entry> readCentralDirectory(MappedByteBuffer buffer, File file)
+      throws IOException {
+    int end = findEndHeader(buffer);
+    if (end < 0) {
+      throw new ZipException("Not a zip or jar file: " + file);
+    }
+    long count = getUnsignedShort(buffer, end + 10);
+    long offset = getUnsignedInt(buffer, end + 16);
+    if (count == 0xFFFF || offset == UNKNOWN_SIZE) {
+      int locator = end - ZIP64_LOCATOR_SIZE;
+      if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+        int zip64End = checkedOffset(buffer.getLong(locator + 8));
+        if (buffer.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+          throw new ZipException("Invalid zip64 end header in " + file);
+        }
+        count = buffer.getLong(zip64End + 32);
+        offset = buffer.getLong(zip64End + 48);
+      }
+    }
+
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    int pos = checkedOffset(offset);
+    for (long i = 0; i < count; i++) {
+      if (buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory in " + file);
+      }
+      int method = getUnsignedShort(buffer, pos + 10);
+      long compressedSize = getUnsignedInt(buffer, pos + 20);
+      long size = getUnsignedInt(buffer, pos + 24);
+      int nameLength = getUnsignedShort(buffer, pos + 28);
+      int extraLength = getUnsignedShort(buffer, pos + 30);
+      int commentLength = getUnsignedShort(buffer, pos + 32);
+      long localHeaderOffset = getUnsignedInt(buffer, pos + 42);
+      byte[] nameBytes = new byte[nameLength];
+      ByteBuffer name = buffer.duplicate();
+      name.position(pos + 46);
+      name.get(nameBytes);
+
+      // Sizes and offsets that don't fit are stored in the zip64 extra field, in this order.
+      int extra = pos + 46 + nameLength;
+      int extraEnd = extra + extraLength;
+      while (extra + 4 <= extraEnd) {
+        int id = getUnsignedShort(buffer, extra);
+        int length = getUnsignedShort(buffer, extra + 2);
+        if (id == ZIP64_EXTRA_ID) {
+          int field = extra + 4;
+          if (size == UNKNOWN_SIZE) {
+            size = buffer.getLong(field);
+            field += 8;
+          }
+          if (compressedSize == UNKNOWN_SIZE) {
+            compressedSize = buffer.getLong(field);
+            field += 8;
+          }
+          if (localHeaderOffset == UNKNOWN_SIZE) {
+            localHeaderOffset = buffer.getLong(field);
+          }
+          break;
+        }
+        extra += 4 + length;
+      }
+
+      entries.put(new String(nameBytes, StandardCharsets.UTF_8),
+          new Entry(method, compressedSize, size, localHeaderOffset));
+      pos = extraEnd + commentLength;
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the offset of the end of central directory record, which is
+   * followed by a comment of up to 64K.
+   */
+  private static int findEndHeader(MappedByteBuffer buffer) {
+    int last = buffer.limit() - END_HEADER_SIZE;
+    int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int pos = last; pos >= first; pos--) {
+      if (buffer.getInt(pos) == END_SIGNATURE
+          && pos + END_HEADER_SIZE + getUnsignedShort(buffer, pos + 20) == buffer.limit()) {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+  private static int checkedOffset(long value) throws ZipException {
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new ZipException("Invalid zip offset or size: " + value);
+    }
+    return (int) value;
+  }
+
+  private static int getUnsignedShort(MappedByteBuffer buffer, int pos) {
+    return buffer.getShort(pos) & 0xFFFF;
+  }
+
+  private static long getUnsignedInt(MappedByteBuffer buffer, int pos) {
+    return buffer.getInt(pos) & 0xFFFFFFFFL;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Source held in memory in place of another input file, such as a source
+ * with its J2ObjCIncompatible elements stripped. The file is reported by the
+ * location of the input it replaces.
+ */
+public class MemoryInputFile implements InputFile {
+  private final InputFile original;
+  private final String unitPath;
+  private final String source;
+
+  public MemoryInputFile(InputFile original, String unitPath, String source) {
+    this.original = original;
+    this.unitPath = unitPath;
+    this.source = source;
+  }
+
+  /**
+   * Returns the input file this source replaces.
+   */
+  public InputFile getOriginal() {
+    return original;
+  }
+
+  /**
+   * Returns the source.
+   */
+  public String getSource() {
+    return source;
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  /**
+   * Returns the source encoded as UTF-8, whatever the translation's
+   * encoding is. Use {@link #getSource()} to read it as text.
+   */
+  @Override
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public Reader openReader(Charset charset) {
+    return new StringReader(source);
+  }
+
+  @Override
+  public String getAbsolutePath() {
+    return original.getAbsolutePath();
+  }
+
+  @Override
+  public String getOriginalLocation() {
+    return original.getOriginalLocation();
+  }
+
+  @Override
+  public String getUnitName() {
+    return unitPath;
+  }
+
+  @Override
+  public String getBasename() {
+    return unitPath.substring(unitPath.lastIndexOf('/') + 1);
+  }
+
+  @Override
+  public long lastModified() {
+    return original.lastModified();
+  }
+
+  @Override
+  public String toString() {
+    return getOriginalLocation();
+  }
+}
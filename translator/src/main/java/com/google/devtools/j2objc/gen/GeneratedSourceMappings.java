@@ -16,14 +16,18 @@ package com.google.devtools.j2objc.gen;
 
 import com.google.devtools.j2objc.ast.MethodDeclaration;
 import com.google.devtools.j2objc.ast.Name;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Contains byte-offset mappings between identifiers in a source .java file and their equivalents in
  * a generated Objective-C header file.
  *
+ * <p>Mappings are appended to a byte buffer as they're generated, each as four varints: the
+ * distances from the previous mapping's source and target begin offsets, and the source and target
+ * lengths. No object is created per mapping until they are read.
+ *
  * <p>These mappings may be converted to {@link
  * com.google.devtools.j2objc.gen.KytheIndexingMetadata} objects to support cross-language links in
  * <a href="http://kythe.io">Kythe.</a>
@@ -32,34 +36,18 @@ public class GeneratedSourceMappings {
 
   /** Maps an identifier from a byte range in a source file and target file. */
   public static class Mapping {
-    private final String identifier;
     private final int sourceBegin;
     private final int sourceEnd;
     private final int targetBegin;
     private final int targetEnd;
 
-    private Mapping(
-        String identifier, int sourceBegin, int sourceEnd, int targetBegin, int targetEnd) {
-      this.identifier = identifier;
+    private Mapping(int sourceBegin, int sourceEnd, int targetBegin, int targetEnd) {
       this.sourceBegin = sourceBegin;
       this.sourceEnd = sourceEnd;
       this.targetBegin = targetBegin;
       this.targetEnd = targetEnd;
     }
 
-    static Mapping fromMethodDeclaration(
-        MethodDeclaration methodDeclaration, int targetBegin, int targetEnd) {
-      assert methodDeclaration.getName() != null;
-      Name name = methodDeclaration.getName();
-      int sourceBegin = name.getStartPosition();
-      int sourceEnd = sourceBegin + name.getLength();
-      return new Mapping(name.toString(), sourceBegin, sourceEnd, targetBegin, targetEnd);
-    }
-
-    public String getIdentifier() {
-      return identifier;
-    }
-
     public int getSourceBegin() {
       return sourceBegin;
     }
@@ -77,19 +65,95 @@ public class GeneratedSourceMappings {
     }
   }
 
-  private final Set<Mapping> mappings = new HashSet<>();
+  /** Receives the mappings in the order they were added. */
+  public interface MappingVisitor {
+    void visit(int sourceBegin, int sourceEnd, int targetBegin, int targetEnd);
+  }
+
+  private byte[] buffer = new byte[0];
+  private int length = 0;
+  private int lastSourceBegin = 0;
+  private int lastTargetBegin = 0;
   private int targetOffset = 0;
 
   public void addMethodMapping(MethodDeclaration methodDeclaration, int targetBegin, int length) {
     assert methodDeclaration.getName() != null;
-    if (methodDeclaration.getName().getStartPosition() != -1) {
-      mappings.add(
-          Mapping.fromMethodDeclaration(methodDeclaration, targetBegin, targetBegin + length));
+    Name name = methodDeclaration.getName();
+    int sourceBegin = name.getStartPosition();
+    if (sourceBegin != -1) {
+      addMapping(sourceBegin, name.getLength(), targetBegin, length);
+    }
+  }
+
+  private void addMapping(int sourceBegin, int sourceLength, int targetBegin, int targetLength) {
+    writeSignedVarint(sourceBegin - lastSourceBegin);
+    writeVarint(sourceLength);
+    writeSignedVarint(targetBegin - lastTargetBegin);
+    writeVarint(targetLength);
+    lastSourceBegin = sourceBegin;
+    lastTargetBegin = targetBegin;
+  }
+
+  private void writeSignedVarint(int value) {
+    writeVarint((value << 1) ^ (value >> 31));
+  }
+
+  private void writeVarint(int value) {
+    if (buffer.length - length < 5) {
+      buffer = Arrays.copyOf(buffer, Math.max(64, buffer.length * 2));
+    }
+    while ((value & ~0x7f) != 0) {
+      buffer[length++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[length++] = (byte) value;
+  }
+
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  /** Passes each mapping to a visitor, in the order they were added. */
+  public void accept(MappingVisitor visitor) {
+    int[] pos = new int[1];
+    int sourceBegin = 0;
+    int targetBegin = 0;
+    while (pos[0] < length) {
+      sourceBegin += readSignedVarint(pos);
+      int sourceEnd = sourceBegin + readVarint(pos);
+      targetBegin += readSignedVarint(pos);
+      int targetEnd = targetBegin + readVarint(pos);
+      visitor.visit(sourceBegin, sourceEnd, targetBegin, targetEnd);
     }
   }
 
-  public Set<Mapping> getMappings() {
-    return Collections.unmodifiableSet(mappings);
+  private int readSignedVarint(int[] pos) {
+    int value = readVarint(pos);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private int readVarint(int[] pos) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer[pos[0]++];
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /** Returns the encoded mappings. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  public List<Mapping> getMappings() {
+    List<Mapping> mappings = new ArrayList<>();
+    accept((sourceBegin, sourceEnd, targetBegin, targetEnd) ->
+        mappings.add(new Mapping(sourceBegin, sourceEnd, targetBegin, targetEnd)));
+    return mappings;
   }
 
   public void setTargetOffset(int targetOffset) {
@@ -127,6 +127,10 @@ public class GeneratedType {
           ElementUtil.getQualifiedName(typeElement));
     }
 
+    ImmutableSet.Builder<Import> implementationForwardDeclarations = ImmutableSet.builder();
+    implementationForwardDeclarations.addAll(privateDeclarationCollector.getForwardDeclarations());
+    implementationForwardDeclarations.addAll(importCollector.getForwardDeclarations());
+
     ImmutableSet.Builder<Import> implementationIncludes = ImmutableSet.builder();
     implementationIncludes.addAll(privateDeclarationCollector.getSuperTypes());
     implementationIncludes.addAll(importCollector.getImports());
@@ -137,7 +141,7 @@ public class GeneratedType {
         superTypes.build(),
         ImmutableSet.copyOf(headerCollector.getForwardDeclarations()),
         ImmutableSet.copyOf(headerCollector.getSuperTypes()),
-        ImmutableSet.copyOf(privateDeclarationCollector.getForwardDeclarations()),
+        implementationForwardDeclarations.build(),
         implementationIncludes.build(),
         publicDeclarationCode,
         privateDeclarationCode,
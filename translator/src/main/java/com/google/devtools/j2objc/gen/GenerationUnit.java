@@ -28,6 +28,7 @@ import java.io.File;
 import java.util.Collection;
 import java.util.TreeMap;
 import javax.annotation.Nullable;
+import javax.lang.model.element.PackageElement;
 
 /**
  * A single unit of generated code, to be turned into a single pair of .h and .m files.
@@ -40,6 +41,7 @@ import javax.annotation.Nullable;
 public class GenerationUnit {
 
   private String outputPath;
+  private String packageName;
   private int numUnits = 0;
   private int receivedUnits = 0;
   // It is useful for the generated code to be consistent. Therefore, the
@@ -163,6 +165,10 @@ public class GenerationUnit {
       assert receivedUnits == 1;
       outputPath = options.getHeaderMap().getOutputPath(unit);
     }
+    if (packageName == null) {
+      PackageElement pkg = unit.getPackage().getPackageElement();
+      packageName = pkg != null ? pkg.getQualifiedName().toString() : "";
+    }
 
     hasIncompleteProtocol = hasIncompleteProtocol || unit.hasIncompleteProtocol();
     hasIncompleteImplementation = hasIncompleteImplementation || unit.hasIncompleteImplementation();
@@ -242,6 +248,15 @@ public class GenerationUnit {
     return outputPath;
   }
 
+  /**
+   * Gets the Java package of the first compilation unit added to this
+   * GenerationUnit, or null if none were added.
+   */
+  @Nullable
+  public String getPackageName() {
+    return packageName;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
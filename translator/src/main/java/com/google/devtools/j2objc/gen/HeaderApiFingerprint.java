@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A fingerprint of the API that a generated header declares, written next to
+ * the header so that builds can tell when files including it need to be
+ * recompiled.
+ *
+ * <p>The fingerprint hashes the header's declarations without comments,
+ * line directives or whitespace. A declaration keeps all of its lines in
+ * source order, so function bodies, instance variable blocks and wrapped
+ * method declarations stay attached to their signatures; only the order of
+ * the declarations themselves is ignored. Each declaration is hashed with
+ * the preprocessor conditions and the class or protocol it's declared in,
+ * so moving a declaration between them still changes the fingerprint.
+ *
+ * <p>The sidecar file is only written when the fingerprint changes, so its
+ * modification time can be used as the dependency of the files that include
+ * the header.
+ *
+ * @see com.google.devtools.j2objc.Options#emitHeaderFingerprints()
+ */
+public class HeaderApiFingerprint {
+
+  public static final String SUFFIX = ".api";
+
+  private HeaderApiFingerprint() {}
+
+  /**
+   * Returns the API fingerprint of a header's source.
+   */
+  public static String compute(String header) {
+    List<String> declarations = new ArrayList<>();
+    Deque<String> conditions = new ArrayDeque<>();
+    String container = "";
+    List<String> declaration = new ArrayList<>();
+    int nesting = 0;
+    String[] lines = stripComments(header).split("\n");
+    for (int i = 0; i < lines.length; i++) {
+      String line = normalize(lines[i]);
+      if (line.isEmpty() || line.startsWith("#line ")) {
+        continue;
+      }
+      if (declaration.isEmpty() && line.startsWith("#")) {
+        while (line.endsWith("\\") && i + 1 < lines.length) {
+          line = line.substring(0, line.length() - 1) + " " + normalize(lines[++i]);
+        }
+        if (line.startsWith("#if")) {
+          conditions.push(line);
+        } else if (line.startsWith("#el")) {
+          if (!conditions.isEmpty()) {
+            conditions.push(conditions.pop() + " " + line);
+          }
+        } else if (line.startsWith("#endif")) {
+          if (!conditions.isEmpty()) {
+            conditions.pop();
+          }
+        } else {
+          declarations.add(inContext(conditions, container, line));
+        }
+        continue;
+      }
+      declaration.add(line);
+      nesting += nesting(line);
+      // A declaration continues until its braces and parentheses are closed,
+      // and a method declaration until its semicolon.
+      String first = declaration.get(0);
+      if (nesting > 0 || ((first.startsWith("-") || first.startsWith("+"))
+          && !line.endsWith(";"))) {
+        continue;
+      }
+      if ((first.startsWith("@interface") || first.startsWith("@protocol"))
+          && !first.endsWith(";")) {
+        container = first;
+      } else if (first.equals("@end")) {
+        container = "";
+      }
+      declarations.add(inContext(conditions, container, String.join("\n", declaration)));
+      declaration.clear();
+      nesting = 0;
+    }
+    if (!declaration.isEmpty()) {
+      declarations.add(inContext(conditions, container, String.join("\n", declaration)));
+    }
+    Collections.sort(declarations);
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String text : declarations) {
+      hasher.putString(text, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static String inContext(Deque<String> conditions, String container, String text) {
+    return String.join("\n", conditions) + "\n" + container + "\n" + text;
+  }
+
+  private static String normalize(String line) {
+    return line.trim().replaceAll("\\s+", " ");
+  }
+
+  // Returns how many more brackets a line opens than it closes, outside of
+  // string and character literals.
+  private static int nesting(String line) {
+    int nesting = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"' || c == '\'') {
+        i++;
+        while (i < line.length() && line.charAt(i) != c) {
+          i += line.charAt(i) == '\\' ? 2 : 1;
+        }
+      } else if (c == '{' || c == '(' || c == '[') {
+        nesting++;
+      } else if (c == '}' || c == ')' || c == ']') {
+        nesting--;
+      }
+    }
+    return nesting;
+  }
+
+  // Removes block and line comments outside of string and character literals.
+  private static String stripComments(String source) {
+    StringBuilder sb = new StringBuilder(source.length());
+    int length = source.length();
+    int i = 0;
+    while (i < length) {
+      char c = source.charAt(i);
+      if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+        int end = source.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+        sb.append(' ');
+      } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+        int end = source.indexOf('\n', i);
+        i = end < 0 ? length : end;
+      } else if (c == '"' || c == '\'') {
+        int end = i + 1;
+        while (end < length && source.charAt(end) != c && source.charAt(end) != '\n') {
+          end += source.charAt(end) == '\\' ? 2 : 1;
+        }
+        end = Math.min(end + 1, length);
+        sb.append(source, i, end);
+        i = end;
+      } else {
+        sb.append(c);
+        i++;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes a header's fingerprint to its sidecar file, unless the file
+   * already has it.
+   */
+  public static void write(String header, File sidecarFile, Charset charset) {
+    String fingerprint = compute(header) + "\n";
+    try {
+      if (sidecarFile.exists()
+          && Files.asCharSource(sidecarFile, charset).read().equals(fingerprint)) {
+        return;
+      }
+      Files.createParentDirs(sidecarFile);
+      Files.asCharSink(sidecarFile, charset).write(fingerprint);
+    } catch (IOException e) {
+      ErrorUtil.error("cannot write header fingerprint: " + e.getMessage());
+    }
+  }
+}
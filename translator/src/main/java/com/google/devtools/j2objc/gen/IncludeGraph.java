@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The include graph of the translated files, read back from the output
+ * directory once all files are generated. Headers that aren't in the output
+ * directory, like the runtime's, are counted as includes but not followed.
+ *
+ * <p>The report lists every file reached from the translated files, with the
+ * number of files including it (fan-in), the number of headers it includes
+ * directly (fan-out), and the number and total size of the headers it
+ * includes directly or indirectly. Files are sorted by that size, largest
+ * first, since those are the files whose compilation is dominated by header
+ * parsing.
+ *
+ * @see com.google.devtools.j2objc.Options#includeGraphReport()
+ */
+public class IncludeGraph {
+
+  private static final Pattern INCLUDE_PATTERN =
+      Pattern.compile("^\\s*#\\s*(?:include|import)\\s+\"([^\"]+)\"", Pattern.MULTILINE);
+
+  private final Options options;
+  private final Set<String> generatedFiles = new TreeSet<>();
+  private List<Node> nodes = null;
+
+  public IncludeGraph(Options options) {
+    this.options = options;
+  }
+
+  /**
+   * A file of the graph. Files that aren't in the output directory have a
+   * size of -1 and no includes.
+   */
+  private static class Node {
+    private final String path;
+    private final int index;
+    private long size = -1;
+    private final Set<Node> includes = new LinkedHashSet<>();
+    private int fanIn = 0;
+    private int transitiveCount = 0;
+    private long transitiveSize = 0;
+
+    private Node(String path, int index) {
+      this.path = path;
+      this.index = index;
+    }
+  }
+
+  /**
+   * Adds a file written by this translation, relative to the output directory.
+   */
+  public void addGeneratedFile(String path) {
+    generatedFiles.add(path);
+    nodes = null;
+  }
+
+  /**
+   * Returns up to count headers in the output directory, ordered by the
+   * number of files that include them, most included first.
+   */
+  public List<String> getMostIncludedHeaders(int count) {
+    List<Node> headers = new ArrayList<>();
+    for (Node node : getNodes()) {
+      if (node.size >= 0 && node.path.endsWith(".h") && node.fanIn > 0) {
+        headers.add(node);
+      }
+    }
+    headers.sort(Comparator.comparingInt((Node n) -> -n.fanIn).thenComparing(n -> n.path));
+    List<String> result = new ArrayList<>();
+    for (Node node : headers.subList(0, Math.min(count, headers.size()))) {
+      result.add(node.path);
+    }
+    return result;
+  }
+
+  /**
+   * Writes the report of the generated files' graph.
+   */
+  public void writeReport(File reportFile) {
+    List<Node> nodes = getNodes();
+    for (Node node : nodes) {
+      BitSet reached = new BitSet(nodes.size());
+      Deque<Node> queue = new ArrayDeque<>(node.includes);
+      while (!queue.isEmpty()) {
+        Node header = queue.remove();
+        if (reached.get(header.index)) {
+          continue;
+        }
+        reached.set(header.index);
+        node.transitiveCount++;
+        node.transitiveSize += Math.max(header.size, 0);
+        queue.addAll(header.includes);
+      }
+    }
+
+    List<Node> sorted = new ArrayList<>();
+    int external = 0;
+    for (Node node : nodes) {
+      if (node.size >= 0) {
+        sorted.add(node);
+      } else {
+        external++;
+      }
+    }
+    sorted.sort(Comparator.comparingLong((Node n) -> -n.transitiveSize)
+        .thenComparing(n -> n.path));
+
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    writer.printf("# %d files, %d headers outside the output directory\n", sorted.size(), external);
+    writer.println("# file\tfan-in\tfan-out\ttransitive headers\ttransitive bytes");
+    for (Node node : sorted) {
+      writer.printf("%s\t%d\t%d\t%d\t%d\n", node.path, node.fanIn, node.includes.size(),
+          node.transitiveCount, node.transitiveSize);
+    }
+    writer.flush();
+    try {
+      Files.asCharSink(reportFile, options.fileUtil().getCharset()).write(out.toString());
+    } catch (IOException e) {
+      ErrorUtil.error("cannot write include graph report: " + e.getMessage());
+    }
+  }
+
+  private List<Node> getNodes() {
+    if (nodes == null) {
+      nodes = readGraph();
+    }
+    return nodes;
+  }
+
+  private List<Node> readGraph() {
+    File outputDirectory = options.fileUtil().getOutputDirectory();
+    Map<String, Node> nodesByPath = new HashMap<>();
+    List<Node> nodes = new ArrayList<>();
+    Deque<Node> unread = new ArrayDeque<>();
+    for (String path : generatedFiles) {
+      Node node = new Node(path, nodes.size());
+      nodesByPath.put(path, node);
+      nodes.add(node);
+      unread.add(node);
+    }
+    while (!unread.isEmpty()) {
+      Node node = unread.remove();
+      File file = new File(outputDirectory, node.path);
+      if (!file.isFile()) {
+        continue;
+      }
+      String source;
+      try {
+        source = Files.asCharSource(file, options.fileUtil().getCharset()).read();
+      } catch (IOException e) {
+        ErrorUtil.warning("cannot read " + file + ": " + e.getMessage());
+        continue;
+      }
+      node.size = file.length();
+      Matcher matcher = INCLUDE_PATTERN.matcher(source);
+      while (matcher.find()) {
+        String path = matcher.group(1);
+        Node header = nodesByPath.get(path);
+        if (header == null) {
+          header = new Node(path, nodes.size());
+          nodesByPath.put(path, header);
+          nodes.add(header);
+          unread.add(header);
+        }
+        if (node.includes.add(header)) {
+          header.fanIn++;
+        }
+      }
+    }
+    return nodes;
+  }
+}
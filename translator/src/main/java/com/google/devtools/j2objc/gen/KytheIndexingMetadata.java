@@ -14,74 +14,26 @@
 
 package com.google.devtools.j2objc.gen;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
  * Metadata required to create links for indexing in <a href="http://kythe.io">Kythe.</a>
  *
  * <p>The JSON objects produced by this class conform to the format expected by Kythe's
  * postprocessing pipeline; this allows Kythe to create links from source .java files to generated
- * .h files.
+ * .h files. Each anchor is appended to the JSON as it's added.
  */
 public class KytheIndexingMetadata {
 
-  /**
-   * A Vname is a unique identifier for a node in a Kythe semantic graph.
-   *
-   * <p>For more information, see <a href="https://kythe.io/docs/kythe-uri-spec.html">the Kythe
-   * documentation.</a>
-   */
-  static class VName {
-    private final String corpus;
-    private final String path;
+  private static final String TYPE = "kythe0";
+  private static final String ANCHOR_ANCHOR_TYPE = "anchor_anchor";
+  private static final String EDGE = "/kythe/edge/imputes";
 
-    private VName(String corpus, String path) {
-      this.corpus = corpus;
-      this.path = path;
-    }
+  private final StringBuilder json = new StringBuilder();
+  private boolean isEmpty = true;
 
-    private String toJson() {
-      return String.format(
-          "{\"corpus\":\"%s\",\"path\":\"%s\",\"language\":\"java\"}", corpus, path);
-    }
+  public KytheIndexingMetadata() {
+    json.append("{\"type\":\"").append(TYPE).append("\",\"meta\":[");
   }
 
-  static class AnchorAnchorMetadata {
-    private final String type = "anchor_anchor";
-    private final int sourceBegin;
-    private final int sourceEnd;
-    private final int targetBegin;
-    private final int targetEnd;
-    private final String edge = "/kythe/edge/imputes";
-    private final VName sourceVName;
-
-    AnchorAnchorMetadata(
-        int sourceBegin,
-        int sourceEnd,
-        int targetBegin,
-        int targetEnd,
-        String corpus,
-        String path) {
-      this.sourceBegin = sourceBegin;
-      this.sourceEnd = sourceEnd;
-      this.targetBegin = targetBegin;
-      this.targetEnd = targetEnd;
-      this.sourceVName = new VName(corpus, path);
-    }
-
-    private String toJson() {
-      return String.format(
-          "{\"type\":\"%s\",\"source_begin\":%d,\"source_end\":%d,\"target_begin\":%d,"
-              + "\"target_end\":%d,\"edge\":\"%s\",\"source_vname\":%s}",
-          type, sourceBegin, sourceEnd, targetBegin, targetEnd, edge, sourceVName.toJson());
-    }
-  }
-
-  private final String type = "kythe0";
-  private final List<AnchorAnchorMetadata> meta = new ArrayList<>();
-
   public void addAnchorAnchor(
       int sourceBegin,
       int sourceEnd,
@@ -89,21 +41,27 @@ public class KytheIndexingMetadata {
       int targetEnd,
       String sourceCorpus,
       String sourcePath) {
-    meta.add(
-        new AnchorAnchorMetadata(
-            sourceBegin, sourceEnd, targetBegin, targetEnd, sourceCorpus, sourcePath));
+    if (!isEmpty) {
+      json.append(',');
+    }
+    isEmpty = false;
+    json.append("{\"type\":\"").append(ANCHOR_ANCHOR_TYPE)
+        .append("\",\"source_begin\":").append(sourceBegin)
+        .append(",\"source_end\":").append(sourceEnd)
+        .append(",\"target_begin\":").append(targetBegin)
+        .append(",\"target_end\":").append(targetEnd)
+        .append(",\"edge\":\"").append(EDGE)
+        // The VName that identifies the source file in Kythe's graph.
+        .append("\",\"source_vname\":{\"corpus\":\"").append(sourceCorpus)
+        .append("\",\"path\":\"").append(sourcePath)
+        .append("\",\"language\":\"java\"}}");
   }
 
   public boolean isEmpty() {
-    return meta.isEmpty();
+    return isEmpty;
   }
 
   public String toJson() {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append(String.format("{\"type\":\"%s\",\"meta\":[", type));
-    stringBuilder.append(
-        meta.stream().map(AnchorAnchorMetadata::toJson).collect(Collectors.joining(",")));
-    stringBuilder.append("]}");
-    return stringBuilder.toString();
+    return json + "]}";
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Generates a clang module for the translated headers, so clang can parse
+ * them once and reuse the result in every file that imports them. The
+ * module's umbrella header includes every generated header, and
+ * module.modulemap declares a submodule for each of them.
+ *
+ * <p>Optionally, a prefix header of the generated headers that the most
+ * files include is written too, for builds that precompile a prefix header
+ * instead of using modules.
+ *
+ * @see com.google.devtools.j2objc.Options#moduleName()
+ */
+public class ModuleMapGenerator {
+
+  private final Options options;
+  private final String moduleName;
+
+  public ModuleMapGenerator(Options options) {
+    this.options = options;
+    this.moduleName = options.moduleName();
+  }
+
+  /**
+   * Writes the umbrella header and module map for the generated headers.
+   */
+  public void generateModule(Collection<String> headers) {
+    StringBuilder umbrella = new StringBuilder();
+    umbrella.append(J2ObjC.getFileHeader(options, moduleName));
+    umbrella.append('\n');
+    umbrella.append("#include \"J2ObjC_header.h\"\n");
+    for (String header : headers) {
+      umbrella.append("#include \"").append(header).append("\"\n");
+    }
+    write(moduleName + ".h", umbrella);
+
+    StringBuilder moduleMap = new StringBuilder();
+    moduleMap.append("module ").append(moduleName).append(" {\n");
+    moduleMap.append("  umbrella header \"").append(moduleName).append(".h\"\n");
+    moduleMap.append("  requires objc\n");
+    moduleMap.append("  export *\n");
+    moduleMap.append("  module * { export * }\n");
+    moduleMap.append("}\n");
+    write("module.modulemap", moduleMap);
+  }
+
+  /**
+   * Writes a prefix header that includes the specified headers.
+   */
+  public void generatePrefixHeader(Collection<String> headers) {
+    StringBuilder prefix = new StringBuilder();
+    prefix.append(J2ObjC.getFileHeader(options, moduleName));
+    prefix.append('\n');
+    prefix.append("#ifdef __OBJC__\n");
+    prefix.append("#include \"J2ObjC_header.h\"\n");
+    for (String header : headers) {
+      prefix.append("#include \"").append(header).append("\"\n");
+    }
+    prefix.append("#endif\n");
+    write(moduleName + "-Prefix.pch", prefix);
+  }
+
+  private void write(String path, CharSequence source) {
+    File outputFile = new File(options.fileUtil().getOutputDirectory(), path);
+    try {
+      Files.createParentDirs(outputFile);
+      Files.asCharSink(outputFile, options.fileUtil().getCharset()).write(source);
+    } catch (IOException e) {
+      ErrorUtil.error(e.getMessage());
+    }
+  }
+}
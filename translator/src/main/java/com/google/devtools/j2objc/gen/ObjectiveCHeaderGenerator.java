@@ -24,6 +24,7 @@ import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.types.Import;
 import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.io.File;
 import java.util.Base64;
 import java.util.Set;
 
@@ -80,6 +81,12 @@ public class ObjectiveCHeaderGenerator extends ObjectiveCSourceFileGenerator {
       generateTypeMappings();
     }
 
+    if (options.emitHeaderFingerprints()) {
+      HeaderApiFingerprint.write(getBuilder().toString(),
+          new File(options.fileUtil().getOutputDirectory(),
+              getOutputPath() + HeaderApiFingerprint.SUFFIX),
+          options.fileUtil().getCharset());
+    }
     save(getOutputPath());
   }
 
@@ -188,19 +195,19 @@ public class ObjectiveCHeaderGenerator extends ObjectiveCSourceFileGenerator {
 
   private void generateTypeMappings() {
     KytheIndexingMetadata metadata = new KytheIndexingMetadata();
+    String sourcePath = getGenerationUnit().getSourceName();
 
     for (GeneratedType generatedType : getOrderedTypes()) {
       GeneratedSourceMappings sourceMappings = generatedType.getGeneratedSourceMappings();
       int offset = sourceMappings.getTargetOffset();
-      for (GeneratedSourceMappings.Mapping mapping : sourceMappings.getMappings()) {
-        metadata.addAnchorAnchor(
-            mapping.getSourceBegin(),
-            mapping.getSourceEnd(),
-            mapping.getTargetBegin() + offset,
-            mapping.getTargetEnd() + offset,
-            "" /* sourceCorpus */,
-            getGenerationUnit().getSourceName() /* sourcePath */);
-      }
+      sourceMappings.accept((sourceBegin, sourceEnd, targetBegin, targetEnd) ->
+          metadata.addAnchorAnchor(
+              sourceBegin,
+              sourceEnd,
+              targetBegin + offset,
+              targetEnd + offset,
+              "" /* sourceCorpus */,
+              sourcePath));
     }
 
     printKytheMappings(metadata);
@@ -209,19 +216,15 @@ public class ObjectiveCHeaderGenerator extends ObjectiveCSourceFileGenerator {
   private void printKytheMappings(KytheIndexingMetadata metadata) {
     // The Kythe indexer assumes the JSON metadata is base-64 encoded; we wrap it to 80 characters
     // for readability in the generated source.
-    String encodedMetadata =
-        new String(Base64.getEncoder().encode(metadata.toJson().getBytes(UTF_8)), UTF_8);
-    StringBuilder wrappedMetadata = new StringBuilder();
+    byte[] encodedMetadata = Base64.getEncoder().encode(metadata.toJson().getBytes(UTF_8));
     int lineWidth = 80;
-    for (int i = 0; i <= encodedMetadata.length() / lineWidth; ++i) {
-      wrappedMetadata.append(
-          encodedMetadata, i * lineWidth, Math.min((i + 1) * lineWidth, encodedMetadata.length()));
-      wrappedMetadata.append("\n");
-    }
-
     newline();
     println("/* This file contains Kythe metadata.");
-    print(wrappedMetadata.toString());
+    for (int i = 0; i <= encodedMetadata.length / lineWidth; ++i) {
+      int start = i * lineWidth;
+      println(new String(encodedMetadata, start,
+          Math.min(lineWidth, encodedMetadata.length - start), UTF_8));
+    }
     println("*/");
   }
 }
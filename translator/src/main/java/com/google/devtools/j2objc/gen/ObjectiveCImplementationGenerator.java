@@ -31,18 +31,29 @@ import java.util.Set;
 public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGenerator {
 
   private final Options options;
+  private final PackageAmalgamator amalgamator;
 
   /**
    * Generate an Objective-C implementation file for each type declared in a
    * specified compilation unit.
    */
   public static void generate(GenerationUnit unit) {
-    new ObjectiveCImplementationGenerator(unit).generate();
+    generate(unit, null);
   }
 
-  private ObjectiveCImplementationGenerator(GenerationUnit unit) {
+  /**
+   * Generate the implementation of a compilation unit's types, adding it to
+   * its package's amalgamated file if an amalgamator is specified.
+   */
+  public static void generate(GenerationUnit unit, PackageAmalgamator amalgamator) {
+    new ObjectiveCImplementationGenerator(unit, amalgamator).generate();
+  }
+
+  private ObjectiveCImplementationGenerator(
+      GenerationUnit unit, PackageAmalgamator amalgamator) {
     super(unit, unit.options().emitLineDirectives());
     options = unit.options();
+    this.amalgamator = amalgamator;
   }
 
   @Override
@@ -52,8 +63,12 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
 
   public void generate() {
     print(J2ObjC.getFileHeader(options, getGenerationUnit().getSourceName()));
-    printImports();
-    printIgnoreIncompletePragmas();
+    Set<String> includeFiles = getIncludeFiles();
+    if (amalgamator == null) {
+      printIncludes(includeFiles);
+    }
+    printNativeBlocksAndForwardDeclarations(includeFiles);
+    boolean pushedIncompletePragmas = printIgnoreIncompletePragmas();
     pushIgnoreDeprecatedDeclarationsPragma();
     for (GeneratedType generatedType : getOrderedTypes()) {
       print(generatedType.getPrivateDeclarationCode());
@@ -62,15 +77,35 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
       print(generatedType.getImplementationCode());
     }
     popIgnoreDeprecatedDeclarationsPragma();
+    if (pushedIncompletePragmas) {
+      println("#pragma clang diagnostic pop");
+    }
+
+    if (amalgamator != null) {
+      amalgamator.addImplementation(getGenerationUnit(), includeFiles, getBuilder().toString());
+      reset();
+      return;
+    }
 
     // TODO(kstanger): We should write directly to file instead of using a builder.
     save(getOutputPath());
   }
 
-  private void printIgnoreIncompletePragmas() {
+  /**
+   * Prints the pragmas that ignore incomplete implementations, and returns
+   * whether they were pushed and need to be popped after the unit's code.
+   * They're only pushed in an amalgamated file, where they would otherwise
+   * apply to the units that follow.
+   */
+  private boolean printIgnoreIncompletePragmas() {
     GenerationUnit unit = getGenerationUnit();
+    boolean push = false;
     if (unit.hasIncompleteProtocol() || unit.hasIncompleteImplementation()) {
       newline();
+      if (amalgamator != null) {
+        println("#pragma clang diagnostic push");
+        push = true;
+      }
     }
     if (unit.hasIncompleteProtocol()) {
       println("#pragma clang diagnostic ignored \"-Wprotocol\"");
@@ -78,9 +113,10 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
     if (unit.hasIncompleteImplementation()) {
       println("#pragma clang diagnostic ignored \"-Wincomplete-implementation\"");
     }
+    return push;
   }
 
-  private void printImports() {
+  private Set<String> getIncludeFiles() {
     Set<String> includeFiles = Sets.newTreeSet();
     includeFiles.add("J2ObjC_source.h");
     includeFiles.add(getGenerationUnit().getOutputPath() + ".h");
@@ -91,12 +127,17 @@ public class ObjectiveCImplementationGenerator extends ObjectiveCSourceFileGener
         }
       }
     }
+    return includeFiles;
+  }
 
+  private void printIncludes(Set<String> includeFiles) {
     newline();
     for (String header : includeFiles) {
       printf("#include \"%s\"\n", header);
     }
+  }
 
+  private void printNativeBlocksAndForwardDeclarations(Set<String> includeFiles) {
     for (String code : getGenerationUnit().getNativeImplementationBlocks()) {
       print(code);
     }
@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Combines the implementation files of each Java package into a few larger
+ * files, so clang parses the headers that a package's types share once per
+ * file instead of once per type. Headers are still generated for each unit.
+ *
+ * <p>The includes of the combined units are listed once, at the top of the
+ * file. With line directives, each unit's code is preceded by a directive
+ * that restores the combined file's own line numbers, since the previous
+ * unit's code may end in a Java source. A file is written as soon as adding
+ * another unit would exceed the size limit, so large packages are split into
+ * files that can still be compiled in parallel.
+ *
+ * @see com.google.devtools.j2objc.Options#amalgamatePackages()
+ */
+public class PackageAmalgamator {
+
+  private final Options options;
+  private final int sizeLimit;
+  // Keyed by output path, so the files are written in a consistent order.
+  private final Map<String, Amalgamation> amalgamations = new TreeMap<>();
+  private final List<String> outputFiles = new ArrayList<>();
+
+  public PackageAmalgamator(Options options) {
+    this.options = options;
+    sizeLimit = options.amalgamationSizeLimit() * 1024;
+  }
+
+  /**
+   * The pending implementations of a package.
+   */
+  private static class Amalgamation {
+    private final String packageName;
+    private final String basePath;
+    private final Set<String> includes = new TreeSet<>();
+    private final List<String> sources = new ArrayList<>();
+    private int size = 0;
+    private int fileCount = 0;
+
+    private Amalgamation(String packageName, String basePath) {
+      this.packageName = packageName;
+      this.basePath = basePath;
+    }
+  }
+
+  /**
+   * Adds a unit's implementation, without its includes, to its package's
+   * combined file.
+   */
+  public void addImplementation(GenerationUnit unit, Set<String> includes, String source) {
+    String packageName = unit.getPackageName();
+    String basePath = getBasePath(unit.getOutputPath(), packageName);
+    Amalgamation amalgamation = amalgamations.computeIfAbsent(
+        basePath, path -> new Amalgamation(packageName, path));
+    if (amalgamation.size > 0 && amalgamation.size + source.length() > sizeLimit) {
+      write(amalgamation);
+    }
+    amalgamation.includes.addAll(includes);
+    amalgamation.sources.add(source);
+    amalgamation.size += source.length();
+  }
+
+  /**
+   * Writes the remaining implementations of every package.
+   */
+  public void finish() {
+    for (Amalgamation amalgamation : amalgamations.values()) {
+      if (!amalgamation.sources.isEmpty()) {
+        write(amalgamation);
+      }
+    }
+    amalgamations.clear();
+  }
+
+  /**
+   * Returns the files written so far, relative to the output directory.
+   */
+  public List<String> getOutputFiles() {
+    return outputFiles;
+  }
+
+  // Files are written next to the package's headers, and named after the
+  // package so that flat output directories don't mix packages.
+  private static String getBasePath(String outputPath, String packageName) {
+    int end = Math.max(outputPath.lastIndexOf('/'), outputPath.lastIndexOf(File.separatorChar));
+    String dir = outputPath.substring(0, end + 1);
+    String name = packageName == null || packageName.isEmpty()
+        ? "default_package" : packageName.replace('.', '_');
+    return dir + name + "_unity";
+  }
+
+  private void write(Amalgamation amalgamation) {
+    amalgamation.fileCount++;
+    String path = amalgamation.basePath
+        + (amalgamation.fileCount > 1 ? "_" + amalgamation.fileCount : "")
+        + options.getLanguage().suffix();
+    outputFiles.add(path);
+    StringBuilder sb = new StringBuilder();
+    sb.append(J2ObjC.getFileHeader(options, amalgamation.packageName));
+    sb.append('\n');
+    for (String include : amalgamation.includes) {
+      sb.append("#include \"").append(include).append("\"\n");
+    }
+    int lines = countLines(sb, 0);
+    for (String source : amalgamation.sources) {
+      if (options.emitLineDirectives()) {
+        // The directive is on line lines + 1, so the next line is lines + 2.
+        sb.append("#line ").append(lines + 2).append(" \"").append(path).append("\"\n");
+        lines++;
+      }
+      int start = sb.length();
+      sb.append(source);
+      if (!source.endsWith("\n")) {
+        sb.append('\n');
+      }
+      lines += countLines(sb, start);
+    }
+    amalgamation.includes.clear();
+    amalgamation.sources.clear();
+    amalgamation.size = 0;
+
+    File outputFile = new File(options.fileUtil().getOutputDirectory(), path);
+    try {
+      Files.createParentDirs(outputFile);
+      Files.asCharSink(outputFile, options.fileUtil().getCharset()).write(sb);
+    } catch (IOException e) {
+      ErrorUtil.error(e.getMessage());
+    }
+  }
+
+  private static int countLines(CharSequence s, int start) {
+    int count = 0;
+    for (int i = start; i < s.length(); i++) {
+      if (s.charAt(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -16,6 +16,7 @@ package com.google.devtools.j2objc.gen;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
@@ -266,19 +267,48 @@ public class TypeDeclarationGenerator extends TypeGenerator {
     }
   }
 
+  private static final Predicate<VariableDeclarationFragment> HAS_HEADER_INSTANCE_VARIABLE =
+      fragment -> ((FieldDeclaration) fragment.getParent()).hasHeaderInstanceVariable();
+
+  /**
+   * Returns the instance fields whose instance variables are declared with
+   * the type's other declarations. Private fields whose instance variables
+   * are declared in the header, for its inline functions, are left out of
+   * the class extension.
+   */
+  protected Iterable<VariableDeclarationFragment> getInstanceVariables() {
+    return typeNode.hasPrivateDeclaration() ? getInstanceFields()
+        : Iterables.filter(getInstanceFields(), Predicates.not(HAS_HEADER_INSTANCE_VARIABLE));
+  }
+
   /**
    * Prints the list of instance variables in a type.
    */
   protected void printInstanceVariables() {
-    Iterable<VariableDeclarationFragment> fields = getInstanceFields();
-    if (Iterables.isEmpty(fields)) {
+    Iterable<VariableDeclarationFragment> fields = getInstanceVariables();
+    Iterable<VariableDeclarationFragment> packageFields = printPrivateDeclarations()
+        ? Collections.emptyList()
+        : Iterables.filter(getAllInstanceFields(), HAS_HEADER_INSTANCE_VARIABLE);
+    if (Iterables.isEmpty(fields) && Iterables.isEmpty(packageFields)) {
       newline();
       return;
     }
-    // Need direct access to fields possibly from inner classes that are
-    // promoted to top level classes, so must make all visible fields public.
     println(" {");
-    println(" @public");
+    if (!Iterables.isEmpty(fields)) {
+      // Need direct access to fields possibly from inner classes that are
+      // promoted to top level classes, so must make all visible fields public.
+      println(" @public");
+      printInstanceVariableDeclarations(fields);
+    }
+    if (!Iterables.isEmpty(packageFields)) {
+      // Private fields that inline functions in the header access.
+      println(" @package");
+      printInstanceVariableDeclarations(packageFields);
+    }
+    println("}");
+  }
+
+  private void printInstanceVariableDeclarations(Iterable<VariableDeclarationFragment> fields) {
     indent();
     FieldDeclaration lastDeclaration = null;
     boolean needsAsterisk = false;
@@ -316,7 +346,6 @@ public class TypeDeclarationGenerator extends TypeGenerator {
     }
     println(";");
     unindent();
-    println("}");
   }
 
   protected void printProperties() {
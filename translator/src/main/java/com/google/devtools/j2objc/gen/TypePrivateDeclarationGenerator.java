@@ -66,7 +66,7 @@ public class TypePrivateDeclarationGenerator extends TypeDeclarationGenerator {
     if (isInterfaceType()) {
       return;
     }
-    boolean hasPrivateFields = !Iterables.isEmpty(getInstanceFields());
+    boolean hasPrivateFields = !Iterables.isEmpty(getInstanceVariables());
     Iterable<BodyDeclaration> privateDecls = getInnerDeclarations();
     if (!Iterables.isEmpty(privateDecls) || hasPrivateFields) {
       newline();
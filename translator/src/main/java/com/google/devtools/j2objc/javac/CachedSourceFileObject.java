@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.javac;
+
+import com.google.devtools.j2objc.file.RegularInputFile;
+import com.google.devtools.j2objc.util.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * A source file on disk whose content javac reads from the translation's
+ * {@link com.google.devtools.j2objc.util.SourceCache}, instead of reading
+ * the file again.
+ */
+class CachedSourceFileObject extends SimpleJavaFileObject {
+  private final File file;
+  private final FileUtil fileUtil;
+
+  CachedSourceFileObject(File file, FileUtil fileUtil) {
+    super(file.getAbsoluteFile().toURI(), Kind.SOURCE);
+    this.file = file;
+    this.fileUtil = fileUtil;
+  }
+
+  @Override
+  public String getName() {
+    // Like javac's own file objects, so diagnostics name the file as given.
+    return file.getPath();
+  }
+
+  @Override
+  public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+    return fileUtil.getSourceCache().read(new RegularInputFile(file.getPath()),
+        fileUtil.getCharset(), ignoreEncodingErrors);
+  }
+
+  @Override
+  public long getLastModified() {
+    return file.lastModified();
+  }
+}
@@ -49,6 +49,7 @@ import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.TranslationEnvironment;
 import com.google.j2objc.annotations.Property;
+import com.strobel.decompiler.languages.java.ast.ConstructorDeclaration;
 import com.strobel.decompiler.languages.java.ast.EntityDeclaration;
 import com.strobel.decompiler.languages.java.ast.ParameterDeclaration;
 import com.sun.tools.javac.code.Symbol;
@@ -150,10 +151,10 @@ public class ClassFileConverter {
    * so extract it separately from the classfile.
    */
   private void convertClassInitializer(AbstractTypeDeclaration typeDecl) {
-    EntityDeclaration decl = classFile.getMethod("<clinit>", "()V");
-    if (decl == null) {
+    if (!classFile.hasMethod("<clinit>", "()V")) {
       return;  // Class doesn't have a static initializer.
     }
+    EntityDeclaration decl = classFile.getMethod("<clinit>", "()V");
     MethodTranslator translator = new MethodTranslator(
         parserEnv, translationEnv, null, typeDecl, null);
     Block block = (Block) decl.acceptVisitor(translator, null);
@@ -330,17 +331,32 @@ public class ClassFileConverter {
     List<SingleVariableDeclaration> parameters = methodDecl.getParameters();
     String name = element.getSimpleName().toString();
     String descriptor = getMethodDescriptor(element);
+    // Only methods with a body need the class to be decompiled.
+    EntityDeclaration decl = null;
+    if (!ElementUtil.isAbstract(element)) {
+      decl = methodDecl.isConstructor()
+          ? classFile.getConstructor(descriptor)
+          : classFile.getMethod(name, descriptor);
+      if (decl == null && !ElementUtil.isNative(element)) {
+        // Translating it without a body would silently drop its code.
+        ErrorUtil.error("Cannot find the decompiled declaration of method " + name + descriptor
+            + " in " + file.getOriginalLocation());
+      }
+    }
     if (element.getParameters().size() > 0) {
-      Iterator<ParameterDeclaration> paramsIterator = methodDecl.isConstructor()
-          ? classFile.getConstructor(descriptor).getParameters().iterator()
-          : classFile.getMethod(name, descriptor).getParameters().iterator();
+      List<String> paramNames = getParameterNames(name, descriptor, decl);
+      Iterator<String> paramsIterator = paramNames != null ? paramNames.iterator() : null;
       // If classfile was compiled with -parameters flag; use the MethodNode
       // to work around potential javac8 bug iterating over parameter names.
       for (VariableElement param : element.getParameters()) {
         SingleVariableDeclaration varDecl = (SingleVariableDeclaration) convert(param, methodDecl);
-        String nameDef = paramsIterator.next().getName();
-        // If element's name doesn't match the ParameterNode's name, use the latter.
-        if (!nameDef.equals(param.getSimpleName().toString())) {
+        String nameDef =
+            paramsIterator != null && paramsIterator.hasNext() ? paramsIterator.next() : null;
+        // If element's name doesn't match the ParameterNode's name, use the latter. Abstract
+        // methods have no local variable table, so without -parameters the class file has no
+        // names for them, and javac's are kept.
+        if (nameDef != null && !nameDef.isEmpty()
+            && !nameDef.equals(param.getSimpleName().toString())) {
           param = GeneratedVariableElement.newParameter(nameDef, param.asType(),
               param.getEnclosingElement());
           varDecl.setVariableElement(param);
@@ -357,10 +373,7 @@ public class ClassFileConverter {
       lastParam.setType(Type.newType(varArgType));
       lastParam.setIsVarargs(true);
     }
-    if (!ElementUtil.isAbstract(element)) {
-      EntityDeclaration decl = methodDecl.isConstructor()
-          ? classFile.getConstructor(descriptor)
-          : classFile.getMethod(name, descriptor);
+    if (decl != null) {
       MethodTranslator translator = new MethodTranslator(
           parserEnv, translationEnv, element, node, localVariableTable);
       methodDecl.setBody((Block) decl.acceptVisitor(translator, null));
@@ -368,6 +381,27 @@ public class ClassFileConverter {
     return methodDecl;
   }
 
+  /**
+   * Returns the parameter names of a decompiled method, or of an abstract
+   * method as declared in the class file. Names the class file doesn't
+   * have may be null or empty, and null is returned if the method isn't
+   * found.
+   */
+  private List<String> getParameterNames(
+      String name, String descriptor, EntityDeclaration decl) {
+    if (decl == null) {
+      return classFile.getParameterNames(name, descriptor);
+    }
+    Iterable<ParameterDeclaration> params = decl instanceof ConstructorDeclaration
+        ? ((ConstructorDeclaration) decl).getParameters()
+        : ((com.strobel.decompiler.languages.java.ast.MethodDeclaration) decl).getParameters();
+    List<String> names = new ArrayList<>();
+    for (ParameterDeclaration param : params) {
+      names.add(param.getName());
+    }
+    return names;
+  }
+
   private TreeNode convertParameter(VariableElement element) {
     return new SingleVariableDeclaration(element).setAnnotations(convertAnnotations(element));
   }
@@ -19,14 +19,18 @@ import com.google.common.collect.Lists;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.file.JarredInputFile;
 import com.google.devtools.j2objc.file.RegularInputFile;
-import com.google.devtools.j2objc.pipeline.ProcessingContext;
+import com.google.devtools.j2objc.util.ClassFileScanner;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
 import com.google.devtools.j2objc.util.PathClassLoader;
 import com.google.devtools.j2objc.util.SourceVersion;
+import com.google.devtools.j2objc.util.TranslationEnvironment;
 import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 import com.sun.tools.javac.api.JavacTaskImpl;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.tree.JCTree;
@@ -37,13 +41,19 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import javax.annotation.processing.Processor;
+import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileManager.Location;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
@@ -57,6 +67,8 @@ import javax.tools.ToolProvider;
 public class JavacParser extends Parser {
 
   private JavacFileManager fileManager;
+  // The directory annotation processors write sources to.
+  private File sourceOutputDirectory;
 
   public JavacParser(Options options){
     super(options);
@@ -75,8 +87,7 @@ public class JavacParser extends Parser {
         return parse(null, file.getUnitName(), source);
       } else {
         assert options.translateClassfiles();
-        JavacEnvironment parserEnv =
-            createEnvironment(Collections.emptyList(), Collections.emptyList(), false);
+        JavacEnvironment parserEnv = createEnvironment(Collections.emptyList(), false);
         return ClassFileConverter.convertClassFile(options, parserEnv, file);
       }
     } catch (IOException e) {
@@ -113,8 +124,11 @@ public class JavacParser extends Parser {
     }
     fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
         Lists.newArrayList(options.fileUtil().getOutputDirectory()));
+    if (sourceOutputDirectory == null) {
+      sourceOutputDirectory = FileUtil.createTempDir("annotations");
+    }
     fileManager.setLocation(StandardLocation.SOURCE_OUTPUT,
-        Lists.newArrayList(FileUtil.createTempDir("annotations")));
+        Lists.newArrayList(sourceOutputDirectory));
     return fileManager;
   }
 
@@ -127,7 +141,7 @@ public class JavacParser extends Parser {
     fileManager.setLocation(location, filePaths);
   }
 
-  private List<String> getJavacOptions(boolean processAnnotations) {
+  private List<String> getJavacOptions(boolean runProcessors) {
     List<String> javacOptions = new ArrayList<>();
     String encoding = options.fileUtil().getFileEncoding();
     if (encoding != null) {
@@ -145,63 +159,241 @@ public class JavacParser extends Parser {
     if (lintArgument != null) {
       javacOptions.add(lintArgument);
     }
-    if (processAnnotations) {
-      javacOptions.add("-proc:only");
-    } else {
+    if (!runProcessors) {
       javacOptions.add("-proc:none");
     }
     return javacOptions;
   }
 
   @Override
-  public void parseFiles(Collection<String> paths, Handler handler, SourceVersion sourceVersion) {
-    List<File> files = new ArrayList<>();
-    for (String path : paths) {
-      files.add(new File(path));
+  public void parseFiles(Collection<String> paths, Handler handler,
+      Collection<String> classFilePaths, ClassFileHandler classFileHandler,
+      SourceVersion sourceVersion) {
+    Map<String, InputFile> overlaysByPath = new HashMap<>();
+    for (InputFile overlay : sourceOverlays.values()) {
+      overlaysByPath.put(new File(overlay.getAbsolutePath()).getAbsolutePath(), overlay);
     }
     try {
-      JavacEnvironment env = createEnvironment(files, null, false);
-      List<CompilationUnitTree> units = new ArrayList<>();
-      for (CompilationUnitTree unit : env.task().parse()) {
-        units.add(unit);
+      List<JavaFileObject> fileObjects = new ArrayList<>();
+      Map<JavaFileObject, String> fileObjectPaths = new HashMap<>();
+      for (String path : paths) {
+        InputFile overlay = overlaysByPath.get(new File(path).getAbsolutePath());
+        if (overlay != null) {
+          JavaFileObject fileObject = createFileObject(overlay);
+          fileObjects.add(fileObject);
+          fileObjectPaths.put(fileObject, path);
+        } else {
+          fileObjects.add(new CachedSourceFileObject(new File(path), options.fileUtil()));
+        }
+      }
+      List<InputFile> classFiles = new ArrayList<>();
+      for (String path : classFilePaths) {
+        collectClassFiles(path, classFiles);
       }
-      env.task().analyze();
-      processDiagnostics(env.diagnostics());
-
-      if (ErrorUtil.errorCount() == 0) {
-        for (CompilationUnitTree ast : units) {
-          com.google.devtools.j2objc.ast.CompilationUnit unit = TreeConverter
-              .convertCompilationUnit(options, env, (JCTree.JCCompilationUnit) ast);
-          processDiagnostics(env.diagnostics());
-          handler.handleParsedUnit(unit.getSourceFilePath(), unit);
+      JavacEnvironment env = createEnvironment(fileObjects, false);
+      parseAndHandle(env, fileObjectPaths, handler, classFiles, classFileHandler,
+          Collections.emptyList());
+    } catch (IOException e) {
+      ErrorUtil.fatalError(e, "javac file manager error");
+    }
+  }
+
+  @Override
+  public void parseInputFiles(Collection<? extends InputFile> inputs, Handler handler,
+      SourceVersion sourceVersion) {
+    List<JavaFileObject> fileObjects = new ArrayList<>();
+    Map<JavaFileObject, String> fileObjectPaths = new HashMap<>();
+    try {
+      for (InputFile input : inputs) {
+        JavaFileObject fileObject = createFileObject(input);
+        fileObjects.add(fileObject);
+        if (!(input instanceof RegularInputFile)) {
+          fileObjectPaths.put(fileObject, input.getOriginalLocation());
         }
       }
+      // Processors run once, in the same javac task as the first batch that
+      // can handle the sources they generate.
+      boolean runProcessors = processAnnotations && handler instanceof GeneratedSourceHandler
+          && hasAnnotationProcessors();
+      if (runProcessors) {
+        processAnnotations = false;
+      }
+      JavacEnvironment env = createEnvironment(fileObjects, runProcessors);
+      List<CompilationUnitTree> generatedUnits = new ArrayList<>();
+      if (runProcessors) {
+        collectGeneratedUnits(env, generatedUnits);
+      }
+      parseAndHandle(env, fileObjectPaths, handler, Collections.emptyList(), null, generatedUnits);
+      if (runProcessors) {
+        // Later batches resolve the generated types from their sources.
+        addSourcepathEntry(sourceOutputDirectory.getPath());
+      }
     } catch (IOException e) {
       ErrorUtil.fatalError(e, "javac file manager error");
     }
   }
 
+  private boolean hasAnnotationProcessors() {
+    PathClassLoader loader = new PathClassLoader(options.fileUtil().getClassPathEntries());
+    loader.addPaths(options.getProcessorPathEntries());
+    return ServiceLoader.load(Processor.class, loader).iterator().hasNext();
+  }
+
+  /**
+   * Adds the units of the sources generated by annotation processing to a
+   * list as javac parses them, between processing rounds.
+   */
+  private void collectGeneratedUnits(JavacEnvironment env, List<CompilationUnitTree> units) {
+    String outputPath = sourceOutputDirectory.toURI().getPath();
+    env.task().addTaskListener(new TaskListener() {
+      @Override
+      public void started(TaskEvent e) {}
+
+      @Override
+      public void finished(TaskEvent e) {
+        if (e.getKind() == TaskEvent.Kind.PARSE) {
+          String path = e.getSourceFile().toUri().getPath();
+          if (path != null && path.startsWith(outputPath)) {
+            units.add(e.getCompilationUnit());
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns a file object for an input's source. Files on disk are read
+   * through the source cache, so javac doesn't read them again after
+   * preprocessing.
+   */
+  private JavaFileObject createFileObject(InputFile input) throws IOException {
+    if (input instanceof RegularInputFile) {
+      return new CachedSourceFileObject(new File(input.getAbsolutePath()), options.fileUtil());
+    }
+    return MemoryFileObject.createJavaFile(
+        input.getOriginalLocation(), options.fileUtil().readFile(input));
+  }
+
+  private void parseAndHandle(JavacEnvironment env, Map<JavaFileObject, String> fileObjectPaths,
+      Handler handler, List<InputFile> classFiles, ClassFileHandler classFileHandler,
+      List<CompilationUnitTree> generatedUnits) throws IOException {
+    List<CompilationUnitTree> units = new ArrayList<>();
+    for (CompilationUnitTree unit : env.task().parse()) {
+      units.add(unit);
+    }
+    // Annotation processing, if enabled, runs as part of analysis, so the
+    // generated units are attributed with the inputs.
+    env.task().analyze();
+    processDiagnostics(env.diagnostics());
+
+    if (ErrorUtil.errorCount() == 0) {
+      if (!classFiles.isEmpty()) {
+        loadClassFiles(env, classFiles, classFileHandler);
+      }
+      // Generated units are handled first, so their types are mapped before
+      // the inputs that use them are generated, and package infos before the
+      // other generated units, so their package prefixes are registered.
+      generatedUnits.sort(Comparator.comparing(ast -> !isPackageInfo(ast)));
+      for (CompilationUnitTree ast : generatedUnits) {
+        com.google.devtools.j2objc.ast.CompilationUnit unit = TreeConverter
+            .convertCompilationUnit(options, env, (JCTree.JCCompilationUnit) ast);
+        processDiagnostics(env.diagnostics());
+        File file = new File(ast.getSourceFile().toUri());
+        String unitName = sourceOutputDirectory.toURI().relativize(file.toURI()).getPath();
+        ((GeneratedSourceHandler) handler).handleGeneratedUnit(
+            new RegularInputFile(file.getPath(), unitName), unit);
+      }
+      for (CompilationUnitTree ast : units) {
+        com.google.devtools.j2objc.ast.CompilationUnit unit = TreeConverter
+            .convertCompilationUnit(options, env, (JCTree.JCCompilationUnit) ast);
+        processDiagnostics(env.diagnostics());
+        String path = fileObjectPaths.get(ast.getSourceFile());
+        handler.handleParsedUnit(path != null ? path : unit.getSourceFilePath(), unit);
+      }
+    }
+  }
+
+  private static boolean isPackageInfo(CompilationUnitTree unit) {
+    return unit.getSourceFile().isNameCompatible("package-info", JavaFileObject.Kind.SOURCE);
+  }
+
+  /**
+   * Adds the class files of a jar, or a single class file, to a list of
+   * inputs, and puts their root on the classpath so javac can read them.
+   */
+  private void collectClassFiles(String path, List<InputFile> classFiles) throws IOException {
+    if (path.endsWith(".jar")) {
+      try (JarFile jar = new JarFile(path)) {
+        for (JarEntry entry : Collections.list(jar.entries())) {
+          String name = entry.getName();
+          if (name.endsWith(".class") && !name.endsWith("module-info.class")
+              && !name.startsWith("META-INF/")) {
+            classFiles.add(new JarredInputFile(path, name));
+          }
+        }
+      }
+      addClassFileRoot(path);
+    } else if (path.endsWith(".class")) {
+      String className = ClassFileScanner.scan(new RegularInputFile(path)).getClassName();
+      String relativePath = className.replace('.', File.separatorChar) + ".class";
+      if (!path.endsWith(relativePath)) {
+        ErrorUtil.error("Class file " + path + " isn't in a directory matching its package");
+        return;
+      }
+      classFiles.add(new RegularInputFile(path, className.replace('.', '/') + ".class"));
+      String root = path.substring(0, path.length() - relativePath.length());
+      addClassFileRoot(root.isEmpty() ? "." : root);
+    } else {
+      ErrorUtil.error("Unsupported class file input: " + path);
+    }
+  }
+
+  private void addClassFileRoot(String root) {
+    if (!classpathEntries.contains(root)) {
+      // Class inputs take precedence over other classpath entries.
+      classpathEntries.add(0, root);
+    }
+  }
+
+  private void loadClassFiles(
+      JavacEnvironment env, List<InputFile> classFiles, ClassFileHandler handler) {
+    TranslationEnvironment translationEnv = new TranslationEnvironment(options, env);
+    for (InputFile file : classFiles) {
+      String unitName = file.getUnitName();
+      String binaryName = unitName.substring(0, unitName.length() - 6).replace('/', '.');
+      handler.handleClassFile(file, lookupType(translationEnv, binaryName), translationEnv);
+    }
+  }
+
+  // Returns the type with a specified binary name, or null if it isn't a
+  // top-level or member type.
+  private static TypeElement lookupType(TranslationEnvironment env, String binaryName) {
+    String canonicalName = binaryName.replace('$', '.');
+    if (!javax.lang.model.SourceVersion.isName(canonicalName)) {
+      return null;  // Local or anonymous class.
+    }
+    TypeElement type = env.typeUtil().resolveJavaType(canonicalName);
+    return type != null && env.elementUtil().getBinaryName(type).equals(binaryName) ? type : null;
+  }
+
   // Creates a javac environment from a memory source.
   private JavacEnvironment createEnvironment(String path, String source) throws IOException {
     List<JavaFileObject> inputFiles = new ArrayList<>();
     inputFiles.add(MemoryFileObject.createJavaFile(path, source));
-    return createEnvironment(Collections.emptyList(), inputFiles, false);
+    return createEnvironment(inputFiles, false);
   }
 
-  // Creates a javac environment from a collection of files and/or file objects.
-  private JavacEnvironment createEnvironment(List<File> files, List<JavaFileObject> fileObjects,
-      boolean processAnnotations) throws IOException {
+  // Creates a javac environment from a collection of file objects.
+  private JavacEnvironment createEnvironment(List<JavaFileObject> fileObjects,
+      boolean runProcessors) throws IOException {
     JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
     JavacFileManager fileManager = getFileManager(compiler, diagnostics);
-    List<String> javacOptions = getJavacOptions(processAnnotations);
-    if (fileObjects == null) {
-      fileObjects = new ArrayList<>();
-    }
-    for (JavaFileObject jfo : fileManager.getJavaFileObjectsFromFiles(files)) {
-      fileObjects.add(jfo);
-    }
-    JavacTaskImpl task = (JavacTaskImpl) compiler.getTask(null, fileManager, diagnostics,
+    List<String> javacOptions = getJavacOptions(runProcessors);
+    // Sources held in memory replace their files on the sourcepath.
+    JavaFileManager taskFileManager = sourceOverlays.isEmpty()
+        ? fileManager : new SourceOverlayFileManager(fileManager, sourceOverlays);
+    JavacTaskImpl task = (JavacTaskImpl) compiler.getTask(null, taskFileManager, diagnostics,
         javacOptions, null, fileObjects);
     return new JavacEnvironment(task, fileManager, diagnostics);
   }
@@ -228,38 +420,6 @@ public class JavacParser extends Parser {
   }
 
 
-  @Override
-  public ProcessingResult processAnnotations(Iterable<String> fileArgs,
-      List<ProcessingContext> inputs) {
-    final List<ProcessingContext> generatedInputs = Lists.newArrayList();
-    PathClassLoader loader = new PathClassLoader(options.fileUtil().getClassPathEntries());
-    loader.addPaths(options.getProcessorPathEntries());
-    Iterator<Processor> serviceIterator = ServiceLoader.load(Processor.class, loader).iterator();
-    if (serviceIterator.hasNext()) {
-      List<File> inputFiles = new ArrayList<>();
-      for (ProcessingContext input : inputs) {
-        inputFiles.add(new File(input.getFile().getAbsolutePath()));
-      }
-      try {
-        JavacEnvironment env = createEnvironment(inputFiles, null, true);
-        env.task().parse();
-        // JavacTaskImpl.enter() parses and runs annotation processing, but
-        // not type checking and attribution (that's done by analyze()).
-        env.task().enter();
-        processDiagnostics(env.diagnostics());
-        // The source output directory is created and set in createEnvironment().
-        File sourceOutputDirectory =
-            env.fileManager().getLocation(StandardLocation.SOURCE_OUTPUT).iterator().next();
-        collectGeneratedInputs(sourceOutputDirectory, "", generatedInputs);
-        return new JavacProcessingResult(generatedInputs, sourceOutputDirectory);
-      } catch (IOException e) {
-        ErrorUtil.fatalError(e, "javac file manager error");
-      }
-    }
-    // No annotation processors on classpath, or processing errors reported.
-    return new JavacProcessingResult(generatedInputs, null);
-  }
-
   @Override
   public void close() throws IOException {
     if (fileManager != null) {
@@ -269,21 +429,9 @@ public class JavacParser extends Parser {
         fileManager = null;
       }
     }
-  }
-
-  private void collectGeneratedInputs(
-      File dir, String currentRelativePath, List<ProcessingContext> inputs) {
-    assert dir.exists() && dir.isDirectory();
-    for (File f : dir.listFiles()) {
-      String relativeName = currentRelativePath + File.separatorChar + f.getName();
-      if (f.isDirectory()) {
-        collectGeneratedInputs(f, relativeName, inputs);
-      } else {
-        if (f.getName().endsWith(".java")) {
-          inputs.add(ProcessingContext.fromFile(
-              new RegularInputFile(f.getPath(), relativeName), options));
-        }
-      }
+    if (sourceOutputDirectory != null) {
+      FileUtil.deleteTempDir(sourceOutputDirectory);
+      sourceOutputDirectory = null;
     }
   }
 
@@ -362,25 +510,4 @@ public class JavacParser extends Parser {
       return unit.toString();
     }
   }
-
-  private static class JavacProcessingResult implements Parser.ProcessingResult {
-    private final List<ProcessingContext> generatedSources;
-    private final File sourceOutputDirectory;
-
-    public JavacProcessingResult(List<ProcessingContext> generatedSources,
-        File sourceOutputDirectory) {
-      this.generatedSources = generatedSources;
-      this.sourceOutputDirectory = sourceOutputDirectory;
-    }
-
-    @Override
-    public List<ProcessingContext> getGeneratedSources() {
-      return generatedSources;
-    }
-
-    @Override
-    public File getSourceOutputDirectory() {
-      return sourceOutputDirectory;
-    }
-  }
 }
@@ -52,7 +52,8 @@ class MemoryFileObject implements JavaFileObject {
   @Override
   public URI toUri() {
     try {
-      return new URI("mem", null, "/" + path, null);
+      // Sources that replace a file keep its absolute path.
+      return new URI("mem", null, path.startsWith("/") ? path : "/" + path, null);
     } catch (URISyntaxException e) {
       throw new AssertionError(e);
     }
@@ -91,8 +92,10 @@ class MemoryFileObject implements JavaFileObject {
   @Override
   public boolean isNameCompatible(String simpleName, Kind kind) {
     String baseName = simpleName + kind.extension;
+    // Jar entries are named by their location, such as "jar:file:foo.jar!Foo.java".
     return kind.equals(getKind())
-        && (baseName.equals(path) || path.endsWith("/" + baseName));
+        && (baseName.equals(path) || path.endsWith("/" + baseName)
+            || path.endsWith("!" + baseName));
   }
 
   @Override
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.javac;
+
+import com.google.devtools.j2objc.file.MemoryInputFile;
+import com.sun.tools.javac.file.JavacFileManager;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * A file manager that lists in-memory sources on the sourcepath, in place
+ * of the files with the same names.
+ */
+class SourceOverlayFileManager extends ForwardingJavaFileManager<JavacFileManager> {
+
+  // Maps binary names to the overlay sources.
+  private final Map<String, JavaFileObject> overlays = new HashMap<>();
+  private final Map<JavaFileObject, String> binaryNames = new HashMap<>();
+
+  SourceOverlayFileManager(JavacFileManager fileManager, Map<String, MemoryInputFile> sources) {
+    super(fileManager);
+    for (Map.Entry<String, MemoryInputFile> entry : sources.entrySet()) {
+      String relativePath = entry.getKey();
+      String binaryName =
+          relativePath.substring(0, relativePath.length() - 5).replace('/', '.');
+      JavaFileObject fileObject =
+          MemoryFileObject.createJavaFile(relativePath, entry.getValue().getSource());
+      overlays.put(binaryName, fileObject);
+      binaryNames.put(fileObject, binaryName);
+    }
+  }
+
+  @Override
+  public Iterable<JavaFileObject> list(Location location, String packageName,
+      Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+    Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+    if (!isSourceLocation(location) || !kinds.contains(JavaFileObject.Kind.SOURCE)) {
+      return files;
+    }
+    // Overlays are listed first, so they are found before any other file
+    // for the same class.
+    List<JavaFileObject> result = new ArrayList<>();
+    for (Map.Entry<String, JavaFileObject> entry : overlays.entrySet()) {
+      if (isInPackage(entry.getKey(), packageName, recurse)) {
+        result.add(entry.getValue());
+      }
+    }
+    if (result.isEmpty()) {
+      return files;
+    }
+    for (JavaFileObject file : files) {
+      if (file.getKind() != JavaFileObject.Kind.SOURCE
+          || !overlays.containsKey(inferBinaryName(location, file))) {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String inferBinaryName(Location location, JavaFileObject file) {
+    String binaryName = binaryNames.get(file);
+    return binaryName != null ? binaryName : super.inferBinaryName(location, file);
+  }
+
+  // javac looks up sources on the classpath when there is no sourcepath.
+  private boolean isSourceLocation(Location location) {
+    return location == StandardLocation.SOURCE_PATH
+        || (location == StandardLocation.CLASS_PATH
+            && !hasLocation(StandardLocation.SOURCE_PATH));
+  }
+
+  private static boolean isInPackage(String binaryName, String packageName, boolean recurse) {
+    int lastDot = binaryName.lastIndexOf('.');
+    String pkg = lastDot >= 0 ? binaryName.substring(0, lastDot) : "";
+    return pkg.equals(packageName)
+        || (recurse && (packageName.isEmpty() || pkg.startsWith(packageName + ".")));
+  }
+}
@@ -115,9 +115,10 @@ public class BuildClosureQueue {
     if (f != null) {
       return true;
     }
-    // See if it's a JRE class.
+    // See if it's a JRE class. The class is only loaded, since initializing
+    // it would run its static initializers in the translator.
     try {
-      Class.forName(name);
+      Class.forName(name, false, BuildClosureQueue.class.getClassLoader());
       return true;
     } catch (ClassNotFoundException e) {
       // Fall-through.
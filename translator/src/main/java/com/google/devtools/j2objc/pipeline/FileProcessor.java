@@ -24,6 +24,7 @@ import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -41,6 +42,7 @@ abstract class FileProcessor {
   private static final Logger logger = Logger.getLogger(FileProcessor.class.getName());
 
   private final Parser parser;
+  private final InputFilePreprocessor preprocessor;
   protected final BuildClosureQueue closureQueue;
   protected final Options options;
   private final Set<ProcessingContext> batchInputs = new HashSet<>();
@@ -48,6 +50,7 @@ abstract class FileProcessor {
   public FileProcessor(Parser parser) {
     this.parser = Preconditions.checkNotNull(parser);
     this.options = parser.options();
+    this.preprocessor = new InputFilePreprocessor(parser);
     if (options.buildClosure()) {
       // Should be an error if the user specifies this with --build-closure
       assert !options.getHeaderMap().useSourceDirectories();
@@ -104,7 +107,7 @@ abstract class FileProcessor {
   }
 
   protected boolean isBatchable(InputFile file) {
-    return file.getAbsolutePath().endsWith(".java");
+    return file.getUnitName().endsWith(".java");
   }
 
   private void processBatch() {
@@ -112,24 +115,37 @@ abstract class FileProcessor {
       return;
     }
 
-    List<String> paths = Lists.newArrayListWithCapacity(batchInputs.size());
+    List<InputFile> files = Lists.newArrayListWithCapacity(batchInputs.size());
     final Map<String, ProcessingContext> inputMap = new CanonicalPathMap(batchInputs.size());
     for (ProcessingContext input : batchInputs) {
-      String path = input.getFile().getAbsolutePath();
-      paths.add(path);
-      inputMap.put(path, input);
+      files.add(input.getFile());
+      inputMap.put(input.getFile().getOriginalLocation(), input);
     }
+    // Generated sources that have to be parsed again after preprocessing.
+    final List<ProcessingContext> reparsedInputs = new ArrayList<>();
 
-    Parser.Handler handler = new Parser.Handler() {
+    Parser.Handler handler = new Parser.GeneratedSourceHandler() {
       @Override
       public void handleParsedUnit(String path, CompilationUnit unit) {
         ProcessingContext input = inputMap.get(path);
         processCompiledSource(input, unit);
         batchInputs.remove(input);
       }
+
+      @Override
+      public void handleGeneratedUnit(InputFile file, CompilationUnit unit) {
+        // Generated sources are preprocessed like the inputs, but only
+        // once javac has generated them.
+        ProcessingContext input = ProcessingContext.fromFile(file, options);
+        if (preprocessor.processGeneratedUnit(input, unit)) {
+          processCompiledSource(input, unit);
+        } else {
+          reparsedInputs.add(input);
+        }
+      }
     };
     logger.finest("Processing batch of size " + batchInputs.size());
-    parser.parseFiles(paths, handler, options.getSourceVersion());
+    parser.parseInputFiles(files, handler, options.getSourceVersion());
 
     // Any remaining files in batchFiles has some kind of error.
     for (ProcessingContext input : batchInputs) {
@@ -137,6 +153,11 @@ abstract class FileProcessor {
     }
 
     batchInputs.clear();
+
+    if (!reparsedInputs.isEmpty()) {
+      batchInputs.addAll(reparsedInputs);
+      processBatch();
+    }
   }
 
   private void processCompiledSource(ProcessingContext input,
@@ -16,20 +16,20 @@ package com.google.devtools.j2objc.pipeline;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.file.JarredInputFile;
+import com.google.devtools.j2objc.file.MappedJarFile;
 import com.google.devtools.j2objc.file.RegularInputFile;
 import com.google.devtools.j2objc.gen.GenerationUnit;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import java.io.File;
 import java.io.IOException;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 /**
  * A set of input files for J2ObjC to process,
@@ -141,31 +141,34 @@ public class GenerationBatch {
       combinedUnit = GenerationUnit.newCombinedJarUnit(filename, options);
     }
     try {
-      ZipFile zfile = new ZipFile(f);
-      try {
-        Enumeration<? extends ZipEntry> enumerator = zfile.entries();
-        File tempDir = FileUtil.createTempDir(J2OBJC_TEMP_DIR_PREFIX);
-        String tempDirPath = tempDir.getAbsolutePath();
-        options.fileUtil().addTempDir(tempDirPath);
-        options.fileUtil().appendSourcePath(tempDirPath);
-
-        while (enumerator.hasMoreElements()) {
-          ZipEntry entry = enumerator.nextElement();
-          String internalPath = entry.getName();
-          if (internalPath.endsWith(".java")
-              || (options.translateClassfiles() && internalPath.endsWith(".class"))) {
-            // Extract JAR file to a temporary directory
-            File outputFile = options.fileUtil().extractZipEntry(tempDir, zfile, entry);
-            InputFile newFile = new RegularInputFile(outputFile.getAbsolutePath(), internalPath);
-            if (combinedUnit != null) {
-              inputs.add(new ProcessingContext(newFile, combinedUnit));
-            } else {
-              addExtractedJarSource(newFile, filename, internalPath);
-            }
+      MappedJarFile jar = MappedJarFile.open(f);
+      // Sources are read in place. The jar is also added to the sourcepath, so javac
+      // can resolve its types when they're needed outside of the jar's batch.
+      options.fileUtil().appendSourcePath(f.getPath());
+      File classFileDir = null;
+      for (String internalPath : jar.getEntryNames()) {
+        InputFile newFile;
+        if (internalPath.endsWith(".java")) {
+          newFile = new JarredInputFile(jar, internalPath);
+        } else if (options.translateClassfiles() && internalPath.endsWith(".class")) {
+          // Class files are converted from the file system.
+          if (classFileDir == null) {
+            classFileDir = FileUtil.createTempDir(J2OBJC_TEMP_DIR_PREFIX);
+            options.fileUtil().addTempDir(classFileDir.getAbsolutePath());
+            options.fileUtil().appendSourcePath(classFileDir.getAbsolutePath());
           }
+          File outputFile = new File(classFileDir, internalPath);
+          Files.createParentDirs(outputFile);
+          Files.write(jar.read(internalPath), outputFile);
+          newFile = new RegularInputFile(outputFile.getAbsolutePath(), internalPath);
+        } else {
+          continue;
+        }
+        if (combinedUnit != null) {
+          inputs.add(new ProcessingContext(newFile, combinedUnit));
+        } else {
+          addJarSource(newFile, filename, internalPath);
         }
-      } finally {
-        zfile.close();  // Also closes input stream.
       }
     } catch (ZipException e) { // Also catches JarExceptions
       logger.fine(e.getMessage());
@@ -175,7 +178,7 @@ public class GenerationBatch {
     }
   }
 
-  private void addExtractedJarSource(InputFile file, String jarFileName, String internalPath) {
+  private void addJarSource(InputFile file, String jarFileName, String internalPath) {
     String sourceName = "jar:file:" + jarFileName + "!" + internalPath;
     inputs.add(ProcessingContext.fromExtractedJarEntry(file, sourceName, options));
   }
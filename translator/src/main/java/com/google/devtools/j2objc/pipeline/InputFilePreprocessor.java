@@ -14,32 +14,25 @@
 
 package com.google.devtools.j2objc.pipeline;
 
-import com.google.common.io.Files;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.ast.Annotation;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.SingleMemberAnnotation;
 import com.google.devtools.j2objc.file.InputFile;
-import com.google.devtools.j2objc.file.RegularInputFile;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
 import com.google.devtools.j2objc.util.TypeUtil;
 import com.google.j2objc.annotations.ObjectiveCName;
-import java.io.File;
 import java.io.IOException;
 import java.util.List;
-import java.util.logging.Logger;
 
 /**
  * Preprocesses each Java file in the batch.
  */
 public class InputFilePreprocessor {
 
-  private static final Logger logger = Logger.getLogger(InputFilePreprocessor.class.getName());
-
   private final Parser parser;
-  private File strippedSourcesDir;
   private final Options options;
 
   public InputFilePreprocessor(Parser parser) {
@@ -55,6 +48,26 @@ public class InputFilePreprocessor {
     }
   }
 
+  /**
+   * Preprocesses a source generated by annotation processing, whose unit was
+   * already parsed and attributed with the inputs. Returns false if the
+   * source was stripped of J2ObjCIncompatible elements, so the unit has to
+   * be parsed again from the stripped source.
+   */
+  public boolean processGeneratedUnit(ProcessingContext input, CompilationUnit unit) {
+    InputFile file = input.getFile();
+    if (file.getUnitName().endsWith("package-info.java")) {
+      extractPackagePrefix(file, unit);
+      return true;
+    }
+    try {
+      processRegularSource(input);
+    } catch (IOException e) {
+      ErrorUtil.error(e.getMessage());
+    }
+    return input.getFile() == file;
+  }
+
   private void processInput(ProcessingContext input) {
     try {
       if (input.getFile().getUnitName().endsWith("package-info.java")) {
@@ -67,18 +80,6 @@ public class InputFilePreprocessor {
     }
   }
 
-  public File getStrippedSourcesDir() {
-    return strippedSourcesDir;
-  }
-
-  private File getCreatedStrippedSourcesDir() {
-    if (strippedSourcesDir == null) {
-      strippedSourcesDir = Files.createTempDir();
-      logger.finest("Created temp dir for stripped sources: " + strippedSourcesDir.getPath());
-    }
-    return strippedSourcesDir;
-  }
-
   private void processRegularSource(ProcessingContext input) throws IOException {
     InputFile file = input.getFile();
     String source = options.fileUtil().readFile(file);
@@ -98,14 +99,10 @@ public class InputFilePreprocessor {
       options.getHeaderMap().put(qualifiedName, input.getGenerationUnit().getOutputPath() + ".h");
     }
     if (doIncompatibleStripping) {
+      // The stripped source is kept in memory, and replaces the file on the
+      // sourcepath too.
       parseResult.stripIncompatibleSource();
-      File strippedDir = getCreatedStrippedSourcesDir();
-      String relativePath = qualifiedName.replace('.', File.separatorChar) + ".java";
-      File strippedFile = new File(strippedDir, relativePath);
-      Files.createParentDirs(strippedFile);
-      Files.asCharSink(strippedFile, options.fileUtil().getCharset())
-          .write(parseResult.getSource());
-      input.setFile(new RegularInputFile(strippedFile.getPath(), relativePath));
+      input.setFile(parser.addSourceOverlay(file, qualifiedName, parseResult.getSource()));
     }
   }
 
@@ -17,17 +17,25 @@ package com.google.devtools.j2objc.pipeline;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.DebugASTDump;
+import com.google.devtools.j2objc.ast.StringLiteral;
+import com.google.devtools.j2objc.ast.TreeVisitor;
 import com.google.devtools.j2objc.gen.GenerationUnit;
+import com.google.devtools.j2objc.gen.IncludeGraph;
+import com.google.devtools.j2objc.gen.ModuleMapGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCHeaderGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCImplementationGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCSegmentedHeaderGenerator;
+import com.google.devtools.j2objc.gen.PackageAmalgamator;
 import com.google.devtools.j2objc.translate.AbstractMethodRewriter;
+import com.google.devtools.j2objc.translate.AccessorInliner;
 import com.google.devtools.j2objc.translate.AnnotationRewriter;
 import com.google.devtools.j2objc.translate.ArrayRewriter;
 import com.google.devtools.j2objc.translate.Autoboxer;
+import com.google.devtools.j2objc.translate.AutoreleasePoolInserter;
 import com.google.devtools.j2objc.translate.CastResolver;
 import com.google.devtools.j2objc.translate.ComplexExpressionExtractor;
 import com.google.devtools.j2objc.translate.ConstantBranchPruner;
+import com.google.devtools.j2objc.translate.DeadCodeAnalyzer;
 import com.google.devtools.j2objc.translate.DeadCodeEliminator;
 import com.google.devtools.j2objc.translate.DefaultMethodShimGenerator;
 import com.google.devtools.j2objc.translate.DestructorGenerator;
@@ -51,13 +59,16 @@ import com.google.devtools.j2objc.translate.OperatorRewriter;
 import com.google.devtools.j2objc.translate.OuterReferenceResolver;
 import com.google.devtools.j2objc.translate.PackageInfoRewriter;
 import com.google.devtools.j2objc.translate.PrivateDeclarationResolver;
+import com.google.devtools.j2objc.translate.ReflectionUsageAnalyzer;
 import com.google.devtools.j2objc.translate.Rewriter;
 import com.google.devtools.j2objc.translate.SerializationStripper;
+import com.google.devtools.j2objc.translate.StaticInitAnalyzer;
 import com.google.devtools.j2objc.translate.StaticVarRewriter;
 import com.google.devtools.j2objc.translate.SuperMethodInvocationRewriter;
 import com.google.devtools.j2objc.translate.SwitchRewriter;
 import com.google.devtools.j2objc.translate.UnsequencedExpressionRewriter;
 import com.google.devtools.j2objc.translate.VarargsRewriter;
+import com.google.devtools.j2objc.translate.VolatileOrderingRewriter;
 import com.google.devtools.j2objc.translate.VariableRenamer;
 import com.google.devtools.j2objc.types.HeaderImportCollector;
 import com.google.devtools.j2objc.types.ImplementationImportCollector;
@@ -66,8 +77,12 @@ import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.ExternalAnnotations;
 import com.google.devtools.j2objc.util.Parser;
+import com.google.devtools.j2objc.util.StringPool;
 import com.google.devtools.j2objc.util.TimeTracker;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,17 +96,118 @@ public class TranslationProcessor extends FileProcessor {
 
   private static final Logger logger = Logger.getLogger(TranslationProcessor.class.getName());
 
-  private final CodeReferenceMap deadCodeMap;
+  private CodeReferenceMap deadCodeMap;
+  private final DeadCodeAnalyzer deadCodeAnalyzer;
+  private final AccessorInliner.Index accessorIndex;
+  private final PackageAmalgamator amalgamator;
+  private final IncludeGraph includeGraph;
+  private final StaticInitAnalyzer.Graph staticInitGraph;
+  private final ReflectionUsageAnalyzer reflectionAnalyzer;
+  private final Set<String> generatedHeaders = new TreeSet<>();
+  private final Map<ProcessingContext, CompilationUnit> deferredUnits = new LinkedHashMap<>();
 
   private int processedCount = 0;
 
   public TranslationProcessor(Parser parser, CodeReferenceMap deadCodeMap) {
     super(parser);
     this.deadCodeMap = deadCodeMap;
+    this.deadCodeAnalyzer = null;
+    this.accessorIndex = newAccessorIndex();
+    this.amalgamator = newAmalgamator();
+    this.includeGraph = newIncludeGraph();
+    this.staticInitGraph = newStaticInitGraph();
+    this.reflectionAnalyzer = newReflectionAnalyzer();
+  }
+
+  /**
+   * Creates a processor that computes dead code itself. Units are mapped as
+   * they are parsed, and held back until {@link #processDeferredUnits} is
+   * called with the whole program mapped.
+   */
+  public TranslationProcessor(Parser parser, DeadCodeAnalyzer deadCodeAnalyzer) {
+    super(parser);
+    this.deadCodeMap = null;
+    this.deadCodeAnalyzer = deadCodeAnalyzer;
+    this.accessorIndex = newAccessorIndex();
+    this.amalgamator = newAmalgamator();
+    this.includeGraph = newIncludeGraph();
+    this.staticInitGraph = newStaticInitGraph();
+    this.reflectionAnalyzer = newReflectionAnalyzer();
+  }
+
+  private AccessorInliner.Index newAccessorIndex() {
+    return options.inlineAccessors() ? new AccessorInliner.Index() : null;
+  }
+
+  private IncludeGraph newIncludeGraph() {
+    return options.includeGraphReport() != null || options.prefixHeaderSize() > 0
+        ? new IncludeGraph(options) : null;
+  }
+
+  private StaticInitAnalyzer.Graph newStaticInitGraph() {
+    return options.staticInitReport() != null ? new StaticInitAnalyzer.Graph() : null;
+  }
+
+  private ReflectionUsageAnalyzer newReflectionAnalyzer() {
+    return options.stripUnusedReflection() || options.reflectionReport() != null
+        ? new ReflectionUsageAnalyzer() : null;
+  }
+
+  private PackageAmalgamator newAmalgamator() {
+    return options.amalgamatePackages() ? new PackageAmalgamator(options) : null;
   }
 
   @Override
   protected void processConvertedTree(ProcessingContext input, CompilationUnit unit) {
+    if ((deadCodeAnalyzer != null || accessorIndex != null || reflectionAnalyzer != null)
+        && !options.dumpAST()) {
+      if (deadCodeAnalyzer != null) {
+        deadCodeAnalyzer.mapUnit(unit);
+      }
+      if (accessorIndex != null) {
+        accessorIndex.mapUnit(unit);
+      }
+      if (reflectionAnalyzer != null) {
+        reflectionAnalyzer.mapUnit(unit);
+      }
+      deferredUnits.put(input, unit);
+      return;
+    }
+    translateUnit(input, unit);
+  }
+
+  /**
+   * Translates the units held back for dead code analysis, accessor inlining
+   * or reflection analysis. Does nothing unless this processor computes its
+   * own dead code, inlines accessors or analyzes reflection.
+   */
+  public void processDeferredUnits() {
+    if (deadCodeAnalyzer != null) {
+      deadCodeMap = deadCodeAnalyzer.buildDeadCodeMap();
+    }
+    if (reflectionAnalyzer != null) {
+      Set<String> unreflectedClasses = reflectionAnalyzer.findUnreflectedClasses(deadCodeMap);
+      if (options.stripUnusedReflection()) {
+        options.setUnreflectedClasses(unreflectedClasses);
+      }
+      if (options.reflectionReport() != null) {
+        reflectionAnalyzer.writeReport(
+            options.reflectionReport(), options.fileUtil().getCharset());
+      }
+    }
+    for (Map.Entry<ProcessingContext, CompilationUnit> entry : deferredUnits.entrySet()) {
+      ProcessingContext input = entry.getKey();
+      try {
+        translateUnit(input, entry.getValue());
+      } catch (Throwable t) {
+        // Report any uncaught exceptions.
+        ErrorUtil.fatalError(t, input.getOriginalSourcePath());
+      }
+    }
+    deferredUnits.clear();
+  }
+
+  private void translateUnit(ProcessingContext input, CompilationUnit unit) {
     String unitName = input.getOriginalSourcePath();
     if (logger.isLoggable(Level.INFO)) {
       System.out.println("translating " + unitName);
@@ -101,9 +217,18 @@ public class TranslationProcessor extends FileProcessor {
       // Dump compilation unit to an .ast output file instead of translating.
       DebugASTDump.dumpUnit(unit);
     } else {
-      applyMutations(unit, deadCodeMap, options.externalAnnotations(), ticker);
+      String previousFile = ErrorUtil.setFileContext(unit.getSourceFilePath());
+      try {
+        applyMutations(unit, deadCodeMap, options.externalAnnotations(), accessorIndex,
+            staticInitGraph, ticker);
+      } finally {
+        ErrorUtil.setFileContext(previousFile);
+      }
       ticker.tick("Tree mutations");
       ticker.printResults(System.out);
+      if (options.getStringPool().needsLiterals()) {
+        addStringLiterals(unit);
+      }
 
       GenerationUnit genUnit = input.getGenerationUnit();
       genUnit.addCompilationUnit(unit);
@@ -114,12 +239,33 @@ public class TranslationProcessor extends FileProcessor {
       }
 
       if (genUnit.isFullyParsed()) {
-        generateObjectiveCSource(genUnit);
+        generateObjectiveCSource(genUnit, amalgamator);
+        if (options.moduleName() != null) {
+          generatedHeaders.add(genUnit.getOutputPath() + ".h");
+        }
+        if (includeGraph != null) {
+          includeGraph.addGeneratedFile(genUnit.getOutputPath() + ".h");
+          if (amalgamator == null) {
+            includeGraph.addGeneratedFile(
+                genUnit.getOutputPath() + options.getLanguage().suffix());
+          }
+        }
       }
     }
     processedCount++;
   }
 
+  private void addStringLiterals(CompilationUnit unit) {
+    final StringPool stringPool = options.getStringPool();
+    final String file = unit.getSourceFilePath();
+    unit.accept(new TreeVisitor() {
+      @Override
+      public void endVisit(StringLiteral node) {
+        stringPool.addLiteral(file, node.getLiteralValue());
+      }
+    });
+  }
+
   /**
    * Translates a parsed source file, modifying the compilation unit by substituting core Java type
    * and method references with iOS equivalents. For example, <code>java.lang.Object</code> maps to
@@ -131,6 +277,22 @@ public class TranslationProcessor extends FileProcessor {
       CodeReferenceMap deadCodeMap,
       ExternalAnnotations externalAnnotations,
       TimeTracker ticker) {
+    applyMutations(unit, deadCodeMap, externalAnnotations, null, null, ticker);
+  }
+
+  /**
+   * Translates a parsed source file like {@link #applyMutations(CompilationUnit,
+   * CodeReferenceMap, ExternalAnnotations, TimeTracker)}, also inlining the
+   * trivial accessors in accessorIndex and adding the unit's static
+   * initializers to staticInitGraph, if they aren't null.
+   */
+  public static void applyMutations(
+      CompilationUnit unit,
+      CodeReferenceMap deadCodeMap,
+      ExternalAnnotations externalAnnotations,
+      AccessorInliner.Index accessorIndex,
+      StaticInitAnalyzer.Graph staticInitGraph,
+      TimeTracker ticker) {
     ticker.push();
 
     // Before: OuterReferenceResolver - OuterReferenceResolver needs the bindings fixed.
@@ -177,6 +339,13 @@ public class TranslationProcessor extends FileProcessor {
     new VariableRenamer(unit).run();
     ticker.tick("VariableRenamer");
 
+    // Before: EnhancedForRewriter, Autoboxer - Estimates allocations from the
+    //   Java loop statements.
+    if (unit.getEnv().options().autoreleasePoolThreshold() > 0) {
+      new AutoreleasePoolInserter(unit).run();
+      ticker.tick("AutoreleasePoolInserter");
+    }
+
     // Rewrite enhanced for loops into correct C code.
     new EnhancedForRewriter(unit).run();
     ticker.tick("EnhancedForRewriter");
@@ -200,6 +369,10 @@ public class TranslationProcessor extends FileProcessor {
     new InitializationNormalizer(unit).run();
     ticker.tick("InitializationNormalizer");
 
+    // After: InitializationNormalizer - Needs the class initializer statements.
+    new StaticInitAnalyzer(unit, staticInitGraph).run();
+    ticker.tick("StaticInitAnalyzer");
+
     // Adds nil_chk calls wherever an expression is dereferenced.
     // After: InnerClassExtractor - Cannot handle local classes.
     // After: InitializationNormalizer
@@ -261,6 +434,23 @@ public class TranslationProcessor extends FileProcessor {
     new JavaToIOSMethodTranslator(unit).run();
     ticker.tick("JavaToIOSMethodTranslator");
 
+    // After: NilCheckResolver - Inlined calls keep the nil check of their
+    //   receiver.
+    // Before: Functionizer - Would functionize calls to accessors declared in
+    //   the same unit.
+    if (accessorIndex != null) {
+      new AccessorInliner(unit, accessorIndex).run();
+      ticker.tick("AccessorInliner");
+    }
+
+    // After: OcniExtractor - Needs the native blocks to be extracted.
+    // Before: Functionizer - Finds constructor bodies and their receiver.
+    // Before: OperatorRewriter - Rewrites volatile loads and stores first.
+    if (unit.getEnv().options().volatileOrdering()) {
+      new VolatileOrderingRewriter(unit).run();
+      ticker.tick("VolatileOrderingRewriter");
+    }
+
     // After: OcniExtractor - So that native methods can be correctly
     //   functionized.
     new Functionizer(unit).run();
@@ -315,6 +505,11 @@ public class TranslationProcessor extends FileProcessor {
 
   @VisibleForTesting
   public static void generateObjectiveCSource(GenerationUnit unit) {
+    generateObjectiveCSource(unit, null);
+  }
+
+  private static void generateObjectiveCSource(
+      GenerationUnit unit, PackageAmalgamator amalgamator) {
     assert unit.getOutputPath() != null;
     assert unit.isFullyParsed();
     TimeTracker ticker = TimeTracker.getTicker(unit.getSourceName(), unit.options().timingLevel());
@@ -332,7 +527,7 @@ public class TranslationProcessor extends FileProcessor {
     ticker.tick("Header generation");
 
     // write implementation file
-    ObjectiveCImplementationGenerator.generate(unit);
+    ObjectiveCImplementationGenerator.generate(unit, amalgamator);
     ticker.tick("Implementation generation");
 
     unit.finished();
@@ -348,6 +543,33 @@ public class TranslationProcessor extends FileProcessor {
   }
 
   public void postProcess() {
+    if (amalgamator != null) {
+      amalgamator.finish();
+    }
+    if (includeGraph != null) {
+      if (amalgamator != null) {
+        for (String file : amalgamator.getOutputFiles()) {
+          includeGraph.addGeneratedFile(file);
+        }
+      }
+      if (options.includeGraphReport() != null) {
+        includeGraph.writeReport(options.includeGraphReport());
+      }
+    }
+    if (staticInitGraph != null) {
+      staticInitGraph.writeReport(options.staticInitReport(), options.fileUtil().getCharset());
+    }
+    if (options.getStringPool().isEnabled()) {
+      options.getStringPool().finish(options);
+    }
+    if (options.moduleName() != null) {
+      ModuleMapGenerator moduleGenerator = new ModuleMapGenerator(options);
+      moduleGenerator.generateModule(generatedHeaders);
+      if (options.prefixHeaderSize() > 0) {
+        moduleGenerator.generatePrefixHeader(
+            includeGraph.getMostIncludedHeaders(options.prefixHeaderSize()));
+      }
+    }
     if (logger.isLoggable(Level.INFO)) {
       int nFiles = processedCount;
       System.out.println(String.format(
@@ -366,6 +588,7 @@ public class TranslationProcessor extends FileProcessor {
     Set<Import> imports = hdrCollector.getForwardDeclarations();
     imports.addAll(hdrCollector.getSuperTypes());
     imports.addAll(implCollector.getImports());
+    imports.addAll(implCollector.getForwardDeclarations());
     for (Import imp : imports) {
       String qualifiedName = imp.getJavaQualifiedName();
       if (qualifiedName != null) {
@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.ast.AbstractTypeDeclaration;
+import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.ExpressionStatement;
+import com.google.devtools.j2objc.ast.FieldAccess;
+import com.google.devtools.j2objc.ast.FieldDeclaration;
+import com.google.devtools.j2objc.ast.FunctionInvocation;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
+import com.google.devtools.j2objc.ast.ReturnStatement;
+import com.google.devtools.j2objc.ast.SimpleName;
+import com.google.devtools.j2objc.ast.SingleVariableDeclaration;
+import com.google.devtools.j2objc.ast.Statement;
+import com.google.devtools.j2objc.ast.ThisExpression;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.TypeDeclaration;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.types.FunctionElement;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Replaces calls to trivial accessors with static inline functions declared in
+ * the accessor's header, so clang can inline them across translation units.
+ * An accessor is trivial if its body only returns one of its class's instance
+ * fields, or only assigns its parameter to one. The accessor methods are kept
+ * for dynamic dispatch and reflection.
+ *
+ * <p>Calls can only bypass dispatch if the accessor can't be overridden, so
+ * only final methods and methods of final classes are inlined. Accessor bodies
+ * aren't visible from other units, so every unit is mapped into an {@link
+ * Index} before any unit is translated.
+ *
+ * @see com.google.devtools.j2objc.Options#inlineAccessors()
+ */
+public class AccessorInliner extends UnitTreeVisitor {
+
+  private final Index index;
+
+  public AccessorInliner(CompilationUnit unit, Index index) {
+    super(unit);
+    this.index = index;
+  }
+
+  /**
+   * A trivial getter or setter.
+   */
+  private static class Accessor {
+    private final String functionName;
+    private final VariableElement field;
+    private final boolean isSetter;
+
+    private Accessor(String functionName, VariableElement field, boolean isSetter) {
+      this.functionName = functionName;
+      this.field = field;
+      this.isSetter = isSetter;
+    }
+  }
+
+  /**
+   * The trivial accessors of all translated units. Accessors are keyed by
+   * name, so units from separate front-end runs can be mapped into one index.
+   */
+  public static class Index {
+
+    private final Map<String, Accessor> accessors = new HashMap<>();
+
+    /**
+     * Finds the trivial accessors of a unit. The unit must not have been
+     * translated yet.
+     */
+    public void mapUnit(CompilationUnit unit) {
+      new Finder(unit, accessors).run();
+    }
+  }
+
+  private static class Finder extends UnitTreeVisitor {
+
+    private final Map<String, Accessor> accessors;
+
+    private Finder(CompilationUnit unit, Map<String, Accessor> accessors) {
+      super(unit);
+      this.accessors = accessors;
+    }
+
+    @Override
+    public boolean visit(MethodDeclaration node) {
+      ExecutableElement method = node.getExecutableElement();
+      TypeElement type = ElementUtil.getDeclaringClass(method);
+      if (!ElementUtil.isInstanceMethod(method)
+          || !(ElementUtil.isFinal(method) || ElementUtil.isFinal(type))
+          || ElementUtil.isPrivate(method) || ElementUtil.isPrivateInnerType(type)
+          || type.getKind() != ElementKind.CLASS || node.getBody() == null
+          || Modifier.isSynchronized(node.getModifiers())) {
+        return false;
+      }
+      Accessor accessor = findAccessor(node, method, type);
+      if (accessor != null) {
+        accessors.put(accessorKey(elementUtil, typeUtil, method), accessor);
+      }
+      return false;
+    }
+
+    private Accessor findAccessor(
+        MethodDeclaration node, ExecutableElement method, TypeElement type) {
+      List<Statement> stmts = node.getBody().getStatements();
+      if (stmts.size() != 1) {
+        return null;
+      }
+      Statement stmt = stmts.get(0);
+      List<SingleVariableDeclaration> params = node.getParameters();
+      String functionName = nameTable.getFullFunctionName(method) + "_inline";
+      if (params.isEmpty() && stmt instanceof ReturnStatement) {
+        VariableElement field = getOwnField(((ReturnStatement) stmt).getExpression(), type);
+        if (field != null && hasSameRepresentation(field.asType(), method.getReturnType())) {
+          return new Accessor(functionName, field, false);
+        }
+      } else if (params.size() == 1 && stmt instanceof ExpressionStatement
+          && TypeUtil.isVoid(method.getReturnType())) {
+        Expression expr = ((ExpressionStatement) stmt).getExpression();
+        if (!(expr instanceof Assignment)
+            || ((Assignment) expr).getOperator() != Assignment.Operator.ASSIGN) {
+          return null;
+        }
+        Assignment assignment = (Assignment) expr;
+        VariableElement param = params.get(0).getVariableElement();
+        VariableElement field = getOwnField(assignment.getLeftHandSide(), type);
+        if (field != null && !ElementUtil.isFinal(field)
+            && TreeUtil.getVariableElement(assignment.getRightHandSide()) == param
+            && hasSameRepresentation(field.asType(), param.asType())) {
+          return new Accessor(functionName, field, true);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the instance field of type that expr names, if it can be
+     * accessed through the field's instance variable alone.
+     */
+    private static VariableElement getOwnField(Expression expr, TypeElement type) {
+      if (expr == null) {
+        return null;
+      }
+      expr = TreeUtil.trimParentheses(expr);
+      if (expr instanceof FieldAccess) {
+        Expression target = TreeUtil.trimParentheses(((FieldAccess) expr).getExpression());
+        if (!(target instanceof ThisExpression)
+            || ((ThisExpression) target).getQualifier() != null) {
+          return null;
+        }
+      } else if (!(expr instanceof SimpleName)) {
+        return null;
+      }
+      VariableElement var = TreeUtil.getVariableElement(expr);
+      if (var == null || !ElementUtil.isInstanceVar(var)
+          || ElementUtil.getDeclaringClass(var) != type
+          || ElementUtil.isVolatile(var) || ElementUtil.isWeakReference(var)
+          || ElementUtil.isRetainedWithField(var)) {
+        return null;
+      }
+      return var;
+    }
+
+    // Boxing and primitive conversions aren't applied by the inline functions.
+    private static boolean hasSameRepresentation(TypeMirror fieldType, TypeMirror type) {
+      return fieldType.getKind().isPrimitive()
+          ? fieldType.getKind() == type.getKind() : !type.getKind().isPrimitive();
+    }
+  }
+
+  private static String accessorKey(
+      ElementUtil elementUtil, TypeUtil typeUtil, ExecutableElement method) {
+    return elementUtil.getBinaryName(ElementUtil.getDeclaringClass(method)) + ':'
+        + typeUtil.getReferenceName(method) + ':' + typeUtil.getReferenceSignature(method);
+  }
+
+  private Accessor getAccessor(ExecutableElement method) {
+    return index.accessors.get(accessorKey(elementUtil, typeUtil, method));
+  }
+
+  @Override
+  public void endVisit(TypeDeclaration node) {
+    List<NativeDeclaration> functions = new ArrayList<>();
+    for (MethodDeclaration method : TreeUtil.getMethodDeclarations(node)) {
+      ExecutableElement element = method.getExecutableElement();
+      Accessor accessor = getAccessor(element);
+      if (accessor != null && ElementUtil.getDeclaringClass(element) == node.getTypeElement()) {
+        declareInstanceVariableInHeader(node, accessor.field);
+        functions.add(NativeDeclaration.newOuterDeclaration(
+            generateFunction(node.getTypeElement(), element, accessor), null));
+      }
+    }
+    for (NativeDeclaration function : functions) {
+      node.addBodyDeclaration(function);
+    }
+  }
+
+  /**
+   * Declares a private field's instance variable in the header, where the
+   * inline functions can access it. The field stays private, so it gets no
+   * public instance variable or field setter.
+   */
+  private static void declareInstanceVariableInHeader(
+      AbstractTypeDeclaration node, VariableElement field) {
+    if (!ElementUtil.isPrivate(field)) {
+      return;
+    }
+    for (VariableDeclarationFragment fragment : TreeUtil.getAllFields(node)) {
+      if (fragment.getVariableElement() == field) {
+        ((FieldDeclaration) fragment.getParent()).setHasHeaderInstanceVariable(true);
+      }
+    }
+  }
+
+  private String generateFunction(
+      TypeElement type, ExecutableElement method, Accessor accessor) {
+    String typeName = nameTable.getFullName(type);
+    String fieldName = nameTable.getVariableShortName(accessor.field);
+    if (!accessor.isSetter) {
+      String returnType = nameTable.getObjCType(method.getReturnType());
+      returnType += returnType.endsWith("*") ? "" : " ";
+      return UnicodeUtils.format(
+          "__attribute__((unused)) static inline %s%s(%s *self) {\n  return self->%s;\n}\n",
+          returnType, accessor.functionName, typeName, fieldName);
+    }
+    String paramType = nameTable.getObjCType(method.getParameters().get(0).asType());
+    paramType += paramType.endsWith("*") ? "" : " ";
+    // Object fields are assigned like the field setters do, retaining the
+    // value unless ARC does, since private fields have no setter in the header.
+    String assignment = accessor.field.asType().getKind().isPrimitive()
+        ? UnicodeUtils.format("  self->%s = value;\n", fieldName)
+        : UnicodeUtils.format("#if __has_feature(objc_arc)\n  self->%s = value;\n#else\n"
+            + "  JreStrongAssign(&self->%s, value);\n#endif\n", fieldName, fieldName);
+    return UnicodeUtils.format(
+        "__attribute__((unused)) static inline void %s(%s *self, %svalue) {\n%s}\n",
+        accessor.functionName, typeName, paramType, assignment);
+  }
+
+  @Override
+  public void endVisit(MethodInvocation node) {
+    ExecutableElement method = node.getExecutableElement();
+    if (!ElementUtil.isInstanceMethod(method)) {
+      return;
+    }
+    Accessor accessor = getAccessor(method);
+    if (accessor == null) {
+      return;
+    }
+    TypeElement declaringClass = ElementUtil.getDeclaringClass(method);
+    FunctionElement element =
+        new FunctionElement(accessor.functionName, method.getReturnType(), declaringClass)
+        .addParameters(declaringClass.asType())
+        .addParameters(ElementUtil.asTypes(method.getParameters()));
+    FunctionInvocation invocation = new FunctionInvocation(element, node.getTypeMirror());
+    List<Expression> args = invocation.getArguments();
+    Expression receiver = node.getExpression();
+    args.add(receiver != null ? TreeUtil.remove(receiver)
+        : new ThisExpression(TreeUtil.getEnclosingTypeElement(node).asType()));
+    TreeUtil.moveList(node.getArguments(), args);
+    node.replaceWith(invocation);
+  }
+}
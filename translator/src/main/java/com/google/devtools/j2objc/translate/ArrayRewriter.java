@@ -14,38 +14,50 @@
 
 package com.google.devtools.j2objc.translate;
 
+import com.google.common.base.Joiner;
+import com.google.devtools.j2objc.ast.AbstractTypeDeclaration;
 import com.google.devtools.j2objc.ast.ArrayAccess;
 import com.google.devtools.j2objc.ast.ArrayCreation;
 import com.google.devtools.j2objc.ast.ArrayInitializer;
 import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.CastExpression;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.ExpressionStatement;
 import com.google.devtools.j2objc.ast.FieldAccess;
 import com.google.devtools.j2objc.ast.FunctionInvocation;
 import com.google.devtools.j2objc.ast.InstanceofExpression;
 import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
+import com.google.devtools.j2objc.ast.NativeExpression;
 import com.google.devtools.j2objc.ast.NumberLiteral;
+import com.google.devtools.j2objc.ast.ParenthesizedExpression;
 import com.google.devtools.j2objc.ast.PrefixExpression;
 import com.google.devtools.j2objc.ast.QualifiedName;
 import com.google.devtools.j2objc.ast.SimpleName;
+import com.google.devtools.j2objc.ast.Statement;
 import com.google.devtools.j2objc.ast.TreeUtil;
 import com.google.devtools.j2objc.ast.TypeLiteral;
 import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.gen.LiteralGenerator;
 import com.google.devtools.j2objc.types.ExecutablePair;
 import com.google.devtools.j2objc.types.FunctionElement;
 import com.google.devtools.j2objc.types.GeneratedExecutableElement;
 import com.google.devtools.j2objc.types.GeneratedVariableElement;
 import com.google.devtools.j2objc.types.PointerType;
 import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.TranslationUtil;
 import com.google.devtools.j2objc.util.TypeUtil;
 import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.util.ArrayList;
 import java.util.List;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
 /**
@@ -69,6 +81,11 @@ public class ArrayRewriter extends UnitTreeVisitor {
     boolean retainedResult = node.hasRetainedResult() || options.useARC();
     ArrayInitializer initializer = node.getInitializer();
     if (initializer != null) {
+      String constantValues = extractConstantValues(node);
+      if (constantValues != null) {
+        return newConstantArrayInvocation(
+            arrayType, constantValues, initializer.getExpressions().size(), retainedResult);
+      }
       return newInitializedArrayInvocation(arrayType, initializer.getExpressions(), retainedResult);
     } else {
       List<Expression> dimensions = node.getDimensions();
@@ -83,6 +100,38 @@ public class ArrayRewriter extends UnitTreeVisitor {
   private MethodInvocation newInitializedArrayInvocation(
       ArrayType arrayType, List<Expression> elements, boolean retainedResult) {
     TypeMirror componentType = arrayType.getComponentType();
+    MethodInvocation invocation = newArrayWithValuesInvocation(arrayType, retainedResult);
+
+    // Create the array initializer and add it as the first parameter.
+    // The array creation is replaced, so its elements are moved, not copied.
+    ArrayInitializer arrayInit = new ArrayInitializer(arrayType);
+    TreeUtil.moveList(elements, arrayInit.getExpressions());
+    invocation.addArgument(arrayInit);
+
+    // Add the array size parameter.
+    invocation.addArgument(
+        NumberLiteral.newIntLiteral(arrayInit.getExpressions().size(), typeUtil));
+
+    // Add the type argument for object arrays.
+    if (!componentType.getKind().isPrimitive()) {
+      invocation.addArgument(new TypeLiteral(componentType, typeUtil));
+    }
+
+    return invocation;
+  }
+
+  private MethodInvocation newConstantArrayInvocation(
+      ArrayType arrayType, String valuesName, int count, boolean retainedResult) {
+    MethodInvocation invocation = newArrayWithValuesInvocation(arrayType, retainedResult);
+    invocation.addArgument(
+        new NativeExpression(valuesName, new PointerType(arrayType.getComponentType())));
+    invocation.addArgument(NumberLiteral.newIntLiteral(count, typeUtil));
+    return invocation;
+  }
+
+  private MethodInvocation newArrayWithValuesInvocation(
+      ArrayType arrayType, boolean retainedResult) {
+    TypeMirror componentType = arrayType.getComponentType();
     TypeElement iosArrayElement = typeUtil.getIosArray(componentType);
 
     GeneratedExecutableElement methodElement = GeneratedExecutableElement.newMethodWithSelector(
@@ -97,26 +146,101 @@ public class ArrayRewriter extends UnitTreeVisitor {
       methodElement.addParameter(GeneratedVariableElement.newParameter(
           "type", TypeUtil.IOS_CLASS.asType(), methodElement));
     }
-    MethodInvocation invocation = new MethodInvocation(
+    return new MethodInvocation(
         new ExecutablePair(methodElement), arrayType, new SimpleName(iosArrayElement));
+  }
 
-    // Create the array initializer and add it as the first parameter.
-    ArrayInitializer arrayInit = new ArrayInitializer(arrayType);
+  /**
+   * Moves the values of a static final primitive array that is initialized
+   * with constants to a static const C array, so the class initializer copies
+   * them from read-only data rather than building them on the stack. Returns
+   * the name of the C array, or null if the array isn't a constant table.
+   */
+  private String extractConstantValues(ArrayCreation node) {
+    TypeMirror componentType = node.getTypeMirror().getComponentType();
+    List<Expression> elements = node.getInitializer().getExpressions();
+    if (!componentType.getKind().isPrimitive() || elements.isEmpty()) {
+      return null;
+    }
+    VariableElement var = getInitializedStaticFinalField(node);
+    if (var == null) {
+      return null;
+    }
+    List<String> values = new ArrayList<>();
     for (Expression element : elements) {
-      arrayInit.addExpression(element.copy());
+      Object value = getConstantValue(element, componentType.getKind());
+      if (value == null) {
+        return null;
+      }
+      values.add(LiteralGenerator.generate(value));
     }
-    invocation.addArgument(arrayInit);
-
-    // Add the array size parameter.
-    invocation.addArgument(
-        NumberLiteral.newIntLiteral(arrayInit.getExpressions().size(), typeUtil));
+    String valuesName = nameTable.getVariableQualifiedName(var) + "$values";
+    unit.addNativeBlock(NativeDeclaration.newOuterDeclaration(null, UnicodeUtils.format(
+        "static const %s %s[] = { %s };", NameTable.getPrimitiveObjCType(componentType),
+        valuesName, Joiner.on(", ").join(values))));
+    return valuesName;
+  }
 
-    // Add the type argument for object arrays.
-    if (!componentType.getKind().isPrimitive()) {
-      invocation.addArgument(new TypeLiteral(componentType, typeUtil));
+  /**
+   * Returns the static final field that an array creation is assigned to in
+   * its class initializer, or null if it is created anywhere else.
+   */
+  private static VariableElement getInitializedStaticFinalField(ArrayCreation node) {
+    Statement stmt = TreeUtil.getOwningStatement(node);
+    if (!(stmt instanceof ExpressionStatement)
+        || !(stmt.getParent() instanceof AbstractTypeDeclaration)) {
+      return null;
+    }
+    Expression expr = ((ExpressionStatement) stmt).getExpression();
+    if (node.getParent() != expr) {
+      return null;
     }
+    VariableElement var = null;
+    if (expr instanceof Assignment) {
+      var = TreeUtil.getVariableElement(((Assignment) expr).getLeftHandSide());
+    } else if (expr instanceof FunctionInvocation) {
+      // Field assignments are rewritten to functions taking the field's address.
+      Expression target = ((FunctionInvocation) expr).getArgument(0);
+      if (target instanceof PrefixExpression
+          && ((PrefixExpression) target).getOperator() == PrefixExpression.Operator.ADDRESS_OF) {
+        var = TreeUtil.getVariableElement(((PrefixExpression) target).getOperand());
+      }
+    }
+    return var != null && ElementUtil.isStatic(var) && ElementUtil.isFinal(var)
+        && ElementUtil.isField(var) ? var : null;
+  }
 
-    return invocation;
+  /**
+   * Returns the constant value of an array element, converted to the array's
+   * component type, or null if the element isn't a constant.
+   */
+  private static Object getConstantValue(Expression expr, TypeKind kind) {
+    Object value = expr.getConstantValue();
+    while (value == null
+        && (expr instanceof CastExpression || expr instanceof ParenthesizedExpression)) {
+      expr = expr instanceof CastExpression
+          ? ((CastExpression) expr).getExpression()
+          : ((ParenthesizedExpression) expr).getExpression();
+      value = expr.getConstantValue();
+    }
+    if (value instanceof Boolean) {
+      return kind == TypeKind.BOOLEAN ? value : null;
+    }
+    Number number = value instanceof Character
+        ? Integer.valueOf((Character) value) : value instanceof Number ? (Number) value : null;
+    if (number == null) {
+      return null;
+    }
+    switch (kind) {
+      case BYTE: return Integer.valueOf(number.byteValue());
+      case CHAR: return Character.valueOf((char) number.intValue());
+      case SHORT: return Integer.valueOf(number.shortValue());
+      case INT: return Integer.valueOf(number.intValue());
+      case LONG: return Long.valueOf(number.longValue());
+      case FLOAT: return Float.valueOf(number.floatValue());
+      case DOUBLE: return Double.valueOf(number.doubleValue());
+      default: return null;
+    }
   }
 
   private String paramNameForPrimitive(TypeMirror t) {
@@ -169,7 +293,7 @@ public class ArrayRewriter extends UnitTreeVisitor {
         new ExecutablePair(methodElement), arrayType, new SimpleName(iosArrayElement));
 
     // Add the array length argument.
-    invocation.addArgument(dimensionExpr.copy());
+    invocation.addArgument(TreeUtil.remove(dimensionExpr));
 
     // Add the type argument for object arrays.
     if (!isPrimitive) {
@@ -199,9 +323,7 @@ public class ArrayRewriter extends UnitTreeVisitor {
 
     // Create the dimensions array.
     ArrayInitializer dimensionsArg = new ArrayInitializer(typeUtil.getArrayType(typeUtil.getInt()));
-    for (Expression e : dimensions) {
-      dimensionsArg.addExpression(e.copy());
-    }
+    TreeUtil.moveList(dimensions, dimensionsArg.getExpressions());
     invocation.addArgument(dimensionsArg);
 
     if (!componentType.getKind().isPrimitive()) {
@@ -268,8 +390,8 @@ public class ArrayRewriter extends UnitTreeVisitor {
     FunctionElement element = new FunctionElement(funcName, declaredReturnType, iosArrayElement)
         .addParameters(iosArrayElement.asType(), typeUtil.getInt());
     FunctionInvocation invocation = new FunctionInvocation(element, returnType);
-    invocation.addArgument(arrayAccessNode.getArray().copy());
-    invocation.addArgument(arrayAccessNode.getIndex().copy());
+    invocation.addArgument(TreeUtil.remove(arrayAccessNode.getArray()));
+    invocation.addArgument(TreeUtil.remove(arrayAccessNode.getIndex()));
     if (assignable) {
       return new PrefixExpression(componentType, PrefixExpression.Operator.DEREFERENCE, invocation);
     }
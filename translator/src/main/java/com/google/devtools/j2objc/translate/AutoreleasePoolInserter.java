@@ -0,0 +1,348 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.ast.ArrayCreation;
+import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.Block;
+import com.google.devtools.j2objc.ast.BreakStatement;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.ContinueStatement;
+import com.google.devtools.j2objc.ast.DoStatement;
+import com.google.devtools.j2objc.ast.EnhancedForStatement;
+import com.google.devtools.j2objc.ast.ForStatement;
+import com.google.devtools.j2objc.ast.InfixExpression;
+import com.google.devtools.j2objc.ast.LabeledStatement;
+import com.google.devtools.j2objc.ast.LambdaExpression;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
+import com.google.devtools.j2objc.ast.NativeStatement;
+import com.google.devtools.j2objc.ast.ReturnStatement;
+import com.google.devtools.j2objc.ast.SingleVariableDeclaration;
+import com.google.devtools.j2objc.ast.Statement;
+import com.google.devtools.j2objc.ast.SuperMethodInvocation;
+import com.google.devtools.j2objc.ast.TreeNode;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.TreeVisitor;
+import com.google.devtools.j2objc.ast.TypeDeclaration;
+import com.google.devtools.j2objc.ast.TypeDeclarationStatement;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.ast.WhileStatement;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import com.google.j2objc.annotations.AutoreleasePool;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * Adds autorelease pools to loops whose bodies create many autoreleased
+ * objects per iteration, as if they were annotated with AutoreleasePool.
+ *
+ * <p>The number of autoreleased objects is estimated from the object and
+ * array creations, string concatenations and calls to known factory methods
+ * in the loop body. Other calls aren't counted, since most of them return
+ * objects that already exist, such as fields or collection elements.
+ * Allocations in a nested loop that gets its own pool aren't counted, since
+ * they're drained there.
+ *
+ * <p>Without ARC, local variables don't retain their values, so a loop only
+ * gets a pool if no object can outlive the iteration that created it through
+ * a local variable: the loop must not assign objects to local variables
+ * declared outside of its body, return, or jump to an outer label.
+ *
+ * @see com.google.devtools.j2objc.Options#autoreleasePoolThreshold()
+ * @see com.google.devtools.j2objc.Options#autoreleasePoolInterval()
+ */
+public class AutoreleasePoolInserter extends UnitTreeVisitor {
+
+  private final int threshold;
+  private final int interval;
+  private int poolCount = 0;
+
+  public AutoreleasePoolInserter(CompilationUnit unit) {
+    super(unit);
+    threshold = options.autoreleasePoolThreshold();
+    interval = options.autoreleasePoolInterval();
+  }
+
+  @Override
+  public void endVisit(ForStatement node) {
+    addPool(node, node.getBody());
+  }
+
+  @Override
+  public void endVisit(WhileStatement node) {
+    addPool(node, node.getBody());
+  }
+
+  @Override
+  public void endVisit(DoStatement node) {
+    addPool(node, node.getBody());
+  }
+
+  @Override
+  public void endVisit(EnhancedForStatement node) {
+    // Annotated loops are handled by EnhancedForRewriter.
+    if (!ElementUtil.hasAnnotation(
+        node.getParameter().getVariableElement(), AutoreleasePool.class)) {
+      addPool(node, node.getBody());
+    }
+  }
+
+  private void addPool(Statement loop, Statement body) {
+    if (hasPool(body)) {
+      return;
+    }
+    LoopScanner scanner = new LoopScanner(loop, body);
+    if (!scanner.canAddPool || scanner.allocations < threshold) {
+      return;
+    }
+    Block block = makeBlock(body);
+    if (interval <= 1) {
+      block.setHasAutoreleasePool(true);
+      return;
+    }
+
+    // Drain the pool after every interval iterations that complete normally.
+    // The pool is pushed lazily, so iterations that continue early extend
+    // the current interval rather than leaving a pool pushed.
+    if (poolCount == 0) {
+      // The functions clang emits for @autoreleasepool, which aren't
+      // declared in any public header.
+      unit.addNativeBlock(NativeDeclaration.newOuterDeclaration(null,
+          "extern void *objc_autoreleasePoolPush(void);\n"
+          + "extern void objc_autoreleasePoolPop(void *context);\n"));
+    }
+    String pool = "pool$" + poolCount;
+    String count = "poolCount$" + poolCount++;
+    List<Statement> stmts = block.getStatements();
+    stmts.add(0, new NativeStatement(UnicodeUtils.format(
+        "if (!%s) %s = objc_autoreleasePoolPush();", pool, pool)));
+    stmts.add(new NativeStatement(UnicodeUtils.format(
+        "if (++%s == %d) {\n  objc_autoreleasePoolPop(%s);\n  %s = NULL;\n  %s = 0;\n}",
+        count, interval, pool, pool, count)));
+
+    Statement anchor = loop.getParent() instanceof LabeledStatement
+        ? (Statement) loop.getParent() : loop;
+    List<Statement> enclosing = TreeUtil.asStatementList(anchor);
+    enclosing.add(0, new NativeStatement(UnicodeUtils.format(
+        "void *%s = NULL;\njint %s = 0;", pool, count)));
+    enclosing.add(new NativeStatement(UnicodeUtils.format(
+        "if (%s) objc_autoreleasePoolPop(%s);", pool, pool)));
+  }
+
+  private static boolean hasPool(Statement body) {
+    return body instanceof Block && ((Block) body).hasAutoreleasePool();
+  }
+
+  private static Block makeBlock(Statement stmt) {
+    if (stmt instanceof Block) {
+      return (Block) stmt;
+    }
+    Block block = new Block();
+    stmt.replaceWith(block);
+    block.addStatement(stmt);
+    return block;
+  }
+
+  /**
+   * Counts the autoreleased allocations in a loop's body, and checks that
+   * none of them can escape an iteration through a local variable.
+   */
+  private class LoopScanner extends TreeVisitor {
+
+    private final Statement loop;
+    private final Statement body;
+    private final Set<VariableElement> bodyVariables = new HashSet<>();
+    private final Set<VariableElement> assignedVariables = new HashSet<>();
+    private int allocations = 0;
+    private boolean canAddPool = true;
+    private boolean inBody = false;
+
+    private LoopScanner(Statement loop, Statement body) {
+      this.loop = loop;
+      this.body = body;
+      if (loop instanceof EnhancedForStatement) {
+        // The loop variable is reassigned by each iteration, before its body.
+        bodyVariables.add(((EnhancedForStatement) loop).getParameter().getVariableElement());
+      }
+      // Assignments in the loop's condition and updaters also count.
+      loop.accept(this);
+      for (VariableElement var : assignedVariables) {
+        if (!bodyVariables.contains(var)) {
+          canAddPool = false;
+        }
+      }
+    }
+
+    @Override
+    public boolean preVisit(TreeNode node) {
+      if (node == body) {
+        inBody = true;
+      }
+      return canAddPool;
+    }
+
+    @Override
+    public void postVisit(TreeNode node) {
+      if (node == body) {
+        inBody = false;
+      }
+    }
+
+    private void addAllocation() {
+      if (inBody) {
+        allocations++;
+      }
+    }
+
+    @Override
+    public boolean visit(ForStatement node) {
+      return node == loop || !hasPool(node.getBody());
+    }
+
+    @Override
+    public boolean visit(WhileStatement node) {
+      return node == loop || !hasPool(node.getBody());
+    }
+
+    @Override
+    public boolean visit(DoStatement node) {
+      return node == loop || !hasPool(node.getBody());
+    }
+
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+      return node == loop || !hasPool(node.getBody());
+    }
+
+    @Override
+    public void endVisit(VariableDeclarationFragment node) {
+      if (inBody) {
+        bodyVariables.add(node.getVariableElement());
+      }
+    }
+
+    @Override
+    public void endVisit(SingleVariableDeclaration node) {
+      if (inBody) {
+        bodyVariables.add(node.getVariableElement());
+      }
+    }
+
+    @Override
+    public void endVisit(Assignment node) {
+      VariableElement var = TreeUtil.getVariableElement(node.getLeftHandSide());
+      if (var != null && !ElementUtil.isField(var) && TypeUtil.isReferenceType(var.asType())) {
+        assignedVariables.add(var);
+      }
+      if (node.getOperator() == Assignment.Operator.PLUS_ASSIGN
+          && typeUtil.isString(node.getTypeMirror())) {
+        addAllocation();
+      }
+    }
+
+    @Override
+    public void endVisit(ReturnStatement node) {
+      canAddPool = false;
+    }
+
+    @Override
+    public void endVisit(BreakStatement node) {
+      if (node.getLabel() != null) {
+        canAddPool = false;
+      }
+    }
+
+    @Override
+    public void endVisit(ContinueStatement node) {
+      if (node.getLabel() != null) {
+        canAddPool = false;
+      }
+    }
+
+    @Override
+    public void endVisit(ClassInstanceCreation node) {
+      addAllocation();
+    }
+
+    @Override
+    public void endVisit(ArrayCreation node) {
+      addAllocation();
+    }
+
+    @Override
+    public void endVisit(InfixExpression node) {
+      if (node.getOperator() == InfixExpression.Operator.PLUS
+          && typeUtil.isString(node.getTypeMirror())) {
+        addAllocation();
+      }
+    }
+
+    @Override
+    public void endVisit(MethodInvocation node) {
+      if (isFactoryMethod(node.getExecutableElement())) {
+        addAllocation();
+      }
+    }
+
+    @Override
+    public void endVisit(SuperMethodInvocation node) {
+      if (isFactoryMethod(node.getExecutableElement())) {
+        addAllocation();
+      }
+    }
+
+    /**
+     * Returns true for methods that are known to return a new object:
+     * toString(), the valueOf() boxing and string factories, and the String
+     * methods that return a derived string.
+     */
+    private boolean isFactoryMethod(ExecutableElement method) {
+      if (!TypeUtil.isReferenceType(method.getReturnType())) {
+        return false;
+      }
+      String name = ElementUtil.getName(method);
+      if (name.equals("toString") || name.equals("valueOf")) {
+        return true;
+      }
+      return typeUtil.isString(ElementUtil.getDeclaringClass(method))
+          && typeUtil.isString(method.getReturnType());
+    }
+
+    // Nested classes and lambdas are allocated once; their bodies run elsewhere.
+    @Override
+    public boolean visit(LambdaExpression node) {
+      addAllocation();
+      return false;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+      return false;
+    }
+
+    @Override
+    public boolean visit(TypeDeclarationStatement node) {
+      return false;
+    }
+  }
+}
@@ -80,10 +80,10 @@ public class ComplexExpressionExtractor extends TreeVisitor {
     if (depth >= maxDepth) {
       VariableElement newVar = GeneratedVariableElement.newLocalVar(
           "complex$" + count++, node.getTypeMirror(), currentMethod);
-      Statement newStmt = new VariableDeclarationStatement(newVar, node.copy());
       assert currentStatement != null;
-      TreeUtil.insertBefore(currentStatement, newStmt);
+      // Move the expression instead of copying it, it is no longer needed in place.
       node.replaceWith(new SimpleName(newVar));
+      TreeUtil.insertBefore(currentStatement, new VariableDeclarationStatement(newVar, node));
     } else {
       depths.put(node, depth + 1);
     }
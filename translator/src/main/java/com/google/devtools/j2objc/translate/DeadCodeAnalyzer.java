@@ -0,0 +1,546 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.devtools.j2objc.ast.AnnotationTypeDeclaration;
+import com.google.devtools.j2objc.ast.ArrayCreation;
+import com.google.devtools.j2objc.ast.CastExpression;
+import com.google.devtools.j2objc.ast.CatchClause;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.ConstructorInvocation;
+import com.google.devtools.j2objc.ast.CreationReference;
+import com.google.devtools.j2objc.ast.EnumConstantDeclaration;
+import com.google.devtools.j2objc.ast.EnumDeclaration;
+import com.google.devtools.j2objc.ast.ExpressionMethodReference;
+import com.google.devtools.j2objc.ast.InstanceofExpression;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.SimpleName;
+import com.google.devtools.j2objc.ast.SuperConstructorInvocation;
+import com.google.devtools.j2objc.ast.SuperMethodInvocation;
+import com.google.devtools.j2objc.ast.SuperMethodReference;
+import com.google.devtools.j2objc.ast.TypeDeclaration;
+import com.google.devtools.j2objc.ast.TypeLiteral;
+import com.google.devtools.j2objc.ast.TypeMethodReference;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.util.CodeReferenceMap;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.UnionType;
+
+/**
+ * Computes the classes and methods that aren't reachable from a set of entry
+ * points, so that translation can remove them without a separate ProGuard or
+ * tree shaker run. Each unit is mapped before it is translated; once the whole
+ * program is mapped, the result is applied by DeadCodeEliminator like a
+ * ProGuard usage report.
+ *
+ * <p>The roots use the same format as a usage report: the public methods of
+ * each listed class are roots, as is each listed method. Methods are only
+ * reachable through an overridden method once their class is reachable, and
+ * methods that override library methods are kept with their class, since the
+ * library may call them. Native methods are never removed, because their
+ * native code can't be mapped.
+ */
+public class DeadCodeAnalyzer {
+
+  /**
+   * A unit of code, with the methods it invokes and the types it requires.
+   */
+  private abstract static class Node {
+    final Set<String> invokedMethods = new HashSet<>();
+    final Set<String> referencedTypes = new HashSet<>();
+    boolean reachable = false;
+  }
+
+  /**
+   * A declared type. Its node holds the field initializers and initializer
+   * blocks, which run whenever the type is used.
+   */
+  private static class TypeNode extends Node {
+    final String className;
+    final List<String> supertypes = new ArrayList<>();
+    String enclosingType;
+
+    private TypeNode(String className) {
+      this.className = className;
+    }
+  }
+
+  /**
+   * A declared method or constructor.
+   */
+  private static class MethodNode extends Node {
+    final String className;
+    final String name;
+    final String signature;
+    final boolean isPublic;
+    final boolean isNative;
+    final String key;
+    final List<String> overriddenMethods = new ArrayList<>();
+
+    private MethodNode(
+        String className, String name, String signature, boolean isPublic, boolean isNative) {
+      this.className = className;
+      this.name = name;
+      this.signature = signature;
+      this.isPublic = isPublic;
+      this.isNative = isNative;
+      key = methodKey(className, name, signature);
+    }
+  }
+
+  private final CodeReferenceMap roots;
+  private final Map<String, TypeNode> types = new HashMap<>();
+  private final Map<String, MethodNode> methods = new HashMap<>();
+  // Maps superclass methods to the interface methods they implement in a
+  // subclass, which may be mapped before the superclass is.
+  private final ListMultimap<String, String> inheritedImplementations =
+      ArrayListMultimap.create();
+
+  public DeadCodeAnalyzer(CodeReferenceMap roots) {
+    this.roots = roots;
+  }
+
+  private static String methodKey(String className, String name, String signature) {
+    return className + ':' + name + ':' + signature;
+  }
+
+  /**
+   * Maps the references of a unit. Units from separate front-end runs can be
+   * mapped into one analyzer, since nodes are keyed by name.
+   */
+  public void mapUnit(CompilationUnit unit) {
+    new Mapper(unit).run();
+  }
+
+  /**
+   * Returns the dead classes and methods of all mapped units.
+   */
+  public CodeReferenceMap buildDeadCodeMap() {
+    ListMultimap<String, MethodNode> overridingMethods = ArrayListMultimap.create();
+    ListMultimap<String, MethodNode> libraryOverrides = ArrayListMultimap.create();
+    for (MethodNode method : methods.values()) {
+      List<String> overriddenMethods = new ArrayList<>(method.overriddenMethods);
+      overriddenMethods.addAll(inheritedImplementations.get(method.key));
+      for (String overridden : overriddenMethods) {
+        if (methods.containsKey(overridden)) {
+          overridingMethods.put(overridden, method);
+        } else {
+          libraryOverrides.put(method.className, method);
+        }
+      }
+    }
+
+    Reachability reachability = new Reachability(overridingMethods, libraryOverrides);
+    for (MethodNode method : methods.values()) {
+      if ((method.isPublic && roots.containsClass(method.className))
+          || isRootMethod(method)) {
+        reachability.add(method);
+      }
+    }
+    for (String clazz : roots.getReferencedClasses()) {
+      reachability.addType(clazz);
+    }
+    reachability.run();
+
+    CodeReferenceMap.Builder builder = CodeReferenceMap.builder();
+    for (TypeNode type : types.values()) {
+      if (!type.reachable) {
+        builder.addClass(type.className);
+      }
+    }
+    for (MethodNode method : methods.values()) {
+      if (!method.reachable && !method.isNative) {
+        builder.addMethod(method.className, method.name, method.signature);
+      }
+    }
+    return builder.build();
+  }
+
+  private boolean isRootMethod(MethodNode method) {
+    ImmutableSet<String> signatures =
+        roots.getReferencedMethods().get(method.className, method.name);
+    return signatures != null && signatures.contains(method.signature);
+  }
+
+  /**
+   * Marks the nodes reachable from the roots, using a work list so deep call
+   * chains don't exhaust the stack.
+   */
+  private class Reachability {
+    private final ListMultimap<String, MethodNode> overridingMethods;
+    private final ListMultimap<String, MethodNode> libraryOverrides;
+    private final ListMultimap<String, MethodNode> pendingOverrides = ArrayListMultimap.create();
+    private final ArrayDeque<Node> workList = new ArrayDeque<>();
+
+    private Reachability(ListMultimap<String, MethodNode> overridingMethods,
+        ListMultimap<String, MethodNode> libraryOverrides) {
+      this.overridingMethods = overridingMethods;
+      this.libraryOverrides = libraryOverrides;
+    }
+
+    private void add(Node node) {
+      if (!node.reachable) {
+        node.reachable = true;
+        workList.add(node);
+      }
+    }
+
+    private void addType(String className) {
+      TypeNode type = types.get(className);
+      if (type != null) {
+        add(type);
+      }
+    }
+
+    private void addOverride(MethodNode method) {
+      TypeNode type = types.get(method.className);
+      if (type == null || type.reachable) {
+        add(method);
+      } else {
+        pendingOverrides.put(method.className, method);
+      }
+    }
+
+    private void run() {
+      while (!workList.isEmpty()) {
+        Node node = workList.remove();
+        if (node instanceof MethodNode) {
+          MethodNode method = (MethodNode) node;
+          addType(method.className);
+          for (MethodNode overridingMethod :
+               overridingMethods.get(method.key)) {
+            addOverride(overridingMethod);
+          }
+        } else {
+          TypeNode type = (TypeNode) node;
+          for (String supertype : type.supertypes) {
+            addType(supertype);
+          }
+          if (type.enclosingType != null) {
+            addType(type.enclosingType);
+          }
+          for (MethodNode method : pendingOverrides.removeAll(type.className)) {
+            add(method);
+          }
+          for (MethodNode method : libraryOverrides.get(type.className)) {
+            add(method);
+          }
+        }
+        for (String invoked : node.invokedMethods) {
+          MethodNode method = methods.get(invoked);
+          if (method != null) {
+            add(method);
+          }
+        }
+        for (String referenced : node.referencedTypes) {
+          addType(referenced);
+        }
+      }
+    }
+  }
+
+  /**
+   * Records the declarations of a unit, and the references made by each of
+   * their bodies.
+   */
+  private class Mapper extends UnitTreeVisitor {
+
+    private final ArrayDeque<Node> owners = new ArrayDeque<>();
+
+    private Mapper(CompilationUnit unit) {
+      super(unit);
+    }
+
+    private boolean visitType(TypeElement element) {
+      TypeNode type = new TypeNode(elementUtil.getBinaryName(element));
+      TypeMirror superclass = element.getSuperclass();
+      if (TypeUtil.isDeclaredType(superclass)) {
+        type.supertypes.add(elementUtil.getBinaryName(TypeUtil.asTypeElement(superclass)));
+      }
+      for (TypeElement intrface : ElementUtil.getInterfaces(element)) {
+        type.supertypes.add(elementUtil.getBinaryName(intrface));
+      }
+      if (!ElementUtil.isStatic(element)) {
+        TypeElement enclosingType = ElementUtil.getDeclaringClass(element);
+        if (enclosingType != null) {
+          type.enclosingType = elementUtil.getBinaryName(enclosingType);
+        }
+      }
+      types.put(type.className, type);
+      owners.push(type);
+      if (!ElementUtil.isInterface(element)) {
+        addInheritedImplementations(element);
+      }
+      return true;
+    }
+
+    /**
+     * Links the superclass methods that implement the type's interface
+     * methods, as A.run() does in "class B extends A implements Runnable".
+     */
+    private void addInheritedImplementations(TypeElement element) {
+      for (DeclaredType supertype : typeUtil.getObjcOrderedInheritedTypes(element.asType())) {
+        TypeElement intrface = (TypeElement) supertype.asElement();
+        if (!ElementUtil.isInterface(intrface)) {
+          continue;
+        }
+        for (ExecutableElement interfaceMethod : ElementUtil.getMethods(intrface)) {
+          if (ElementUtil.isStatic(interfaceMethod)
+              || findImplementation(element, interfaceMethod, element) != null) {
+            continue;
+          }
+          for (TypeElement superclass = ElementUtil.getSuperclass(element); superclass != null;
+               superclass = ElementUtil.getSuperclass(superclass)) {
+            ExecutableElement implementation =
+                findImplementation(superclass, interfaceMethod, element);
+            if (implementation != null) {
+              inheritedImplementations.put(
+                  methodKey(elementUtil.getBinaryName(superclass),
+                      typeUtil.getReferenceName(implementation),
+                      typeUtil.getReferenceSignature(implementation)),
+                  methodKey(elementUtil.getBinaryName(intrface),
+                      typeUtil.getReferenceName(interfaceMethod),
+                      typeUtil.getReferenceSignature(interfaceMethod)));
+              break;
+            }
+          }
+        }
+      }
+    }
+
+    private ExecutableElement findImplementation(
+        TypeElement declaringClass, ExecutableElement interfaceMethod, TypeElement type) {
+      for (ExecutableElement method : ElementUtil.getMethods(declaringClass)) {
+        if (!ElementUtil.isStatic(method)
+            && ElementUtil.getName(method).equals(ElementUtil.getName(interfaceMethod))
+            && elementUtil.overrides(method, interfaceMethod, type)) {
+          return method;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+      return visitType(node.getTypeElement());
+    }
+
+    @Override
+    public void endVisit(TypeDeclaration node) {
+      owners.pop();
+    }
+
+    @Override
+    public boolean visit(EnumDeclaration node) {
+      return visitType(node.getTypeElement());
+    }
+
+    @Override
+    public void endVisit(EnumDeclaration node) {
+      owners.pop();
+    }
+
+    @Override
+    public boolean visit(AnnotationTypeDeclaration node) {
+      return visitType(node.getTypeElement());
+    }
+
+    @Override
+    public void endVisit(AnnotationTypeDeclaration node) {
+      owners.pop();
+    }
+
+    @Override
+    public boolean visit(MethodDeclaration node) {
+      ExecutableElement element = node.getExecutableElement();
+      TypeElement declaringClass = ElementUtil.getDeclaringClass(element);
+      String className = elementUtil.getBinaryName(declaringClass);
+      MethodNode method = new MethodNode(className, typeUtil.getReferenceName(element),
+          typeUtil.getReferenceSignature(element), ElementUtil.isPublic(element),
+          ElementUtil.isNative(element));
+      if (!ElementUtil.isConstructor(element) && !ElementUtil.isStatic(element)) {
+        addOverriddenMethods(element, declaringClass, method);
+      }
+      methods.put(method.key, method);
+      owners.push(method);
+      return true;
+    }
+
+    @Override
+    public void endVisit(MethodDeclaration node) {
+      owners.pop();
+    }
+
+    private void addOverriddenMethods(
+        ExecutableElement element, TypeElement declaringClass, MethodNode method) {
+      for (DeclaredType supertype :
+           typeUtil.getObjcOrderedInheritedTypes(declaringClass.asType())) {
+        TypeElement superElement = (TypeElement) supertype.asElement();
+        if (superElement.equals(declaringClass)) {
+          continue;
+        }
+        for (ExecutableElement superMethod : ElementUtil.getMethods(superElement)) {
+          if (ElementUtil.getName(superMethod).equals(ElementUtil.getName(element))
+              && elementUtil.overrides(element, superMethod, declaringClass)) {
+            method.overriddenMethods.add(methodKey(elementUtil.getBinaryName(superElement),
+                typeUtil.getReferenceName(superMethod),
+                typeUtil.getReferenceSignature(superMethod)));
+          }
+        }
+      }
+    }
+
+    private void addInvocation(ExecutableElement element) {
+      Node owner = owners.peek();
+      if (owner == null) {
+        return;
+      }
+      String className = elementUtil.getBinaryName(ElementUtil.getDeclaringClass(element));
+      owner.invokedMethods.add(methodKey(
+          className, typeUtil.getReferenceName(element), typeUtil.getReferenceSignature(element)));
+      owner.referencedTypes.add(className);
+    }
+
+    private void addTypeReference(TypeMirror type) {
+      Node owner = owners.peek();
+      if (owner == null || type == null) {
+        return;
+      }
+      while (TypeUtil.isArray(type)) {
+        type = ((ArrayType) type).getComponentType();
+      }
+      if (type.getKind() == TypeKind.UNION) {
+        for (TypeMirror alternative : ((UnionType) type).getAlternatives()) {
+          addTypeReference(alternative);
+        }
+      } else if (TypeUtil.isDeclaredType(type)) {
+        owner.referencedTypes.add(elementUtil.getBinaryName(TypeUtil.asTypeElement(type)));
+      }
+    }
+
+    @Override
+    public void endVisit(MethodInvocation node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(SuperMethodInvocation node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(ClassInstanceCreation node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(ConstructorInvocation node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(SuperConstructorInvocation node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(EnumConstantDeclaration node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(CreationReference node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(ExpressionMethodReference node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(SuperMethodReference node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(TypeMethodReference node) {
+      addInvocation(node.getExecutableElement());
+    }
+
+    @Override
+    public void endVisit(CastExpression node) {
+      addTypeReference(node.getTypeMirror());
+    }
+
+    @Override
+    public void endVisit(InstanceofExpression node) {
+      addTypeReference(node.getRightOperand().getTypeMirror());
+    }
+
+    @Override
+    public void endVisit(TypeLiteral node) {
+      addTypeReference(node.getType().getTypeMirror());
+    }
+
+    @Override
+    public void endVisit(ArrayCreation node) {
+      addTypeReference(node.getTypeMirror());
+    }
+
+    @Override
+    public void endVisit(CatchClause node) {
+      addTypeReference(node.getException().getVariableElement().asType());
+    }
+
+    @Override
+    public void endVisit(SimpleName node) {
+      Element element = node.getElement();
+      if (element == null) {
+        return;
+      } else if (ElementUtil.isTypeElement(element)) {
+        addTypeReference(element.asType());
+      } else if (ElementUtil.isField(element)
+          // Constants are inlined, so reading one doesn't use its class.
+          && ((VariableElement) element).getConstantValue() == null) {
+        TypeElement declaringClass = ElementUtil.getDeclaringClass(element);
+        if (declaringClass != null) {
+          addTypeReference(declaringClass.asType());
+        }
+      }
+    }
+  }
+}
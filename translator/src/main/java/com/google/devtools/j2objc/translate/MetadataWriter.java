@@ -30,6 +30,7 @@ import com.google.devtools.j2objc.ast.Expression;
 import com.google.devtools.j2objc.ast.FieldDeclaration;
 import com.google.devtools.j2objc.ast.FunctionDeclaration;
 import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
 import com.google.devtools.j2objc.ast.NativeExpression;
 import com.google.devtools.j2objc.ast.NativeStatement;
 import com.google.devtools.j2objc.ast.ReturnStatement;
@@ -45,11 +46,14 @@ import com.google.devtools.j2objc.types.NativeType;
 import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.ErrorUtil;
+import com.google.devtools.j2objc.util.StringPool;
 import com.google.devtools.j2objc.util.TypeUtil;
 import com.google.devtools.j2objc.util.UnicodeUtils;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
@@ -69,6 +73,10 @@ public class MetadataWriter extends UnitTreeVisitor {
   private static final NativeType CLASS_INFO_TYPE = new NativeType("const J2ObjcClassInfo *");
   private final ArrayType annotationArray;
   private final ArrayType annotationArray2D;
+  private final StringPool stringPool;
+  // The pooled strings declared in this unit.
+  private final Set<String> pooledStrings = new HashSet<>();
+  private final StringBuilder poolDeclarations = new StringBuilder();
 
   public MetadataWriter(CompilationUnit unit, CodeReferenceMap deadCodeMap) {
     super(unit);
@@ -76,6 +84,7 @@ public class MetadataWriter extends UnitTreeVisitor {
         GeneratedTypeElement.newEmulatedInterface("java.lang.annotation.Annotation").asType();
     annotationArray = typeUtil.getArrayType(annotationType);
     annotationArray2D = typeUtil.getArrayType(annotationArray);
+    stringPool = options.getStringPool();
   }
 
   @Override
@@ -112,6 +121,11 @@ public class MetadataWriter extends UnitTreeVisitor {
     metadataDecl.setBody(body);
 
     new MetadataGenerator(node, body.getStatements()).generateClassMetadata();
+    if (poolDeclarations.length() > 0) {
+      unit.addNativeBlock(
+          NativeDeclaration.newOuterDeclaration(null, poolDeclarations.toString()));
+      poolDeclarations.setLength(0);
+    }
 
     node.addBodyDeclaration(metadataDecl);
   }
@@ -326,7 +340,7 @@ public class MetadataWriter extends UnitTreeVisitor {
     }
 
     private String cStrIdx(String str) {
-      return getPointerIdx(str != null ? "\"" + str + "\"" : null);
+      return getPointerIdx(str != null ? cStr(str) : null);
     }
 
     private String addressOfIdx(String name) {
@@ -513,6 +527,16 @@ public class MetadataWriter extends UnitTreeVisitor {
   }
 
   private String cStr(String s) {
-    return s == null ? "NULL" : "\"" + s + "\"";
+    if (s == null) {
+      return "NULL";
+    }
+    if (!stringPool.isEnabled()) {
+      return "\"" + s + "\"";
+    }
+    String declaration = stringPool.getDeclaration(s);
+    if (declaration != null && pooledStrings.add(s)) {
+      poolDeclarations.append(declaration);
+    }
+    return stringPool.getMetadataString(unit.getSourceFilePath(), s);
   }
 }
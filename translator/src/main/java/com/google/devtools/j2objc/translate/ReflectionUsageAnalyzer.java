@@ -0,0 +1,594 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.ast.AnnotationTypeDeclaration;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.EnumDeclaration;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.SuperConstructorInvocation;
+import com.google.devtools.j2objc.ast.SuperMethodInvocation;
+import com.google.devtools.j2objc.ast.TreeNode;
+import com.google.devtools.j2objc.ast.TypeDeclaration;
+import com.google.devtools.j2objc.ast.TypeLiteral;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.util.CodeReferenceMap;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+
+/**
+ * Finds the translated classes that can be reflected on, so that metadata is
+ * only generated for them. Each unit is mapped before it is translated; once
+ * the whole program is mapped, the classes no reflective use can reach are
+ * returned, and the translator treats them like classes with reflection
+ * stripped.
+ *
+ * <p>A reflective use is a call of a java.lang.Class method that reads
+ * metadata, Class.forName, a proxy, or a Class value passed to a method or
+ * constructor that isn't translated in the same run, such as a JSON
+ * library's or a logger's. Its target classes come from the Class
+ * expression: a class literal or Class&lt;T&gt; is that class, a getClass()
+ * call or Class&lt;? extends T&gt; also includes its subclasses, and any
+ * other Class value may be any class whose Class object is used in the
+ * program. Class.forName with a name that isn't a constant, or a
+ * ServiceLoader or ClassLoader lookup, keeps all metadata.
+ *
+ * <p>A kept class also keeps the metadata of its supertypes and enclosing
+ * classes. Enums and annotation types always keep theirs, as do serializable
+ * classes if the program uses object streams. Classes that code which isn't
+ * translated in the same run reflects on without being passed their Class
+ * object, such as by name, need an explicit ReflectionSupport annotation.
+ */
+public class ReflectionUsageAnalyzer {
+
+  // Class methods that don't read a class's metadata.
+  private static final ImmutableSet<String> METADATA_FREE_CLASS_METHODS = ImmutableSet.of(
+      "cast", "desiredAssertionStatus", "equals", "getClass", "getComponentType", "hashCode",
+      "isArray", "isAssignableFrom", "isInstance", "isPrimitive");
+
+  private static final ImmutableSet<String> OBJECT_STREAMS = ImmutableSet.of(
+      "java.io.ObjectInputStream", "java.io.ObjectOutputStream");
+
+  /**
+   * A translated class.
+   */
+  private static class TypeInfo {
+    final String className;
+    // All of the class's supertypes, by binary name.
+    final Set<String> supertypes = new HashSet<>();
+    String enclosingType;
+    String alwaysKeptReason;
+    boolean serializable;
+    String keptReason;
+
+    private TypeInfo(String className) {
+      this.className = className;
+    }
+  }
+
+  /**
+   * A reflective use, or a use of a Class object, in a method or type.
+   */
+  private static class Use {
+    final String ownerClass;
+    final String ownerName;
+    final String ownerSignature;
+    final String description;
+    // The classes reflected on, or null if any class with a used Class
+    // object may be.
+    final Set<String> targets;
+    final boolean includesSubtypes;
+    // Whether the use is only of a Class object, without reflection.
+    final boolean escapeOnly;
+    // Whether the use may reflect on any class.
+    final boolean unbounded;
+    // For a Class value passed to a method, the class declaring the method.
+    // The use is only reflective if that class isn't translated.
+    final String calleeClass;
+
+    private Use(String[] owner, String description, Set<String> targets,
+        boolean includesSubtypes, boolean escapeOnly, boolean unbounded, String calleeClass) {
+      this.ownerClass = owner[0];
+      this.ownerName = owner[1];
+      this.ownerSignature = owner[2];
+      this.description = description;
+      this.targets = targets;
+      this.includesSubtypes = includesSubtypes;
+      this.escapeOnly = escapeOnly;
+      this.unbounded = unbounded;
+      this.calleeClass = calleeClass;
+    }
+
+    private boolean isDead(CodeReferenceMap deadCodeMap) {
+      if (deadCodeMap == null) {
+        return false;
+      }
+      return ownerName != null
+          ? deadCodeMap.containsMethod(ownerClass, ownerName, ownerSignature)
+          : deadCodeMap.containsClass(ownerClass);
+    }
+  }
+
+  private final Map<String, TypeInfo> types = new TreeMap<>();
+  private final List<Use> uses = new ArrayList<>();
+  private final List<String[]> objectStreamUses = new ArrayList<>();
+  private String unboundedReason;
+  private Set<String> unreflectedClasses;
+
+  /**
+   * Maps the reflective uses and classes of a unit.
+   */
+  public void mapUnit(CompilationUnit unit) {
+    new Mapper(unit).run();
+  }
+
+  /**
+   * Returns the mapped classes that no reflective use can reach. Uses in
+   * dead code are ignored.
+   */
+  public Set<String> findUnreflectedClasses(CodeReferenceMap deadCodeMap) {
+    List<Use> liveUses = new ArrayList<>();
+    for (Use use : uses) {
+      if (!use.isDead(deadCodeMap)) {
+        liveUses.add(use);
+      }
+    }
+    for (Use use : liveUses) {
+      if (use.unbounded) {
+        unboundedReason = use.description;
+        unreflectedClasses = Collections.emptySet();
+        return unreflectedClasses;
+      }
+    }
+
+    ArrayDeque<TypeInfo> workList = new ArrayDeque<>();
+    boolean usesObjectStreams = false;
+    for (String[] owner : objectStreamUses) {
+      Use use = new Use(owner, null, null, false, false, false, null);
+      usesObjectStreams |= !use.isDead(deadCodeMap);
+    }
+    for (TypeInfo type : types.values()) {
+      if (type.alwaysKeptReason != null) {
+        keep(type, type.alwaysKeptReason, workList);
+      } else if (type.serializable && usesObjectStreams) {
+        keep(type, "serializable, and object streams are used", workList);
+      }
+    }
+    boolean anyClassReflected = false;
+    String anyClassReason = null;
+    for (Use use : liveUses) {
+      if (use.escapeOnly || (use.calleeClass != null && types.containsKey(use.calleeClass))) {
+        // A Class value passed to a translated method is followed there.
+        continue;
+      }
+      if (use.targets == null) {
+        anyClassReflected = true;
+        anyClassReason = use.description;
+      } else {
+        keepTargets(use, use.description, workList);
+      }
+    }
+    if (anyClassReflected) {
+      // Any class whose Class object is used may be reflected on.
+      for (Use use : liveUses) {
+        if (use.targets != null) {
+          keepTargets(use, anyClassReason, workList);
+        }
+      }
+    }
+    while (!workList.isEmpty()) {
+      TypeInfo type = workList.remove();
+      String reason = "used by the metadata of " + type.className;
+      for (String supertype : type.supertypes) {
+        TypeInfo info = types.get(supertype);
+        if (info != null) {
+          keep(info, reason, workList);
+        }
+      }
+      if (type.enclosingType != null && types.containsKey(type.enclosingType)) {
+        keep(types.get(type.enclosingType), reason, workList);
+      }
+    }
+
+    unreflectedClasses = new TreeSet<>();
+    for (TypeInfo type : types.values()) {
+      if (type.keptReason == null) {
+        unreflectedClasses.add(type.className);
+      }
+    }
+    return unreflectedClasses;
+  }
+
+  private void keepTargets(Use use, String reason, ArrayDeque<TypeInfo> workList) {
+    for (String target : use.targets) {
+      TypeInfo info = types.get(target);
+      if (info != null) {
+        keep(info, reason, workList);
+      }
+      if (use.includesSubtypes) {
+        for (TypeInfo type : types.values()) {
+          if (target.equals("java.lang.Object") || type.supertypes.contains(target)) {
+            keep(type, reason, workList);
+          }
+        }
+      }
+    }
+  }
+
+  private static void keep(TypeInfo type, String reason, ArrayDeque<TypeInfo> workList) {
+    if (type.keptReason == null) {
+      type.keptReason = reason;
+      workList.add(type);
+    }
+  }
+
+  /**
+   * Writes which classes keep their metadata and why, after
+   * {@link #findUnreflectedClasses} is called.
+   */
+  public void writeReport(File reportFile, Charset charset) {
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    if (unboundedReason != null) {
+      writer.printf("# %d classes keep reflection metadata: %s\n", types.size(), unboundedReason);
+    } else {
+      writer.printf("# %d classes, %d keep reflection metadata, %d stripped\n", types.size(),
+          types.size() - unreflectedClasses.size(), unreflectedClasses.size());
+    }
+    writer.println("# ReflectionSupport annotations and JUnit test classes aren't included.");
+    writer.println("# class\tmetadata\treason");
+    for (TypeInfo type : types.values()) {
+      if (unreflectedClasses.contains(type.className)) {
+        writer.printf("%s\tstripped\n", type.className);
+      } else {
+        writer.printf("%s\tkept\t%s\n", type.className,
+            type.keptReason != null ? type.keptReason : unboundedReason);
+      }
+    }
+    writer.flush();
+    try {
+      Files.asCharSink(reportFile, charset).write(out.toString());
+    } catch (IOException e) {
+      ErrorUtil.error("cannot write reflection report: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Records the classes of a unit, and the reflective uses and class
+   * literals in each of their bodies.
+   */
+  private class Mapper extends UnitTreeVisitor {
+
+    private final ArrayDeque<String[]> owners = new ArrayDeque<>();
+
+    private Mapper(CompilationUnit unit) {
+      super(unit);
+    }
+
+    private boolean visitType(TypeElement element) {
+      TypeInfo type = new TypeInfo(elementUtil.getBinaryName(element));
+      for (DeclaredType supertype : typeUtil.getObjcOrderedInheritedTypes(element.asType())) {
+        String name = elementUtil.getBinaryName(TypeUtil.asTypeElement(supertype));
+        if (!name.equals(type.className)) {
+          type.supertypes.add(name);
+        }
+        if (name.equals("java.io.Serializable")) {
+          type.serializable = true;
+        }
+      }
+      TypeElement enclosingType = ElementUtil.getDeclaringClass(element);
+      if (enclosingType != null) {
+        type.enclosingType = elementUtil.getBinaryName(enclosingType);
+      }
+      if (ElementUtil.isEnum(element)) {
+        type.alwaysKeptReason = "enum";
+      } else if (ElementUtil.isAnnotationType(element)) {
+        type.alwaysKeptReason = "annotation type";
+      }
+      types.put(type.className, type);
+      owners.push(new String[] { type.className, null, null });
+      return true;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+      return visitType(node.getTypeElement());
+    }
+
+    @Override
+    public void endVisit(TypeDeclaration node) {
+      owners.pop();
+    }
+
+    @Override
+    public boolean visit(EnumDeclaration node) {
+      return visitType(node.getTypeElement());
+    }
+
+    @Override
+    public void endVisit(EnumDeclaration node) {
+      owners.pop();
+    }
+
+    @Override
+    public boolean visit(AnnotationTypeDeclaration node) {
+      return visitType(node.getTypeElement());
+    }
+
+    @Override
+    public void endVisit(AnnotationTypeDeclaration node) {
+      owners.pop();
+    }
+
+    @Override
+    public boolean visit(MethodDeclaration node) {
+      ExecutableElement element = node.getExecutableElement();
+      owners.push(new String[] {
+          elementUtil.getBinaryName(ElementUtil.getDeclaringClass(element)),
+          typeUtil.getReferenceName(element), typeUtil.getReferenceSignature(element) });
+      return true;
+    }
+
+    @Override
+    public void endVisit(MethodDeclaration node) {
+      owners.pop();
+    }
+
+    private String describe(String use, TreeNode node) {
+      return use + " at " + unit.getSourceFilePath() + ":" + node.getLineNumber();
+    }
+
+    private void addUse(String description, Set<String> targets, boolean includesSubtypes,
+        boolean escapeOnly, boolean unbounded) {
+      addUse(description, targets, includesSubtypes, escapeOnly, unbounded, null);
+    }
+
+    private void addUse(String description, Set<String> targets, boolean includesSubtypes,
+        boolean escapeOnly, boolean unbounded, String calleeClass) {
+      String[] owner = owners.peek();
+      if (owner != null) {
+        uses.add(new Use(
+            owner, description, targets, includesSubtypes, escapeOnly, unbounded, calleeClass));
+      }
+    }
+
+    @Override
+    public void endVisit(TypeLiteral node) {
+      TypeMirror type = node.getType().getTypeMirror();
+      if (TypeUtil.isDeclaredType(type)) {
+        addUse(describe(ElementUtil.getName(TypeUtil.asTypeElement(type)) + ".class", node),
+            Collections.singleton(elementUtil.getBinaryName(TypeUtil.asTypeElement(type))),
+            false, true, false);
+      }
+    }
+
+    @Override
+    public void endVisit(ClassInstanceCreation node) {
+      TypeElement declaringType = ElementUtil.getDeclaringClass(node.getExecutableElement());
+      if (declaringType != null) {
+        addObjectStreamUse(declaringType);
+        addArgumentUses(node.getExecutableElement(), node.getArguments(), node);
+      }
+    }
+
+    @Override
+    public void endVisit(SuperConstructorInvocation node) {
+      addArgumentUses(node.getExecutableElement(), node.getArguments(), node);
+    }
+
+    @Override
+    public void endVisit(SuperMethodInvocation node) {
+      addArgumentUses(node.getExecutableElement(), node.getArguments(), node);
+    }
+
+    @Override
+    public void endVisit(MethodInvocation node) {
+      ExecutableElement element = node.getExecutableElement();
+      TypeElement declaringType = ElementUtil.getDeclaringClass(element);
+      if (declaringType == null) {
+        return;
+      }
+      addObjectStreamUse(declaringType);
+      addArgumentUses(element, node.getArguments(), node);
+      String name = ElementUtil.getName(element);
+      switch (elementUtil.getBinaryName(declaringType)) {
+        case "java.lang.Object":
+          if (name.equals("getClass")) {
+            // The Class object of any subclass of the receiver's type.
+            Set<String> targets = getClassTargets(node.getExpression());
+            addUse(describe("getClass()", node), targets, true, true, targets == null);
+          }
+          break;
+        case "java.lang.Class":
+          if (name.equals("forName")) {
+            addForNameUse(node);
+          } else if (!ElementUtil.isStatic(element)
+              && !METADATA_FREE_CLASS_METHODS.contains(name)) {
+            addClassMethodUse(node, name);
+          }
+          break;
+        case "java.lang.reflect.Proxy":
+          // Proxies implement interfaces from Class objects.
+          addUse(describe("Proxy." + name + "()", node), null, false, false, false);
+          break;
+        case "java.lang.ClassLoader":
+        case "java.util.ServiceLoader":
+          if (name.startsWith("load")) {
+            addUse(describe(ElementUtil.getName(declaringType) + "." + name + "()", node),
+                null, false, false, true);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void addObjectStreamUse(TypeElement declaringClass) {
+      for (DeclaredType type : typeUtil.getObjcOrderedInheritedTypes(declaringClass.asType())) {
+        if (OBJECT_STREAMS.contains(elementUtil.getBinaryName(TypeUtil.asTypeElement(type)))) {
+          String[] owner = owners.peek();
+          if (owner != null) {
+            objectStreamUses.add(owner);
+          }
+          return;
+        }
+      }
+    }
+
+    private void addForNameUse(MethodInvocation node) {
+      Object className = node.getArguments().get(0).getConstantValue();
+      if (className instanceof String) {
+        addUse(describe("Class.forName(\"" + className + "\")", node),
+            Collections.singleton((String) className), false, false, false);
+      } else {
+        addUse(describe("Class.forName() with a name that isn't constant", node),
+            null, false, false, true);
+      }
+    }
+
+    private void addClassMethodUse(MethodInvocation node, String name) {
+      addClassValueUse(node.getExpression(), describe("Class." + name + "()", node), null);
+    }
+
+    /**
+     * Adds the Class values passed to a method or constructor as reflective
+     * uses, which only count if it isn't translated.
+     */
+    private void addArgumentUses(
+        ExecutableElement method, List<Expression> arguments, TreeNode node) {
+      TypeElement declaringType = ElementUtil.getDeclaringClass(method);
+      if (declaringType == null) {
+        return;
+      }
+      String calleeClass = elementUtil.getBinaryName(declaringType);
+      if (calleeClass.equals("java.lang.Class")) {
+        // Class's own methods are uses of their receiver.
+        return;
+      }
+      String description = describe("Class passed to " + ElementUtil.getName(declaringType)
+          + (ElementUtil.isConstructor(method) ? "" : "." + ElementUtil.getName(method))
+          + "()", node);
+      for (Expression arg : arguments) {
+        TypeMirror type = arg.getTypeMirror();
+        if (isClassType(type)) {
+          addClassValueUse(arg, description, calleeClass);
+        } else if (type.getKind() == TypeKind.ARRAY
+            && isClassType(((ArrayType) type).getComponentType())) {
+          addUse(description, null, false, false, false, calleeClass);
+        }
+      }
+    }
+
+    private boolean isClassType(TypeMirror type) {
+      return TypeUtil.isDeclaredType(type)
+          && elementUtil.getBinaryName(TypeUtil.asTypeElement(type)).equals("java.lang.Class");
+    }
+
+    /**
+     * Adds a reflective use of the classes a Class expression can be.
+     */
+    private void addClassValueUse(Expression value, String description, String calleeClass) {
+      if (value instanceof TypeLiteral) {
+        TypeMirror type = ((TypeLiteral) value).getType().getTypeMirror();
+        if (TypeUtil.isDeclaredType(type)) {
+          addUse(description,
+              Collections.singleton(elementUtil.getBinaryName(TypeUtil.asTypeElement(type))),
+              false, false, false, calleeClass);
+        }
+        // Primitive and array classes have no metadata.
+        return;
+      }
+      if (value instanceof MethodInvocation) {
+        ExecutableElement valueMethod = ((MethodInvocation) value).getExecutableElement();
+        if (ElementUtil.getName(valueMethod).equals("getClass")
+            && valueMethod.getParameters().isEmpty()) {
+          Set<String> targets = getClassTargets(((MethodInvocation) value).getExpression());
+          addUse(description, targets, true, false, false, calleeClass);
+          return;
+        }
+      }
+      TypeMirror valueType = value != null ? value.getTypeMirror() : null;
+      if (valueType != null && TypeUtil.isDeclaredType(valueType)) {
+        List<? extends TypeMirror> typeArgs = ((DeclaredType) valueType).getTypeArguments();
+        if (typeArgs.size() == 1) {
+          TypeMirror typeArg = typeArgs.get(0);
+          if (typeArg.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) typeArg).getExtendsBound();
+            if (bound != null && TypeUtil.isDeclaredType(bound)) {
+              addUse(description,
+                  Collections.singleton(elementUtil.getBinaryName(TypeUtil.asTypeElement(bound))),
+                  true, false, false, calleeClass);
+              return;
+            }
+          } else if (TypeUtil.isDeclaredType(typeArg)) {
+            addUse(description,
+                Collections.singleton(elementUtil.getBinaryName(TypeUtil.asTypeElement(typeArg))),
+                false, false, false, calleeClass);
+            return;
+          }
+        }
+      }
+      // A Class<?>, raw Class or type variable: any used Class object.
+      addUse(description, null, false, false, false, calleeClass);
+    }
+
+    /**
+     * Returns the classes whose subclasses' Class objects a getClass() call
+     * returns, or null if it can't be determined.
+     */
+    private Set<String> getClassTargets(Expression receiver) {
+      TypeMirror type;
+      if (receiver == null) {
+        String[] owner = owners.peek();
+        return owner != null ? Collections.singleton(owner[0]) : null;
+      }
+      type = receiver.getTypeMirror();
+      if (type.getKind() == TypeKind.TYPEVAR || type.getKind() == TypeKind.INTERSECTION) {
+        type = typeUtil.erasure(type);
+      }
+      if (!TypeUtil.isDeclaredType(type)) {
+        return null;
+      }
+      return Collections.singleton(elementUtil.getBinaryName(TypeUtil.asTypeElement(type)));
+    }
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.ast.AbstractTypeDeclaration;
+import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.Block;
+import com.google.devtools.j2objc.ast.BodyDeclaration;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.EnumConstantDeclaration;
+import com.google.devtools.j2objc.ast.EnumDeclaration;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.ExpressionStatement;
+import com.google.devtools.j2objc.ast.FieldAccess;
+import com.google.devtools.j2objc.ast.FieldDeclaration;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.QualifiedName;
+import com.google.devtools.j2objc.ast.SimpleName;
+import com.google.devtools.j2objc.ast.Statement;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.TreeVisitor;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * Removes static initializers that only assign constants to the class's own
+ * static fields, by making the constants the fields' initial values. Classes
+ * without a static initializer don't define an initialize method, so accessing
+ * them needs no runtime initialization check.
+ *
+ * <p>If a {@link Graph} is given, each class with a static initializer is also
+ * added to it, with the classes its initializer causes to be initialized: its
+ * superclass, and the classes whose constructors, static methods and static
+ * fields it uses.
+ *
+ * <p>Must run after InitializationNormalizer, which moves static field
+ * initializers and static blocks into the class initializer statements.
+ *
+ * @see com.google.devtools.j2objc.Options#staticInitReport()
+ */
+public class StaticInitAnalyzer extends UnitTreeVisitor {
+
+  private final Graph graph;
+
+  public StaticInitAnalyzer(CompilationUnit unit, Graph graph) {
+    super(unit);
+    this.graph = graph;
+  }
+
+  /**
+   * The static initializers of all translated classes, and the initialization
+   * chains they start.
+   */
+  public static class Graph {
+
+    private final Map<String, Node> nodes = new HashMap<>();
+
+    private static class Node {
+      private final String name;
+      private final int statements;
+      private final boolean folded;
+      private final Set<String> dependencies;
+      private int depth = -1;
+      private Node next = null;
+
+      private Node(String name, int statements, boolean folded, Set<String> dependencies) {
+        this.name = name;
+        this.statements = statements;
+        this.folded = folded;
+        this.dependencies = dependencies;
+      }
+    }
+
+    private void addClass(
+        String name, int statements, boolean folded, Set<String> dependencies) {
+      nodes.put(name, new Node(name, statements, folded, dependencies));
+    }
+
+    /**
+     * Returns the classes whose static initializer was removed.
+     */
+    public Set<String> getFoldedClasses() {
+      Set<String> result = new TreeSet<>();
+      for (Node node : nodes.values()) {
+        if (node.folded) {
+          result.add(node.name);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Returns the number of classes with a static initializer in the longest
+     * initialization chain that initializing the specified class starts, or
+     * 0 if the class has no static initializer.
+     */
+    public int getDepth(String name) {
+      Node node = nodes.get(name);
+      if (node == null || node.folded) {
+        return 0;
+      }
+      computeDepths();
+      return node.depth;
+    }
+
+    /**
+     * Writes the report of the translated classes' static initializers, with
+     * the longest initialization chains first.
+     */
+    public void writeReport(File reportFile, Charset charset) {
+      computeDepths();
+      List<Node> sorted = new ArrayList<>(nodes.values());
+      sorted.sort(Comparator.comparingInt((Node n) -> n.folded ? 0 : -n.depth)
+          .thenComparing(n -> n.name));
+
+      StringWriter out = new StringWriter();
+      PrintWriter writer = new PrintWriter(out);
+      writer.printf("# %d classes with static initializers, %d need no runtime initialization\n",
+          sorted.size(), getFoldedClasses().size());
+      writer.println("# class\tinitializer\tstatements\tdependencies\tdepth\tchain");
+      for (Node node : sorted) {
+        List<String> chain = new ArrayList<>();
+        for (Node n = node.folded ? null : node; n != null; n = n.next) {
+          chain.add(n.name);
+        }
+        writer.printf("%s\t%s\t%d\t%s\t%d\t%s\n", node.name, node.folded ? "constant" : "runtime",
+            node.statements, String.join(",", node.dependencies), chain.size(),
+            String.join(" > ", chain));
+      }
+      writer.flush();
+      try {
+        Files.asCharSink(reportFile, charset).write(out.toString());
+      } catch (IOException e) {
+        ErrorUtil.error("cannot write static initializer report: " + e.getMessage());
+      }
+    }
+
+    private void computeDepths() {
+      Set<Node> visiting = new HashSet<>();
+      for (Node node : nodes.values()) {
+        computeDepth(node, visiting);
+      }
+    }
+
+    private int computeDepth(Node node, Set<Node> visiting) {
+      if (node.folded) {
+        return 0;
+      }
+      if (node.depth >= 0) {
+        return node.depth;
+      }
+      if (!visiting.add(node)) {
+        // A cycle; the class is already being initialized.
+        return 0;
+      }
+      int maxDepth = 0;
+      for (String dependency : node.dependencies) {
+        Node dependencyNode = nodes.get(dependency);
+        if (dependencyNode != null) {
+          int depth = computeDepth(dependencyNode, visiting);
+          if (depth > maxDepth) {
+            maxDepth = depth;
+            node.next = dependencyNode;
+          }
+        }
+      }
+      visiting.remove(node);
+      node.depth = maxDepth + 1;
+      return node.depth;
+    }
+  }
+
+  @Override
+  public boolean visit(CompilationUnit node) {
+    for (AbstractTypeDeclaration type : node.getTypes()) {
+      List<Statement> initStatements = type.getClassInitStatements();
+      // Enums always initialize their constants.
+      boolean isEnum = type instanceof EnumDeclaration;
+      if (initStatements.isEmpty() && !isEnum) {
+        continue;
+      }
+      int statementCount = initStatements.size();
+      Set<String> dependencies = graph != null ? findDependencies(type) : null;
+      boolean folded = foldConstantAssignments(type) && !isEnum;
+      if (graph != null) {
+        graph.addClass(ElementUtil.getQualifiedName(type.getTypeElement()), statementCount,
+            folded, dependencies);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * If all of the type's class initializer statements assign constants to
+   * its static fields, moves the constants to the fields' declarations.
+   */
+  private boolean foldConstantAssignments(AbstractTypeDeclaration type) {
+    Map<VariableElement, VariableDeclarationFragment> fields = new HashMap<>();
+    for (BodyDeclaration decl : type.getBodyDeclarations()) {
+      if (decl instanceof FieldDeclaration) {
+        for (VariableDeclarationFragment frag : ((FieldDeclaration) decl).getFragments()) {
+          fields.put(frag.getVariableElement(), frag);
+        }
+      }
+    }
+    Map<VariableDeclarationFragment, Object> values = new LinkedHashMap<>();
+    if (!findConstantAssignments(type.getClassInitStatements(), fields, values)) {
+      return false;
+    }
+    for (Map.Entry<VariableDeclarationFragment, Object> entry : values.entrySet()) {
+      entry.getKey().setInitializer(TreeUtil.newLiteral(entry.getValue(), typeUtil));
+    }
+    type.getClassInitStatements().clear();
+    return true;
+  }
+
+  private static boolean findConstantAssignments(List<Statement> stmts,
+      Map<VariableElement, VariableDeclarationFragment> fields,
+      Map<VariableDeclarationFragment, Object> values) {
+    for (Statement stmt : stmts) {
+      if (stmt instanceof Block) {
+        if (!findConstantAssignments(((Block) stmt).getStatements(), fields, values)) {
+          return false;
+        }
+        continue;
+      }
+      if (!(stmt instanceof ExpressionStatement)) {
+        return false;
+      }
+      Expression expr = ((ExpressionStatement) stmt).getExpression();
+      if (!(expr instanceof Assignment)
+          || ((Assignment) expr).getOperator() != Assignment.Operator.ASSIGN
+          || !(((Assignment) expr).getLeftHandSide() instanceof SimpleName)) {
+        return false;
+      }
+      Assignment assignment = (Assignment) expr;
+      VariableDeclarationFragment frag =
+          fields.get(TreeUtil.getVariableElement(assignment.getLeftHandSide()));
+      Object value = assignment.getRightHandSide().getConstantValue();
+      if (frag == null || value == null || (value instanceof String
+          && !UnicodeUtils.hasValidCppCharacters((String) value))) {
+        return false;
+      }
+      values.put(frag, value);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the names of the other classes that running the type's class
+   * initializer initializes.
+   */
+  private static Set<String> findDependencies(AbstractTypeDeclaration type) {
+    TypeElement typeElement = type.getTypeElement();
+    Set<String> dependencies = new TreeSet<>();
+    TypeElement superclass = ElementUtil.getSuperclass(typeElement);
+    if (superclass != null && !TypeUtil.isNone(superclass.getSuperclass())) {
+      dependencies.add(ElementUtil.getQualifiedName(superclass));
+    }
+    TreeVisitor finder = new TreeVisitor() {
+      @Override
+      public void endVisit(ClassInstanceCreation node) {
+        addDependency(ElementUtil.getDeclaringClass(node.getExecutableElement()));
+      }
+
+      @Override
+      public void endVisit(MethodInvocation node) {
+        ExecutableElement method = node.getExecutableElement();
+        if (ElementUtil.isStatic(method)) {
+          addDependency(ElementUtil.getDeclaringClass(method));
+        }
+      }
+
+      @Override
+      public void endVisit(SimpleName node) {
+        addStaticVarDependency(node.getElement());
+      }
+
+      @Override
+      public void endVisit(QualifiedName node) {
+        addStaticVarDependency(node.getElement());
+      }
+
+      @Override
+      public void endVisit(FieldAccess node) {
+        addStaticVarDependency(node.getVariableElement());
+      }
+
+      private void addStaticVarDependency(Element element) {
+        if (ElementUtil.isVariable(element) && ElementUtil.isStatic(element)
+            && !ElementUtil.isConstant((VariableElement) element)) {
+          addDependency(ElementUtil.getDeclaringClass(element));
+        }
+      }
+
+      private void addDependency(TypeElement dependency) {
+        if (dependency != null && !dependency.equals(typeElement)) {
+          dependencies.add(ElementUtil.getQualifiedName(dependency));
+        }
+      }
+    };
+    for (Statement stmt : type.getClassInitStatements()) {
+      stmt.accept(finder);
+    }
+    if (type instanceof EnumDeclaration) {
+      for (EnumConstantDeclaration constant : ((EnumDeclaration) type).getEnumConstants()) {
+        constant.accept(finder);
+      }
+    }
+    return dependencies;
+  }
+}
@@ -247,10 +247,11 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
     if (needsExtraction) {
       VariableElement resultVar = GeneratedVariableElement.newLocalVar(
           "unseq$" + count++, conditional.getTypeMirror(), currentMethod);
+      // The branches of the replaced conditional are moved into the new statements.
       conditional.replaceWith(new SimpleName(resultVar));
       stmtList.add(new VariableDeclarationStatement(resultVar, null));
       IfStatement newIf = new IfStatement();
-      newIf.setExpression(condition.copy());
+      newIf.setExpression(TreeUtil.remove(condition));
       stmtList.add(newIf);
       Block thenBlock = new Block();
       newIf.setThenStatement(thenBlock);
@@ -259,7 +260,7 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
       // The recursive call might replace the then expression child.
       thenExpr = conditional.getThenExpression();
       thenStmts.add(new ExpressionStatement(
-          new Assignment(new SimpleName(resultVar), thenExpr.copy())));
+          new Assignment(new SimpleName(resultVar), TreeUtil.remove(thenExpr))));
       Block elseBlock = new Block();
       newIf.setElseStatement(elseBlock);
       List<Statement> elseStmts = elseBlock.getStatements();
@@ -267,7 +268,7 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
       // The recursive call might replace the else expression child.
       elseExpr = conditional.getElseExpression();
       elseStmts.add(new ExpressionStatement(
-          new Assignment(new SimpleName(resultVar), elseExpr.copy())));
+          new Assignment(new SimpleName(resultVar), TreeUtil.remove(elseExpr))));
     } else {
       extractOrderedAccesses(stmtList, thenExpr, thenAccesses);
       extractOrderedAccesses(stmtList, elseExpr, elseAccesses);
@@ -475,9 +476,9 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
         // the entire boolean expression to preserve ordering between the two.
         VariableElement exprVar = GeneratedVariableElement.newLocalVar(
             "unseq$" + count++, expr.getTypeMirror(), currentMethod);
-        TreeUtil.insertBefore(node, new VariableDeclarationStatement(
-            exprVar, node.getExpression().copy()));
+        Expression oldExpr = node.getExpression();
         node.setExpression(new SimpleName(exprVar));
+        TreeUtil.insertBefore(node, new VariableDeclarationStatement(exprVar, oldExpr));
         extractOrderedAccesses(
             TreeUtil.asStatementList(node).subList(0, 0), currentTopNode, toExtract);
       }
@@ -556,7 +557,7 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
     IfStatement newIf = new IfStatement();
     newIf.setExpression(new PrefixExpression(
         typeUtil.getBoolean(), PrefixExpression.Operator.NOT,
-        ParenthesizedExpression.parenthesize(loopCondition.copy())));
+        ParenthesizedExpression.parenthesize(TreeUtil.remove(loopCondition))));
     newIf.setThenStatement(new BreakStatement());
     return newIf;
   }
@@ -608,12 +609,9 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
         if (i > 0) {
           // Extract all fragments before the current one to preserve ordering.
           VariableDeclarationStatement newDecl =
-              new VariableDeclarationStatement(fragments.get(0).copy());
-          for (int j = 1; j < i; j++) {
-            newDecl.addFragment(fragments.get(j).copy());
-          }
+              new VariableDeclarationStatement(fragments.remove(0));
+          TreeUtil.moveList(fragments.subList(0, i - 1), newDecl.getFragments());
           stmtList.add(newDecl);
-          fragments.subList(0, i).clear();
         }
         extractOrderedAccesses(stmtList, currentTopNode, toExtract);
         i = 0;
@@ -630,14 +628,12 @@ public class UnsequencedExpressionRewriter extends UnitTreeVisitor {
       List<VariableAccess> unsequencedAccesses = getUnsequencedAccesses();
       if (!unsequencedAccesses.isEmpty()) {
         for (int j = 0; j < i; j++) {
-          stmtList.add(new ExpressionStatement(expressions.get(j).copy()));
+          stmtList.add(new ExpressionStatement(expressions.remove(0)));
         }
-        expressions.subList(0, i).clear();
         extractOrderedAccesses(stmtList, currentTopNode, unsequencedAccesses);
         i = 0;
         if (extractModifiedExpression) {
-          stmtList.add(new ExpressionStatement(expressions.get(0).copy()));
-          expressions.remove(0);
+          stmtList.add(new ExpressionStatement(expressions.remove(0)));
           i = -1;
         }
       }
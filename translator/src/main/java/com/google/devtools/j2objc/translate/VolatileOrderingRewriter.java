@@ -0,0 +1,358 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.ast.AbstractTypeDeclaration;
+import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.BodyDeclaration;
+import com.google.devtools.j2objc.ast.CastExpression;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.ConditionalExpression;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.ExpressionStatement;
+import com.google.devtools.j2objc.ast.FieldAccess;
+import com.google.devtools.j2objc.ast.FieldDeclaration;
+import com.google.devtools.j2objc.ast.FunctionInvocation;
+import com.google.devtools.j2objc.ast.InfixExpression;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
+import com.google.devtools.j2objc.ast.NativeStatement;
+import com.google.devtools.j2objc.ast.ParenthesizedExpression;
+import com.google.devtools.j2objc.ast.PostfixExpression;
+import com.google.devtools.j2objc.ast.PrefixExpression;
+import com.google.devtools.j2objc.ast.QualifiedName;
+import com.google.devtools.j2objc.ast.SimpleName;
+import com.google.devtools.j2objc.ast.Statement;
+import com.google.devtools.j2objc.ast.StringLiteral;
+import com.google.devtools.j2objc.ast.SuperConstructorInvocation;
+import com.google.devtools.j2objc.ast.SuperFieldAccess;
+import com.google.devtools.j2objc.ast.ThisExpression;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.TreeVisitor;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.types.FunctionElement;
+import com.google.devtools.j2objc.types.PointerType;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.NameTable;
+import com.google.devtools.j2objc.util.TranslationUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Selects weaker memory ordering for volatile primitive fields where the Java
+ * memory model can't tell the difference. OperatorRewriter otherwise uses
+ * sequentially consistent loads and stores for all volatile accesses.
+ *
+ * <p>A constructor's leading assignments to its own instance's fields run
+ * before anything could publish the instance, and a class's leading static
+ * initializer assignments run before the class is marked initialized. Those
+ * stores are relaxed: the publication that follows them orders them for other
+ * threads. A private field whose only stores are these has a single value
+ * once other threads can see it, so loads of it only need acquire ordering.
+ * Fields named by a string literal, such as those of atomic field updaters,
+ * and units with native code are excluded, since they can be written in ways
+ * the translator can't see.
+ *
+ * @see com.google.devtools.j2objc.Options#volatileOrdering()
+ */
+public class VolatileOrderingRewriter extends UnitTreeVisitor {
+
+  private final Set<Assignment> unpublishedStores = new HashSet<>();
+  private final Set<VariableElement> initializationOnlyFields = new HashSet<>();
+
+  public VolatileOrderingRewriter(CompilationUnit unit) {
+    super(unit);
+  }
+
+  @Override
+  public boolean visit(CompilationUnit node) {
+    for (AbstractTypeDeclaration type : node.getTypes()) {
+      TypeElement typeElement = type.getTypeElement();
+      addUnpublishedStores(type.getClassInitStatements(), typeElement, true);
+      for (BodyDeclaration decl : type.getBodyDeclarations()) {
+        if (decl instanceof MethodDeclaration && ((MethodDeclaration) decl).isConstructor()
+            && ((MethodDeclaration) decl).getBody() != null) {
+          addUnpublishedStores(
+              ((MethodDeclaration) decl).getBody().getStatements(), typeElement, false);
+        }
+      }
+    }
+    findInitializationOnlyFields(node);
+    return true;
+  }
+
+  /**
+   * Adds the volatile stores of the leading statements that can't publish the
+   * instance or class being initialized.
+   */
+  private void addUnpublishedStores(
+      List<Statement> stmts, TypeElement type, boolean isClassInitializer) {
+    for (Statement stmt : stmts) {
+      if (stmt instanceof SuperConstructorInvocation && !isClassInitializer) {
+        if (!isObjectConstructor((SuperConstructorInvocation) stmt)) {
+          return;
+        }
+        continue;
+      }
+      if (!(stmt instanceof ExpressionStatement)) {
+        return;
+      }
+      Expression expr = ((ExpressionStatement) stmt).getExpression();
+      if (!(expr instanceof Assignment)) {
+        return;
+      }
+      Assignment assignment = (Assignment) expr;
+      VariableElement var = getOwnField(assignment.getLeftHandSide(), type, isClassInitializer);
+      if (assignment.getOperator() != Assignment.Operator.ASSIGN || var == null
+          || !isSimple(assignment.getRightHandSide())) {
+        return;
+      }
+      if (isVolatilePrimitive(var)) {
+        unpublishedStores.add(assignment);
+      }
+    }
+  }
+
+  private static boolean isObjectConstructor(SuperConstructorInvocation node) {
+    ExecutableElement constructor = node.getExecutableElement();
+    return node.getExpression() == null && node.getArguments().isEmpty()
+        && TypeUtil.isNone(ElementUtil.getDeclaringClass(constructor).getSuperclass());
+  }
+
+  /**
+   * Returns the field if the expression is a field of the instance or class
+   * being initialized, otherwise null.
+   */
+  private static VariableElement getOwnField(
+      Expression lhs, TypeElement type, boolean isStatic) {
+    VariableElement var = TreeUtil.getVariableElement(lhs);
+    if (var == null || !ElementUtil.isField(var) || ElementUtil.isStatic(var) != isStatic
+        || !type.equals(ElementUtil.getDeclaringClass(var))) {
+      return null;
+    }
+    if (lhs instanceof SimpleName) {
+      return var;
+    }
+    if (lhs instanceof FieldAccess && !isStatic) {
+      Expression target = ((FieldAccess) lhs).getExpression();
+      if (target instanceof ThisExpression && ((ThisExpression) target).getQualifier() == null) {
+        return var;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if evaluating the expression can't run code that might
+   * reference the instance being initialized.
+   */
+  private static boolean isSimple(Expression expr) {
+    switch (expr.getKind()) {
+      case BOOLEAN_LITERAL:
+      case CHARACTER_LITERAL:
+      case NULL_LITERAL:
+      case NUMBER_LITERAL:
+      case STRING_LITERAL:
+      case SIMPLE_NAME:
+      case QUALIFIED_NAME:
+        return true;
+      case CAST_EXPRESSION:
+        return isSimple(((CastExpression) expr).getExpression());
+      case PARENTHESIZED_EXPRESSION:
+        return isSimple(((ParenthesizedExpression) expr).getExpression());
+      case CONDITIONAL_EXPRESSION:
+        {
+          ConditionalExpression condExpr = (ConditionalExpression) expr;
+          return isSimple(condExpr.getExpression()) && isSimple(condExpr.getThenExpression())
+              && isSimple(condExpr.getElseExpression());
+        }
+      case FIELD_ACCESS:
+        {
+          Expression target = ((FieldAccess) expr).getExpression();
+          return target instanceof ThisExpression || isSimple(target);
+        }
+      case INFIX_EXPRESSION:
+        for (Expression operand : ((InfixExpression) expr).getOperands()) {
+          if (!isSimple(operand)) {
+            return false;
+          }
+        }
+        return true;
+      case PREFIX_EXPRESSION:
+        {
+          PrefixExpression preExpr = (PrefixExpression) expr;
+          PrefixExpression.Operator op = preExpr.getOperator();
+          return op != PrefixExpression.Operator.INCREMENT
+              && op != PrefixExpression.Operator.DECREMENT && isSimple(preExpr.getOperand());
+        }
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isVolatilePrimitive(VariableElement var) {
+    return ElementUtil.isVolatile(var) && var.asType().getKind().isPrimitive();
+  }
+
+  private void findInitializationOnlyFields(CompilationUnit node) {
+    Set<VariableElement> candidates = new HashSet<>();
+    Set<VariableElement> publishedStores = new HashSet<>();
+    Set<String> stringLiterals = new HashSet<>();
+    boolean[] hasNativeCode = new boolean[1];
+    node.accept(new TreeVisitor() {
+      @Override
+      public boolean visit(FieldDeclaration node) {
+        for (VariableDeclarationFragment frag : node.getFragments()) {
+          VariableElement var = frag.getVariableElement();
+          if (isVolatilePrimitive(var) && ElementUtil.isPrivate(var)) {
+            candidates.add(var);
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public void endVisit(Assignment node) {
+        if (!unpublishedStores.contains(node)) {
+          addStore(node.getLeftHandSide());
+        }
+      }
+
+      @Override
+      public void endVisit(PrefixExpression node) {
+        PrefixExpression.Operator op = node.getOperator();
+        if (op == PrefixExpression.Operator.INCREMENT || op == PrefixExpression.Operator.DECREMENT
+            || op == PrefixExpression.Operator.ADDRESS_OF) {
+          addStore(node.getOperand());
+        }
+      }
+
+      @Override
+      public void endVisit(PostfixExpression node) {
+        addStore(node.getOperand());
+      }
+
+      private void addStore(Expression lhs) {
+        VariableElement var = TreeUtil.getVariableElement(lhs);
+        if (var != null) {
+          publishedStores.add(var);
+        }
+      }
+
+      @Override
+      public void endVisit(StringLiteral node) {
+        stringLiterals.add(node.getLiteralValue());
+      }
+
+      @Override
+      public boolean visit(NativeDeclaration node) {
+        hasNativeCode[0] = true;
+        return false;
+      }
+
+      @Override
+      public boolean visit(NativeStatement node) {
+        hasNativeCode[0] = true;
+        return false;
+      }
+    });
+    if (hasNativeCode[0]) {
+      return;
+    }
+    for (VariableElement var : candidates) {
+      if (!publishedStores.contains(var)
+          && !stringLiterals.contains(var.getSimpleName().toString())) {
+        initializationOnlyFields.add(var);
+      }
+    }
+  }
+
+  @Override
+  public void endVisit(Assignment node) {
+    if (!unpublishedStores.contains(node)) {
+      return;
+    }
+    TypeMirror type = node.getTypeMirror();
+    Expression lhs = node.getLeftHandSide();
+    String funcName = "JreAssignVolatileRelaxed" + NameTable.capitalize(type.toString());
+    FunctionElement element = new FunctionElement(funcName, type, null)
+        .addParameters(TypeUtil.ID_PTR_TYPE, type);
+    FunctionInvocation invocation = new FunctionInvocation(element, type);
+    List<Expression> args = invocation.getArguments();
+    args.add(new PrefixExpression(
+        new PointerType(lhs.getTypeMirror()), PrefixExpression.Operator.ADDRESS_OF,
+        TreeUtil.remove(lhs)));
+    args.add(TreeUtil.remove(node.getRightHandSide()));
+    node.replaceWith(invocation);
+  }
+
+  @Override
+  public boolean visit(FieldAccess node) {
+    rewriteLoad(node);
+    node.getExpression().accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(SuperFieldAccess node) {
+    rewriteLoad(node);
+    return false;
+  }
+
+  @Override
+  public boolean visit(QualifiedName node) {
+    rewriteLoad(node);
+    return false;
+  }
+
+  @Override
+  public boolean visit(SimpleName node) {
+    rewriteLoad(node);
+    return false;
+  }
+
+  @Override
+  public boolean visit(VariableDeclarationFragment node) {
+    // Skip name so that it doesn't get mistaken for a load.
+    Expression initializer = node.getInitializer();
+    if (initializer != null) {
+      initializer.accept(this);
+    }
+    return false;
+  }
+
+  private void rewriteLoad(Expression node) {
+    VariableElement var = TreeUtil.getVariableElement(node);
+    if (var == null || !initializationOnlyFields.contains(var)
+        || TranslationUtil.isAssigned(node)) {
+      return;
+    }
+    TypeMirror type = node.getTypeMirror();
+    String funcName = "JreLoadVolatileAcquire" + NameTable.capitalize(type.toString());
+    FunctionElement element = new FunctionElement(funcName, type, null)
+        .addParameters(TypeUtil.ID_PTR_TYPE);
+    FunctionInvocation invocation = new FunctionInvocation(element, type);
+    node.replaceWith(invocation);
+    invocation.addArgument(new PrefixExpression(
+        new PointerType(type), PrefixExpression.Operator.ADDRESS_OF, node));
+  }
+}
@@ -16,17 +16,21 @@
 
 package com.google.devtools.j2objc.types;
 
+import com.google.common.collect.Sets;
 import com.google.devtools.j2objc.ast.AnnotationTypeDeclaration;
 import com.google.devtools.j2objc.ast.Assignment;
 import com.google.devtools.j2objc.ast.CastExpression;
 import com.google.devtools.j2objc.ast.CatchClause;
 import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.ConditionalExpression;
 import com.google.devtools.j2objc.ast.EnhancedForStatement;
 import com.google.devtools.j2objc.ast.EnumDeclaration;
 import com.google.devtools.j2objc.ast.Expression;
 import com.google.devtools.j2objc.ast.FieldAccess;
 import com.google.devtools.j2objc.ast.FieldDeclaration;
+import com.google.devtools.j2objc.ast.FunctionDeclaration;
 import com.google.devtools.j2objc.ast.FunctionInvocation;
+import com.google.devtools.j2objc.ast.InfixExpression;
 import com.google.devtools.j2objc.ast.InstanceofExpression;
 import com.google.devtools.j2objc.ast.LambdaExpression;
 import com.google.devtools.j2objc.ast.MarkerAnnotation;
@@ -34,13 +38,16 @@ import com.google.devtools.j2objc.ast.MethodDeclaration;
 import com.google.devtools.j2objc.ast.MethodInvocation;
 import com.google.devtools.j2objc.ast.NativeDeclaration;
 import com.google.devtools.j2objc.ast.NativeExpression;
+import com.google.devtools.j2objc.ast.NativeStatement;
 import com.google.devtools.j2objc.ast.NormalAnnotation;
 import com.google.devtools.j2objc.ast.QualifiedName;
 import com.google.devtools.j2objc.ast.ReturnStatement;
 import com.google.devtools.j2objc.ast.SimpleName;
 import com.google.devtools.j2objc.ast.SingleMemberAnnotation;
 import com.google.devtools.j2objc.ast.SingleVariableDeclaration;
+import com.google.devtools.j2objc.ast.TreeNode;
 import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.TreeVisitor;
 import com.google.devtools.j2objc.ast.TryStatement;
 import com.google.devtools.j2objc.ast.Type;
 import com.google.devtools.j2objc.ast.TypeDeclaration;
@@ -48,11 +55,13 @@ import com.google.devtools.j2objc.ast.TypeLiteral;
 import com.google.devtools.j2objc.ast.UnionType;
 import com.google.devtools.j2objc.ast.UnitTreeVisitor;
 import com.google.devtools.j2objc.ast.VariableDeclarationExpression;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
 import com.google.devtools.j2objc.ast.VariableDeclarationStatement;
 import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.TypeUtil;
 import java.lang.reflect.Modifier;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -64,18 +73,48 @@ import javax.lang.model.type.TypeMirror;
  * Collects the set of imports needed to resolve type references in an
  * implementation (.m) file.
  *
+ * <p>Types that are only named by declarations, as the type of a field,
+ * parameter, local variable or method result, are only pointed to, so they
+ * are collected as forward declarations instead. Expressions that use a
+ * value of such a type add the import themselves. Native code can use any
+ * declared type, so declarations in methods with native statements, or in
+ * units with native implementation blocks, are still imported.
+ *
  * @author Tom Ball
  */
 public class ImplementationImportCollector extends UnitTreeVisitor {
 
   private Set<Import> imports = new LinkedHashSet<>();
+  private Set<Import> declaredTypes = new LinkedHashSet<>();
+  private boolean importAllDeclaredTypes = false;
+  private boolean inNativeMethod = false;
 
   public ImplementationImportCollector(CompilationUnit unit) {
     super(unit);
+    for (NativeDeclaration decl : unit.getNativeBlocks()) {
+      if (decl.getImplementationCode() != null) {
+        importAllDeclaredTypes = true;
+      }
+    }
   }
 
   public Set<Import> getImports() {
-    return imports;
+    if (!importAllDeclaredTypes) {
+      return imports;
+    }
+    Set<Import> result = new LinkedHashSet<>(imports);
+    result.addAll(declaredTypes);
+    return result;
+  }
+
+  /**
+   * Returns the types that only need to be forward declared.
+   */
+  public Set<Import> getForwardDeclarations() {
+    if (importAllDeclaredTypes) {
+      return new LinkedHashSet<>();
+    }
+    return new LinkedHashSet<>(Sets.difference(declaredTypes, imports));
   }
 
   private void addImports(Type type) {
@@ -98,6 +137,32 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
     Import.addImports(type, imports, unit.getEnv());
   }
 
+  private void addDeclaredType(TypeMirror type) {
+    if (inNativeMethod) {
+      addImports(type);
+    } else {
+      Import.addImports(type, declaredTypes, unit.getEnv());
+    }
+  }
+
+  private void addDeclaredType(Type type) {
+    if (type != null) {
+      addDeclaredType(type.getTypeMirror());
+    }
+  }
+
+  private static boolean hasNativeStatement(TreeNode node) {
+    boolean[] result = new boolean[1];
+    node.accept(new TreeVisitor() {
+      @Override
+      public boolean visit(NativeStatement stmt) {
+        result[0] = true;
+        return false;
+      }
+    });
+    return result[0];
+  }
+
   private void addImports(Iterable<TypeMirror> types) {
     for (TypeMirror type : types) {
       addImports(type);
@@ -116,6 +181,13 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
     return true;
   }
 
+  // The branches must be known to share a type.
+  @Override
+  public void endVisit(ConditionalExpression node) {
+    addImports(node.getThenExpression().getTypeMirror());
+    addImports(node.getElseExpression().getTypeMirror());
+  }
+
   @Override
   public boolean visit(CatchClause node) {
     addImports(node.getException().getType());
@@ -141,10 +213,21 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
 
   @Override
   public boolean visit(FieldDeclaration node) {
-    addImports(node.getTypeMirror());
+    addDeclaredType(node.getTypeMirror());
+    return true;
+  }
+
+  @Override
+  public boolean visit(FunctionDeclaration node) {
+    inNativeMethod = hasNativeStatement(node);
     return true;
   }
 
+  @Override
+  public void endVisit(FunctionDeclaration node) {
+    inNativeMethod = false;
+  }
+
   @Override
   public boolean visit(FunctionInvocation node) {
     FunctionElement element = node.getFunctionElement();
@@ -161,6 +244,19 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
     addImports(node.getRightHandSide().getTypeMirror());
   }
 
+  // Object pointers can only be compared if their types are known to be related.
+  @Override
+  public void endVisit(InfixExpression node) {
+    InfixExpression.Operator op = node.getOperator();
+    if (op == InfixExpression.Operator.EQUALS || op == InfixExpression.Operator.NOT_EQUALS) {
+      for (Expression operand : node.getOperands()) {
+        if (TypeUtil.isReferenceType(operand.getTypeMirror())) {
+          addImports(operand.getTypeMirror());
+        }
+      }
+    }
+  }
+
   @Override
   public boolean visit(InstanceofExpression node) {
     addImports(node.getRightOperand().getTypeMirror());
@@ -182,10 +278,16 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
     if (Modifier.isAbstract(node.getModifiers())) {
       return false;
     }
-    addImports(node.getReturnTypeMirror());
+    inNativeMethod = hasNativeStatement(node);
+    addDeclaredType(node.getReturnTypeMirror());
     return true;
   }
 
+  @Override
+  public void endVisit(MethodDeclaration node) {
+    inNativeMethod = false;
+  }
+
   @Override
   public boolean visit(MethodInvocation node) {
     addImports(node.getExecutableType().getReturnType());
@@ -201,7 +303,11 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
 
   @Override
   public boolean visit(NativeDeclaration node) {
-    addImports(node.getImplementationImportTypes());
+    List<TypeMirror> importTypes = node.getImplementationImportTypes();
+    if (node.getImplementationCode() != null && importTypes.isEmpty()) {
+      importAllDeclaredTypes = true;
+    }
+    addImports(importTypes);
     return true;
   }
 
@@ -254,7 +360,7 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
 
   @Override
   public boolean visit(SingleVariableDeclaration node) {
-    addImports(node.getVariableElement().asType());
+    addDeclaredType(node.getVariableElement().asType());
     return true;
   }
 
@@ -288,13 +394,21 @@ public class ImplementationImportCollector extends UnitTreeVisitor {
 
   @Override
   public boolean visit(VariableDeclarationExpression node) {
-    addImports(node.getType());
+    addDeclaredType(node.getType());
     return true;
   }
 
+  @Override
+  public void endVisit(VariableDeclarationFragment node) {
+    Expression initializer = node.getInitializer();
+    if (initializer != null) {
+      addImports(initializer.getTypeMirror());
+    }
+  }
+
   @Override
   public boolean visit(VariableDeclarationStatement node) {
-    addImports(node.getTypeMirror());
+    addDeclaredType(node.getTypeMirror());
     return true;
   }
 }
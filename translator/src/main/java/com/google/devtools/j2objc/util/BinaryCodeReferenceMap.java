@@ -0,0 +1,425 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import com.google.common.io.Files;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A CodeReferenceMap read from a memory-mapped binary file, so that a large
+ * dead code report doesn't need to be parsed and copied into tables by
+ * each translation.
+ *
+ * <p>The file starts with a table of the map's distinct strings, in sorted
+ * order, followed by a perfect hash table each for the classes, methods and
+ * fields. A table's keys are tuples of string indexes: (class), (class,
+ * name, signature) and (class, field). Lookups hash the query's strings,
+ * then compare them with the strings of the single slot they hash to.
+ *
+ * <p>Use {@link #write} or the main method to convert a ProGuard usage
+ * report. {@link ProGuardUsageParser#parseDeadCodeFile} reads either format.
+ */
+public class BinaryCodeReferenceMap extends CodeReferenceMap {
+
+  private static final int MAGIC = 0x4A324443;  // "J2DC"
+  private static final int VERSION = 1;
+
+  private static final int CLASS_KEY_WIDTH = 1;
+  private static final int METHOD_KEY_WIDTH = 3;
+  private static final int FIELD_KEY_WIDTH = 2;
+
+  private final ByteBuffer buffer;
+  private final int stringCount;
+  private final int stringOffsets;
+  private final int stringData;
+  private final HashTable classes;
+  private final HashTable methods;
+  private final HashTable fields;
+  private CodeReferenceMap tables;
+
+  private BinaryCodeReferenceMap(ByteBuffer buffer) throws IOException {
+    super(ImmutableSet.of(), ImmutableTable.of(), ImmutableMultimap.of());
+    this.buffer = buffer;
+    if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+      throw new IOException("not a binary dead code map");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("unsupported binary dead code map version: " + buffer.getInt(4));
+    }
+    stringCount = buffer.getInt(8);
+    stringOffsets = 12;
+    stringData = stringOffsets + (stringCount + 1) * 4;
+    int position = stringData + buffer.getInt(stringOffsets + stringCount * 4);
+    classes = new HashTable(position, CLASS_KEY_WIDTH);
+    methods = new HashTable(classes.end, METHOD_KEY_WIDTH);
+    fields = new HashTable(methods.end, FIELD_KEY_WIDTH);
+  }
+
+  /**
+   * Returns whether a file starts with a binary dead code map's header.
+   */
+  public static boolean isBinaryFile(File file) throws IOException {
+    if (file.length() < 4) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readInt() == MAGIC;
+    }
+  }
+
+  /**
+   * Maps a binary dead code map file into memory.
+   */
+  public static BinaryCodeReferenceMap open(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      // The mapping stays valid after the channel is closed.
+      return new BinaryCodeReferenceMap(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  @Override
+  public boolean containsClass(String clazz) {
+    return classes.contains(clazz);
+  }
+
+  @Override
+  public boolean containsMethod(String clazz, String name, String signature) {
+    return classes.contains(clazz) || methods.contains(clazz, name, signature);
+  }
+
+  @Override
+  public boolean containsField(String clazz, String field) {
+    return classes.contains(clazz) || fields.contains(clazz, field);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return classes.size == 0 && methods.size == 0 && fields.size == 0;
+  }
+
+  @Override
+  public ImmutableSet<String> getReferencedClasses() {
+    return tables().getReferencedClasses();
+  }
+
+  @Override
+  public ImmutableTable<String, String, ImmutableSet<String>> getReferencedMethods() {
+    return tables().getReferencedMethods();
+  }
+
+  @Override
+  public ImmutableMultimap<String, String> getReferencedFields() {
+    return tables().getReferencedFields();
+  }
+
+  /**
+   * Copies the map into tables, for the callers that iterate over it.
+   */
+  private synchronized CodeReferenceMap tables() {
+    if (tables == null) {
+      CodeReferenceMap.Builder builder = CodeReferenceMap.builder();
+      for (int slot = 0; slot < classes.slotCount; slot++) {
+        if (classes.keyAt(slot, 0) >= 0) {
+          builder.addClass(getString(classes.keyAt(slot, 0)));
+        }
+      }
+      for (int slot = 0; slot < methods.slotCount; slot++) {
+        if (methods.keyAt(slot, 0) >= 0) {
+          builder.addMethod(getString(methods.keyAt(slot, 0)),
+              getString(methods.keyAt(slot, 1)), getString(methods.keyAt(slot, 2)));
+        }
+      }
+      for (int slot = 0; slot < fields.slotCount; slot++) {
+        if (fields.keyAt(slot, 0) >= 0) {
+          builder.addField(getString(fields.keyAt(slot, 0)), getString(fields.keyAt(slot, 1)));
+        }
+      }
+      tables = builder.build();
+    }
+    return tables;
+  }
+
+  private String getString(int index) {
+    int start = stringData + buffer.getInt(stringOffsets + index * 4);
+    int end = stringData + buffer.getInt(stringOffsets + (index + 1) * 4);
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private boolean stringEquals(int index, byte[] bytes) {
+    int start = stringData + buffer.getInt(stringOffsets + index * 4);
+    int end = stringData + buffer.getInt(stringOffsets + (index + 1) * 4);
+    if (end - start != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (buffer.get(start + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A perfect hash table in the mapped file. It's laid out as its key
+   * count, bucket count and slot count, a seed for each bucket, then each
+   * slot's key (string indexes, or -1 for an empty slot).
+   */
+  private class HashTable {
+    private final int size;
+    private final int bucketCount;
+    private final int slotCount;
+    private final int width;
+    private final int seeds;
+    private final int slots;
+    private final int end;
+
+    HashTable(int position, int width) {
+      this.width = width;
+      size = buffer.getInt(position);
+      bucketCount = buffer.getInt(position + 4);
+      slotCount = buffer.getInt(position + 8);
+      seeds = position + 12;
+      slots = seeds + bucketCount * 4;
+      end = slots + slotCount * width * 4;
+    }
+
+    int keyAt(int slot, int part) {
+      return buffer.getInt(slots + (slot * width + part) * 4);
+    }
+
+    boolean contains(String... key) {
+      if (size == 0) {
+        return false;
+      }
+      byte[][] parts = new byte[key.length][];
+      for (int i = 0; i < key.length; i++) {
+        parts[i] = key[i].getBytes(StandardCharsets.UTF_8);
+      }
+      int seed = buffer.getInt(seeds + hash(parts, 0) % bucketCount * 4);
+      int slot = hash(parts, seed) % slotCount;
+      for (int i = 0; i < width; i++) {
+        int index = keyAt(slot, i);
+        if (index < 0 || !stringEquals(index, parts[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Hashes a key's UTF-8 strings. Seed 0 selects a key's bucket, and the
+   * bucket's seed selects its slot.
+   */
+  private static int hash(byte[][] parts, int seed) {
+    int h = 0x811C9DC5 ^ (seed * 0x9E3779B9);
+    for (byte[] part : parts) {
+      for (byte b : part) {
+        h = (h ^ (b & 0xFF)) * 0x01000193;
+      }
+      // 0xFF never occurs in UTF-8, so it separates the strings.
+      h = (h ^ 0xFF) * 0x01000193;
+    }
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h & 0x7FFFFFFF;
+  }
+
+  private static final Comparator<List<String>> KEY_ORDER = (a, b) -> {
+    for (int i = 0; i < a.size(); i++) {
+      int result = a.get(i).compareTo(b.get(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  };
+
+  /**
+   * Writes a map in the binary format.
+   */
+  public static void write(CodeReferenceMap map, File file) throws IOException {
+    // Sorted, so the string indexes don't depend on iteration order.
+    TreeSet<String> strings = new TreeSet<>();
+    Set<List<String>> classKeys = new TreeSet<>(KEY_ORDER);
+    Set<List<String>> methodKeys = new TreeSet<>(KEY_ORDER);
+    Set<List<String>> fieldKeys = new TreeSet<>(KEY_ORDER);
+    for (String clazz : map.getReferencedClasses()) {
+      classKeys.add(Arrays.asList(clazz));
+    }
+    for (Table.Cell<String, String, ImmutableSet<String>> cell
+         : map.getReferencedMethods().cellSet()) {
+      for (String signature : cell.getValue()) {
+        methodKeys.add(Arrays.asList(cell.getRowKey(), cell.getColumnKey(), signature));
+      }
+    }
+    for (Map.Entry<String, String> entry : map.getReferencedFields().entries()) {
+      fieldKeys.add(Arrays.asList(entry.getKey(), entry.getValue()));
+    }
+    for (Set<List<String>> keys : Arrays.asList(classKeys, methodKeys, fieldKeys)) {
+      for (List<String> key : keys) {
+        strings.addAll(key);
+      }
+    }
+    Map<String, Integer> indexes = new TreeMap<>();
+    for (String s : strings) {
+      indexes.put(s, indexes.size());
+    }
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(strings.size());
+      List<byte[]> encoded = new ArrayList<>(strings.size());
+      int offset = 0;
+      for (String s : strings) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        encoded.add(bytes);
+        out.writeInt(offset);
+        offset += bytes.length;
+      }
+      out.writeInt(offset);
+      for (byte[] bytes : encoded) {
+        out.write(bytes);
+      }
+      writeTable(out, classKeys, CLASS_KEY_WIDTH, indexes);
+      writeTable(out, methodKeys, METHOD_KEY_WIDTH, indexes);
+      writeTable(out, fieldKeys, FIELD_KEY_WIDTH, indexes);
+    }
+  }
+
+  /**
+   * Writes a table built with the "hash, displace" method: keys are grouped
+   * into buckets, and starting with the largest bucket, each bucket's seed
+   * is the first that places all its keys in free slots.
+   */
+  private static void writeTable(DataOutputStream out, Set<List<String>> keys, int width,
+      Map<String, Integer> indexes) throws IOException {
+    List<List<String>> keyList = new ArrayList<>(keys);
+    int size = keyList.size();
+    int bucketCount = Math.max(1, size / 4);
+    int slotCount = Math.max(1, size + size / 4);
+    byte[][][] encodedKeys = new byte[size][width][];
+    List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < width; j++) {
+        encodedKeys[i][j] = keyList.get(i).get(j).getBytes(StandardCharsets.UTF_8);
+      }
+      buckets.get(hash(encodedKeys[i], 0) % bucketCount).add(i);
+    }
+    buckets.sort((a, b) -> b.size() - a.size());
+
+    int[] seeds = new int[bucketCount];
+    int[] slots = new int[slotCount];
+    Arrays.fill(slots, -1);
+    int[] placed = new int[slotCount];
+    for (List<Integer> bucket : buckets) {
+      if (bucket.isEmpty()) {
+        break;
+      }
+      int bucketIndex = hash(encodedKeys[bucket.get(0)], 0) % bucketCount;
+      for (int seed = 1; ; seed++) {
+        if (seed == Integer.MAX_VALUE) {
+          throw new IOException("cannot build dead code map hash table");
+        }
+        int count = 0;
+        for (int key : bucket) {
+          int slot = hash(encodedKeys[key], seed) % slotCount;
+          if (slots[slot] >= 0 || contains(placed, count, slot)) {
+            break;
+          }
+          placed[count++] = slot;
+        }
+        if (count == bucket.size()) {
+          for (int i = 0; i < count; i++) {
+            slots[placed[i]] = bucket.get(i);
+          }
+          seeds[bucketIndex] = seed;
+          break;
+        }
+      }
+    }
+
+    out.writeInt(size);
+    out.writeInt(bucketCount);
+    out.writeInt(slotCount);
+    for (int seed : seeds) {
+      out.writeInt(seed);
+    }
+    for (int key : slots) {
+      for (int i = 0; i < width; i++) {
+        out.writeInt(key >= 0 ? indexes.get(keyList.get(key).get(i)) : -1);
+      }
+    }
+  }
+
+  private static boolean contains(int[] values, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts a ProGuard usage report to a binary dead code map.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: BinaryCodeReferenceMap <proguard-usage-file> <output-file>");
+      System.exit(1);
+    }
+    CodeReferenceMap map =
+        ProGuardUsageParser.parse(Files.asCharSource(new File(args[0]), Charset.defaultCharset()));
+    write(map, new File(args[1]));
+  }
+}
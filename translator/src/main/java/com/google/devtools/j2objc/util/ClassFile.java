@@ -22,11 +22,12 @@ import com.strobel.assembler.metadata.ITypeLoader;
 import com.strobel.assembler.metadata.JarTypeLoader;
 import com.strobel.assembler.metadata.MetadataParser;
 import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.ParameterDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 import com.strobel.decompiler.DecompilationOptions;
 import com.strobel.decompiler.DecompilerSettings;
-import com.strobel.decompiler.languages.EntityType;
 import com.strobel.decompiler.languages.Languages;
 import com.strobel.decompiler.languages.java.ast.AstNodeCollection;
 import com.strobel.decompiler.languages.java.ast.AstType;
@@ -38,15 +39,23 @@ import com.strobel.decompiler.languages.java.ast.MethodDeclaration;
 import com.strobel.decompiler.languages.java.ast.ParameterDeclaration;
 import com.strobel.decompiler.languages.java.ast.TypeDeclaration;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
 /**
  * JVM class file model, which uses a Procyon TypeDefinition as a delegate.
+ * The class is only decompiled when a member's declaration is first needed,
+ * since declarations that don't need a body can be read from its metadata.
  */
 public class ClassFile {
-  private final TypeDeclaration type;
   private final TypeReference typeRef;
+  private TypeDeclaration type = null;
+  // Decompiled members, keyed by name and erased signature.
+  private Map<String, EntityDeclaration> members = null;
 
   public static ClassFile create(InputFile file) throws IOException {
     ITypeLoader loader;
@@ -63,9 +72,8 @@ public class ClassFile {
       loader = new InputTypeLoader();
     }
     TypeReference typeRef = lookupType(path, loader);
-    CompilationUnit unit = decompileClassFile(typeRef);
-
-    return new ClassFile(unit, typeRef);
+    DeobfuscationUtilities.processType(typeRef.resolve());
+    return new ClassFile(typeRef);
   }
 
   private static TypeReference lookupType(String path, ITypeLoader loader) {
@@ -80,7 +88,6 @@ public class ClassFile {
 
   private static CompilationUnit decompileClassFile(TypeReference typeRef) {
     TypeDefinition typeDef = typeRef.resolve();
-    DeobfuscationUtilities.processType(typeDef);
     DecompilationOptions options = new DecompilationOptions();
     DecompilerSettings settings = DecompilerSettings.javaDefaults();
     settings.setShowSyntheticMembers(true);
@@ -89,17 +96,47 @@ public class ClassFile {
     return Languages.java().decompileTypeToAst(typeDef, options);
   }
 
-  private ClassFile(CompilationUnit unit, TypeReference typeRef) {
+  private ClassFile(TypeReference typeRef) {
     this.typeRef = typeRef;
+  }
+
+  /**
+   * Returns whether the class has been decompiled.
+   */
+  public boolean isDecompiled() {
+    return type != null;
+  }
+
+  private void decompile() {
+    if (type != null) {
+      return;
+    }
+    CompilationUnit unit = decompileClassFile(typeRef);
     assert unit.getTypes().size() == 1;
-    this.type = unit.getTypes().firstOrNullObject();
+    type = unit.getTypes().firstOrNullObject();
+    members = new HashMap<>();
+    for (EntityDeclaration node : type.getMembers()) {
+      switch (node.getEntityType()) {
+        case FIELD:
+          members.putIfAbsent(node.getName() + ":" + signature(node.getReturnType()), node);
+          break;
+        case METHOD:
+          members.putIfAbsent(node.getName() + signature((MethodDeclaration) node), node);
+          break;
+        case CONSTRUCTOR:
+          members.putIfAbsent("<init>" + signature((ConstructorDeclaration) node), node);
+          break;
+        default:
+          break;
+      }
+    }
   }
 
   /**
    * Returns the simple name of the type defined by this class file.
    */
   public String getName() {
-    return type.getName();
+    return typeRef.getSimpleName();
   }
 
   /**
@@ -141,16 +178,8 @@ public class ClassFile {
    * or null if not found.
    */
   public FieldDeclaration getFieldNode(String name, String signature) {
-    for (EntityDeclaration node : type.getMembers()) {
-      if (node.getEntityType() == EntityType.FIELD) {
-        FieldDeclaration field = (FieldDeclaration) node;
-        if (field.getName().equals(name)
-            && signature(field.getReturnType()).equals(signature)) {
-          return field;
-        }
-      }
-    }
-    return null;
+    decompile();
+    return (FieldDeclaration) members.get(name + ":" + signature);
   }
 
   /**
@@ -158,15 +187,9 @@ public class ClassFile {
    * or null if not found.
    */
   public MethodDeclaration getMethod(String name, String signature) {
-    for (EntityDeclaration node : type.getMembers()) {
-      if (node.getEntityType() == EntityType.METHOD) {
-        MethodDeclaration method = (MethodDeclaration) node;
-        if (method.getName().equals(name) && signature.equals(signature(method))) {
-          return method;
-        }
-      }
-    }
-    return null;
+    decompile();
+    EntityDeclaration decl = members.get(name + signature);
+    return decl instanceof MethodDeclaration ? (MethodDeclaration) decl : null;
   }
 
   /**
@@ -174,18 +197,46 @@ public class ClassFile {
    * or null if not found.
    */
   public ConstructorDeclaration getConstructor(String signature) {
-    for (EntityDeclaration node : type.getMembers()) {
-      if (node.getEntityType() == EntityType.CONSTRUCTOR) {
-        ConstructorDeclaration cons = (ConstructorDeclaration) node;
-        if (signature.equals(signature(cons))) {
-          return cons;
-        }
+    decompile();
+    return (ConstructorDeclaration) members.get("<init>" + signature);
+  }
+
+  /**
+   * Returns whether the class file declares a specified method, without
+   * decompiling it.
+   */
+  public boolean hasMethod(String name, String signature) {
+    return findMethodDefinition(name, signature) != null;
+  }
+
+  /**
+   * Returns the parameter names of a method or constructor, as declared in
+   * the class file, without decompiling it. Returns null if the method
+   * isn't found.
+   */
+  public List<String> getParameterNames(String name, String signature) {
+    MethodDefinition method = findMethodDefinition(name, signature);
+    if (method == null) {
+      return null;
+    }
+    List<String> names = new ArrayList<>();
+    for (ParameterDefinition param : method.getParameters()) {
+      names.add(param.getName());
+    }
+    return names;
+  }
+
+  private MethodDefinition findMethodDefinition(String name, String signature) {
+    for (MethodDefinition method : typeRef.resolve().getDeclaredMethods()) {
+      if (method.getName().equals(name) && method.getErasedSignature().equals(signature)) {
+        return method;
       }
     }
     return null;
   }
 
   public TypeDeclaration getType() {
+    decompile();
     return type;
   }
 
@@ -0,0 +1,461 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.io.ByteStreams;
+import com.google.devtools.j2objc.file.InputFile;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reads the references of a JVM class file directly from its constant pool
+ * and method bodies. Unlike ClassFile, no decompilation is done, so this is
+ * only suitable for tools that need a reference graph rather than an AST.
+ */
+public class ClassFileScanner {
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  // Constant pool tags, from the JVM specification section 4.4.
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  // Opcodes that need special handling while scanning a method body.
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC = 0xb8;
+  private static final int INVOKEINTERFACE = 0xb9;
+  private static final int TABLESWITCH = 0xaa;
+  private static final int LOOKUPSWITCH = 0xab;
+  private static final int WIDE = 0xc4;
+  private static final int IINC = 0x84;
+
+  // Instruction lengths (including the opcode) indexed by opcode; zero marks
+  // the variable-length and undefined opcodes.
+  private static final byte[] INSTRUCTION_LENGTHS = new byte[256];
+
+  static {
+    String lengths =
+        // 0x00 - 0x0f: nop, aconst_null, iconst_*, lconst_*, fconst_*, dconst_*
+        "1111111111111111"
+        // 0x10 - 0x1f: bipush, sipush, ldc, ldc_w, ldc2_w, *load, *load_n
+        + "2323322222111111"
+        // 0x20 - 0x2f: *load_n, *aload
+        + "1111111111111111"
+        // 0x30 - 0x3f: *aload, *store, *store_n
+        + "1111112222211111"
+        // 0x40 - 0x4f: *store_n, *astore
+        + "1111111111111111"
+        // 0x50 - 0x5f: *astore, pop, dup, swap
+        + "1111111111111111"
+        // 0x60 - 0x7f: arithmetic
+        + "1111111111111111"
+        + "1111111111111111"
+        // 0x80 - 0x8f: or, xor, iinc, conversions
+        + "1111311111111111"
+        // 0x90 - 0x9f: conversions, compares, if*
+        + "1111111113333333"
+        // 0xa0 - 0xaf: if*, goto, jsr, ret, tableswitch, lookupswitch, *return
+        + "3333333332001111"
+        // 0xb0 - 0xbf: return, field access, invokes, new, newarray, arraylength, athrow
+        + "1133333335532311"
+        // 0xc0 - 0xcf: checkcast, instanceof, monitor*, wide, multianewarray, if*null, goto_w
+        + "3311043355000000";
+    for (int i = 0; i < lengths.length(); i++) {
+      INSTRUCTION_LENGTHS[i] = (byte) (lengths.charAt(i) - '0');
+    }
+  }
+
+  /**
+   * A reference to a method or field from a class file's constant pool.
+   * Owner names are binary names, such as "java.util.Map$Entry".
+   */
+  public static class MemberReference {
+    private final String owner;
+    private final String name;
+    private final String descriptor;
+
+    MemberReference(String owner, String name, String descriptor) {
+      this.owner = owner;
+      this.name = name;
+      this.descriptor = descriptor;
+    }
+
+    public String getOwner() {
+      return owner;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getDescriptor() {
+      return descriptor;
+    }
+
+    public boolean isConstructor() {
+      return name.equals("<init>");
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof MemberReference)) {
+        return false;
+      }
+      MemberReference ref = (MemberReference) other;
+      return owner.equals(ref.owner) && name.equals(ref.name) && descriptor.equals(ref.descriptor);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(owner, name, descriptor);
+    }
+
+    @Override
+    public String toString() {
+      return owner + '.' + name + descriptor;
+    }
+  }
+
+  /**
+   * A method declared by the scanned class, with the methods its body invokes.
+   */
+  public static class Method {
+    private final String name;
+    private final String descriptor;
+    private final int access;
+    private final Set<MemberReference> invokedMethods;
+
+    Method(String name, String descriptor, int access, Set<MemberReference> invokedMethods) {
+      this.name = name;
+      this.descriptor = descriptor;
+      this.access = access;
+      this.invokedMethods = invokedMethods;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getDescriptor() {
+      return descriptor;
+    }
+
+    /**
+     * Returns the method's access flags, as defined by java.lang.reflect.Modifier.
+     */
+    public int getAccess() {
+      return access;
+    }
+
+    public boolean isConstructor() {
+      return name.equals("<init>");
+    }
+
+    public boolean isClassInitializer() {
+      return name.equals("<clinit>");
+    }
+
+    /**
+     * Returns the methods invoked by this method's body, in bytecode order.
+     */
+    public Set<MemberReference> getInvokedMethods() {
+      return invokedMethods;
+    }
+  }
+
+  private final String className;
+  private final String superclassName;
+  private final List<String> interfaceNames;
+  private final int access;
+  private final List<Method> methods;
+  private final Set<MemberReference> methodHandles;
+
+  private ClassFileScanner(String className, String superclassName, List<String> interfaceNames,
+      int access, List<Method> methods, Set<MemberReference> methodHandles) {
+    this.className = className;
+    this.superclassName = superclassName;
+    this.interfaceNames = interfaceNames;
+    this.access = access;
+    this.methods = methods;
+    this.methodHandles = methodHandles;
+  }
+
+  public static ClassFileScanner scan(InputFile file) throws IOException {
+    try (InputStream in = file.getInputStream()) {
+      return scan(ByteStreams.toByteArray(in));
+    }
+  }
+
+  public static ClassFileScanner scan(byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("not a class file");
+    }
+    in.readUnsignedShort();  // minor_version
+    in.readUnsignedShort();  // major_version
+    ConstantPool pool = new ConstantPool(in);
+
+    int access = in.readUnsignedShort();
+    String className = pool.getClassName(in.readUnsignedShort());
+    int superIndex = in.readUnsignedShort();
+    String superclassName = superIndex != 0 ? pool.getClassName(superIndex) : null;
+    int interfaceCount = in.readUnsignedShort();
+    List<String> interfaceNames = new ArrayList<>(interfaceCount);
+    for (int i = 0; i < interfaceCount; i++) {
+      interfaceNames.add(pool.getClassName(in.readUnsignedShort()));
+    }
+
+    int fieldCount = in.readUnsignedShort();
+    for (int i = 0; i < fieldCount; i++) {
+      in.skipBytes(6);  // access_flags, name_index, descriptor_index
+      skipAttributes(in);
+    }
+
+    int methodCount = in.readUnsignedShort();
+    List<Method> methods = new ArrayList<>(methodCount);
+    for (int i = 0; i < methodCount; i++) {
+      int methodAccess = in.readUnsignedShort();
+      String name = pool.getUtf8(in.readUnsignedShort());
+      String descriptor = pool.getUtf8(in.readUnsignedShort());
+      Set<MemberReference> invoked = new LinkedHashSet<>();
+      int attributeCount = in.readUnsignedShort();
+      for (int j = 0; j < attributeCount; j++) {
+        String attributeName = pool.getUtf8(in.readUnsignedShort());
+        int length = in.readInt();
+        if (attributeName.equals("Code")) {
+          byte[] code = new byte[length];
+          in.readFully(code);
+          scanCode(code, pool, invoked);
+        } else {
+          in.skipBytes(length);
+        }
+      }
+      methods.add(new Method(name, descriptor, methodAccess, Collections.unmodifiableSet(invoked)));
+    }
+    return new ClassFileScanner(className, superclassName,
+        Collections.unmodifiableList(interfaceNames), access,
+        Collections.unmodifiableList(methods), pool.getMethodHandles());
+  }
+
+  private static void skipAttributes(DataInputStream in) throws IOException {
+    int attributeCount = in.readUnsignedShort();
+    for (int i = 0; i < attributeCount; i++) {
+      in.skipBytes(2);  // attribute_name_index
+      in.skipBytes(in.readInt());
+    }
+  }
+
+  /**
+   * Scans a Code attribute's bytecode for invoke instructions.
+   */
+  private static void scanCode(byte[] attribute, ConstantPool pool, Set<MemberReference> invoked)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(attribute));
+    in.skipBytes(4);  // max_stack, max_locals
+    int codeLength = in.readInt();
+    byte[] code = new byte[codeLength];
+    in.readFully(code);
+    int pc = 0;
+    while (pc < codeLength) {
+      int opcode = code[pc] & 0xff;
+      switch (opcode) {
+        case INVOKEVIRTUAL:
+        case INVOKESPECIAL:
+        case INVOKESTATIC:
+        case INVOKEINTERFACE:
+          invoked.add(pool.getMemberReference(readU2(code, pc + 1)));
+          pc += INSTRUCTION_LENGTHS[opcode];
+          break;
+        case TABLESWITCH: {
+          int operands = (pc + 4) & ~3;  // Skip padding to a 4-byte boundary.
+          int low = readS4(code, operands + 4);
+          int high = readS4(code, operands + 8);
+          pc = operands + 12 + (high - low + 1) * 4;
+          break;
+        }
+        case LOOKUPSWITCH: {
+          int operands = (pc + 4) & ~3;
+          int pairs = readS4(code, operands + 4);
+          pc = operands + 8 + pairs * 8;
+          break;
+        }
+        case WIDE:
+          pc += (code[pc + 1] & 0xff) == IINC ? 6 : 4;
+          break;
+        default:
+          int length = INSTRUCTION_LENGTHS[opcode];
+          if (length == 0) {
+            throw new IOException("invalid opcode " + opcode + " at " + pc);
+          }
+          pc += length;
+      }
+    }
+  }
+
+  private static int readU2(byte[] code, int offset) {
+    return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+  }
+
+  private static int readS4(byte[] code, int offset) {
+    return (readU2(code, offset) << 16) | readU2(code, offset + 2);
+  }
+
+  /**
+   * Returns the binary name of the scanned class.
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * Returns the binary name of the superclass, or null for java.lang.Object.
+   */
+  public String getSuperclassName() {
+    return superclassName;
+  }
+
+  public List<String> getInterfaceNames() {
+    return interfaceNames;
+  }
+
+  /**
+   * Returns the class's access flags, as defined by java.lang.reflect.Modifier.
+   */
+  public int getAccess() {
+    return access;
+  }
+
+  public List<Method> getMethods() {
+    return methods;
+  }
+
+  /**
+   * Returns the methods referenced by method handle constants, such as
+   * lambda implementations and method reference targets.
+   */
+  public Set<MemberReference> getMethodHandles() {
+    return methodHandles;
+  }
+
+  /**
+   * The subset of a constant pool needed to resolve class and member references.
+   */
+  private static class ConstantPool {
+    private final int[] tags;
+    private final int[] values;
+    private final String[] strings;
+
+    ConstantPool(DataInputStream in) throws IOException {
+      int count = in.readUnsignedShort();
+      tags = new int[count];
+      values = new int[count];
+      strings = new String[count];
+      for (int i = 1; i < count; i++) {
+        int tag = in.readUnsignedByte();
+        tags[i] = tag;
+        switch (tag) {
+          case CONSTANT_UTF8:
+            strings[i] = in.readUTF();
+            break;
+          case CONSTANT_CLASS:
+          case CONSTANT_STRING:
+          case CONSTANT_METHOD_TYPE:
+          case CONSTANT_MODULE:
+          case CONSTANT_PACKAGE:
+            values[i] = in.readUnsignedShort();
+            break;
+          case CONSTANT_FIELDREF:
+          case CONSTANT_METHODREF:
+          case CONSTANT_INTERFACE_METHODREF:
+          case CONSTANT_NAME_AND_TYPE:
+          case CONSTANT_DYNAMIC:
+          case CONSTANT_INVOKE_DYNAMIC:
+            // Pack both indexes, since each is an unsigned short.
+            values[i] = in.readInt();
+            break;
+          case CONSTANT_INTEGER:
+          case CONSTANT_FLOAT:
+            in.skipBytes(4);
+            break;
+          case CONSTANT_LONG:
+          case CONSTANT_DOUBLE:
+            in.skipBytes(8);
+            i++;  // Eight-byte constants take two pool entries.
+            break;
+          case CONSTANT_METHOD_HANDLE:
+            in.skipBytes(1);  // reference_kind
+            values[i] = in.readUnsignedShort();
+            break;
+          default:
+            throw new IOException("invalid constant pool tag " + tag + " at index " + i);
+        }
+      }
+    }
+
+    String getUtf8(int index) {
+      return strings[index];
+    }
+
+    String getClassName(int index) {
+      String internalName = getUtf8(values[index]);
+      // Arrays are referenced by descriptor; their members are Object's.
+      return internalName.startsWith("[") ? "java.lang.Object" : internalName.replace('/', '.');
+    }
+
+    MemberReference getMemberReference(int index) {
+      int ref = values[index];
+      int nameAndType = values[ref & 0xffff];
+      return new MemberReference(getClassName(ref >>> 16),
+          getUtf8(nameAndType >>> 16), getUtf8(nameAndType & 0xffff));
+    }
+
+    Set<MemberReference> getMethodHandles() {
+      Set<MemberReference> handles = new LinkedHashSet<>();
+      for (int i = 1; i < tags.length; i++) {
+        if (tags[i] == CONSTANT_METHOD_HANDLE) {
+          int target = values[i];
+          if (tags[target] == CONSTANT_METHODREF || tags[target] == CONSTANT_INTERFACE_METHODREF) {
+            handles.add(getMemberReference(target));
+          }
+        }
+      }
+      return Collections.unmodifiableSet(handles);
+    }
+  }
+}
@@ -84,7 +84,7 @@ public class CodeReferenceMap {
   private final ImmutableMultimap<String, String> referencedFields;
   private final Set<String> hasConstructorRemovedClasses = new HashSet<>();
 
-  private CodeReferenceMap(
+  CodeReferenceMap(
       ImmutableSet<String> referencedClasses,
       ImmutableTable<String, String, ImmutableSet<String>> referencedMethods,
       ImmutableMultimap<String, String> referencedFields) {
@@ -146,9 +146,9 @@ public class CodeReferenceMap {
   public String toString() {
     StringBuilder builder = new StringBuilder();
 
-    builder.append(referencedClasses.asList().toString() + "\n");
-    builder.append(referencedFields.toString() + "\n");
-    builder.append(referencedMethods.toString());
+    builder.append(getReferencedClasses().asList().toString() + "\n");
+    builder.append(getReferencedFields().toString() + "\n");
+    builder.append(getReferencedMethods().toString());
 
     return builder.toString();
   }
@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the errors and warnings of a translation. Messages can be reported
+ * from any thread. The counts are always exact, but only the first
+ * maxMessages messages are kept. Each message is also printed to the
+ * diagnostics' own output stream as it's reported, if it has one.
+ *
+ * @see ErrorUtil#setDiagnostics
+ */
+public class Diagnostics {
+
+  public static final int DEFAULT_MAX_MESSAGES = 10000;
+
+  /**
+   * The severity of a diagnostic message.
+   */
+  public enum Severity {
+    ERROR,
+    WARNING
+  }
+
+  /**
+   * A reported error or warning, with the file, line and pass it was reported
+   * from, when known.
+   */
+  public static final class Message {
+    private final Severity severity;
+    private final String file;
+    private final int line;
+    private final String pass;
+    private final String text;
+    private final long sequence;
+
+    private Message(
+        Severity severity, String file, int line, String pass, String text, long sequence) {
+      this.severity = severity;
+      this.file = file;
+      this.line = line;
+      this.pass = pass;
+      this.text = text;
+      this.sequence = sequence;
+    }
+
+    public Severity getSeverity() {
+      return severity;
+    }
+
+    /**
+     * Returns the source file of the message, or null if it isn't known.
+     */
+    public String getFile() {
+      return file;
+    }
+
+    /**
+     * Returns the line number of the message, or -1 if it isn't known.
+     */
+    public int getLine() {
+      return line;
+    }
+
+    /**
+     * Returns the translation pass that reported the message, or null if it
+     * wasn't reported by a pass.
+     */
+    public String getPass() {
+      return pass;
+    }
+
+    /**
+     * Returns the message as it was reported. Messages reported for a tree
+     * node start with the node's file and line.
+     */
+    public String getText() {
+      return text;
+    }
+
+    @Override
+    public String toString() {
+      return (severity == Severity.ERROR ? "error: " : "warning: ") + text;
+    }
+  }
+
+  // Messages without a file sort first, then by file, then in reporting order.
+  // Each file is translated by one thread, so the order doesn't depend on scheduling.
+  private static final Comparator<Message> MESSAGE_ORDER =
+      Comparator.comparing((Message m) -> m.file, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparingLong(m -> m.sequence);
+
+  private final int maxMessages;
+  private final PrintStream output;
+  private final AtomicInteger errorCount = new AtomicInteger();
+  private final AtomicInteger warningCount = new AtomicInteger();
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicInteger keptMessages = new AtomicInteger();
+  private final ConcurrentLinkedQueue<Message> messages = new ConcurrentLinkedQueue<>();
+
+  public Diagnostics() {
+    this(DEFAULT_MAX_MESSAGES);
+  }
+
+  public Diagnostics(int maxMessages) {
+    this(maxMessages, System.err);
+  }
+
+  /**
+   * @param output the stream messages are printed to, or null to only
+   *     collect them
+   */
+  public Diagnostics(int maxMessages, PrintStream output) {
+    this.maxMessages = maxMessages;
+    this.output = output;
+  }
+
+  /**
+   * Returns new, empty diagnostics with the same settings as these.
+   */
+  public Diagnostics newEmpty() {
+    return new Diagnostics(maxMessages, output);
+  }
+
+  /**
+   * Records a message.
+   *
+   * @param file the source file, or null
+   * @param line the line number, or -1
+   * @param pass the reporting pass, or null
+   */
+  public void report(Severity severity, String file, int line, String pass, String text) {
+    (severity == Severity.ERROR ? errorCount : warningCount).incrementAndGet();
+    long seq = sequence.getAndIncrement();
+    if (keptMessages.getAndIncrement() < maxMessages) {
+      messages.add(new Message(severity, file, line, pass, text, seq));
+    } else {
+      keptMessages.decrementAndGet();
+    }
+  }
+
+  /**
+   * Prints a formatted message to the output stream, if there is one.
+   */
+  public void print(String message) {
+    if (output != null) {
+      output.println(message);
+    }
+  }
+
+  public int errorCount() {
+    return errorCount.get();
+  }
+
+  public int warningCount() {
+    return warningCount.get();
+  }
+
+  /**
+   * Returns the kept messages, grouped by file and in reporting order within
+   * each file.
+   */
+  public List<Message> getMessages() {
+    List<Message> result = new ArrayList<>(messages);
+    Collections.sort(result, MESSAGE_ORDER);
+    return result;
+  }
+
+  /**
+   * Returns the text of the kept messages with a severity, in reporting order.
+   */
+  public List<String> getMessageTexts(Severity severity) {
+    List<Message> sorted = new ArrayList<>(messages);
+    sorted.sort(Comparator.comparingLong(m -> m.sequence));
+    List<String> result = new ArrayList<>();
+    for (Message message : sorted) {
+      if (message.severity == severity) {
+        result.add(message.text);
+      }
+    }
+    return result;
+  }
+}
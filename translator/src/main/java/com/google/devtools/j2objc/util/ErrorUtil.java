@@ -14,12 +14,10 @@
 
 package com.google.devtools.j2objc.util;
 
-import com.google.common.collect.Lists;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.TreeNode;
 import com.google.devtools.j2objc.ast.TreeUtil;
-import java.io.OutputStream;
-import java.io.PrintStream;
+import com.google.devtools.j2objc.util.Diagnostics.Severity;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.List;
@@ -32,17 +30,18 @@ import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 
 /**
- * Provides convenient static error and warning methods.
+ * Provides convenient static error and warning methods. Messages are
+ * collected in a {@link Diagnostics}, along with the source file and
+ * translation pass they were reported from, and printed to its stream.
  *
  * @author Tom Ball, Keith Stanger
  */
 public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
 
-  private static int errorCount = 0;
-  private static int warningCount = 0;
-  private static PrintStream errorStream = System.err;
-  private static List<String> errorMessages = Lists.newArrayList();
-  private static List<String> warningMessages = Lists.newArrayList();
+  private static volatile Diagnostics diagnostics = new Diagnostics();
+  private static final ThreadLocal<Diagnostics> threadDiagnostics = new ThreadLocal<>();
+  private static final ThreadLocal<String> currentFile = new ThreadLocal<>();
+  private static final ThreadLocal<String> currentPass = new ThreadLocal<>();
   // Captures whether the translator should emit clang style message. Clang style messages
   // are particularly useful when the translator is being invoked by Xcode build rules.
   // Xcode will be able to pick the file path and line number, hence make it easy to address
@@ -50,29 +49,79 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
   // Ideally this should be set by a command line switch, but for now we tell that by checking
   // the DEVELOPER_DIR environment variable set by Xcode.
   private static final boolean CLANG_STYLE_ERROR_MSG = (null != System.getenv("DEVELOPER_DIR"));
-  private static Pattern pathAndLinePattern = null;
+  private static final Pattern pathAndLinePattern = Pattern.compile(".+?\\.java:\\d+: ");
 
+  /**
+   * Discards the messages and counts of the current thread's diagnostics.
+   */
   public static void reset() {
-    errorCount = 0;
-    warningCount = 0;
-    errorMessages = Lists.newArrayList();
-    warningMessages = Lists.newArrayList();
+    replaceDiagnostics(getDiagnostics().newEmpty());
+  }
+
+  private static void replaceDiagnostics(Diagnostics newDiagnostics) {
+    if (threadDiagnostics.get() != null) {
+      threadDiagnostics.set(newDiagnostics);
+    } else {
+      diagnostics = newDiagnostics;
+    }
+  }
+
+  /**
+   * Returns the diagnostics that errors and warnings reported by the current
+   * thread are collected in.
+   */
+  public static Diagnostics getDiagnostics() {
+    Diagnostics result = threadDiagnostics.get();
+    return result != null ? result : diagnostics;
+  }
+
+  /**
+   * Collects the errors and warnings reported by the current thread in
+   * separate diagnostics, so translations that run concurrently in one
+   * process don't share counts. Passing null restores the shared diagnostics.
+   */
+  public static void setDiagnostics(Diagnostics threadLocal) {
+    if (threadLocal != null) {
+      threadDiagnostics.set(threadLocal);
+    } else {
+      threadDiagnostics.remove();
+    }
+  }
+
+  /**
+   * Sets the source file that the current thread's messages are reported
+   * for, and returns the previous one.
+   */
+  public static String setFileContext(String path) {
+    String previous = currentFile.get();
+    currentFile.set(path);
+    return previous;
+  }
+
+  /**
+   * Sets the translation pass that the current thread's messages are
+   * reported from, and returns the previous one.
+   */
+  public static String setPassContext(String pass) {
+    String previous = currentPass.get();
+    currentPass.set(pass);
+    return previous;
   }
 
   public static int errorCount() {
-    return errorCount;
+    return getDiagnostics().errorCount();
   }
 
   public static int warningCount() {
-    return warningCount;
+    return getDiagnostics().warningCount();
   }
 
   public static List<String> getErrorMessages() {
-    return errorMessages;
+    return getDiagnostics().getMessageTexts(Severity.ERROR);
   }
 
   public static List<String> getWarningMessages() {
-    return warningMessages;
+    return getDiagnostics().getMessageTexts(Severity.WARNING);
   }
 
   /**
@@ -80,10 +129,7 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
    * printed to System.err.
    */
   public static void setTestMode() {
-    errorStream = new PrintStream(new OutputStream() {
-      @Override
-      public void write(int b) {}
-    });
+    replaceDiagnostics(new Diagnostics(Diagnostics.DEFAULT_MAX_MESSAGES, null));
   }
 
   public static String getFullMessage(String tag, String message, boolean clangStyle) {
@@ -92,9 +138,6 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
       // Try to find the file path and line number, and then insert the tag after that,
       // in order to get a message in the following format.
       // <file_path>:<line_number>: error: <detailed_message>
-      if (pathAndLinePattern == null) {
-        pathAndLinePattern = Pattern.compile(".+?\\.java:\\d+: ");
-      }
       Matcher matcher = pathAndLinePattern.matcher(message);
       if (matcher.find()) {
         fullMessage = matcher.group(0) + matcher.replaceFirst(tag);
@@ -109,50 +152,59 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
 
   public static void parserDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
     Kind kind = diagnostic.getKind();
+    Severity severity;
     if (kind == Kind.ERROR) {
-      errorMessages.add(diagnostic.getMessage(null));
-      errorCount++;
+      severity = Severity.ERROR;
     } else if (kind == Kind.MANDATORY_WARNING || kind == Kind.WARNING) {
-      warningMessages.add(diagnostic.getMessage(null));
-      warningCount++;
+      severity = Severity.WARNING;
     } else {
       return;
     }
+    JavaFileObject source = diagnostic.getSource();
+    Diagnostics diagnostics = getDiagnostics();
+    diagnostics.report(severity, source != null ? source.getName() : null,
+        (int) diagnostic.getLineNumber(), null, diagnostic.getMessage(null));
     String msg;
-    if (CLANG_STYLE_ERROR_MSG && diagnostic.getSource() != null) {
-      msg = String.format("error: %s:%d: %s", diagnostic.getSource().getName(),
+    if (CLANG_STYLE_ERROR_MSG && source != null) {
+      msg = String.format("error: %s:%d: %s", source.getName(),
           diagnostic.getLineNumber(), diagnostic.getMessage(null).trim());
     } else {
       msg = diagnostic.toString().trim();
     }
-    errorStream.println(msg);
+    diagnostics.print(msg);
   }
 
-  // TODO(tball): Consider more ways to associate errors with GenerationUnits to aid debugging.
   public static void error(String message) {
-    errorMessages.add(message);
-    errorStream.println(getFullMessage("error: ", message, CLANG_STYLE_ERROR_MSG));
-    errorCount++;
+    report(Severity.ERROR, currentFile.get(), -1, message);
   }
 
   public static void warning(String message) {
-    warningMessages.add(message);
-    errorStream.println(getFullMessage("warning: ", message, CLANG_STYLE_ERROR_MSG));
-    warningCount++;
+    report(Severity.WARNING, currentFile.get(), -1, message);
   }
 
   /**
    * Report an error with a specific AST node.
    */
   public static void error(TreeNode node, String message) {
-    error(formatMessage(node, message));
+    CompilationUnit unit = TreeUtil.getCompilationUnit(node);
+    report(Severity.ERROR, unit.getSourceFilePath(), node.getLineNumber(),
+        formatMessage(unit, node, message));
   }
 
   /**
    * Report a warning with a specific AST node.
    */
   public static void warning(TreeNode node, String message) {
-    warning(formatMessage(node, message));
+    CompilationUnit unit = TreeUtil.getCompilationUnit(node);
+    report(Severity.WARNING, unit.getSourceFilePath(), node.getLineNumber(),
+        formatMessage(unit, node, message));
+  }
+
+  private static void report(Severity severity, String file, int line, String message) {
+    Diagnostics diagnostics = getDiagnostics();
+    diagnostics.report(severity, file, line, currentPass.get(), message);
+    String tag = severity == Severity.ERROR ? "error: " : "warning: ";
+    diagnostics.print(getFullMessage(tag, message, CLANG_STYLE_ERROR_MSG));
   }
 
   /**
@@ -167,8 +219,7 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
     error(msg.toString());
   }
 
-  private static String formatMessage(TreeNode node, String message) {
-    CompilationUnit unit = TreeUtil.getCompilationUnit(node);
+  private static String formatMessage(CompilationUnit unit, TreeNode node, String message) {
     return String.format("%s:%s: %s", unit.getSourceFilePath(), node.getLineNumber(), message);
   }
 
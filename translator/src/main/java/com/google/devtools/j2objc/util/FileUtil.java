@@ -13,13 +13,10 @@
  */
 package com.google.devtools.j2objc.util;
 
-import com.google.common.io.CharStreams;
 import com.google.devtools.j2objc.J2ObjC;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.PackageDeclaration;
 import com.google.devtools.j2objc.file.InputFile;
-import com.google.devtools.j2objc.file.JarredInputFile;
-import com.google.devtools.j2objc.file.RegularInputFile;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -50,6 +47,9 @@ public class FileUtil {
   private File outputDirectory = new File(".");
   private String fileEncoding = System.getProperty("file.encoding", "UTF-8");
   private Charset charset = Charset.forName(fileEncoding);
+  private final PathIndex sourcePathIndex = new PathIndex(".java");
+  private final PathIndex classPathIndex = new PathIndex(".class");
+  private final SourceCache sourceCache = new SourceCache();
 
   public void setSourcePathEntries(List<String> sourcePathEntries) {
     this.sourcePathEntries = sourcePathEntries;
@@ -85,6 +85,7 @@ public class FileUtil {
   public void setFileEncoding(String fileEncoding) {
     this.fileEncoding = fileEncoding;
     charset = Charset.forName(fileEncoding);
+    sourceCache.clear();
   }
 
   public String getFileEncoding() {
@@ -139,7 +140,7 @@ public class FileUtil {
    */
   @Nullable
   public InputFile findOnSourcePath(String qualifiedName) throws IOException {
-    return findOnPaths(qualifiedName, sourcePathEntries, ".java");
+    return sourcePathIndex.find(qualifiedName, sourcePathEntries);
   }
 
   /**
@@ -149,35 +150,28 @@ public class FileUtil {
    */
   @Nullable
   public InputFile findOnClassPath(String qualifiedName) throws IOException {
-    return findOnPaths(qualifiedName, classPathEntries, ".class");
+    return classPathIndex.find(qualifiedName, classPathEntries);
   }
 
-  private static InputFile findOnPaths(
-      String qualifiedName, List<String> paths, String extension) throws IOException {
-    String sourceFileName = qualifiedName.replace('.', File.separatorChar) + extension;
-    // Zip/jar files always use forward slashes.
-    String jarEntryName = qualifiedName.replace('.', '/') + extension;
-    for (String pathEntry : paths) {
-      File f = new File(pathEntry);
-      if (f.isDirectory()) {
-        RegularInputFile regularFile = new RegularInputFile(
-            pathEntry + File.separatorChar + sourceFileName, sourceFileName);
-        if (regularFile.exists()) {
-          return regularFile;
-        }
-      } else {
-        // Assume it's a jar file
-        JarredInputFile jarFile = new JarredInputFile(pathEntry, jarEntryName);
-        if (jarFile.exists()) {
-          return jarFile;
-        }
-      }
-    }
-    return null;
+  /**
+   * Drops the source and class path indexes, after files are added to or
+   * removed from a path entry.
+   */
+  public void clearPathIndexes() {
+    sourcePathIndex.clear();
+    classPathIndex.clear();
   }
 
+  /**
+   * Reads a file's source, replacing malformed or unmappable input. Files on
+   * disk are only read once while they're unchanged, see {@link SourceCache}.
+   */
   public String readFile(InputFile file) throws IOException {
-    return CharStreams.toString(file.openReader(charset));
+    return sourceCache.readString(file, charset, true);
+  }
+
+  public SourceCache getSourceCache() {
+    return sourceCache;
   }
 
   private static InputStream streamForFile(String filename) throws IOException {
@@ -270,6 +264,7 @@ public class FileUtil {
   public File extractClassesJarFromAarFile(File aarFile) {
     try (ZipFile zfile = new ZipFile(aarFile)) {
       File tempDir = FileUtil.createTempDir(aarFile.getName());
+      addTempDir(tempDir.getPath());
       ZipEntry entry = zfile.getEntry("classes.jar");
       if (entry == null) {
         ErrorUtil.warning(aarFile.getPath() + " does not have a classes.jar entry");
@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.file.JarredInputFile;
+import com.google.devtools.j2objc.file.MappedJarFile;
+import com.google.devtools.j2objc.file.RegularInputFile;
+import com.google.devtools.j2objc.util.PackageInfoLookup.PackageData;
+import com.google.j2objc.annotations.ReflectionSupport;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A persistent index of the package-info annotations on each sourcepath and
+ * classpath entry, so that later translations don't search for and parse
+ * each package's package-info file again.
+ *
+ * <p>An entry's index is written to the index directory when the entry is
+ * first searched. It's reused until the entry changes: a jar when its
+ * contents hash differs, and a directory when the modification time of any
+ * of its subdirectories or package-info files differs. The translation's
+ * temporary directories aren't indexed, since they have a new path in each
+ * translation and their index would never be reused.
+ */
+class PackageInfoIndex {
+
+  private static final String HEADER = "# j2objc package-info index 1";
+  private static final Splitter TAB_SPLITTER = Splitter.on('\t');
+
+  private final File directory;
+  private final PackageInfoLookup lookup;
+  private final Set<String> tempDirs;
+  // Maps each path entry and file extension to its packages' data.
+  private final Map<String, Map<String, PackageData>> roots = new HashMap<>();
+
+  PackageInfoIndex(File directory, PackageInfoLookup lookup, Set<String> tempDirs) {
+    this.directory = directory;
+    this.lookup = lookup;
+    this.tempDirs = tempDirs;
+  }
+
+  /**
+   * Returns the data of the first package-info for a package on the
+   * sourcepath, then the classpath, or null if there isn't one.
+   */
+  synchronized PackageData find(
+      String packageName, List<String> sourcePath, List<String> classPath) throws IOException {
+    for (String entry : sourcePath) {
+      PackageData data = getRoot(entry, ".java").get(packageName);
+      if (data != null) {
+        return data;
+      }
+    }
+    for (String entry : classPath) {
+      PackageData data = getRoot(entry, ".class").get(packageName);
+      if (data != null) {
+        return data;
+      }
+    }
+    return null;
+  }
+
+  private Map<String, PackageData> getRoot(String entry, String extension) throws IOException {
+    String key = entry + File.pathSeparatorChar + extension;
+    Map<String, PackageData> packages = roots.get(key);
+    if (packages == null) {
+      packages = loadRoot(new File(entry), extension);
+      roots.put(key, packages);
+    }
+    return packages;
+  }
+
+  private Map<String, PackageData> loadRoot(File root, String extension) throws IOException {
+    if (!root.exists()) {
+      return new HashMap<>();
+    }
+    Map<String, PackageData> packages = new TreeMap<>();
+    List<String> stamp = new ArrayList<>();
+    if (isTemporary(root)) {
+      scan(root, extension, packages, stamp);
+      return packages;
+    }
+    String name = Hashing.sha256()
+        .hashString(root.getCanonicalPath() + extension, StandardCharsets.UTF_8).toString();
+    File indexFile = new File(directory, name + ".txt");
+    if (indexFile.exists()
+        && readIndex(indexFile, packages, stamp) && isCurrent(root, stamp)) {
+      return packages;
+    }
+    packages.clear();
+    stamp.clear();
+    scan(root, extension, packages, stamp);
+    writeIndex(indexFile, packages, stamp);
+    return packages;
+  }
+
+  private boolean isTemporary(File root) throws IOException {
+    String path = root.getCanonicalPath();
+    for (String tempDir : tempDirs) {
+      String tempPath = new File(tempDir).getCanonicalPath();
+      if (path.equals(tempPath) || path.startsWith(tempPath + File.separator)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void scan(File root, String extension, Map<String, PackageData> packages,
+      List<String> stamp) throws IOException {
+    if (root.isDirectory()) {
+      scanDirectory(root, "", extension, packages, stamp);
+    } else {
+      scanJar(root, extension, packages, stamp);
+    }
+  }
+
+  private void scanDirectory(File dir, String relativePath, String extension,
+      Map<String, PackageData> packages, List<String> stamp) throws IOException {
+    stamp.add("dir\t" + relativePath + "\t" + dir.lastModified());
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String path = relativePath.isEmpty() ? file.getName() : relativePath + '/' + file.getName();
+      if (file.isDirectory()) {
+        scanDirectory(file, path, extension, packages, stamp);
+      } else if (file.getName().equals("package-info" + extension)) {
+        stamp.add("file\t" + path + "\t" + file.lastModified());
+        InputFile input = new RegularInputFile(file.getPath(), path);
+        packages.put(relativePath.replace('/', '.'), parse(input, extension));
+      }
+    }
+  }
+
+  private void scanJar(File jar, String extension, Map<String, PackageData> packages,
+      List<String> stamp) throws IOException {
+    stamp.add("jar\t" + jar.length() + "\t" + jar.lastModified() + "\t" + hash(jar));
+    MappedJarFile mappedJar = MappedJarFile.open(jar);
+    String fileName = "package-info" + extension;
+    for (String entryName : mappedJar.getEntryNames()) {
+      if (entryName.equals(fileName) || entryName.endsWith('/' + fileName)) {
+        String packagePath = entryName.substring(0, Math.max(entryName.lastIndexOf('/'), 0));
+        InputFile input = extension.equals(".java")
+            ? new JarredInputFile(mappedJar, entryName)
+            : new JarredInputFile(jar.getPath(), entryName);
+        packages.put(packagePath.replace('/', '.'), parse(input, extension));
+      }
+    }
+  }
+
+  private PackageData parse(InputFile file, String extension) throws IOException {
+    return extension.equals(".java")
+        ? lookup.parseDataFromSourceFile(file) : lookup.parseDataFromClassFile(file);
+  }
+
+  private static String hash(File file) throws IOException {
+    return Files.asByteSource(file).hash(Hashing.sha256()).toString();
+  }
+
+  /**
+   * Returns whether a path entry is unchanged since its index was written.
+   */
+  private static boolean isCurrent(File root, List<String> stamp) throws IOException {
+    for (String line : stamp) {
+      List<String> fields = TAB_SPLITTER.splitToList(line);
+      switch (fields.get(0)) {
+        case "jar":
+          if (root.length() == Long.parseLong(fields.get(1))
+              && root.lastModified() == Long.parseLong(fields.get(2))) {
+            break;
+          }
+          // The jar was written again; it's unchanged if its contents are.
+          if (!hash(root).equals(fields.get(3))) {
+            return false;
+          }
+          break;
+        case "dir":
+        case "file":
+          File file = fields.get(1).isEmpty() ? root : new File(root, fields.get(1));
+          if (file.lastModified() != Long.parseLong(fields.get(2))) {
+            return false;
+          }
+          break;
+        default:
+          return false;
+      }
+    }
+    return !stamp.isEmpty();
+  }
+
+  private static boolean readIndex(
+      File indexFile, Map<String, PackageData> packages, List<String> stamp) {
+    try {
+      List<String> lines = Files.readLines(indexFile, StandardCharsets.UTF_8);
+      if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+        return false;
+      }
+      for (String line : lines.subList(1, lines.size())) {
+        List<String> fields = TAB_SPLITTER.splitToList(line);
+        if (!fields.get(0).equals("package")) {
+          stamp.add(line);
+          continue;
+        }
+        PackageInfoLookup.PackageDataBuilder builder = new PackageInfoLookup.PackageDataBuilder();
+        if (!fields.get(2).isEmpty()) {
+          builder.setObjectiveCName(fields.get(2));
+        }
+        if (Boolean.parseBoolean(fields.get(3))) {
+          builder.setParametersAreNonnullByDefault();
+        }
+        if (!fields.get(4).isEmpty()) {
+          builder.setReflectionSupportLevel(ReflectionSupport.Level.valueOf(fields.get(4)));
+        }
+        if (!fields.get(5).isEmpty()) {
+          builder.setWarning(fields.get(5));
+        }
+        packages.put(fields.get(1), builder.build());
+      }
+      return true;
+    } catch (IOException | RuntimeException e) {
+      // Rebuild an unreadable index.
+      return false;
+    }
+  }
+
+  private void writeIndex(File indexFile, Map<String, PackageData> packages, List<String> stamp) {
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    writer.println(HEADER);
+    for (String line : stamp) {
+      writer.println(line);
+    }
+    for (Map.Entry<String, PackageData> entry : packages.entrySet()) {
+      PackageData data = entry.getValue();
+      writer.printf("package\t%s\t%s\t%b\t%s\t%s\n", entry.getKey(),
+          Strings.nullToEmpty(data.objectiveCName), data.parametersAreNonnullByDefault,
+          data.reflectionSupportLevel != null ? data.reflectionSupportLevel.name() : "",
+          Strings.nullToEmpty(data.warning));
+    }
+    writer.flush();
+    File tempFile = null;
+    try {
+      directory.mkdirs();
+      // Written to a temporary file first, so concurrent translations never
+      // read a partial index.
+      tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+      Files.asCharSink(tempFile, StandardCharsets.UTF_8).write(out.toString());
+      java.nio.file.Files.move(tempFile.toPath(), indexFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+      ErrorUtil.warning("cannot write package-info index: " + e.getMessage());
+    }
+  }
+}
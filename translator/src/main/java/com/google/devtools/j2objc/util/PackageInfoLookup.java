@@ -21,6 +21,7 @@ import com.strobel.decompiler.languages.java.ast.Expression;
 import com.strobel.decompiler.languages.java.ast.MemberReferenceExpression;
 import com.strobel.decompiler.languages.java.ast.PrimitiveExpression;
 import com.strobel.decompiler.languages.java.ast.TypeDeclaration;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -34,6 +35,7 @@ public class PackageInfoLookup {
 
   private final Map<String, PackageData> map = new HashMap<>();
   private final FileUtil fileUtil;
+  private PackageInfoIndex index = null;
 
   private static final String REFLECTION_SUPPORT_REGEX =
       "@(?:com\\.google\\.j2objc\\.annotations\\.)?ReflectionSupport\\s*"
@@ -45,42 +47,60 @@ public class PackageInfoLookup {
     this.fileUtil = fileUtil;
   }
 
-  private static class PackageData {
+  /**
+   * Keeps an index of each sourcepath and classpath entry's package-info
+   * annotations in a directory, which later translations reuse while the
+   * entry is unchanged.
+   */
+  public void setIndexDirectory(File directory) {
+    index = new PackageInfoIndex(directory, this, fileUtil.getTempDirs());
+  }
 
-    private final String objectiveCName;
-    private final boolean parametersAreNonnullByDefault;
-    private final ReflectionSupport.Level reflectionSupportLevel;
+  static class PackageData {
+
+    final String objectiveCName;
+    final boolean parametersAreNonnullByDefault;
+    final ReflectionSupport.Level reflectionSupportLevel;
+    // Reported when the package's data is first used.
+    final String warning;
 
     private PackageData(PackageDataBuilder builder) {
       this.objectiveCName = builder.objectiveCName;
       this.parametersAreNonnullByDefault = builder.parametersAreNonnullByDefault;
       this.reflectionSupportLevel = builder.reflectionSupportLevel;
+      this.warning = builder.warning;
     }
   }
 
-  private static class PackageDataBuilder {
+  static class PackageDataBuilder {
 
     private boolean isEmpty = true;
     private String objectiveCName = null;
     private boolean parametersAreNonnullByDefault = false;
     private ReflectionSupport.Level reflectionSupportLevel;
+    private String warning = null;
 
-    private void setObjectiveCName(String objectiveCName) {
+    void setObjectiveCName(String objectiveCName) {
       this.objectiveCName = objectiveCName;
       isEmpty = false;
     }
 
-    private void setParametersAreNonnullByDefault() {
+    void setParametersAreNonnullByDefault() {
       parametersAreNonnullByDefault = true;
       isEmpty = false;
     }
 
-    private void setReflectionSupportLevel(ReflectionSupport.Level level) {
+    void setReflectionSupportLevel(ReflectionSupport.Level level) {
        this.reflectionSupportLevel = level;
        isEmpty = false;
     }
 
-    private PackageData build() {
+    void setWarning(String warning) {
+      this.warning = warning;
+      isEmpty = false;
+    }
+
+    PackageData build() {
       return isEmpty ? EMPTY_DATA : new PackageData(this);
     }
   }
@@ -102,12 +122,20 @@ public class PackageInfoLookup {
     if (result == null) {
       result = findPackageData(packageName);
       map.put(packageName, result);
+      if (result.warning != null) {
+        ErrorUtil.warning(result.warning);
+      }
     }
     return result;
   }
 
   private PackageData findPackageData(String packageName) {
     try {
+      if (index != null) {
+        PackageData data = index.find(
+            packageName, fileUtil.getSourcePathEntries(), fileUtil.getClassPathEntries());
+        return data != null ? data : EMPTY_DATA;
+      }
       String typeName = packageName + ".package-info";
       // First look on the sourcepath.
       InputFile sourceFile = fileUtil.findOnSourcePath(typeName);
@@ -153,7 +181,7 @@ public class PackageInfoLookup {
     return false;
   }
 
-  private PackageData parseDataFromSourceFile(InputFile file) throws IOException {
+  PackageData parseDataFromSourceFile(InputFile file) throws IOException {
     PackageDataBuilder builder = new PackageDataBuilder();
     String pkgInfo = fileUtil.readFile(file);
 
@@ -187,13 +215,13 @@ public class PackageInfoLookup {
         String level = m.group(1);
         builder.setReflectionSupportLevel(ReflectionSupport.Level.valueOf(level));
       } else {
-        ErrorUtil.warning("Invalid ReflectionSupport Level in " + file.getUnitName());
+        builder.setWarning("Invalid ReflectionSupport Level in " + file.getUnitName());
       }
     }
     return builder.build();
   }
 
-  private PackageData parseDataFromClassFile(InputFile file) throws IOException {
+  PackageData parseDataFromClassFile(InputFile file) throws IOException {
     PackageDataBuilder builder = new PackageDataBuilder();
     ClassFile classFile = ClassFile.create(file);
     TypeDeclaration typeDecl = classFile.getType();
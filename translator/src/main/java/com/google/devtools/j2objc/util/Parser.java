@@ -19,13 +19,17 @@ import com.google.common.collect.Lists;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.file.MemoryInputFile;
+import com.google.devtools.j2objc.file.RegularInputFile;
 import com.google.devtools.j2objc.javac.JavacParser;
-import com.google.devtools.j2objc.pipeline.ProcessingContext;
 import java.io.Closeable;
-import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.TypeElement;
 
 /**
  * Interface for interacting with the Java compiler front-end.
@@ -34,8 +38,11 @@ public abstract class Parser implements Closeable {
 
   protected final List<String> classpathEntries = Lists.newArrayList();
   protected final List<String> sourcepathEntries = Lists.newArrayList();
+  // Sources held in memory that replace sourcepath files, keyed by relative path.
+  protected final Map<String, MemoryInputFile> sourceOverlays = new LinkedHashMap<>();
   protected final Options options;
   protected boolean includeRunningVMBootclasspath = true;
+  protected boolean processAnnotations = false;
 
   protected static final Splitter PATH_SPLITTER = Splitter.on(":").omitEmptyStrings();
 
@@ -58,6 +65,24 @@ public abstract class Parser implements Closeable {
     void handleParsedUnit(String path, CompilationUnit unit);
   }
 
+  /**
+   * Handler that's also called with the units of sources generated by
+   * annotation processing, before the parsed units of the same batch.
+   */
+  public interface GeneratedSourceHandler extends Handler {
+    void handleGeneratedUnit(InputFile file, CompilationUnit unit);
+  }
+
+  /**
+   * Handler to be provided when loading class files. The provided
+   * implementation is called with the type defined by each class file,
+   * which is null when the type can't be looked up by name, such as
+   * local and anonymous classes.
+   */
+  public interface ClassFileHandler {
+    void handleClassFile(InputFile file, TypeElement type, TranslationEnvironment env);
+  }
+
   /**
    * Adds a single path to the classpath for the next compilation.
    */
@@ -113,6 +138,40 @@ public abstract class Parser implements Closeable {
     sourcepathEntries.add(0, entry);
   }
 
+  /**
+   * Adds a source that replaces a file, both as an input and on the
+   * sourcepath, without writing it to disk. Returns the input file to
+   * compile in place of the original.
+   */
+  public InputFile addSourceOverlay(InputFile file, String qualifiedName, String source) {
+    String relativePath = qualifiedName.replace('.', '/') + ".java";
+    MemoryInputFile overlay = new MemoryInputFile(file, relativePath, source);
+    sourceOverlays.put(relativePath, overlay);
+    return overlay;
+  }
+
+  /**
+   * Strips the elements marked with a J2ObjCIncompatible annotation from
+   * the source files that have any, and adds the stripped sources as source
+   * overlays. Files that are later parsed by path are compiled from their
+   * overlays.
+   */
+  public void stripIncompatibleSources(Iterable<String> paths) throws IOException {
+    for (String path : paths) {
+      RegularInputFile file = new RegularInputFile(path);
+      String source = options.fileUtil().readFile(file);
+      if (!source.contains("J2ObjCIncompatible")) {
+        continue;
+      }
+      ParseResult parseResult = parseWithoutBindings(file, source);
+      if (parseResult == null) {
+        continue;
+      }
+      parseResult.stripIncompatibleSource();
+      addSourceOverlay(file, parseResult.mainTypeName(), parseResult.getSource());
+    }
+  }
+
   public void setIncludeRunningVMBootclasspath(boolean includeVMBootclasspath) {
     includeRunningVMBootclasspath = includeVMBootclasspath;
   }
@@ -139,8 +198,28 @@ public abstract class Parser implements Closeable {
   /**
    * Parse one or more source files, calling a handler with a compilation unit.
    */
-  public abstract void parseFiles(
-      Collection<String> paths, Parser.Handler handler, SourceVersion sourceVersion);
+  public void parseFiles(
+      Collection<String> paths, Parser.Handler handler, SourceVersion sourceVersion) {
+    parseFiles(paths, handler, Collections.emptyList(), null, sourceVersion);
+  }
+
+  /**
+   * Parse one or more source files, and load the types of one or more class
+   * files or jars of class files into the same environment. Class files are
+   * read by the front-end without any source parsing or attribution, and are
+   * passed to the class file handler before any parsed unit is handled.
+   */
+  public abstract void parseFiles(Collection<String> paths, Parser.Handler handler,
+      Collection<String> classFilePaths, Parser.ClassFileHandler classFileHandler,
+      SourceVersion sourceVersion);
+
+  /**
+   * Parse one or more input files, calling a handler with a compilation unit.
+   * Files that aren't on the file system, such as jar entries, are read in
+   * place, and are passed to the handler with their original location as path.
+   */
+  public abstract void parseInputFiles(Collection<? extends InputFile> files,
+      Parser.Handler handler, SourceVersion sourceVersion);
 
   /**
    * Parses source without performing any type or element attribution.
@@ -153,12 +232,14 @@ public abstract class Parser implements Closeable {
   public abstract ParseResult parseWithoutBindings(InputFile file, String source);
 
   /**
-   * Runs annotation processing on a source set.
-   *
-   * TODO(tball): remove when pipeline has integrated annotation processing.
+   * Runs annotation processing during the next parse of input files with a
+   * {@link GeneratedSourceHandler}, instead of in a separate pass. The
+   * generated sources are parsed and attributed with that batch, and are
+   * on the sourcepath for any later parse.
    */
-  public abstract ProcessingResult processAnnotations(Iterable<String> fileArgs,
-      List<ProcessingContext> inputs);
+  public void enableAnnotationProcessing() {
+    processAnnotations = true;
+  }
 
   /**
    * Release any system resources used by this parser instance.
@@ -197,23 +278,4 @@ public abstract class Parser implements Closeable {
     @Override
     String toString();
   }
-
-  /**
-   * The ProcessingResult returns the generated source list and directory
-   * from annotation processing.
-   *
-   * TODO(tball): remove when pipeline has integrated annotation processing.
-   */
-  public interface ProcessingResult {
-
-    /**
-     * Returns the list of source files generated by annotation processing.
-     */
-    List<ProcessingContext> getGeneratedSources();
-
-    /**
-     * Returns the root directory where source files were generated.
-     */
-    File getSourceOutputDirectory();
-  }
 }
@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.file.JarredInputFile;
+import com.google.devtools.j2objc.file.MappedJarFile;
+import com.google.devtools.j2objc.file.RegularInputFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the files with a given extension on a source or class path, so
+ * qualified names can be found without probing every path entry.
+ *
+ * <p>Each root is read once, when it is first searched: a jar from its central
+ * directory, and a directory one package at a time from its listings. Roots
+ * are assumed not to change during translation; {@link #clear} drops the
+ * index when they do.
+ */
+class PathIndex {
+
+  private final String extension;
+  private final Map<String, Root> roots = new HashMap<>();
+
+  PathIndex(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * Returns the first file for a qualified name on the given path entries, or
+   * null if there isn't one.
+   */
+  synchronized InputFile find(String qualifiedName, List<String> paths) throws IOException {
+    int lastDot = qualifiedName.lastIndexOf('.');
+    // Zip/jar files always use forward slashes, so they're used as keys for both.
+    String packagePath = lastDot < 0 ? "" : qualifiedName.substring(0, lastDot).replace('.', '/');
+    String fileName = qualifiedName.substring(lastDot + 1) + extension;
+    for (String pathEntry : paths) {
+      Root root = roots.get(pathEntry);
+      if (root == null) {
+        root = createRoot(pathEntry);
+        roots.put(pathEntry, root);
+      }
+      InputFile file = root.find(packagePath, fileName);
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  synchronized void clear() {
+    roots.clear();
+  }
+
+  private static Root createRoot(String pathEntry) throws IOException {
+    File f = new File(pathEntry);
+    if (f.isDirectory()) {
+      return new DirectoryRoot(pathEntry);
+    } else if (f.exists()) {
+      // Assume it's a jar file
+      return new JarRoot(MappedJarFile.open(f));
+    }
+    return (packagePath, fileName) -> null;
+  }
+
+  private interface Root {
+    InputFile find(String packagePath, String fileName);
+  }
+
+  private static class DirectoryRoot implements Root {
+    private final String path;
+    private final Map<String, Set<String>> packages = new HashMap<>();
+
+    private DirectoryRoot(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public InputFile find(String packagePath, String fileName) {
+      Set<String> files = packages.get(packagePath);
+      if (files == null) {
+        String[] names = new File(path, packagePath).list();
+        files = names != null ? new HashSet<>(Arrays.asList(names)) : Collections.emptySet();
+        packages.put(packagePath, files);
+      }
+      if (!files.contains(fileName)) {
+        return null;
+      }
+      String relativePath = packagePath.isEmpty()
+          ? fileName : packagePath.replace('/', File.separatorChar) + File.separatorChar + fileName;
+      return new RegularInputFile(path + File.separatorChar + relativePath, relativePath);
+    }
+  }
+
+  private static class JarRoot implements Root {
+    private final MappedJarFile jar;
+
+    private JarRoot(MappedJarFile jar) {
+      this.jar = jar;
+    }
+
+    @Override
+    public InputFile find(String packagePath, String fileName) {
+      // The central directory is already hashed by entry name.
+      String entryName = packagePath.isEmpty() ? fileName : packagePath + '/' + fileName;
+      return jar.contains(entryName) ? new JarredInputFile(jar, entryName) : null;
+    }
+  }
+}
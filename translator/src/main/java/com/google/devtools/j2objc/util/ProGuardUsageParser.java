@@ -29,6 +29,9 @@ import java.util.regex.Pattern;
 /**
  * Parses dead code reports generated by ProGuard.
  *
+ * Large reports can be converted once with {@link BinaryCodeReferenceMap},
+ * which {@link #parseDeadCodeFile} maps instead of parsing.
+ *
  * Example ProGuard configuration file to generate an acceptable listing:
  *
  * <pre><code>
@@ -117,6 +120,9 @@ public class ProGuardUsageParser {
   public static CodeReferenceMap parseDeadCodeFile(File file) {
     if (file != null) {
       try {
+        if (BinaryCodeReferenceMap.isBinaryFile(file)) {
+          return BinaryCodeReferenceMap.open(file);
+        }
         return ProGuardUsageParser.parse(Files.asCharSource(file, Charset.defaultCharset()));
       } catch (IOException e) {
         throw new AssertionError(e);
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.file.MemoryInputFile;
+import com.google.devtools.j2objc.file.RegularInputFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The decoded contents of the source files read during a translation, so
+ * that preprocessing, parsing and javac don't each read a file again. Files
+ * are keyed by canonical path, and an entry is only used while the file's
+ * modification time, size and identity are unchanged. The least recently
+ * used entries are dropped once the cached sources exceed the capacity.
+ *
+ * <p>Malformed or unmappable input is reported as a
+ * {@link CharacterCodingException}, unless the caller ignores encoding
+ * errors, in which case it's replaced. A source decoded with replacements
+ * is only returned to callers that ignore encoding errors.
+ *
+ * <p>Only files on disk are cached; other inputs, such as jar entries, are
+ * read each time. Sources held in memory are returned as they are.
+ */
+public class SourceCache {
+
+  // In chars, so about 64MB.
+  private static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+
+  private final long capacity;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size = 0;
+
+  public SourceCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  @VisibleForTesting
+  SourceCache(long capacity) {
+    this.capacity = capacity;
+  }
+
+  private static class Entry {
+    private final Version version;
+    private final String source;
+    // Whether malformed or unmappable input was replaced.
+    private final boolean replaced;
+
+    private Entry(Version version, String source, boolean replaced) {
+      this.version = version;
+      this.source = source;
+      this.replaced = replaced;
+    }
+  }
+
+  /**
+   * The attributes of a file that change when it's written.
+   */
+  private static class Version {
+    private final long modifiedNanos;
+    private final long size;
+    private final Object fileKey;
+
+    private Version(BasicFileAttributes attrs) {
+      modifiedNanos = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+      size = attrs.size();
+      fileKey = attrs.fileKey();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Version)) {
+        return false;
+      }
+      Version other = (Version) obj;
+      return modifiedNanos == other.modifiedNanos && size == other.size
+          && Objects.equals(fileKey, other.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(modifiedNanos, size, fileKey);
+    }
+  }
+
+  /**
+   * Returns a read-only buffer of the file's decoded contents.
+   */
+  public CharBuffer read(InputFile file, Charset charset, boolean ignoreEncodingErrors)
+      throws IOException {
+    return CharBuffer.wrap(readString(file, charset, ignoreEncodingErrors));
+  }
+
+  /**
+   * Returns the file's decoded contents.
+   *
+   * @throws CharacterCodingException if the file has malformed or
+   *     unmappable input and encoding errors aren't ignored
+   */
+  public String readString(InputFile file, Charset charset, boolean ignoreEncodingErrors)
+      throws IOException {
+    if (file instanceof MemoryInputFile) {
+      // Already decoded, so it isn't affected by the charset.
+      return ((MemoryInputFile) file).getSource();
+    }
+    if (!(file instanceof RegularInputFile)) {
+      return readSource(file, charset, null, ignoreEncodingErrors).source;
+    }
+    File path = new File(file.getAbsolutePath());
+    String key = path.getCanonicalPath();
+    Version version = new Version(
+        Files.readAttributes(path.toPath(), BasicFileAttributes.class));
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.version.equals(version)
+          && (ignoreEncodingErrors || !entry.replaced)) {
+        return entry.source;
+      }
+    }
+    // Read without holding the lock, so other files can be read meanwhile.
+    Entry entry = readSource(file, charset, version, ignoreEncodingErrors);
+    put(key, entry);
+    return entry.source;
+  }
+
+  private static Entry readSource(
+      InputFile file, Charset charset, Version version, boolean ignoreEncodingErrors)
+      throws IOException {
+    byte[] bytes;
+    try (InputStream in = file.getInputStream()) {
+      bytes = ByteStreams.toByteArray(in);
+    }
+    try {
+      return new Entry(version, decode(bytes, charset, CodingErrorAction.REPORT), false);
+    } catch (CharacterCodingException e) {
+      if (!ignoreEncodingErrors) {
+        throw e;
+      }
+      return new Entry(version, decode(bytes, charset, CodingErrorAction.REPLACE), true);
+    }
+  }
+
+  private static String decode(byte[] bytes, Charset charset, CodingErrorAction action)
+      throws CharacterCodingException {
+    return charset.newDecoder()
+        .onMalformedInput(action)
+        .onUnmappableCharacter(action)
+        .decode(ByteBuffer.wrap(bytes))
+        .toString();
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    Entry old = entries.remove(key);
+    if (old != null) {
+      size -= old.source.length();
+    }
+    if (entry.source.length() > capacity) {
+      return;
+    }
+    entries.put(key, entry);
+    size += entry.source.length();
+    Iterator<Entry> iter = entries.values().iterator();
+    while (size > capacity && iter.hasNext()) {
+      size -= iter.next().source.length();
+      iter.remove();
+    }
+  }
+
+  /**
+   * Drops all cached sources.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the number of chars of the cached sources.
+   */
+  public synchronized long size() {
+    return size;
+  }
+}
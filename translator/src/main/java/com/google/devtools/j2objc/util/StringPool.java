@@ -0,0 +1,299 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A pool of the reflection metadata strings of all translated files, each
+ * written once as a character array that the metadata refers to, instead of
+ * a string literal in each file that uses it. A string's array is named
+ * after a hash of its value, so a file's references to the pool don't
+ * depend on which other files are translated with it.
+ *
+ * <p>The pool's file only defines the strings of the files translated in
+ * the same run, so every file that uses the pool must be translated in one
+ * run. The pool's file lists those files, and a later run that would drop
+ * some of them from the pool is reported as an error.
+ *
+ * <p>The pool can also report the string literals and metadata strings
+ * that are repeated in more than one generated file, and so rely on the
+ * linker to coalesce them.
+ *
+ * @see com.google.devtools.j2objc.Options#getStringPool()
+ */
+public class StringPool {
+
+  private static final String USER_PREFIX = "// Used by ";
+  // The arrays are only referred to from the image they're linked into, so
+  // they're kept out of its exported symbols.
+  private static final String HIDDEN = "__attribute__((visibility(\"hidden\"))) ";
+
+  private String name = null;
+  private File reportFile = null;
+  // Maps each pooled string to the name of its array.
+  private final Map<String, String> symbols = new HashMap<>();
+  private final Set<String> users = new TreeSet<>();
+  private int size = 0;
+  private final Map<String, Usage> usages = new HashMap<>();
+
+  /**
+   * The files that use a string.
+   */
+  private static class Usage {
+    final String value;
+    final Set<String> literalFiles = new TreeSet<>();
+    final Set<String> metadataFiles = new TreeSet<>();
+
+    private Usage(String value) {
+      this.value = value;
+    }
+
+    private int byteSize() {
+      return value.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+  }
+
+  /**
+   * Sets the prefix of the pool's arrays and the name of its generated file.
+   * Metadata strings are only pooled if it's set.
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public void setReportFile(File reportFile) {
+    this.reportFile = reportFile;
+  }
+
+  /**
+   * Returns whether metadata strings are pooled or reported.
+   */
+  public boolean isEnabled() {
+    return name != null || reportFile != null;
+  }
+
+  /**
+   * Returns whether the string literals of the generated code should be
+   * added, for the report.
+   */
+  public boolean needsLiterals() {
+    return reportFile != null;
+  }
+
+  /**
+   * Returns the declaration of a metadata string's array, for the files that
+   * refer to it, or null if the string isn't pooled.
+   */
+  public String getDeclaration(String value) {
+    return name != null && isPoolable(value)
+        ? "FOUNDATION_EXPORT " + HIDDEN + "const char " + getSymbol(value) + "[];\n" : null;
+  }
+
+  /**
+   * Returns the C expression for a metadata string used by a file: the
+   * string's array in the pool, or a string literal if it isn't pooled.
+   */
+  public String getMetadataString(String file, String value) {
+    addUsage(value).metadataFiles.add(file);
+    if (name == null || !isPoolable(value)) {
+      return "\"" + value + "\"";
+    }
+    users.add(file);
+    String symbol = symbols.get(value);
+    if (symbol == null) {
+      symbol = getSymbol(value);
+      symbols.put(value, symbol);
+      size += value.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+    return symbol;
+  }
+
+  private String getSymbol(String value) {
+    return name + "_" + Hashing.sha256().hashString(value, StandardCharsets.UTF_8)
+        .toString().substring(0, 16);
+  }
+
+  /**
+   * Adds a string literal used by a file, for the report.
+   */
+  public void addLiteral(String file, String value) {
+    addUsage(value).literalFiles.add(file);
+  }
+
+  private Usage addUsage(String value) {
+    Usage usage = usages.get(value);
+    if (usage == null) {
+      usage = new Usage(value);
+      usages.put(value, usage);
+    }
+    return usage;
+  }
+
+  // Only strings that need no escapes are pooled, so that they can be
+  // written to the pool as they are.
+  private static boolean isPoolable(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x20 || c > 0x7e || c == '"' || c == '\\' || c == '?') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the pool's file to the output directory, and the report, once
+   * all files are translated.
+   */
+  public void finish(Options options) {
+    if (name != null) {
+      writePool(options);
+    }
+    if (reportFile != null) {
+      writeReport(options.fileUtil().getCharset());
+    }
+  }
+
+  private void writePool(Options options) {
+    File outputFile = new File(options.fileUtil().getOutputDirectory(),
+        name + options.getLanguage().suffix());
+    Charset charset = options.fileUtil().getCharset();
+    if (!checkUsers(outputFile, charset)) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(J2ObjC.getFileHeader(options, name));
+    sb.append('\n');
+    for (String user : users) {
+      sb.append(USER_PREFIX).append(user).append('\n');
+    }
+    sb.append('\n');
+    sb.append("#include \"J2ObjC_source.h\"\n");
+    // Sorted by name, so the file doesn't depend on translation order.
+    Map<String, String> values = new TreeMap<>();
+    for (Map.Entry<String, String> entry : symbols.entrySet()) {
+      values.put(entry.getValue(), entry.getKey());
+    }
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      sb.append('\n');
+      sb.append(getDeclaration(entry.getValue()));
+      sb.append(HIDDEN).append("const char ").append(entry.getKey()).append("[] = \"")
+          .append(entry.getValue()).append("\";\n");
+    }
+    try {
+      Files.createParentDirs(outputFile);
+      Files.asCharSink(outputFile, charset).write(sb);
+    } catch (IOException e) {
+      ErrorUtil.error(e.getMessage());
+    }
+  }
+
+  /**
+   * Returns whether the previous pool's file, if any, was only used by files
+   * that are translated again in this run. Otherwise the files left out
+   * would refer to strings the new pool doesn't define.
+   */
+  private boolean checkUsers(File poolFile, Charset charset) {
+    if (!poolFile.exists()) {
+      return true;
+    }
+    Set<String> missing = new TreeSet<>();
+    try {
+      for (String line : Files.asCharSource(poolFile, charset).readLines()) {
+        if (line.startsWith(USER_PREFIX)
+            && !users.contains(line.substring(USER_PREFIX.length()))) {
+          missing.add(line.substring(USER_PREFIX.length()));
+        }
+      }
+    } catch (IOException e) {
+      ErrorUtil.error(e.getMessage());
+      return false;
+    }
+    if (missing.isEmpty()) {
+      return true;
+    }
+    ErrorUtil.error("string pool " + poolFile.getPath() + " is used by files that aren't"
+        + " translated in this run: " + Joiner.on(", ").join(missing) + ". All files that use"
+        + " a string pool must be translated together; delete the pool to start a new one.");
+    return false;
+  }
+
+  private void writeReport(Charset charset) {
+    List<String[]> rows = new ArrayList<>();
+    long duplicatedBytes = 0;
+    long pooledBytes = 0;
+    for (Usage usage : usages.values()) {
+      int literalCopies = usage.literalFiles.size() - 1;
+      if (literalCopies > 0) {
+        duplicatedBytes += (long) literalCopies * usage.byteSize();
+        rows.add(newRow(usage, literalCopies, usage.literalFiles.size(), "literal"));
+      }
+      int metadataCopies = usage.metadataFiles.size() - 1;
+      if (metadataCopies > 0) {
+        if (symbols.containsKey(usage.value)) {
+          pooledBytes += (long) metadataCopies * usage.byteSize();
+          rows.add(newRow(usage, metadataCopies, usage.metadataFiles.size(), "pooled"));
+        } else {
+          duplicatedBytes += (long) metadataCopies * usage.byteSize();
+          rows.add(newRow(usage, metadataCopies, usage.metadataFiles.size(), "metadata"));
+        }
+      }
+    }
+    // The most duplicated bytes first.
+    rows.sort(Comparator.comparingLong((String[] row) -> -Long.parseLong(row[0]))
+        .thenComparing(row -> row[3]).thenComparing(row -> row[2]));
+
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    writer.printf("# %d strings, %d bytes duplicated in more than one file,"
+        + " %d duplicated bytes pooled in %d bytes\n",
+        usages.size(), duplicatedBytes, pooledBytes, size);
+    writer.println("# duplicated bytes\tfiles\tkind\tstring");
+    for (String[] row : rows) {
+      writer.println(String.join("\t", row));
+    }
+    writer.flush();
+    try {
+      Files.asCharSink(reportFile, charset).write(out.toString());
+    } catch (IOException e) {
+      ErrorUtil.error("cannot write string literal report: " + e.getMessage());
+    }
+  }
+
+  private static String[] newRow(Usage usage, int copies, int files, String kind) {
+    return new String[] {
+        Long.toString((long) copies * usage.byteSize()), Integer.toString(files), kind,
+        UnicodeUtils.escapeStringLiteral(usage.value) };
+  }
+}
@@ -17,12 +17,15 @@ package com.google.devtools.j2objc.util;
 import com.google.common.collect.Lists;
 import com.google.devtools.j2objc.Options.TimingLevel;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * Utility for logging time slices of an operation. Supports slicing at multiple
- * levels so that one slice can be divided into sub-slices.
+ * levels so that one slice can be divided into sub-slices. When the JVM can
+ * measure it, each slice also logs the memory allocated by the current thread.
  *
  * @author Keith Stanger
  */
@@ -71,13 +74,35 @@ public class TimeTracker {
       return indents;
     }
 
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+        return null;
+      }
+      com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+      if (!allocationBean.isThreadAllocatedMemorySupported()) {
+        return null;
+      }
+      allocationBean.setThreadAllocatedMemoryEnabled(true);
+      return allocationBean;
+    }
+
+    private static long allocatedBytes() {
+      return ALLOCATION_BEAN != null ? ALLOCATION_BEAN.getThreadAllocatedBytes(
+          Thread.currentThread().getId()) : -1;
+    }
+
     long[] lastTicks = new long[16];
+    long[] lastAllocations = new long[16];
     int currentLevel = 0;
     List<String> entries = Lists.newArrayList();
 
     private TimeTrackerImpl(String name) {
       entries.add("Timings for " + name);
       lastTicks[currentLevel] = System.currentTimeMillis();
+      lastAllocations[currentLevel] = allocatedBytes();
     }
 
     @Override
@@ -85,13 +110,22 @@ public class TimeTracker {
       long now = System.currentTimeMillis();
       long time = now - lastTicks[currentLevel];
       lastTicks[currentLevel] = now;
-      entries.add(String.format("%s%5d ms - %s", INDENTS[currentLevel], time, event));
+      long allocated = allocatedBytes();
+      if (allocated >= 0) {
+        long kb = (allocated - lastAllocations[currentLevel]) / 1024;
+        lastAllocations[currentLevel] = allocated;
+        entries.add(
+            String.format("%s%5d ms %8d KB - %s", INDENTS[currentLevel], time, kb, event));
+      } else {
+        entries.add(String.format("%s%5d ms - %s", INDENTS[currentLevel], time, event));
+      }
     }
 
     @Override
     public void push() {
       currentLevel++;
       lastTicks[currentLevel] = System.currentTimeMillis();
+      lastAllocations[currentLevel] = allocatedBytes();
     }
 
     @Override
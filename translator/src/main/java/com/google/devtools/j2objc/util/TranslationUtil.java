@@ -125,16 +125,18 @@ public final class TranslationUtil {
     }
     PackageElement packageElement = ElementUtil.getPackage(type);
     ReflectionSupport.Level level = null;
-    while (type != null) {
-      level = getReflectionSupportLevel(ElementUtil.getAnnotation(type, ReflectionSupport.class));
+    for (TypeElement t = type; t != null; t = ElementUtil.getDeclaringClass(t)) {
+      level = getReflectionSupportLevel(ElementUtil.getAnnotation(t, ReflectionSupport.class));
       if (level != null) {
         return level == ReflectionSupport.Level.FULL;
       }
-      type = ElementUtil.getDeclaringClass(type);
     }
     // Check package level annotations
     level = getReflectionSupportLevelOnPackage(packageElement);
-
+    if (level == null && options.unreflectedClasses().contains(elementUtil.getBinaryName(type))) {
+      // No translated code reflects on this class.
+      return false;
+    }
     return needsReflection(level);
   }
 
@@ -615,6 +615,7 @@ public class GenerationTest extends TestCase {
     File file = new File(tempDir, fileName);
     file.getParentFile().mkdirs();
     Files.asCharSink(file, options.fileUtil().getCharset()).write(source);
+    options.fileUtil().clearPathIndexes();
     return file.getPath();
   }
 
@@ -625,6 +626,7 @@ public class GenerationTest extends TestCase {
     if (!new File(tempDir, relativePath).delete()) {
       throw new IOException("failed deleting " + relativePath);
     }
+    options.fileUtil().clearPathIndexes();
   }
 
   /**
@@ -719,6 +721,7 @@ public class GenerationTest extends TestCase {
     } finally {
       jar.close();
     }
+    options.fileUtil().clearPathIndexes();
   }
 
   /**
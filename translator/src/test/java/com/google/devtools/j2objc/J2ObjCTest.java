@@ -16,8 +16,12 @@
 
 package com.google.devtools.j2objc;
 
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.HeaderMap;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -217,6 +221,101 @@ public class J2ObjCTest extends GenerationTest {
     assertTranslation(translatedAnnotationImpl, "return @\"ObjectiveCName\"");
   }
 
+  // Test that inputs can use the types generated while they're translated.
+  public void testAnnotationProcessingGeneratedTypeReference() throws Exception {
+    String processorPath = getResourceAsFile("annotations/Processor.jar");
+    options.fileUtil().getClassPathEntries().add(processorPath);
+
+    String examplePath = addSourceFile(EXAMPLE_JAVA_SOURCE, "annotations/Example.java");
+    // ProcessingResult is generated in the unnamed package.
+    String userPath = addSourceFile(
+        "public class User { String result() { return new ProcessingResult().getResult(); } }",
+        "User.java");
+    J2ObjC.run(Arrays.asList(examplePath, userPath), options);
+    assertErrorCount(0);
+
+    assertTranslation(getTranslatedFile("ProcessingResult.h"),
+        "@interface ProcessingResult : NSObject");
+    String userImpl = getTranslatedFile("User.m");
+    assertTranslation(userImpl, "#include \"ProcessingResult.h\"");
+    assertTranslation(userImpl, "ProcessingResult_init()");
+  }
+
+  // Test that generated sources are stripped of J2ObjCIncompatible elements.
+  public void testAnnotationProcessingStripsGeneratedSources() throws Exception {
+    addGeneratingProcessor("gen.Generated",
+        "package gen; import com.google.j2objc.annotations.J2ObjCIncompatible;"
+        + " public class Generated { @J2ObjCIncompatible public void stripped() {}"
+        + " public void kept() {} }");
+    String userPath = addSourceFile(
+        "class User { void f() { new gen.Generated().kept(); } }", "User.java");
+    J2ObjC.run(Collections.singletonList(userPath), options);
+    assertErrorCount(0);
+
+    String generatedHeader = getTranslatedFile("gen/Generated.h");
+    assertTranslation(generatedHeader, "- (void)kept;");
+    assertNotInTranslation(generatedHeader, "stripped");
+    assertNotInTranslation(getTranslatedFile("gen/Generated.m"), "stripped");
+    assertTranslation(getTranslatedFile("User.m"), "[create_GenGenerated_init() kept];");
+  }
+
+  // Test that a generated package-info's package prefix is used.
+  public void testAnnotationProcessingGeneratedPackagePrefix() throws Exception {
+    addGeneratingProcessor(
+        "gen.Generated", "package gen; public class Generated {}",
+        "gen.package-info", "@com.google.j2objc.annotations.ObjectiveCName(\"GP\") package gen;");
+    String userPath = addSourceFile(
+        "class User { Object f() { return new gen.Generated(); } }", "User.java");
+    J2ObjC.run(Collections.singletonList(userPath), options);
+    assertErrorCount(0);
+
+    assertTranslation(getTranslatedFile("gen/Generated.h"), "@interface GPGenerated : NSObject");
+    assertTranslation(getTranslatedFile("User.m"), "create_GPGenerated_init()");
+  }
+
+  /**
+   * Compiles a processor that generates sources, given as pairs of name and
+   * source, in its first round, and adds it to the processor path.
+   */
+  private void addGeneratingProcessor(String... namesAndSources) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < namesAndSources.length; i += 2) {
+      sb.append("write(\"").append(namesAndSources[i]).append("\", \"")
+          .append(namesAndSources[i + 1].replace("\\", "\\\\").replace("\"", "\\\""))
+          .append("\");\n");
+    }
+    createClassFile("processor.GeneratingProcessor",
+        "package processor;\n"
+        + "import java.io.*; import java.util.Set; import javax.annotation.processing.*;\n"
+        + "import javax.lang.model.SourceVersion; import javax.lang.model.element.TypeElement;\n"
+        + "@SupportedAnnotationTypes(\"*\")\n"
+        + "public class GeneratingProcessor extends AbstractProcessor {\n"
+        + "  private boolean generated = false;\n"
+        + "  @Override public SourceVersion getSupportedSourceVersion() {\n"
+        + "    return SourceVersion.latest();\n"
+        + "  }\n"
+        + "  @Override public boolean process(\n"
+        + "      Set<? extends TypeElement> annotations, RoundEnvironment env) {\n"
+        + "    if (!generated) {\n"
+        + "      generated = true;\n"
+        + sb
+        + "    }\n"
+        + "    return false;\n"
+        + "  }\n"
+        + "  private void write(String name, String source) {\n"
+        + "    try (Writer w = processingEnv.getFiler().createSourceFile(name).openWriter()) {\n"
+        + "      w.write(source);\n"
+        + "    } catch (IOException e) {\n"
+        + "      throw new UncheckedIOException(e);\n"
+        + "    }\n"
+        + "  }\n"
+        + "}\n");
+    File services = getTempFile("META-INF/services/javax.annotation.processing.Processor");
+    services.getParentFile().mkdirs();
+    Files.asCharSink(services, StandardCharsets.UTF_8).write("processor.GeneratingProcessor\n");
+    options.getProcessorPathEntries().add(getTempDir());
+  }
+
   // Test a simple annotation processor on the processor path.
   public void testAnnotationProcessingWithProcessorPath() throws Exception {
     String processorPath = getResourceAsFile("annotations/Processor.jar");
@@ -244,4 +343,12 @@ public class J2ObjCTest extends GenerationTest {
     J2ObjC.run(Collections.singletonList(jarPath), options);
     assertWarningCount(1);
   }
+
+  // Test that errors are returned rather than exiting.
+  public void testRunReturnsErrorCount() throws Exception {
+    String path = addSourceFile("class Test { int f() { return \"\"; } }", "Test.java");
+    int errors = J2ObjC.run(Collections.singletonList(path), options);
+    assertTrue(errors > 0);
+    assertEquals(ErrorUtil.errorCount(), errors);
+  }
 }
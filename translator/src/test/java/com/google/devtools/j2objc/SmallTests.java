@@ -20,15 +20,20 @@ import com.google.devtools.j2objc.ast.AnnotationTest;
 import com.google.devtools.j2objc.ast.InfixExpressionTest;
 import com.google.devtools.j2objc.ast.LambdaExpressionTest;
 import com.google.devtools.j2objc.ast.MethodReferenceTest;
+import com.google.devtools.j2objc.file.MappedJarFileTest;
 import com.google.devtools.j2objc.gen.ArrayAccessTest;
 import com.google.devtools.j2objc.gen.ArrayCreationTest;
+import com.google.devtools.j2objc.gen.HeaderApiFingerprintTest;
+import com.google.devtools.j2objc.gen.IncludeGraphTest;
 import com.google.devtools.j2objc.gen.JavadocGeneratorTest;
 import com.google.devtools.j2objc.gen.LineDirectivesTest;
 import com.google.devtools.j2objc.gen.LiteralGeneratorTest;
+import com.google.devtools.j2objc.gen.ModuleMapGeneratorTest;
 import com.google.devtools.j2objc.gen.ObjectiveCHeaderGeneratorTest;
 import com.google.devtools.j2objc.gen.ObjectiveCImplementationGeneratorTest;
 import com.google.devtools.j2objc.gen.ObjectiveCSegmentedHeaderGeneratorTest;
 import com.google.devtools.j2objc.gen.ObjectiveCSourceFileGeneratorTest;
+import com.google.devtools.j2objc.gen.PackageAmalgamatorTest;
 import com.google.devtools.j2objc.gen.PrimitiveArrayTest;
 import com.google.devtools.j2objc.gen.SignatureGeneratorTest;
 import com.google.devtools.j2objc.gen.StatementGeneratorTest;
@@ -40,13 +45,16 @@ import com.google.devtools.j2objc.javac.JavacTreeConverterTest;
 import com.google.devtools.j2objc.pipeline.J2ObjCIncompatibleStripperTest;
 import com.google.devtools.j2objc.pipeline.TranslationProcessorTest;
 import com.google.devtools.j2objc.translate.AbstractMethodRewriterTest;
+import com.google.devtools.j2objc.translate.AccessorInlinerTest;
 import com.google.devtools.j2objc.translate.AnnotationRewriterTest;
 import com.google.devtools.j2objc.translate.AnonymousClassConverterTest;
 import com.google.devtools.j2objc.translate.ArrayRewriterTest;
 import com.google.devtools.j2objc.translate.AutoboxerTest;
+import com.google.devtools.j2objc.translate.AutoreleasePoolInserterTest;
 import com.google.devtools.j2objc.translate.CastResolverTest;
 import com.google.devtools.j2objc.translate.ComplexExpressionExtractorTest;
 import com.google.devtools.j2objc.translate.ConstantBranchPrunerTest;
+import com.google.devtools.j2objc.translate.DeadCodeAnalyzerTest;
 import com.google.devtools.j2objc.translate.DeadCodeEliminatorTest;
 import com.google.devtools.j2objc.translate.DefaultMethodsTest;
 import com.google.devtools.j2objc.translate.DestructorGeneratorTest;
@@ -68,7 +76,9 @@ import com.google.devtools.j2objc.translate.OuterReferenceFixerTest;
 import com.google.devtools.j2objc.translate.OuterReferenceResolverTest;
 import com.google.devtools.j2objc.translate.PackageInfoRewriterTest;
 import com.google.devtools.j2objc.translate.PrivateDeclarationResolverTest;
+import com.google.devtools.j2objc.translate.ReflectionUsageAnalyzerTest;
 import com.google.devtools.j2objc.translate.RewriterTest;
+import com.google.devtools.j2objc.translate.StaticInitAnalyzerTest;
 import com.google.devtools.j2objc.translate.StaticVarRewriterTest;
 import com.google.devtools.j2objc.translate.SuperMethodInvocationRewriterTest;
 import com.google.devtools.j2objc.translate.SwitchRewriterTest;
@@ -76,9 +86,12 @@ import com.google.devtools.j2objc.translate.TypeUseAnnotationTest;
 import com.google.devtools.j2objc.translate.UnsequencedExpressionRewriterTest;
 import com.google.devtools.j2objc.translate.VarargsRewriterTest;
 import com.google.devtools.j2objc.translate.VariableRenamerTest;
+import com.google.devtools.j2objc.translate.VolatileOrderingRewriterTest;
 import com.google.devtools.j2objc.types.CompoundTypeTest;
 import com.google.devtools.j2objc.types.HeaderImportCollectorTest;
 import com.google.devtools.j2objc.types.ImplementationImportCollectorTest;
+import com.google.devtools.j2objc.util.BinaryCodeReferenceMapTest;
+import com.google.devtools.j2objc.util.ClassFileScannerTest;
 import com.google.devtools.j2objc.util.ClassFileTest;
 import com.google.devtools.j2objc.util.CodeReferenceMapTest;
 import com.google.devtools.j2objc.util.ElementUtilTest;
@@ -88,6 +101,8 @@ import com.google.devtools.j2objc.util.NameTableTest;
 import com.google.devtools.j2objc.util.PackageInfoLookupTest;
 import com.google.devtools.j2objc.util.PackagePrefixesTest;
 import com.google.devtools.j2objc.util.ProGuardUsageParserTest;
+import com.google.devtools.j2objc.util.SourceCacheTest;
+import com.google.devtools.j2objc.util.StringPoolTest;
 import com.google.devtools.j2objc.util.TranslationUtilTest;
 import com.google.devtools.j2objc.util.UnicodeUtilsTest;
 import junit.framework.Test;
@@ -101,6 +116,7 @@ public class SmallTests {
   private static final Class<?>[] smallTestClasses =
       new Class<?>[] {
         AbstractMethodRewriterTest.class,
+        AccessorInlinerTest.class,
         AnnotationRewriterTest.class,
         AnnotationTest.class,
         AnonymousClassConverterTest.class,
@@ -108,13 +124,17 @@ public class SmallTests {
         ArrayCreationTest.class,
         ArrayRewriterTest.class,
         AutoboxerTest.class,
+        AutoreleasePoolInserterTest.class,
+        BinaryCodeReferenceMapTest.class,
         CastResolverTest.class,
         ClassFileConverterTest.class,
+        ClassFileScannerTest.class,
         ClassFileTest.class,
         CodeReferenceMapTest.class,
         ComplexExpressionExtractorTest.class,
         CompoundTypeTest.class,
         ConstantBranchPrunerTest.class,
+        DeadCodeAnalyzerTest.class,
         DeadCodeEliminatorTest.class,
         DefaultMethodsTest.class,
         DestructorGeneratorTest.class,
@@ -125,8 +145,10 @@ public class SmallTests {
         FileUtilTest.class,
         FunctionizerTest.class,
         GwtConverterTest.class,
+        HeaderApiFingerprintTest.class,
         HeaderImportCollectorTest.class,
         ImplementationImportCollectorTest.class,
+        IncludeGraphTest.class,
         InfixExpressionTest.class,
         InitializationNormalizerTest.class,
         InnerClassExtractorTest.class,
@@ -141,8 +163,10 @@ public class SmallTests {
         LambdaTypeElementAdderTest.class,
         LineDirectivesTest.class,
         LiteralGeneratorTest.class,
+        MappedJarFileTest.class,
         MetadataWriterTest.class,
         MethodReferenceTest.class,
+        ModuleMapGeneratorTest.class,
         NameTableTest.class,
         NilCheckResolverTest.class,
         NumberMethodRewriterTest.class,
@@ -155,16 +179,21 @@ public class SmallTests {
         OptionsTest.class,
         OuterReferenceFixerTest.class,
         OuterReferenceResolverTest.class,
+        PackageAmalgamatorTest.class,
         PackageInfoLookupTest.class,
         PackageInfoRewriterTest.class,
         PackagePrefixesTest.class,
         PrimitiveArrayTest.class,
         PrivateDeclarationResolverTest.class,
         ProGuardUsageParserTest.class,
+        ReflectionUsageAnalyzerTest.class,
         RewriterTest.class,
         SignatureGeneratorTest.class,
+        SourceCacheTest.class,
         StatementGeneratorTest.class,
+        StaticInitAnalyzerTest.class,
         StaticVarRewriterTest.class,
+        StringPoolTest.class,
         SuperMethodInvocationRewriterTest.class,
         SwitchRewriterTest.class,
         TypeDeclarationGeneratorTest.class,
@@ -175,7 +204,8 @@ public class SmallTests {
         UnicodeUtilsTest.class,
         UnsequencedExpressionRewriterTest.class,
         VarargsRewriterTest.class,
-        VariableRenamerTest.class
+        VariableRenamerTest.class,
+        VolatileOrderingRewriterTest.class
       };
 
   public static Test suite() {
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.file;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link MappedJarFile}.
+ */
+public class MappedJarFileTest extends GenerationTest {
+
+  private static final String SOURCE = "package foo; class Bar { int baz; }";
+
+  public void testReadEntries() throws IOException {
+    File jarFile = getTempFile("test.jar");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jarFile))) {
+      byte[] bytes = SOURCE.getBytes(StandardCharsets.UTF_8);
+      out.putNextEntry(new ZipEntry("foo/Bar.java"));
+      out.write(bytes);
+      out.closeEntry();
+
+      ZipEntry stored = new ZipEntry("foo/Stored.java");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(bytes.length);
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+      stored.setCrc(crc.getValue());
+      out.putNextEntry(stored);
+      out.write(bytes);
+      out.closeEntry();
+    }
+
+    MappedJarFile jar = MappedJarFile.open(jarFile);
+    assertEquals(2, jar.getEntryNames().size());
+    assertTrue(jar.contains("foo/Bar.java"));
+    assertFalse(jar.contains("foo/Baz.java"));
+    assertEquals(SOURCE, new String(jar.read("foo/Bar.java"), StandardCharsets.UTF_8));
+    assertEquals(SOURCE, new String(jar.read("foo/Stored.java"), StandardCharsets.UTF_8));
+
+    InputFile input = new JarredInputFile(jar, "foo/Bar.java");
+    assertTrue(input.exists());
+    assertEquals("jar:file:" + jarFile.getPath() + "!foo/Bar.java", input.getOriginalLocation());
+    assertFalse(new JarredInputFile(jar, "foo/Baz.java").exists());
+  }
+
+  public void testNotAJar() throws IOException {
+    File file = getTempFile("notajar.jar");
+    Files.asCharSink(file, StandardCharsets.UTF_8).write(SOURCE);
+    try {
+      MappedJarFile.open(file);
+      fail("expected ZipException");
+    } catch (ZipException e) {
+      // Expected.
+    }
+  }
+}
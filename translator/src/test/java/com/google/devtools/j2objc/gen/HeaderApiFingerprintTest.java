@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link HeaderApiFingerprint}.
+ */
+public class HeaderApiFingerprintTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    options.setEmitHeaderFingerprints(true);
+  }
+
+  public void testBodyChangeKeepsFingerprint() throws IOException {
+    options.setEmitLineDirectives(true);
+    options.setDocCommentsEnabled(true);
+    translateSourceFile("class Test { int f() { return 1; } }", "Test", "Test.h");
+    String fingerprint = getTranslatedFile("Test.h.api");
+    File sidecar = new File(getTempDir(), "Test.h.api");
+    assertTrue(sidecar.setLastModified(1000L));
+
+    translateSourceFile("class Test {\n\n  /** Returns two. */\n  int f() {\n    return 2;\n  }\n}",
+        "Test", "Test.h");
+    assertEquals(fingerprint, getTranslatedFile("Test.h.api"));
+    // The unchanged sidecar isn't written again.
+    assertEquals(1000L, sidecar.lastModified());
+  }
+
+  public void testApiChangeChangesFingerprint() throws IOException {
+    translateSourceFile("class Test { int f() { return 1; } }", "Test", "Test.h");
+    String fingerprint = getTranslatedFile("Test.h.api");
+    translateSourceFile("class Test { int g() { return 1; } }", "Test", "Test.h");
+    assertFalse(fingerprint.equals(getTranslatedFile("Test.h.api")));
+    translateSourceFile("class Test { public static final int F = 1; int f() { return 1; } }",
+        "Test", "Test.h");
+    assertFalse(fingerprint.equals(getTranslatedFile("Test.h.api")));
+  }
+
+  public void testComputeIgnoresCosmetics() {
+    String fingerprint = HeaderApiFingerprint.compute(
+        "#include \"B.h\"\n#include \"A.h\"\n@interface Foo\n- (void)a;\n- (void)b;\n@end\n");
+    assertEquals(fingerprint, HeaderApiFingerprint.compute(
+        "// Generated.\n#include \"A.h\"\n#include   \"B.h\"\n\n@interface Foo\n"
+        + "#line 3 \"Foo.java\"\n- (void)b;\n/*!\n @brief a.\n */\n- (void)a;\n@end\n"));
+    // Moving a declaration to another class changes the API.
+    assertFalse(HeaderApiFingerprint.compute(
+        "@interface Foo\n- (void)a;\n- (void)b;\n@end\n@interface Bar\n@end\n").equals(
+        HeaderApiFingerprint.compute(
+        "@interface Foo\n- (void)a;\n@end\n@interface Bar\n- (void)b;\n@end\n")));
+  }
+
+  public void testComputeKeepsDeclarationsTogether() {
+    String header = "@interface Foo : NSObject {\n @public\n  jint a_;\n  jint b_;\n}\n"
+        + "- (instancetype)initWithInt:(jint)a\n                    withInt:(jint)b;\n@end\n";
+    // Wrapped declarations are kept whole, so their lines aren't reordered.
+    assertFalse(HeaderApiFingerprint.compute(header).equals(HeaderApiFingerprint.compute(
+        "@interface Foo : NSObject {\n @public\n  jint a_;\n  jint b_;\n}\n"
+        + "- (instancetype)initWithInt:(jint)b\n                    withInt:(jint)a;\n@end\n")));
+    // Moving an instance variable out of the ivar block changes the API.
+    assertFalse(HeaderApiFingerprint.compute(header).equals(HeaderApiFingerprint.compute(
+        "@interface Foo : NSObject {\n @public\n  jint a_;\n}\n  jint b_;\n"
+        + "- (instancetype)initWithInt:(jint)a\n                    withInt:(jint)b;\n@end\n")));
+  }
+
+  public void testSwappedInlineAccessorsChangeFingerprint() throws IOException {
+    options.setInlineAccessors(true);
+    String source = "public final class Test {\n"
+        + "  private int a;\n"
+        + "  private int b;\n"
+        + "  public int getA() { return %s; }\n"
+        + "  public int getB() { return %s; }\n"
+        + "}\n";
+    addSourceFile(String.format(source, "a", "b"), "Test.java");
+    runPipeline(getTempDir() + "/Test.java");
+    String header = getTranslatedFile("Test.h");
+    assertTranslatedLines(header,
+        "__attribute__((unused)) static inline jint Test_getA_inline(Test *self) {",
+        "  return self->a_;",
+        "}");
+    String fingerprint = getTranslatedFile("Test.h.api");
+
+    // The functions' bodies are swapped, but the set of lines in the header isn't changed.
+    addSourceFile(String.format(source, "b", "a"), "Test.java");
+    runPipeline(getTempDir() + "/Test.java");
+    assertTranslatedLines(getTranslatedFile("Test.h"),
+        "__attribute__((unused)) static inline jint Test_getA_inline(Test *self) {",
+        "  return self->b_;",
+        "}");
+    assertFalse(fingerprint.equals(getTranslatedFile("Test.h.api")));
+  }
+}
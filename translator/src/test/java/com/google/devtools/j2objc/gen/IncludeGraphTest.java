@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests for {@link IncludeGraph}.
+ */
+public class IncludeGraphTest extends GenerationTest {
+
+  public void testReport() throws IOException {
+    File report = getTempFile("includes.txt");
+    options.setIncludeGraphReport(report);
+    addSourceFile("class A {}", "A.java");
+    addSourceFile("class B extends A {}", "B.java");
+    addSourceFile("class C extends B { void test() { new A(); } }", "C.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java", getTempDir() + "/C.java");
+
+    String translation = getTranslatedFile("includes.txt");
+    assertTranslation(translation, "# file\tfan-in\tfan-out\ttransitive headers\ttransitive bytes");
+    long sizeA = getTempFile("A.h").length();
+    long sizeB = getTempFile("B.h").length();
+    // A.h only includes the runtime header, which isn't in the output directory.
+    assertTrue(translation.matches("(?s).*\nA\\.h\t\\d+\t1\t1\t0\n.*"));
+    // C.h includes the runtime header and B.h, which includes A.h.
+    assertTranslation(translation, "\nC.h\t1\t2\t3\t" + (sizeA + sizeB) + "\n");
+    assertTrue(translation.indexOf("\nC.h\t") < translation.indexOf("\nB.h\t"));
+  }
+}
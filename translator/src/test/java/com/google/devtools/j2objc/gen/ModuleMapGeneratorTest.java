@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Tests for {@link ModuleMapGenerator}.
+ */
+public class ModuleMapGeneratorTest extends GenerationTest {
+
+  private void translateSources() throws IOException {
+    addSourceFile("package foo; public class A {}", "foo/A.java");
+    addSourceFile("package foo; public class B extends A {}", "foo/B.java");
+    addSourceFile("package foo; public class C extends A { B b() { return new B(); } }",
+        "foo/C.java");
+    runPipeline(getTempDir() + "/foo/A.java", getTempDir() + "/foo/B.java",
+        getTempDir() + "/foo/C.java");
+  }
+
+  public void testModuleMap() throws IOException {
+    options.setModuleName("Foo");
+    translateSources();
+
+    String umbrella = getTranslatedFile("Foo.h");
+    assertTranslatedLines(umbrella,
+        "#include \"J2ObjC_header.h\"",
+        "#include \"foo/A.h\"",
+        "#include \"foo/B.h\"",
+        "#include \"foo/C.h\"");
+
+    String moduleMap = getTranslatedFile("module.modulemap");
+    assertTranslatedLines(moduleMap,
+        "module Foo {",
+        "umbrella header \"Foo.h\"",
+        "requires objc",
+        "export *",
+        "module * { export * }",
+        "}");
+    assertFalse(getTempFile("Foo-Prefix.pch").exists());
+  }
+
+  public void testPrefixHeader() throws IOException {
+    options.setModuleName("Foo");
+    options.setPrefixHeaderSize(1);
+    translateSources();
+
+    // A.h is included by every other file.
+    String prefix = getTranslatedFile("Foo-Prefix.pch");
+    assertTranslatedLines(prefix,
+        "#ifdef __OBJC__",
+        "#include \"J2ObjC_header.h\"",
+        "#include \"foo/A.h\"",
+        "#endif");
+  }
+}
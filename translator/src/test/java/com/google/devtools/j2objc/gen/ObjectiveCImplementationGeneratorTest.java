@@ -54,7 +54,7 @@ public class ObjectiveCImplementationGeneratorTest extends GenerationTest {
         "unit/mapping/custom/Test.java");
     String translation = translateSourceFile(
         "import unit.mapping.custom.Test; "
-            + "public class MyTest { MyTest(Test u) {}}",
+            + "public class MyTest { MyTest(Test u) { u.hashCode(); }}",
         "MyTest", "MyTest.m");
     assertTranslation(translation, "#include \"my/mapping/custom/Test.h\"");
   }
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Tests for {@link PackageAmalgamator}.
+ */
+public class PackageAmalgamatorTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    options.setAmalgamatePackages(true);
+  }
+
+  private void addSources() throws IOException {
+    addSourceFile("package foo; public class A { String a() { return \"a\"; } }", "foo/A.java");
+    addSourceFile("package foo; public class B { A b() { return new A(); } }", "foo/B.java");
+    addSourceFile("package bar; public class C { foo.A c() { return null; } }", "bar/C.java");
+  }
+
+  public void testPackagesCombined() throws IOException {
+    addSources();
+    runPipeline(getTempDir() + "/foo/A.java", getTempDir() + "/foo/B.java",
+        getTempDir() + "/bar/C.java");
+
+    // Headers are still generated for each type.
+    getTranslatedFile("foo/A.h");
+    getTranslatedFile("foo/B.h");
+    assertFalse(getTempFile("foo/A.m").exists());
+    assertFalse(getTempFile("foo/B.m").exists());
+
+    String foo = getTranslatedFile("foo/foo_unity.m");
+    assertOccurrences(foo, "#include \"J2ObjC_source.h\"", 1);
+    assertOccurrences(foo, "#include \"foo/A.h\"", 1);
+    assertTranslation(foo, "#include \"foo/B.h\"");
+    assertTranslation(foo, "@implementation FooA");
+    assertTranslation(foo, "@implementation FooB");
+    assertNotInTranslation(foo, "BarC");
+
+    String bar = getTranslatedFile("bar/bar_unity.m");
+    assertTranslation(bar, "@implementation BarC");
+  }
+
+  public void testSizeLimit() throws IOException {
+    options.setAmalgamationSizeLimit(1);
+    addSources();
+    runPipeline(getTempDir() + "/foo/A.java", getTempDir() + "/foo/B.java");
+
+    String first = getTranslatedFile("foo/foo_unity.m");
+    String second = getTranslatedFile("foo/foo_unity_2.m");
+    assertTranslation(first, "@implementation FooA");
+    assertNotInTranslation(first, "@implementation FooB");
+    assertTranslation(second, "@implementation FooB");
+    assertTranslation(second, "#include \"J2ObjC_source.h\"");
+  }
+
+  public void testIncompletePragmasScopedToUnit() throws IOException {
+    addSourceFile("package foo; public abstract class A implements Runnable {}", "foo/A.java");
+    addSourceFile("package foo; public class B {}", "foo/B.java");
+    runPipeline(getTempDir() + "/foo/A.java", getTempDir() + "/foo/B.java");
+
+    String foo = getTranslatedFile("foo/foo_unity.m");
+    assertTranslatedLines(foo,
+        "#pragma clang diagnostic push",
+        "#pragma clang diagnostic ignored \"-Wprotocol\"");
+    // Everything pushed for A is popped before B's code.
+    String unitA = foo.substring(foo.indexOf("#pragma clang diagnostic push"),
+        foo.indexOf("@implementation FooB"));
+    assertTrue(unitA.contains("@implementation FooA"));
+    assertEquals(count(unitA, "#pragma clang diagnostic push"),
+        count(unitA, "#pragma clang diagnostic pop"));
+  }
+
+  private static int count(String s, String substring) {
+    int count = 0;
+    for (int i = s.indexOf(substring); i >= 0; i = s.indexOf(substring, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  public void testLineDirectives() throws IOException {
+    options.setEmitLineDirectives(true);
+    addSources();
+    runPipeline(getTempDir() + "/foo/A.java", getTempDir() + "/foo/B.java");
+
+    String foo = getTranslatedFile("foo/foo_unity.m");
+    assertOccurrences(foo, "\"foo/foo_unity.m\"", 2);
+    // Each directive names the line that follows it.
+    String[] lines = foo.split("\n", -1);
+    for (int i = 0; i < lines.length; i++) {
+      if (lines[i].startsWith("#line ") && lines[i].endsWith("\"foo/foo_unity.m\"")) {
+        assertEquals("#line " + (i + 2) + " \"foo/foo_unity.m\"", lines[i]);
+      }
+    }
+  }
+}
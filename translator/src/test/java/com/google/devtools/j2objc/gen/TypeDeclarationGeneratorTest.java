@@ -23,7 +23,9 @@ import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Tests for {@link TypeDeclarationGenerator}.
@@ -685,7 +687,10 @@ public class TypeDeclarationGeneratorTest extends GenerationTest {
 
     boolean foundZebra = false;
     for (GeneratedSourceMappings.Mapping mapping : mappings.getMappings()) {
-      if (mapping.getIdentifier().equals("zebra")) {
+      if (generatedType
+          .getPublicDeclarationCode()
+          .substring(mapping.getTargetBegin(), mapping.getTargetEnd())
+          .equals("zebra")) {
         foundZebra = true;
         assertEquals("zebra", source.substring(mapping.getSourceBegin(), mapping.getSourceEnd()));
         assertEquals(
@@ -711,7 +716,10 @@ public class TypeDeclarationGeneratorTest extends GenerationTest {
 
     boolean foundZebra = false;
     for (GeneratedSourceMappings.Mapping mapping : mappings.getMappings()) {
-      if (mapping.getIdentifier().equals("zebra")) {
+      if (generatedType
+          .getPublicDeclarationCode()
+          .substring(mapping.getTargetBegin(), mapping.getTargetEnd())
+          .equals("zebraWithInt")) {
         foundZebra = true;
         assertEquals("zebra", source.substring(mapping.getSourceBegin(), mapping.getSourceEnd()));
         assertEquals(
@@ -737,7 +745,10 @@ public class TypeDeclarationGeneratorTest extends GenerationTest {
 
     boolean foundType = false;
     for (GeneratedSourceMappings.Mapping mapping : mappings.getMappings()) {
-      if (mapping.getIdentifier().equals("<init>")) {
+      if (generatedType
+          .getPublicDeclarationCode()
+          .substring(mapping.getTargetBegin(), mapping.getTargetEnd())
+          .equals("init")) {
         foundType = true;
         assertEquals("MyClass", source.substring(mapping.getSourceBegin(), mapping.getSourceEnd()));
         assertEquals(
@@ -752,4 +763,23 @@ public class TypeDeclarationGeneratorTest extends GenerationTest {
       fail("No mapping found for MyClass() constructor");
     }
   }
+
+  // Verify that mappings are read back in the order they were generated.
+  public void testMappingsOrdered() throws IOException {
+    String source = "class A { void zebra() {} void yak(int i) {} void xerus() {} }";
+    CompilationUnit compilationUnit = translateType("A", source);
+    GeneratedType generatedType =
+        GeneratedType.fromTypeDeclaration(compilationUnit.getTypes().get(0));
+    String declarationCode = generatedType.getPublicDeclarationCode();
+
+    List<String> sourceNames = new ArrayList<>();
+    List<String> targetNames = new ArrayList<>();
+    for (GeneratedSourceMappings.Mapping mapping :
+        generatedType.getGeneratedSourceMappings().getMappings()) {
+      sourceNames.add(source.substring(mapping.getSourceBegin(), mapping.getSourceEnd()));
+      targetNames.add(declarationCode.substring(mapping.getTargetBegin(), mapping.getTargetEnd()));
+    }
+    assertEquals(Arrays.asList("xerus", "yak", "zebra"), sourceNames);
+    assertEquals(Arrays.asList("xerus", "yakWithInt", "zebra"), targetNames);
+  }
 }
@@ -15,6 +15,9 @@
 package com.google.devtools.j2objc.javac;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.pipeline.TranslationProcessor;
+import com.google.devtools.j2objc.util.TimeTracker;
 import java.io.IOException;
 
 /**
@@ -66,6 +69,22 @@ public class ClassFileConverterTest extends GenerationTest {
     assertEqualSrcClassfile(type, source);
   }
 
+  public void testInterfaceWithoutParameterNames() throws IOException {
+    String source = String.join("\n",
+        "package foo.bar;",
+        "interface Test {",
+        "  void hello(String a, int b);",
+        "}"
+    );
+    // Without -parameters, abstract methods have no parameter names in the class file.
+    CompilationUnit unit = compileAsClassFile("foo.bar.Test", source, "-g");
+    TranslationProcessor.applyMutations(
+        unit, null, options.externalAnnotations(), TimeTracker.noop());
+    String header = generateFromUnit(unit, "foo/bar/Test.h");
+    assertTranslation(header, "(NSString *)arg0");
+    assertTranslation(header, "(jint)arg1;");
+  }
+
   public void testDefaultStaticInterface() throws IOException {
     String type = "foo.bar.Test";
     String source = String.join("\n",
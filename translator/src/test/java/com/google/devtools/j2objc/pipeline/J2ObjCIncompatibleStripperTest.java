@@ -16,6 +16,7 @@ package com.google.devtools.j2objc.pipeline;
 
 import com.google.devtools.j2objc.GenerationTest;
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  * Tests for the Parser.ParseResult.stripIncompatibleSource() function.
@@ -66,6 +67,19 @@ public class J2ObjCIncompatibleStripperTest extends GenerationTest {
     assertTranslation(translation, "return JavaUtilArrays_asListWithNSObjectArray_(objs);");
   }
 
+  public void testStrippedSourceKeepsEncoding() throws IOException {
+    options.fileUtil().setFileEncoding("ISO-8859-1");
+    addSourceFile(
+        "import com.google.j2objc.annotations.J2ObjCIncompatible; "
+        + "class Test {"
+        + " String s = \"caf\u00e9\";"
+        + " @J2ObjCIncompatible void strippedMethod() {} }", "Test.java");
+    runPipeline("Test.java");
+    String translation = getTranslatedFile("Test.m");
+    assertNotInTranslation(translation, "strippedMethod");
+    assertTranslation(translation, "@\"caf\\u00e9\"");
+  }
+
   public void testAnnotationImportIsPreserved() throws IOException {
     addSourceFile(
         "import com.google.j2objc.annotations.J2ObjCIncompatible; "
@@ -77,4 +91,29 @@ public class J2ObjCIncompatibleStripperTest extends GenerationTest {
     // Mainly testing that the source compiles after stripping.
     assertTranslation(translation, "@protocol Test");
   }
+
+  // Verify that a stripped source replaces its file when javac looks it up
+  // on the sourcepath.
+  public void testStrippedSourceOnSourcepath() throws IOException {
+    String path = addSourceFile(
+        "import com.google.j2objc.annotations.J2ObjCIncompatible; "
+        + "import non.existent.pkg.Garbage; "
+        + "public class Dep { @J2ObjCIncompatible Garbage g; public int i; }", "Dep.java");
+    parser.stripIncompatibleSources(Collections.singletonList(path));
+    String translation = translateSourceFile(
+        "class Test { int test(Dep d) { return d.i; } }", "Test", "Test.m");
+    assertTranslation(translation, "return ((Dep *) nil_chk(d))->i_;");
+  }
+
+  public void testStrippedSourceKeepsOriginalLocation() throws IOException {
+    options.setEmitLineDirectives(true);
+    String path = addSourceFile(
+        "import com.google.j2objc.annotations.J2ObjCIncompatible; "
+        + "class Test { @J2ObjCIncompatible void strippedMethod() {} void test() {} }",
+        "Test.java");
+    runPipeline(path);
+    String translation = getTranslatedFile("Test.m");
+    assertNotInTranslation(translation, "strippedMethod");
+    assertTranslation(translation, "#line 1 \"" + path + "\"");
+  }
 }
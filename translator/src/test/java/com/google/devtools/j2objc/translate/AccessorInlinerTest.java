@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link AccessorInliner}.
+ */
+public class AccessorInlinerTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    options.setInlineAccessors(true);
+  }
+
+  public void testCrossUnitAccessors() throws IOException {
+    addSourceFile("public final class A {\n"
+        + "  private int count;\n"
+        + "  private String name;\n"
+        + "  public int getCount() { return count; }\n"
+        + "  public void setCount(int count) { this.count = count; }\n"
+        + "  public String getName() { return this.name; }\n"
+        + "  public void setName(String n) { name = n; }\n"
+        + "  public String describe() { return name + count; }\n"
+        + "}\n", "A.java");
+    addSourceFile("class B {\n"
+        + "  String test(A a) {\n"
+        + "    a.setCount(a.getCount() + 1);\n"
+        + "    a.setName(\"b\");\n"
+        + "    return a.getName() + a.describe();\n"
+        + "  }\n"
+        + "}\n", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    String header = getTranslatedFile("A.h");
+    // The private fields' instance variables are declared for the inline
+    // functions, without making them public.
+    assertTranslatedLines(header,
+        "@interface A : NSObject {",
+        "@package",
+        "jint count_;",
+        "NSString *name_;",
+        "}");
+    assertNotInTranslation(header, "@public");
+    assertNotInTranslation(header, "J2OBJC_FIELD_SETTER");
+    String aImpl = getTranslatedFile("A.m");
+    assertTranslation(aImpl, "J2OBJC_FIELD_SETTER(A, name_, NSString *)");
+    assertNotInTranslation(aImpl, "NSString *name_;");
+    assertTranslatedLines(header,
+        "__attribute__((unused)) static inline jint A_getCount_inline(A *self) {",
+        "  return self->count_;",
+        "}");
+    assertTranslatedLines(header,
+        "__attribute__((unused)) static inline void A_setCountWithInt__inline(A *self, "
+            + "jint value) {",
+        "  self->count_ = value;",
+        "}");
+    assertTranslatedLines(header,
+        "__attribute__((unused)) static inline void A_setNameWithNSString__inline(A *self, "
+            + "NSString *value) {",
+        "#if __has_feature(objc_arc)",
+        "  self->name_ = value;",
+        "#else",
+        "  JreStrongAssign(&self->name_, value);",
+        "#endif",
+        "}");
+    assertNotInTranslation(header, "describe_inline");
+    // The methods are kept for dynamic dispatch and reflection.
+    assertTranslation(header, "- (jint)getCount;");
+
+    String impl = getTranslatedFile("B.m");
+    assertTranslation(impl, "A_setCountWithInt__inline(nil_chk(a), ");
+    assertTranslation(impl, "A_getCount_inline(a) + 1");
+    assertTranslation(impl, "A_setNameWithNSString__inline(a, @\"b\");");
+    assertTranslation(impl, "A_getName_inline(a)");
+    assertTranslation(impl, "[a describe]");
+  }
+
+  public void testOverridableAccessorsNotInlined() throws IOException {
+    addSourceFile("public class A {\n"
+        + "  int count;\n"
+        + "  volatile int total;\n"
+        + "  public int getCount() { return count; }\n"
+        + "  public final int getTotal() { return total; }\n"
+        + "  public final long getWide() { return count; }\n"
+        + "}\n", "A.java");
+    addSourceFile("class B {\n"
+        + "  long test(A a) { return a.getCount() + a.getTotal() + a.getWide(); }\n"
+        + "}\n", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    assertNotInTranslation(getTranslatedFile("A.h"), "_inline");
+    assertNotInTranslation(getTranslatedFile("B.m"), "_inline");
+  }
+}
@@ -54,4 +54,23 @@ public class ArrayRewriterTest extends GenerationTest {
     assertEquals("++((*IOSIntArray_GetRef(x, 0)));", generateStatement(stmts.get(5)));
     assertEquals("((*IOSIntArray_GetRef(x, 0)))++;", generateStatement(stmts.get(6)));
   }
+
+  public void testStaticFinalConstantArray() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static final int[] TABLE = { 1, -2, Integer.MIN_VALUE }; "
+        + "static final char[] CHARS = { 'a', 98 }; static final byte[] BYTES = { (byte) 0xff }; "
+        + "static int[] notFinal = { 1, 2 }; static final int[] notConstant = { 1, notFinal[0] }; }",
+        "Test", "Test.m");
+    assertTranslation(translation,
+        "static const jint Test_TABLE$values[] = { 1, -2, ((jint) 0x80000000) };");
+    assertTranslation(translation,
+        "JreStrongAssignAndConsume(&Test_TABLE, "
+        + "[IOSIntArray newArrayWithInts:Test_TABLE$values count:3]);");
+    assertTranslation(translation, "static const jchar Test_CHARS$values[] = { 'a', 'b' };");
+    assertTranslation(translation, "static const jbyte Test_BYTES$values[] = { -1 };");
+    assertTranslation(translation,
+        "JreStrongAssignAndConsume(&Test_notFinal, "
+        + "[IOSIntArray newArrayWithInts:(jint[]){ 1, 2 } count:2]);");
+    assertNotInTranslation(translation, "Test_notConstant$values");
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link AutoreleasePoolInserter}.
+ */
+public class AutoreleasePoolInserterTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    options.setAutoreleasePoolThreshold(2);
+  }
+
+  public void testAllLoopKinds() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { "
+        + "  void test(List<String> list, int n) { "
+        + "    for (int i = 0; i < n; i++) { String s = \"a\" + i; list.add(s + i); } "
+        + "    while (n-- > 0) { list.add(new Object().toString()); } "
+        + "    do { list.add(new Object().toString()); } while (n++ < 5); "
+        + "    for (String s : list) { Object o = new Object(); s = o.toString(); } } }",
+        "Test", "Test.m");
+    assertOccurrences(translation, "@autoreleasepool", 4);
+  }
+
+  public void testBelowThreshold() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { "
+        + "  void test(List<Object> list) { "
+        + "    for (int i = 0; i < 10; i++) { list.add(new Object()); } } }",
+        "Test", "Test.m");
+    assertNotInTranslation(translation, "@autoreleasepool");
+  }
+
+  public void testNonAllocatingCallsNotCounted() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { "
+        + "  Object field; "
+        + "  Object getField() { return field; } "
+        + "  void test(List<Object> list, int n) { "
+        + "    for (int i = 0; i < n; i++) { list.add(list.get(i)); getField(); } "
+        + "    for (int i = 0; i < n; i++) { String s = String.valueOf(i); s.trim(); } } }",
+        "Test", "Test.m");
+    assertOccurrences(translation, "@autoreleasepool", 1);
+    assertTranslatedLines(translation,
+        "for (jint i = 0; i < n; i++) {",
+        "@autoreleasepool {",
+        "NSString *s = NSString_java_valueOfInt_(i);");
+  }
+
+  public void testEscapingValuesPreventPool() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { "
+        + "  String test(int n) { "
+        + "    String last = null; "
+        + "    for (int i = 0; i < n; i++) { last = new Object().toString() + i; } "
+        + "    for (int i = 0; i < n; i++) { "
+        + "      String s = new Object().toString() + i; if (i == 5) { return s; } } "
+        + "    outer: while (n > 0) { "
+        + "      for (int i = 0; i < n; i++) { "
+        + "        if (new Object().toString().equals(\"\" + i)) { continue outer; } } "
+        + "      n--; } "
+        + "    return last; } }",
+        "Test", "Test.m");
+    assertNotInTranslation(translation, "@autoreleasepool");
+  }
+
+  public void testNestedLoopWithPool() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { "
+        + "  void test(List<String> list, int n) { "
+        + "    for (int i = 0; i < n; i++) { "
+        + "      for (int j = 0; j < n; j++) { list.add(new Object().toString() + j); } } } }",
+        "Test", "Test.m");
+    // The outer loop's allocations are drained by the inner loop's pool.
+    assertOccurrences(translation, "@autoreleasepool", 1);
+  }
+
+  public void testDrainInterval() throws IOException {
+    options.setAutoreleasePoolInterval(16);
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { "
+        + "  void test(List<String> list, int n) { "
+        + "    for (int i = 0; i < n; i++) { list.add(new Object().toString() + i); } } }",
+        "Test", "Test.m");
+    assertNotInTranslation(translation, "@autoreleasepool");
+    assertTranslatedLines(translation,
+        "extern void *objc_autoreleasePoolPush(void);",
+        "extern void objc_autoreleasePoolPop(void *context);");
+    assertTranslatedLines(translation,
+        "void *pool$0 = NULL;",
+        "jint poolCount$0 = 0;",
+        "for (jint i = 0; i < n; i++) {",
+        "if (!pool$0) pool$0 = objc_autoreleasePoolPush();");
+    assertTranslatedLines(translation,
+        "if (++poolCount$0 == 16) {",
+        "objc_autoreleasePoolPop(pool$0);",
+        "pool$0 = NULL;",
+        "poolCount$0 = 0;",
+        "}",
+        "}",
+        "if (pool$0) objc_autoreleasePoolPop(pool$0);");
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.util.CodeReferenceMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link DeadCodeAnalyzer}.
+ */
+public class DeadCodeAnalyzerTest extends GenerationTest {
+
+  public void testUnreachableCode() throws IOException {
+    String source = "class A {\n"
+        + "  public static void main(String[] args) { new B().foo(); }\n"
+        + "}\n"
+        + "class B {\n"
+        + "  void foo() {}\n"
+        + "  void bar() {}\n"
+        + "}\n"
+        + "class C {\n"
+        + "  void baz() {}\n"
+        + "}\n";
+    CodeReferenceMap deadCode = analyze(CodeReferenceMap.builder().addClass("A").build(), source);
+    assertFalse(deadCode.containsClass("A"));
+    assertFalse(deadCode.containsClass("B"));
+    assertTrue(deadCode.containsClass("C"));
+    assertFalse(deadCode.containsMethod("B", "foo", "()V"));
+    assertTrue(deadCode.containsMethod("B", "bar", "()V"));
+  }
+
+  public void testRootMethod() throws IOException {
+    String source = "class A {\n"
+        + "  void foo() { bar(); }\n"
+        + "  void bar() {}\n"
+        + "  void baz() {}\n"
+        + "}\n";
+    CodeReferenceMap deadCode =
+        analyze(CodeReferenceMap.builder().addMethod("A", "foo", "()V").build(), source);
+    assertFalse(deadCode.containsClass("A"));
+    assertFalse(deadCode.containsMethod("A", "bar", "()V"));
+    assertTrue(deadCode.containsMethod("A", "baz", "()V"));
+  }
+
+  public void testOverridesNeedReachableClass() throws IOException {
+    String source = "class A {\n"
+        + "  public static void main(String[] args) { Base b = new Used(); b.run(); }\n"
+        + "}\n"
+        + "class Base { void run() {} }\n"
+        + "class Used extends Base { void run() {} }\n"
+        + "class Unused extends Base { void run() {} }\n";
+    CodeReferenceMap deadCode = analyze(CodeReferenceMap.builder().addClass("A").build(), source);
+    assertFalse(deadCode.containsMethod("Used", "run", "()V"));
+    assertTrue(deadCode.containsClass("Unused"));
+  }
+
+  public void testLibraryOverridesAreKept() throws IOException {
+    String source = "class A {\n"
+        + "  public static void main(String[] args) { Object o = new B(); }\n"
+        + "}\n"
+        + "class B implements Runnable {\n"
+        + "  public void run() {}\n"
+        + "  public String toString() { return \"B\"; }\n"
+        + "  void unused() {}\n"
+        + "}\n";
+    CodeReferenceMap deadCode = analyze(CodeReferenceMap.builder().addClass("A").build(), source);
+    assertFalse(deadCode.containsMethod("B", "run", "()V"));
+    assertFalse(deadCode.containsMethod("B", "toString", "()Ljava/lang/String;"));
+    assertTrue(deadCode.containsMethod("B", "unused", "()V"));
+  }
+
+  public void testInheritedInterfaceImplementationsAreKept() throws IOException {
+    String source = "class A {\n"
+        + "  public static void main(String[] args) {\n"
+        + "    Runnable r = new C(); r.run(); Task t = new D(); t.run();\n"
+        + "  }\n"
+        + "}\n"
+        + "class B { public void run() {} void unused() {} }\n"
+        + "class C extends B implements Runnable {}\n"
+        + "interface Task { void run(); }\n"
+        + "class D extends E implements Task {}\n"
+        + "class E { public void run() {} }\n";
+    CodeReferenceMap deadCode = analyze(CodeReferenceMap.builder().addClass("A").build(), source);
+    // B.run() implements Runnable.run() for C, and E.run() implements Task.run() for D.
+    assertFalse(deadCode.containsMethod("B", "run", "()V"));
+    assertTrue(deadCode.containsMethod("B", "unused", "()V"));
+    assertFalse(deadCode.containsMethod("E", "run", "()V"));
+  }
+
+  public void testStaticInitializerReferences() throws IOException {
+    String source = "class A {\n"
+        + "  static final B b = B.create();\n"
+        + "  public static void main(String[] args) {}\n"
+        + "}\n"
+        + "class B {\n"
+        + "  static B create() { return new B(); }\n"
+        + "}\n";
+    CodeReferenceMap deadCode = analyze(CodeReferenceMap.builder().addClass("A").build(), source);
+    assertFalse(deadCode.containsClass("B"));
+    assertFalse(deadCode.containsMethod("B", "create", "()LB;"));
+  }
+
+  public void testDeadCodeRootsOption() throws IOException {
+    addSourceFile("class A {\n"
+        + "  public static void main(String[] args) { new B().foo(); }\n"
+        + "}\n", "A.java");
+    addSourceFile("class B {\n"
+        + "  void foo() {}\n"
+        + "  void bar() {}\n"
+        + "}\n", "B.java");
+    File roots = getTempFile("roots.txt");
+    Files.asCharSink(roots, StandardCharsets.UTF_8).write("A\n");
+    options.setDeadCodeRootsFile(roots);
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+    String translation = getTranslatedFile("B.m");
+    assertTranslation(translation, "- (void)foo");
+    assertNotInTranslation(translation, "bar");
+  }
+
+  private CodeReferenceMap analyze(CodeReferenceMap roots, String source) {
+    DeadCodeAnalyzer analyzer = new DeadCodeAnalyzer(roots);
+    analyzer.mapUnit(compileType("A", source));
+    return analyzer.buildDeadCodeMap();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link ReflectionUsageAnalyzer}.
+ */
+public class ReflectionUsageAnalyzerTest extends GenerationTest {
+
+  private static final String METADATA = "+ (const J2ObjcClassInfo *)__metadata";
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    options.setStripUnusedReflection(true);
+  }
+
+  public void testUnreflectedClassStripped() throws IOException {
+    addSourceFile("class A { String name() { return B.class.getSimpleName(); } }", "A.java");
+    addSourceFile("class B extends C {}", "B.java");
+    addSourceFile("class C {}", "C.java");
+    addSourceFile("class D { int f() { return 1; } }", "D.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java", getTempDir() + "/C.java",
+        getTempDir() + "/D.java");
+
+    assertNotInTranslation(getTranslatedFile("A.m"), METADATA);
+    assertTranslation(getTranslatedFile("B.m"), METADATA);
+    // The superclass of a reflected class keeps its metadata.
+    assertTranslation(getTranslatedFile("C.m"), METADATA);
+    assertNotInTranslation(getTranslatedFile("D.m"), METADATA);
+  }
+
+  public void testGetClassKeepsSubclasses() throws IOException {
+    addSourceFile("class A { Object make(B b) { return b.getClass().getDeclaredFields(); } }",
+        "A.java");
+    addSourceFile("class B {}", "B.java");
+    addSourceFile("class C extends B {}", "C.java");
+    addSourceFile("class D {}", "D.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java", getTempDir() + "/C.java",
+        getTempDir() + "/D.java");
+
+    assertTranslation(getTranslatedFile("B.m"), METADATA);
+    assertTranslation(getTranslatedFile("C.m"), METADATA);
+    assertNotInTranslation(getTranslatedFile("D.m"), METADATA);
+  }
+
+  public void testForName() throws IOException {
+    addSourceFile("package p; class A { Object f() throws Exception {"
+        + " return Class.forName(\"p.B\").newInstance(); } }", "p/A.java");
+    addSourceFile("package p; class B {}", "p/B.java");
+    addSourceFile("package p; class C {}", "p/C.java");
+    runPipeline(getTempDir() + "/p/A.java", getTempDir() + "/p/B.java",
+        getTempDir() + "/p/C.java");
+
+    assertTranslation(getTranslatedFile("p/B.m"), METADATA);
+    assertNotInTranslation(getTranslatedFile("p/C.m"), METADATA);
+  }
+
+  public void testForNameWithoutConstantKeepsAll() throws IOException {
+    addSourceFile("class A { Object f(String s) throws Exception {"
+        + " return Class.forName(s); } }", "A.java");
+    addSourceFile("class B {}", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    assertTranslation(getTranslatedFile("A.m"), METADATA);
+    assertTranslation(getTranslatedFile("B.m"), METADATA);
+  }
+
+  public void testUnknownClassObjectKeepsUsedClasses() throws IOException {
+    addSourceFile("class A { Object f(Class<?> c) { return c.getMethods(); }"
+        + " Object g() { return f(B.class); } }", "A.java");
+    addSourceFile("class B {}", "B.java");
+    addSourceFile("class C {}", "C.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java", getTempDir() + "/C.java");
+
+    assertTranslation(getTranslatedFile("B.m"), METADATA);
+    assertNotInTranslation(getTranslatedFile("C.m"), METADATA);
+  }
+
+  public void testClassPassedToUntranslatedCodeKept() throws IOException {
+    addSourceFile("class A { Object f(B b) { return java.util.Collections.singleton(C.class); }"
+        + " String g(B b) { return String.valueOf(b.getClass()); } }", "A.java");
+    addSourceFile("class B {}", "B.java");
+    addSourceFile("class C {}", "C.java");
+    addSourceFile("class D extends B {}", "D.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java", getTempDir() + "/C.java",
+        getTempDir() + "/D.java");
+
+    // Untranslated code may reflect on the Class objects it's passed.
+    assertTranslation(getTranslatedFile("B.m"), METADATA);
+    assertTranslation(getTranslatedFile("C.m"), METADATA);
+    assertTranslation(getTranslatedFile("D.m"), METADATA);
+    assertNotInTranslation(getTranslatedFile("A.m"), METADATA);
+  }
+
+  public void testClassPassedToTranslatedCodeFollowed() throws IOException {
+    addSourceFile("class A { int f() { return g(B.class); }"
+        + " int g(Class<?> c) { return c.hashCode(); } }", "A.java");
+    addSourceFile("class B {}", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    // A.g doesn't reflect on the Class it's passed.
+    assertNotInTranslation(getTranslatedFile("B.m"), METADATA);
+  }
+
+  public void testEnumsAndAnnotationReflectionSupportKept() throws IOException {
+    addSourceFile("enum E { X }", "E.java");
+    addSourceFile("@com.google.j2objc.annotations.ReflectionSupport("
+        + "com.google.j2objc.annotations.ReflectionSupport.Level.FULL) class F {}", "F.java");
+    runPipeline(getTempDir() + "/E.java", getTempDir() + "/F.java");
+
+    assertTranslation(getTranslatedFile("E.m"), METADATA);
+    assertTranslation(getTranslatedFile("F.m"), METADATA);
+  }
+
+  public void testReport() throws IOException {
+    options.setReflectionReport(getTempFile("reflection.txt"));
+    addSourceFile("class A { String name() { return B.class.getName(); } }", "A.java");
+    addSourceFile("class B {}", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    String report = getTranslatedFile("reflection.txt");
+    assertTranslation(report, "# 2 classes, 1 keep reflection metadata, 1 stripped");
+    assertTranslation(report, "\nA\tstripped\n");
+    assertTranslation(report, "\nB\tkept\tClass.getName() at ");
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link StaticInitAnalyzer}.
+ */
+public class StaticInitAnalyzerTest extends GenerationTest {
+
+  public void testConstantAssignmentsFolded() throws IOException {
+    String source = "class Test { static int a; static String s; static final long l;"
+        + " static { a = 5; s = \"foo\"; } static { l = 1L << 40; } }";
+    String translation = translateSourceFile(source, "Test", "Test.m");
+    assertNotInTranslation(translation, "+ (void)initialize");
+    assertNotInTranslation(translation, "J2OBJC_INITIALIZED_DEFN");
+    assertTranslation(translation, "jint Test_a = 5;");
+    assertTranslation(translation, "NSString *Test_s = @\"foo\";");
+    assertTranslation(translation, "jlong Test_l = 1099511627776LL;");
+    translation = getTranslatedFile("Test.h");
+    assertTranslation(translation, "J2OBJC_EMPTY_STATIC_INIT(Test)");
+  }
+
+  public void testNonConstantInitializerKept() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static int a; static int b; static int f() { return 1; }"
+        + " static { a = 5; b = f(); } }", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "+ (void)initialize {",
+        "if (self == [Test class]) {",
+        "Test_a = 5;",
+        "Test_b = Test_f();");
+  }
+
+  public void testReport() throws IOException {
+    options.setStaticInitReport(getTempFile("init.txt"));
+    addSourceFile("class A { static B b = new B(); }", "A.java");
+    addSourceFile("class B { static int x = C.f(); }", "B.java");
+    addSourceFile("class C { static int f() { return 1; } static Object o = new Object(); }",
+        "C.java");
+    addSourceFile("class D { static int d; static { d = 1; } }", "D.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java", getTempDir() + "/C.java",
+        getTempDir() + "/D.java");
+
+    String report = getTranslatedFile("init.txt");
+    assertTranslation(report, "# 4 classes with static initializers,"
+        + " 1 need no runtime initialization");
+    assertTranslation(report, "\nA\truntime\t1\tB\t3\tA > B > C\n");
+    assertTranslation(report, "\nB\truntime\t1\tC\t2\tB > C\n");
+    assertTranslation(report, "\nD\tconstant\t1\t\t0\t\n");
+    // The longest chains are listed first, and classes without runtime
+    // initialization last.
+    assertTrue(report.indexOf("\nA\t") < report.indexOf("\nB\t"));
+    assertTrue(report.indexOf("\nC\t") < report.indexOf("\nD\t"));
+  }
+}
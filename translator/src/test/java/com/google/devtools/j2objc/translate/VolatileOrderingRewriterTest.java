@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link VolatileOrderingRewriter}.
+ */
+public class VolatileOrderingRewriterTest extends GenerationTest {
+
+  @Override
+  protected void setUp() throws IOException {
+    super.setUp();
+    options.setVolatileOrdering(true);
+  }
+
+  public void testConstructorStores() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { private volatile int a; volatile int b; private volatile int c;"
+        + " private volatile int d = 1;"
+        + " Test(int n) { a = n; this.b = n + 1; foo(); c = n; }"
+        + " void foo() {} void setD(int n) { d = n; }"
+        + " int get() { return a + b + c + d; } }", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "JreAssignVolatileRelaxedInt(&self->d_, 1);",
+        "JreAssignVolatileRelaxedInt(&self->a_, n);",
+        "JreAssignVolatileRelaxedInt(&self->b_, n + 1);",
+        "[self foo];",
+        "JreAssignVolatileInt(&self->c_, n);");
+    assertTranslation(translation, "JreAssignVolatileInt(&d_, n);");
+    // Only a is private and never assigned once the instance is published.
+    assertTranslation(translation,
+        "return JreLoadVolatileAcquireInt(&a_) + JreLoadVolatileInt(&b_)"
+        + " + JreLoadVolatileInt(&c_) + JreLoadVolatileInt(&d_);");
+  }
+
+  public void testSuperConstructor() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static class A { A() { init(); } void init() {} }"
+        + " static class B extends A { private volatile long l; B() { l = 1; }"
+        + " long get() { return l; } } }", "Test", "Test.m");
+    // A's constructor could publish the instance before l is assigned.
+    assertTranslation(translation, "JreAssignVolatileLong(&self->l_, 1);");
+    assertTranslation(translation, "return JreLoadVolatileLong(&l_);");
+  }
+
+  public void testStaticInitializer() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { private static volatile boolean ready = true;"
+        + " static boolean isReady() { return ready; } }", "Test", "Test.m");
+    assertTranslation(translation, "JreAssignVolatileRelaxedBoolean(&Test_ready, true);");
+    assertTranslation(translation, "return JreLoadVolatileAcquireBoolean(&Test_ready);");
+  }
+
+  public void testFieldUpdater() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;"
+        + " class Test { private volatile int state;"
+        + " private static final AtomicIntegerFieldUpdater<Test> STATE ="
+        + " AtomicIntegerFieldUpdater.newUpdater(Test.class, \"state\");"
+        + " Test() { state = 1; } int get() { return state; } }", "Test", "Test.m");
+    // The updater can write the field, so loads keep sequential consistency.
+    assertTranslation(translation, "JreAssignVolatileRelaxedInt(&self->state_, 1);");
+    assertTranslation(translation, "return JreLoadVolatileInt(&state_);");
+  }
+}
@@ -234,4 +234,24 @@ public class ImplementationImportCollectorTest extends GenerationTest {
     assertTranslation(translation, "#include \"a/b/c/Test.h\"");
     assertNotInTranslation(translation, "#include \"a/b/c/Foo.h\"");
   }
+
+  public void testDeclarationOnlyTypesForwardDeclared() throws IOException {
+    addSourceFile("class A { int size() { return 0; } }", "A.java");
+    addSourceFile("class B {}", "B.java");
+    addSourceFile("class C {}", "C.java");
+    String translation = translateSourceFile(
+        "class Test { C c; B test(A a, B b) { A local = null; int n = a.size(); return null; } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "#include \"A.h\"");
+    assertNotInTranslation(translation, "#include \"B.h\"");
+    assertNotInTranslation(translation, "#include \"C.h\"");
+    assertTranslation(translation, "@class B;");
+  }
+
+  public void testNativeMethodIncludesDeclaredTypes() throws IOException {
+    addSourceFile("class A {}", "A.java");
+    String translation = translateSourceFile(
+        "class Test { native void test(A a) /*-[ [a description]; ]-*/; }", "Test", "Test.m");
+    assertTranslation(translation, "#include \"A.h\"");
+  }
 }
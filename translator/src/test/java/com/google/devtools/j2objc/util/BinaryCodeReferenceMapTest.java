@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link BinaryCodeReferenceMap}.
+ */
+public class BinaryCodeReferenceMapTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws IOException {
+    file = File.createTempFile("deadcode", ".bin");
+  }
+
+  @Override
+  protected void tearDown() {
+    file.delete();
+  }
+
+  public void testLookups() throws IOException {
+    CodeReferenceMap map = CodeReferenceMap.builder()
+        .addClass("foo.Dead")
+        .addMethod("foo.Bar", "abc", "()V")
+        .addMethod("foo.Bar", "abc", "(I)V")
+        .addField("foo.Bar", "field")
+        .build();
+    BinaryCodeReferenceMap.write(map, file);
+    CodeReferenceMap binary = ProGuardUsageParser.parseDeadCodeFile(file);
+    assertTrue(binary instanceof BinaryCodeReferenceMap);
+    assertFalse(binary.isEmpty());
+    assertTrue(binary.containsClass("foo.Dead"));
+    assertFalse(binary.containsClass("foo.Bar"));
+    assertTrue(binary.containsMethod("foo.Bar", "abc", "()V"));
+    assertTrue(binary.containsMethod("foo.Bar", "abc", "(I)V"));
+    assertFalse(binary.containsMethod("foo.Bar", "abc", "(J)V"));
+    assertFalse(binary.containsMethod("foo.Bar", "xyz", "()V"));
+    assertTrue(binary.containsMethod("foo.Dead", "xyz", "()V"));
+    assertTrue(binary.containsField("foo.Bar", "field"));
+    assertFalse(binary.containsField("foo.Bar", "abc"));
+    assertTrue(binary.containsField("foo.Dead", "field"));
+    assertEquals(ImmutableSet.of("foo.Dead"), binary.getReferencedClasses());
+    assertEquals(ImmutableSet.of("()V", "(I)V"),
+        binary.getReferencedMethods().get("foo.Bar", "abc"));
+    assertTrue(binary.getReferencedFields().containsEntry("foo.Bar", "field"));
+  }
+
+  public void testEmptyMap() throws IOException {
+    BinaryCodeReferenceMap.write(CodeReferenceMap.builder().build(), file);
+    CodeReferenceMap binary = BinaryCodeReferenceMap.open(file);
+    assertTrue(binary.isEmpty());
+    assertFalse(binary.containsClass("foo.Bar"));
+    assertFalse(binary.containsMethod("foo.Bar", "abc", "()V"));
+  }
+
+  public void testManyEntries() throws IOException {
+    CodeReferenceMap.Builder builder = CodeReferenceMap.builder();
+    for (int i = 0; i < 1000; i++) {
+      builder.addClass("foo.Class" + i);
+      builder.addMethod("foo.Bar" + (i % 10), "method" + i, "()V");
+      builder.addField("foo.Bar" + (i % 10), "field" + i);
+    }
+    BinaryCodeReferenceMap.write(builder.build(), file);
+    CodeReferenceMap binary = BinaryCodeReferenceMap.open(file);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(binary.containsClass("foo.Class" + i));
+      assertTrue(binary.containsMethod("foo.Bar" + (i % 10), "method" + i, "()V"));
+      assertFalse(binary.containsMethod("foo.Bar" + ((i + 1) % 10), "method" + i, "()V"));
+      assertTrue(binary.containsField("foo.Bar" + (i % 10), "field" + i));
+    }
+    assertFalse(binary.containsClass("foo.Class1000"));
+    assertEquals(1000, binary.getReferencedClasses().size());
+  }
+
+  public void testTextReportStillParsed() throws IOException {
+    Files.asCharSink(file, Charset.defaultCharset()).write("foo.Dead\n");
+    CodeReferenceMap map = ProGuardUsageParser.parseDeadCodeFile(file);
+    assertFalse(map instanceof BinaryCodeReferenceMap);
+    assertTrue(map.containsClass("foo.Dead"));
+  }
+}
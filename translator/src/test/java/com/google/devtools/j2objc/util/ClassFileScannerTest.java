@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.file.RegularInputFile;
+import com.google.devtools.j2objc.util.ClassFileScanner.MemberReference;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Tests for {@link ClassFileScanner}.
+ */
+public class ClassFileScannerTest extends GenerationTest {
+
+  static class Base implements Runnable {
+    @Override
+    public void run() {}
+  }
+
+  static class Scanned extends Base {
+    static final List<String> NAMES = new ArrayList<>();
+
+    Scanned() {
+      NAMES.add("scanned");
+    }
+
+    @Override
+    public void run() {
+      super.run();
+      switch (NAMES.size()) {
+        case 0: NAMES.clear(); break;
+        case 1: NAMES.add("one"); break;
+        case 2: NAMES.add("two"); break;
+        default: break;
+      }
+    }
+
+    Supplier<String> supplier() {
+      return this::toString;
+    }
+  }
+
+  public void testClassHeader() throws IOException {
+    ClassFileScanner classFile = scan("ClassFileScannerTest$Base.class");
+    assertEquals("com.google.devtools.j2objc.util.ClassFileScannerTest$Base",
+        classFile.getClassName());
+    assertEquals("java.lang.Object", classFile.getSuperclassName());
+    assertEquals(1, classFile.getInterfaceNames().size());
+    assertEquals("java.lang.Runnable", classFile.getInterfaceNames().get(0));
+  }
+
+  public void testInvokedMethods() throws IOException {
+    ClassFileScanner classFile = scan("ClassFileScannerTest$Scanned.class");
+    ClassFileScanner.Method run = findMethod(classFile, "run");
+    assertEquals("()V", run.getDescriptor());
+    assertTrue(run.getInvokedMethods().contains(new MemberReference(
+        "com.google.devtools.j2objc.util.ClassFileScannerTest$Base", "run", "()V")));
+    assertTrue(run.getInvokedMethods().contains(
+        new MemberReference("java.util.List", "size", "()I")));
+    // Instructions after the tableswitch must still be decoded.
+    assertTrue(run.getInvokedMethods().contains(
+        new MemberReference("java.util.List", "clear", "()V")));
+    assertTrue(run.getInvokedMethods().contains(
+        new MemberReference("java.util.List", "add", "(Ljava/lang/Object;)Z")));
+
+    ClassFileScanner.Method constructor = findMethod(classFile, "<init>");
+    assertTrue(constructor.isConstructor());
+    assertTrue(findMethod(classFile, "<clinit>").isClassInitializer());
+  }
+
+  public void testMethodHandles() throws IOException {
+    ClassFileScanner classFile = scan("ClassFileScannerTest$Scanned.class");
+    assertTrue(classFile.getMethodHandles().contains(
+        new MemberReference("java.lang.Object", "toString", "()Ljava/lang/String;")));
+  }
+
+  private ClassFileScanner scan(String path) throws IOException {
+    String classPath = getResourceAsFile(path);
+    ClassFileScanner classFile = ClassFileScanner.scan(new RegularInputFile(classPath, path));
+    assertNotNull(classFile);
+    return classFile;
+  }
+
+  private static ClassFileScanner.Method findMethod(ClassFileScanner classFile, String name) {
+    for (ClassFileScanner.Method method : classFile.getMethods()) {
+      if (method.getName().equals(name)) {
+        return method;
+      }
+    }
+    fail("method not found: " + name);
+    return null;
+  }
+}
@@ -52,6 +52,17 @@ public class ClassFileTest extends GenerationTest {
     assertEquals("com/google/devtools/j2objc/util/" + path, cf.getRelativePath());
   }
 
+  public void testDecompiledOnDemand() throws IOException {
+    ClassFile cf = getClassFile("ClassFileTest$Inner.class");
+    assertEquals("Inner", cf.getName());
+    assertTrue(cf.hasMethod("<init>", "()V"));
+    assertFalse(cf.hasMethod("<clinit>", "()V"));
+    assertEquals(0, cf.getParameterNames("<init>", "()V").size());
+    assertFalse(cf.isDecompiled());
+    assertNotNull(cf.getType());
+    assertTrue(cf.isDecompiled());
+  }
+
   private ClassFile getClassFile(String path) throws IOException {
     String clazzPath = getResourceAsFile(path);
     InputFile input = new RegularInputFile(clazzPath, path);
@@ -1,6 +1,10 @@
 package com.google.devtools.j2objc.util;
 
 import com.google.devtools.j2objc.GenerationTest;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Test case for {@link ErrorUtil}.
@@ -24,4 +28,66 @@ public class ErrorUtilTest extends GenerationTest {
         "A.java:1: error: Some error in B.java:2: message",
         ErrorUtil.getFullMessage("error: ", "A.java:1: Some error in B.java:2: message", true));
   }
+
+  public void testThreadDiagnostics() throws Exception {
+    int errors = ErrorUtil.errorCount();
+    Diagnostics diagnostics = new Diagnostics();
+    Thread thread = new Thread(() -> {
+      ErrorUtil.setDiagnostics(diagnostics);
+      String previousFile = ErrorUtil.setFileContext("B.java");
+      String previousPass = ErrorUtil.setPassContext("Rewriter");
+      ErrorUtil.error("first");
+      ErrorUtil.warning("second");
+      ErrorUtil.setPassContext(previousPass);
+      ErrorUtil.setFileContext(previousFile);
+      ErrorUtil.error("third");
+      ErrorUtil.setDiagnostics(null);
+    });
+    thread.start();
+    thread.join();
+
+    assertEquals(errors, ErrorUtil.errorCount());
+    assertEquals(2, diagnostics.errorCount());
+    assertEquals(1, diagnostics.warningCount());
+    List<Diagnostics.Message> messages = diagnostics.getMessages();
+    assertEquals(3, messages.size());
+    // Messages without a file sort first.
+    assertEquals("third", messages.get(0).getText());
+    assertNull(messages.get(0).getFile());
+    assertNull(messages.get(0).getPass());
+    Diagnostics.Message first = messages.get(1);
+    assertEquals("B.java", first.getFile());
+    assertEquals("Rewriter", first.getPass());
+    assertEquals(Diagnostics.Severity.ERROR, first.getSeverity());
+    assertEquals("warning: second", messages.get(2).toString());
+    assertEquals(Arrays.asList("first", "third"),
+        diagnostics.getMessageTexts(Diagnostics.Severity.ERROR));
+  }
+
+  public void testDiagnosticsOutput() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Diagnostics diagnostics =
+        new Diagnostics(Diagnostics.DEFAULT_MAX_MESSAGES, new PrintStream(out, true));
+    ErrorUtil.setDiagnostics(diagnostics);
+    try {
+      ErrorUtil.warning("printed");
+      ErrorUtil.reset();
+      ErrorUtil.error("after reset");
+    } finally {
+      ErrorUtil.setDiagnostics(null);
+    }
+    // Reset diagnostics keep printing to the same stream.
+    assertEquals(String.format("warning: printed%nerror: after reset%n"), out.toString());
+    assertEquals(0, diagnostics.errorCount());
+  }
+
+  public void testBoundedMessages() {
+    Diagnostics diagnostics = new Diagnostics(2);
+    for (int i = 0; i < 5; i++) {
+      diagnostics.report(Diagnostics.Severity.ERROR, "A.java", i, null, "error " + i);
+    }
+    assertEquals(5, diagnostics.errorCount());
+    assertEquals(Arrays.asList("error 0", "error 1"),
+        diagnostics.getMessageTexts(Diagnostics.Severity.ERROR));
+  }
 }
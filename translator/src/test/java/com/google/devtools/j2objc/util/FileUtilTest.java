@@ -15,6 +15,7 @@
 package com.google.devtools.j2objc.util;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.file.InputFile;
 import com.google.devtools.j2objc.file.JarredInputFile;
 import java.io.File;
 import java.io.IOException;
@@ -46,6 +47,27 @@ public class FileUtilTest extends GenerationTest {
     assertTrue(jarEntry.exists());
   }
   
+  // Verify that sources are found in path order, in both directories and jars.
+  public void testFindOnSourcePath() throws IOException {
+    addSourceFile("package foo; class Bar {}", "foo/Bar.java");
+    addJarFile("test.jar", "foo/Bar.java", "package foo; class Bar { int i; }",
+        "foo/Baz.java", "package foo; class Baz {}");
+    FileUtil fileUtil = options.fileUtil();
+    InputFile bar = fileUtil.findOnSourcePath("foo.Bar");
+    assertNotNull(bar);
+    assertEquals("foo" + File.separatorChar + "Bar.java", bar.getUnitName());
+    assertTrue(bar.exists());
+    InputFile baz = fileUtil.findOnSourcePath("foo.Baz");
+    assertTrue(baz instanceof JarredInputFile);
+    assertEquals("package foo; class Baz {}", fileUtil.readFile(baz));
+    assertNull(fileUtil.findOnSourcePath("foo.Qux"));
+    assertNull(fileUtil.findOnSourcePath("Qux"));
+
+    // Files added after the sourcepath is indexed are found once it's cleared.
+    addSourceFile("package foo; class Qux {}", "foo/Qux.java");
+    assertNotNull(fileUtil.findOnSourcePath("foo.Qux"));
+  }
+
   // Verify that a classes.jar file is extracted from an Android AAR file.
   public void testExtractClassesJarFromAarFile() throws IOException {
     File aarFile = new File(getResourceAsFile("hello.aar"));
@@ -16,8 +16,13 @@ package com.google.devtools.j2objc.util;
 
 import com.google.devtools.j2objc.GenerationTest;
 import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.common.io.Files;
 import com.google.j2objc.annotations.ReflectionSupport;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * Unit tests for the {@link PackageInfoLookup}.
@@ -119,4 +124,50 @@ public class PackageInfoLookupTest extends GenerationTest {
     PackageInfoLookup packageInfoLookup = unit.getEnv().options().getPackageInfoLookup();
     assertTrue(packageInfoLookup.hasParametersAreNonnullByDefault("bar"));
   }
+
+  public void testIndex() throws IOException {
+    String path = addSourceFile("@ObjectiveCName(\"FOO\") package foo;"
+        + " import com.google.j2objc.annotations.ObjectiveCName;", "src/foo/package-info.java");
+    File indexDir = new File(getTempDir(), "index");
+    assertEquals("FOO", newIndexedLookup(indexDir).getObjectiveCName("foo"));
+    File[] indexFiles = indexDir.listFiles();
+    assertEquals(1, indexFiles.length);
+
+    // Later lookups read the index while the sourcepath entry is unchanged.
+    String index = Files.asCharSource(indexFiles[0], StandardCharsets.UTF_8).read();
+    Files.asCharSink(indexFiles[0], StandardCharsets.UTF_8).write(index.replace("FOO", "BAR"));
+    assertEquals("BAR", newIndexedLookup(indexDir).getObjectiveCName("foo"));
+
+    // Changing a package-info file rebuilds the index.
+    File file = new File(path);
+    long lastModified = file.lastModified();
+    addSourceFile("@ObjectiveCName(\"BAZ\") package foo;"
+        + " import com.google.j2objc.annotations.ObjectiveCName;", "src/foo/package-info.java");
+    file.setLastModified(lastModified + 2000);
+    assertEquals("BAZ", newIndexedLookup(indexDir).getObjectiveCName("foo"));
+    assertNull(newIndexedLookup(indexDir).getObjectiveCName("bar"));
+  }
+
+  public void testTemporaryRootsNotIndexed() throws IOException {
+    addSourceFile("@ObjectiveCName(\"FOO\") package foo;"
+        + " import com.google.j2objc.annotations.ObjectiveCName;", "src/foo/package-info.java");
+    File indexDir = new File(getTempDir(), "index");
+    FileUtil fileUtil = new FileUtil();
+    fileUtil.setSourcePathEntries(
+        new ArrayList<>(Collections.singletonList(getTempDir() + "/src")));
+    fileUtil.addTempDir(getTempDir() + "/src");
+    PackageInfoLookup lookup = new PackageInfoLookup(fileUtil);
+    lookup.setIndexDirectory(indexDir);
+    assertEquals("FOO", lookup.getObjectiveCName("foo"));
+    assertFalse(indexDir.exists());
+  }
+
+  private PackageInfoLookup newIndexedLookup(File indexDir) {
+    FileUtil fileUtil = new FileUtil();
+    fileUtil.setSourcePathEntries(
+        new ArrayList<>(Collections.singletonList(getTempDir() + "/src")));
+    PackageInfoLookup lookup = new PackageInfoLookup(fileUtil);
+    lookup.setIndexDirectory(indexDir);
+    return lookup;
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.file.RegularInputFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link SourceCache}.
+ */
+public class SourceCacheTest extends GenerationTest {
+
+  public void testFileReadOnce() throws IOException {
+    String path = addSourceFile("class Test {}", "Test.java");
+    SourceCache cache = new SourceCache();
+    Charset charset = options.fileUtil().getCharset();
+    String source = cache.readString(new RegularInputFile(path), charset, false);
+    assertEquals("class Test {}", source);
+    assertSame(source, cache.readString(new RegularInputFile(path), charset, false));
+    assertEquals(source.length(), cache.size());
+  }
+
+  public void testModifiedFileReread() throws IOException {
+    String path = addSourceFile("class Test {}", "Test.java");
+    SourceCache cache = new SourceCache();
+    Charset charset = options.fileUtil().getCharset();
+    cache.readString(new RegularInputFile(path), charset, false);
+    addSourceFile("class Test { int i; }", "Test.java");
+    assertEquals("class Test { int i; }",
+        cache.readString(new RegularInputFile(path), charset, false));
+    assertEquals("class Test { int i; }".length(), cache.size());
+  }
+
+  public void testLeastRecentlyUsedEvicted() throws IOException {
+    String a = addSourceFile("class A {}", "A.java");
+    String b = addSourceFile("class B {}", "B.java");
+    String c = addSourceFile("class C {}", "C.java");
+    SourceCache cache = new SourceCache(25);
+    Charset charset = options.fileUtil().getCharset();
+    String sourceA = cache.readString(new RegularInputFile(a), charset, false);
+    cache.readString(new RegularInputFile(b), charset, false);
+    cache.readString(new RegularInputFile(a), charset, false);
+    cache.readString(new RegularInputFile(c), charset, false);
+    // B was used least recently, so it was dropped for C.
+    assertEquals(20, cache.size());
+    assertSame(sourceA, cache.readString(new RegularInputFile(a), charset, false));
+  }
+
+  public void testEncodingErrorsReported() throws IOException {
+    File file = getTempFile("Test.java");
+    Files.write(new byte[] { 'a', (byte) 0xff, 'b' }, file);
+    SourceCache cache = new SourceCache();
+    RegularInputFile input = new RegularInputFile(file.getPath());
+    try {
+      cache.readString(input, StandardCharsets.UTF_8, false);
+      fail("malformed input not reported");
+    } catch (CharacterCodingException e) {
+      // Expected.
+    }
+    assertEquals("a\ufffdb", cache.readString(input, StandardCharsets.UTF_8, true));
+    // The source with the replacement is cached, but only for callers that ignore errors.
+    try {
+      cache.read(input, StandardCharsets.UTF_8, false);
+      fail("cached replacement returned");
+    } catch (CharacterCodingException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.J2ObjC;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link StringPool}.
+ */
+public class StringPoolTest extends GenerationTest {
+
+  public void testMetadataStringsPooled() throws IOException {
+    options.getStringPool().setName("TestPool");
+    addSourceFile("class A { String s; }", "A.java");
+    addSourceFile("class B { String s; }", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    // Each string's array is named after its value, whatever else is translated.
+    String symbol = "TestPool_" + Hashing.sha256()
+        .hashString("Ljava/lang/String;", StandardCharsets.UTF_8).toString().substring(0, 16);
+    String pool = getTranslatedFile("TestPool.m");
+    String hidden = "__attribute__((visibility(\"hidden\"))) ";
+    assertTranslation(pool, "FOUNDATION_EXPORT " + hidden + "const char " + symbol + "[];");
+    assertOccurrences(pool, "\"Ljava/lang/String;\"", 1);
+    assertTranslation(pool,
+        "\n" + hidden + "const char " + symbol + "[] = \"Ljava/lang/String;\";");
+    assertTranslation(pool, "A.java\n");
+    assertTranslation(pool, "B.java\n");
+
+    String translation = getTranslatedFile("A.m");
+    assertTranslation(translation, "FOUNDATION_EXPORT " + hidden + "const char " + symbol + "[];");
+    assertNotInTranslation(translation, "\"Ljava/lang/String;\"");
+    assertTranslation(translation, "{ TestPool_");
+    translation = getTranslatedFile("B.m");
+    assertNotInTranslation(translation, "\"Ljava/lang/String;\"");
+  }
+
+  public void testFilesLeftOutOfPoolReported() throws IOException {
+    options.getStringPool().setName("TestPool");
+    Files.asCharSink(getTempFile("TestPool.m"), StandardCharsets.UTF_8)
+        .write("// Used by Other.java\n");
+    addSourceFile("class A { String s; }", "A.java");
+    J2ObjC.run(Collections.singletonList(getTempDir() + "/A.java"), options);
+
+    // Other.java would refer to strings the new pool doesn't define.
+    assertErrorCount(1);
+    assertEquals("// Used by Other.java\n", getTranslatedFile("TestPool.m"));
+  }
+
+  public void testUnpooledStringsKeptAsLiterals() throws IOException {
+    options.getStringPool().setName("TestPool");
+    String translation = translateSourceFile("class Test { String s; }", "Test", "Test.m");
+    // Strings that need escapes aren't pooled.
+    assertEquals("\"a\\b\"", options.getStringPool().getMetadataString("Test.java", "a\\b"));
+    assertTranslation(translation, "TestPool_");
+  }
+
+  public void testReport() throws IOException {
+    options.getStringPool().setReportFile(getTempFile("strings.txt"));
+    addSourceFile("class A { String f() { return \"shared\"; } String s; }", "A.java");
+    addSourceFile("class B { String f() { return \"shared\"; } String s; }", "B.java");
+    runPipeline(getTempDir() + "/A.java", getTempDir() + "/B.java");
+
+    // Without a pool name, metadata strings are reported but not pooled.
+    assertTranslation(getTranslatedFile("A.m"), "\"Ljava/lang/String;\"");
+    String report = getTranslatedFile("strings.txt");
+    assertTranslation(report, "\n7\t2\tliteral\tshared\n");
+    assertTranslation(report, "\n19\t2\tmetadata\tLjava/lang/String;\n");
+  }
+}
@@ -26,16 +26,21 @@ import com.google.devtools.j2objc.ast.TreeUtil;
 import com.google.devtools.j2objc.ast.TypeDeclaration;
 import com.google.devtools.j2objc.ast.UnitTreeVisitor;
 import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.util.ClassFileScanner;
+import com.google.devtools.j2objc.util.ClassFileScanner.MemberReference;
 import com.google.devtools.j2objc.util.CodeReferenceMap.Builder;
 import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.TypeUtil;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
 
 /**
  * Reference-mapping code for TreeShaker functionality that uses the visitor pattern
@@ -152,6 +157,8 @@ public class ElementReferenceMapper extends UnitTreeVisitor {
   private final HashMap<String, ReferenceNode> elementReferenceMap;
   private final Set<String> staticSet;
   private final HashMap<String, Set<String>> overrideMap;
+  private final Map<TypeElement, Map<String, ExecutableElement>> classFileMethods =
+      new HashMap<>();
 
   public ElementReferenceMapper(CompilationUnit unit, HashMap<String, ReferenceNode> 
       elementReferenceMap, Set<String> staticSet, HashMap<String, Set<String>> overrideMap) {
@@ -314,6 +321,105 @@ public class ElementReferenceMapper extends UnitTreeVisitor {
     handleParentMethod(parentMethodElement, childMethodElement);
   }
 
+  /**
+   * Maps the references of a type read from a class file, using its bytecode
+   * in place of the method bodies a source unit provides. Invocations from
+   * code that has no method element, such as class initializers and local or
+   * anonymous classes, are added to the static set like source initializers.
+   * Method handle targets are treated the same way, since they can be invoked
+   * from anywhere.
+   */
+  public void mapClassFile(TypeElement type, ClassFileScanner classFile) {
+    if (type != null) {
+      ClassReferenceNode classNode = new ClassReferenceNode(type);
+      for (VariableElement field : ElementUtil.getDeclaredFields(type)) {
+        if (ElementUtil.isPublic(field)) {
+          classNode.containsPublicField = true;
+        }
+      }
+      elementReferenceMap.putIfAbsent(stitchClassIdentifier(type), classNode);
+    }
+    for (ClassFileScanner.Method method : classFile.getMethods()) {
+      ExecutableElement methodElement = type != null
+          ? getClassFileMethods(type).get(method.getName() + method.getDescriptor()) : null;
+      if (methodElement != null && !Modifier.isNative(method.getAccess())) {
+        String methodIdentifier = stitchMethodIdentifier(methodElement);
+        MethodReferenceNode node = (MethodReferenceNode) elementReferenceMap.get(methodIdentifier);
+        if (node == null) {
+          node = new MethodReferenceNode(methodElement);
+        }
+        node.declared = true;
+        elementReferenceMap.put(methodIdentifier, node);
+        addToOverrideMap(methodElement);
+      }
+      for (MemberReference invoked : method.getInvokedMethods()) {
+        handleClassFileInvocation(methodElement, invoked);
+      }
+    }
+    for (MemberReference handle : classFile.getMethodHandles()) {
+      handleClassFileInvocation(null, handle);
+    }
+  }
+
+  private void handleClassFileInvocation(
+      ExecutableElement parentMethodElement, MemberReference invoked) {
+    ExecutableElement childMethodElement = resolveClassFileMethod(invoked);
+    if (childMethodElement == null) {
+      return;
+    }
+    handleChildMethod(childMethodElement);
+    if (parentMethodElement == null) {
+      staticSet.add(stitchMethodIdentifier(childMethodElement));
+    } else {
+      handleParentMethod(parentMethodElement, childMethodElement);
+    }
+  }
+
+  /**
+   * Returns the method a bytecode reference resolves to, which may be
+   * declared by a supertype of the referenced class.
+   */
+  private ExecutableElement resolveClassFileMethod(MemberReference ref) {
+    String canonicalName = ref.getOwner().replace('$', '.');
+    if (!javax.lang.model.SourceVersion.isName(canonicalName)) {
+      return null;
+    }
+    TypeElement owner = typeUtil.resolveJavaType(canonicalName);
+    return owner != null ? findClassFileMethod(owner, ref.getName() + ref.getDescriptor()) : null;
+  }
+
+  private ExecutableElement findClassFileMethod(TypeElement type, String key) {
+    ExecutableElement method = getClassFileMethods(type).get(key);
+    if (method != null || key.startsWith("<")) {
+      return method;
+    }
+    TypeElement superclass = TypeUtil.asTypeElement(type.getSuperclass());
+    if (superclass != null) {
+      method = findClassFileMethod(superclass, key);
+    }
+    for (TypeMirror intrface : type.getInterfaces()) {
+      if (method != null) {
+        break;
+      }
+      method = findClassFileMethod(TypeUtil.asTypeElement(intrface), key);
+    }
+    return method;
+  }
+
+  // Returns a type's methods keyed by their bytecode name and descriptor.
+  private Map<String, ExecutableElement> getClassFileMethods(TypeElement type) {
+    Map<String, ExecutableElement> methods = classFileMethods.get(type);
+    if (methods == null) {
+      methods = new HashMap<>();
+      for (ExecutableElement method : ElementUtil.getExecutables(type)) {
+        String name = ElementUtil.isConstructor(method) ? "<init>" : ElementUtil.getName(method);
+        methods.put(name + typeUtil.getReferenceSignature(method), method);
+      }
+      classFileMethods.put(type, methods);
+    }
+    return methods;
+  }
+
   /**
    * Adds the common IDs of overriding methods (methodName and signature) to the override map.
    * @param methodElement
@@ -57,6 +57,7 @@ class Options {
   private String classpath;
   private String bootclasspath;
   private List<String> sourceFiles = Lists.newArrayList();
+  private List<String> classFiles = Lists.newArrayList();
   private String fileEncoding = System.getProperty("file.encoding", "UTF-8");
   private boolean treatWarningsAsErrors = false;
 
@@ -72,6 +73,18 @@ class Options {
     this.sourceFiles = files;
   }
 
+  /**
+   * Returns the class files and jars of class files to analyze, which are read
+   * without compiling any source.
+   */
+  public List<String> getClassFiles() {
+    return classFiles;
+  }
+
+  public void setClassFiles(List<String> files) {
+    this.classFiles = files;
+  }
+
   public String getSourcepath() {
     return sourcepath;
   }
@@ -198,9 +211,14 @@ class Options {
     }
 
     while (nArg < args.length) {
-      options.sourceFiles.add(args[nArg++]);
+      String file = args[nArg++];
+      if (file.endsWith(".jar") || file.endsWith(".class")) {
+        options.classFiles.add(file);
+      } else {
+        options.sourceFiles.add(file);
+      }
     }
-    if (options.sourceFiles.isEmpty()) {
+    if (options.sourceFiles.isEmpty() && options.classFiles.isEmpty()) {
       usage("no source files");
     }
 
@@ -16,13 +16,14 @@ package com.google.devtools.treeshaker;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Table.Cell;
 import com.google.common.io.Files;
 import com.google.devtools.j2objc.ast.CompilationUnit;
-import com.google.devtools.j2objc.file.RegularInputFile;
+import com.google.devtools.j2objc.file.InputFile;
+import com.google.devtools.j2objc.util.ClassFileScanner;
 import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ErrorUtil;
-import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
 import com.google.devtools.j2objc.util.ProGuardUsageParser;
 import com.google.devtools.j2objc.util.TranslationEnvironment;
@@ -31,10 +32,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.lang.model.element.TypeElement;
 
 /**
  * A tool for finding unused code in a Java program.
@@ -103,7 +106,7 @@ public class TreeShaker {
   }
 
   private void testFileExistence() {
-    for (String filePath : options.getSourceFiles()) {
+    for (String filePath : Iterables.concat(options.getSourceFiles(), options.getClassFiles())) {
       File f = new File(filePath);
       if (!f.exists()) {
         ErrorUtil.error("File not found: " + filePath);
@@ -111,32 +114,6 @@ public class TreeShaker {
     }
   }
 
-  private File stripIncompatible(List<String> sourceFileNames, Parser parser) throws IOException {
-    File strippedDir = null;
-    for (int i = 0; i < sourceFileNames.size(); i++) {
-      String fileName = sourceFileNames.get(i);
-      RegularInputFile file = new RegularInputFile(fileName);
-      String source = j2objcOptions.fileUtil().readFile(file);
-      if (!source.contains("J2ObjCIncompatible")) {
-        continue;
-      }
-      if (strippedDir == null) {
-        strippedDir = Files.createTempDir();
-        parser.prependSourcepathEntry(strippedDir.getPath());
-      }
-      Parser.ParseResult parseResult = parser.parseWithoutBindings(file, source);
-      String qualifiedName = parseResult.mainTypeName();
-      parseResult.stripIncompatibleSource();
-      String relativePath = qualifiedName.replace('.', File.separatorChar) + ".java";
-      File strippedFile = new File(strippedDir, relativePath);
-      Files.createParentDirs(strippedFile);
-      Files.write(
-          parseResult.getSource(), strippedFile, j2objcOptions.fileUtil().getCharset());
-      sourceFileNames.set(i, strippedFile.getPath());
-    }
-    return strippedDir;
-  }
-
   public CodeReferenceMap getUnusedCode(CodeReferenceMap inputRootSet) throws IOException {
     Parser parser = createParser(options);
 
@@ -145,8 +122,11 @@ public class TreeShaker {
     final HashMap<String, Set<String>> overrideMap = new HashMap<>();
 
     List<String> sourceFiles = options.getSourceFiles();
-    File strippedDir = stripIncompatible(sourceFiles, parser);
+    parser.stripIncompatibleSources(sourceFiles);
 
+    // Each unit is mapped into its own partial graph, and the partial graphs
+    // are merged in input order once parsing finishes.
+    final List<UnitReferenceGraph> unitGraphs = new ArrayList<>();
     Parser.Handler handler = new Parser.Handler() {
       @Override
       public void handleParsedUnit(String path, CompilationUnit unit) {
@@ -156,12 +136,31 @@ public class TreeShaker {
           //TODO(malvania): Assertion fails! Remove this once we're sure all env utils are the same.
           //assert(unit.getEnv() == env);
         }
-        new ElementReferenceMapper(unit, elementReferenceMap, staticSet, overrideMap).run();
+        unitGraphs.add(UnitReferenceGraph.build(unit));
       }
     };
-    parser.parseFiles(sourceFiles, handler, options.sourceVersion());
+    // Class files are read from their bytecode rather than compiled; the parser handles them
+    // before any source unit.
+    Parser.ClassFileHandler classFileHandler = new Parser.ClassFileHandler() {
+      @Override
+      public void handleClassFile(InputFile file, TypeElement type, TranslationEnvironment env) {
+        if (TreeShaker.this.env == null) {
+          TreeShaker.this.env = env;
+        }
+        try {
+          ClassFileScanner classFile = ClassFileScanner.scan(file);
+          unitGraphs.add(UnitReferenceGraph.build(classFile, type, env));
+        } catch (IOException e) {
+          ErrorUtil.error(file.getOriginalLocation() + ": " + e.getMessage());
+        }
+      }
+    };
+    parser.parseFiles(sourceFiles, handler, options.getClassFiles(), classFileHandler,
+        options.sourceVersion());
+    for (UnitReferenceGraph unitGraph : unitGraphs) {
+      unitGraph.mergeInto(elementReferenceMap, staticSet, overrideMap);
+    }
 
-    FileUtil.deleteTempDir(strippedDir);
     if (ErrorUtil.errorCount() > 0) {
       return null;
     }
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.treeshaker;
+
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.util.ClassFileScanner;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TranslationEnvironment;
+import com.google.devtools.treeshaker.ElementReferenceMapper.ClassReferenceNode;
+import com.google.devtools.treeshaker.ElementReferenceMapper.MethodReferenceNode;
+import com.google.devtools.treeshaker.ElementReferenceMapper.ReferenceNode;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * The reference graph of a single compilation unit. Each unit is mapped
+ * independently on the parser's thread, and the partial graphs are merged
+ * into the program-wide graph in input order.
+ *
+ * <p>Mapping isn't done on worker threads: it resolves types through javac,
+ * and the nodes keep javac's elements, which the unused code tracker later
+ * compares within the parser's environment.
+ *
+ * <p>Merging transfers ownership of a graph's nodes to the graph it's merged
+ * into, so a partial graph should only be merged once.
+ */
+class UnitReferenceGraph {
+
+  private final Map<String, ReferenceNode> elementReferenceMap;
+  private final Set<String> staticSet;
+  private final Map<String, Set<String>> overrideMap;
+
+  private UnitReferenceGraph(Map<String, ReferenceNode> elementReferenceMap,
+      Set<String> staticSet, Map<String, Set<String>> overrideMap) {
+    this.elementReferenceMap = elementReferenceMap;
+    this.staticSet = staticSet;
+    this.overrideMap = overrideMap;
+  }
+
+  /**
+   * Maps the references of a single unit. This resolves types through the
+   * front-end, so it must run on the parser's thread.
+   */
+  static UnitReferenceGraph build(CompilationUnit unit) {
+    // Linked collections keep the merge order independent of hashing.
+    LinkedHashMap<String, ReferenceNode> elementReferenceMap = new LinkedHashMap<>();
+    Set<String> staticSet = new LinkedHashSet<>();
+    HashMap<String, Set<String>> overrideMap = new LinkedHashMap<>();
+    new ElementReferenceMapper(unit, elementReferenceMap, staticSet, overrideMap).run();
+    return new UnitReferenceGraph(elementReferenceMap, staticSet, overrideMap);
+  }
+
+  /**
+   * Maps the references of a class file, whose type may be null if it can't
+   * be looked up by name. This resolves types through the front-end, so it
+   * must run on the parser's thread.
+   */
+  static UnitReferenceGraph build(
+      ClassFileScanner classFile, TypeElement type, TranslationEnvironment env) {
+    LinkedHashMap<String, ReferenceNode> elementReferenceMap = new LinkedHashMap<>();
+    Set<String> staticSet = new LinkedHashSet<>();
+    HashMap<String, Set<String>> overrideMap = new LinkedHashMap<>();
+    String mainTypeName = type != null ? ElementUtil.getName(type) : classFile.getClassName();
+    CompilationUnit unit = new CompilationUnit(env, mainTypeName);
+    new ElementReferenceMapper(unit, elementReferenceMap, staticSet, overrideMap)
+        .mapClassFile(type, classFile);
+    return new UnitReferenceGraph(elementReferenceMap, staticSet, overrideMap);
+  }
+
+  /**
+   * Merges this unit's references into a program-wide graph. A node present in
+   * both graphs is combined, so the result is the same as if the units had
+   * been mapped in order into a single graph.
+   */
+  void mergeInto(HashMap<String, ReferenceNode> programReferenceMap,
+      Set<String> programStaticSet, HashMap<String, Set<String>> programOverrideMap) {
+    for (Map.Entry<String, ReferenceNode> entry : elementReferenceMap.entrySet()) {
+      ReferenceNode existing = programReferenceMap.putIfAbsent(entry.getKey(), entry.getValue());
+      if (existing != null) {
+        mergeNode(existing, entry.getValue());
+      }
+    }
+    programStaticSet.addAll(staticSet);
+    for (Map.Entry<String, Set<String>> entry : overrideMap.entrySet()) {
+      Set<String> overrides = programOverrideMap.get(entry.getKey());
+      if (overrides == null) {
+        programOverrideMap.put(entry.getKey(), new HashSet<>(entry.getValue()));
+      } else {
+        overrides.addAll(entry.getValue());
+      }
+    }
+  }
+
+  private static void mergeNode(ReferenceNode existing, ReferenceNode node) {
+    if (existing instanceof ClassReferenceNode) {
+      ((ClassReferenceNode) existing).containsPublicField |=
+          ((ClassReferenceNode) node).containsPublicField;
+    } else if (existing instanceof MethodReferenceNode) {
+      MethodReferenceNode existingMethod = (MethodReferenceNode) existing;
+      MethodReferenceNode method = (MethodReferenceNode) node;
+      existingMethod.invoked |= method.invoked;
+      existingMethod.declared |= method.declared;
+      existingMethod.invokedMethods.addAll(method.invokedMethods);
+      existingMethod.overridingMethods.addAll(method.overridingMethods);
+    }
+  }
+}
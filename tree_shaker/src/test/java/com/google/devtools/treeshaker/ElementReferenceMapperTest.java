@@ -255,4 +255,28 @@ public class ElementReferenceMapperTest extends GenerationTest {
     assertFalse(elementSet.contains(ElementReferenceMapper
         .stitchMethodIdentifier("A", "falseCase", "(Ljava/lang/String;)V")));
   }
+
+  public void testUnitReferenceGraphMerge() throws IOException {
+    addSourceFile("class B { void bar() {} }", "B.java");
+    CompilationUnit unitA = compileType("A", "class A { void foo() { new B().bar(); } }");
+    CompilationUnit unitB = compileType("B", "class B { void bar() {} }");
+    final HashMap<String, ReferenceNode> elementReferenceMap = new HashMap<>();
+    final HashMap<String, Set<String>> overrideMap = new HashMap<>();
+    final Set<String> staticSet = new HashSet<>();
+    UnitReferenceGraph.build(unitA).mergeInto(elementReferenceMap, staticSet, overrideMap);
+    UnitReferenceGraph.build(unitB).mergeInto(elementReferenceMap, staticSet, overrideMap);
+    Set<String> elementSet = elementReferenceMap.keySet();
+
+    assertTrue(elementSet.contains(ElementReferenceMapper.stitchClassIdentifier("A")));
+    assertTrue(elementSet.contains(ElementReferenceMapper.stitchClassIdentifier("B")));
+    MethodReferenceNode bar = (MethodReferenceNode) elementReferenceMap.get(
+        ElementReferenceMapper.stitchMethodIdentifier("B", "bar", "()V"));
+    assertTrue(bar.invoked);
+    assertTrue(bar.declared);
+    assertTrue(((MethodReferenceNode) elementReferenceMap.get(ElementReferenceMapper
+        .stitchMethodIdentifier("A", "foo", "()V")))
+        .invokedMethods.contains(ElementReferenceMapper.stitchMethodIdentifier("B", "bar", "()V")));
+    assertEquals(1, overrideMap.get(
+        ElementReferenceMapper.stitchOverrideMethodIdentifier("bar", "()V")).size());
+  }
 }